@@ -0,0 +1,281 @@
+package org.fsegs.surveillanceexams;
+
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Date;
+import java.sql.Time;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop HTTP load against the running application, once with the
+ * default platform-thread Tomcat pool and once with the "virtual" profile,
+ * on the same data and the same connection pool size.
+ *
+ * Workload per client, mixed read/write:
+ * - 15% GET /api/seances (entity list, the slow read)
+ * - 55% light reads: sparse seance list, seance search, teacher calendar
+ * - 30% writes: POST then DELETE /api/voeux for a random teacher and seance
+ * plus one admin client looping on POST /api/system/initialize-constraints.
+ * Admission control is off so the thread model, not the rate limiter, decides.
+ *
+ * Run: mvn -Pbenchmark test-compile exec:exec
+ *        -Dbenchmark.main=org.fsegs.surveillanceexams.ThreadModeLoadBenchmark
+ *        -Djmh.args="clients=400 seconds=30 warmup=10"
+ * Add url=/user=/password= to run against MySQL instead of in-memory H2.
+ */
+public final class ThreadModeLoadBenchmark {
+
+    private static final int SEANCES = 600;
+    private static final int TEACHERS = 2000;
+
+    private ThreadModeLoadBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Devtools would otherwise restart this main with the application's arguments
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        int clients = Integer.parseInt(option(args, "clients", "400"));
+        int seconds = Integer.parseInt(option(args, "seconds", "30"));
+        int warmup = Integer.parseInt(option(args, "warmup", "10"));
+        List<String> modes = Arrays.asList(option(args, "modes", "platform,virtual").split(","));
+
+        List<String> report = new ArrayList<>();
+        for (String mode : modes) {
+            report.add(run(mode, args, clients, warmup, seconds));
+        }
+        System.out.printf("%n%d clients, %d s measured after %d s warm-up%n", clients, seconds, warmup);
+        System.out.printf("%-9s %9s %10s %10s %10s %10s %8s %8s%n",
+                "mode", "req/s", "read p50", "read p99", "write p50", "write p99", "503", "errors");
+        report.forEach(System.out::println);
+    }
+
+    private static String run(String mode, String[] args, int clients, int warmup, int seconds) throws Exception {
+        List<String> appArgs = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=" + option(args, "url",
+                        "jdbc:h2:mem:load-" + mode + ";MODE=MySQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"),
+                "--spring.datasource.username=" + option(args, "user", "sa"),
+                "--spring.datasource.password=" + option(args, "password", ""),
+                "--spring.datasource.hikari.maximum-pool-size=20",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--surveillance.admission.enabled=false",
+                "--surveillance.snapshot.enabled=false",
+                "--surveillance.audit.enabled=false",
+                "--surveillance.idempotency.file="));
+        if (option(args, "url", null) == null) {
+            appArgs.add("--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect");
+        }
+        if (mode.equals("virtual")) {
+            appArgs.add("--spring.profiles.active=virtual");
+        }
+
+        try (ConfigurableApplicationContext context =
+                     SpringApplication.run(SurveillanceExamsApplication.class, appArgs.toArray(new String[0]))) {
+            populate(context.getBean(JdbcTemplate.class), context.getBean(CampagneService.class).activeId());
+            String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api";
+
+            Load load = new Load(base, clients);
+            load.start();
+            Thread.sleep(warmup * 1000L);
+            load.measure();
+            Thread.sleep(seconds * 1000L);
+            return load.stop(mode, seconds);
+        }
+    }
+
+    // =========================
+    // LOAD
+    // =========================
+    private static final class Load {
+        private final String base;
+        private final int clients;
+        private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        private final List<Thread> threads = new ArrayList<>();
+        private final List<Samples> reads = new ArrayList<>();
+        private final List<Samples> writes = new ArrayList<>();
+        private final AtomicLong busy = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private volatile boolean measuring;
+        private volatile boolean running = true;
+
+        Load(String base, int clients) {
+            this.base = base;
+            this.clients = clients;
+        }
+
+        void start() {
+            for (int i = 0; i < clients; i++) {
+                Samples read = new Samples();
+                Samples write = new Samples();
+                reads.add(read);
+                writes.add(write);
+                threads.add(Thread.ofVirtual().start(() -> client(read, write)));
+            }
+            threads.add(Thread.ofVirtual().start(() -> {
+                while (running) {
+                    call(HttpRequest.newBuilder(URI.create(base + "/system/initialize-constraints"))
+                            .POST(HttpRequest.BodyPublishers.noBody()), null);
+                }
+            }));
+        }
+
+        void measure() {
+            measuring = true;
+        }
+
+        String stop(String mode, int seconds) throws InterruptedException {
+            measuring = false;
+            running = false;
+            for (Thread t : threads) {
+                t.join(30_000);
+            }
+            long[] r = merge(reads);
+            long[] w = merge(writes);
+            return String.format("%-9s %9.1f %8.1fms %8.1fms %8.1fms %8.1fms %8d %8d", mode,
+                    (r.length + w.length) / (double) seconds,
+                    percentile(r, 0.50), percentile(r, 0.99), percentile(w, 0.50), percentile(w, 0.99),
+                    busy.get(), errors.get());
+        }
+
+        private void client(Samples read, Samples write) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (running) {
+                double p = random.nextDouble();
+                long seance = 1 + random.nextInt(SEANCES);
+                long teacher = 1 + random.nextInt(TEACHERS);
+                if (p < 0.15) {
+                    call(get("/seances"), read);
+                } else if (p < 0.35) {
+                    call(get("/seances?fields=date,heureDebut,heureFin,nbSurveillantsInscrits"), read);
+                } else if (p < 0.55) {
+                    call(get("/seances/search?saturee=false&filiere=Gestion&sansMatieresDe=" + teacher), read);
+                } else if (p < 0.70) {
+                    call(get("/calendar?idEnseignant=" + teacher), read);
+                } else {
+                    String query = "/voeux?idEnseignant=" + teacher + "&idSeance=" + seance;
+                    call(HttpRequest.newBuilder(URI.create(base + query)).POST(HttpRequest.BodyPublishers.noBody()),
+                            write);
+                    call(HttpRequest.newBuilder(URI.create(base + query)).DELETE(), write);
+                }
+            }
+        }
+
+        private HttpRequest.Builder get(String path) {
+            return HttpRequest.newBuilder(URI.create(base + path)).GET();
+        }
+
+        private void call(HttpRequest.Builder request, Samples samples) {
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = http.send(request.timeout(Duration.ofSeconds(60)).build(),
+                        HttpResponse.BodyHandlers.discarding());
+                if (!measuring || samples == null) {
+                    return;
+                }
+                if (response.statusCode() == 503) {
+                    busy.incrementAndGet();
+                } else if (response.statusCode() >= 500) {
+                    errors.incrementAndGet();
+                }
+                samples.add(System.nanoTime() - start);
+            } catch (IOException e) {
+                if (measuring) {
+                    errors.incrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+        }
+    }
+
+    /**
+     * Latencies of one client for one request class (single writer).
+     */
+    private static final class Samples {
+        long[] values = new long[1024];
+        int size;
+
+        void add(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+    }
+
+    private static long[] merge(List<Samples> all) {
+        long[] merged = all.stream().flatMapToLong(s -> Arrays.stream(s.values, 0, s.size)).toArray();
+        Arrays.sort(merged);
+        return merged;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+
+    // =========================
+    // DATA
+    // =========================
+    private static void populate(JdbcTemplate jdbc, long idCampagne) {
+        List<Object[]> matieres = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            matieres.add(new Object[]{i, "Matière " + i});
+        }
+        jdbc.batchUpdate("INSERT INTO matiere (id_matiere, nom) VALUES (?, ?)", matieres);
+
+        List<Object[]> seances = new ArrayList<>();
+        List<Object[]> epreuves = new ArrayList<>();
+        LocalDate first = LocalDate.of(2025, 6, 2);
+        for (int i = 1; i <= SEANCES; i++) {
+            LocalTime debut = LocalTime.of(8 + (i % 4) * 2, 30);
+            seances.add(new Object[]{i, Date.valueOf(first.plusDays(i / 30)), Time.valueOf(debut),
+                    Time.valueOf(debut.plusMinutes(90)), 4, 0, idCampagne});
+            epreuves.add(new Object[]{i, i % 2 == 0 ? "Gestion" : "Info", "L" + (1 + i % 3), i, 1 + i % 100});
+        }
+        jdbc.batchUpdate("INSERT INTO seance (id_seance, date_seance, heure_debut, heure_fin, " +
+                "nb_surveillants_necessaires, nb_surveillants_inscrits, id_campagne) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                seances);
+        jdbc.batchUpdate("INSERT INTO epreuve (id_epreuve, filiere, classe, id_seance, id_matiere) " +
+                "VALUES (?, ?, ?, ?, ?)", epreuves);
+
+        List<Object[]> teachers = new ArrayList<>();
+        List<Object[]> subjects = new ArrayList<>();
+        for (int i = 1; i <= TEACHERS; i++) {
+            teachers.add(new Object[]{i, "Enseignant " + i, i % 3 == 0 ? "Professeur" : "Assistant", 10.0, 6.0});
+            subjects.add(new Object[]{i, 1 + i % 100});
+        }
+        jdbc.batchUpdate("INSERT INTO enseignant (id_enseignant, nom, grade, charge_enseignement, " +
+                "charge_surveillance) VALUES (?, ?, ?, ?, ?)", teachers);
+        jdbc.batchUpdate("INSERT INTO enseignant_matiere (id_enseignant, id_matiere) VALUES (?, ?)", subjects);
+    }
+
+    private static String option(String[] args, String name, String defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith(name + "=")) {
+                return arg.substring(name.length() + 1);
+            }
+        }
+        return defaultValue;
+    }
+}
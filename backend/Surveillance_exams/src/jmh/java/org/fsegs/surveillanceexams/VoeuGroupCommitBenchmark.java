@@ -0,0 +1,288 @@
+package org.fsegs.surveillanceexams;
+
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.fsegs.surveillanceexams.service.VoeuGroupCommitService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Date;
+import java.sql.Time;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop POST /api/voeux load, once with one transaction per wish
+ * ("single") and once with group commit ("group"), on the same data.
+ *
+ * Each client submits wishes for its own teachers (client i uses teachers
+ * i, i + clients, ...) on random seances, so the outcomes mix assignments,
+ * time conflicts, subject conflicts and reached quotas as in a real
+ * registration rush. Seances have enough seats not to saturate.
+ *
+ * Commits: one per request in single mode; in group mode one per batch plus
+ * one per wish sent back to the single-transaction path.
+ *
+ * Run: mvn -Pbenchmark test-compile exec:exec
+ *        -Dbenchmark.main=org.fsegs.surveillanceexams.VoeuGroupCommitBenchmark
+ *        -Djmh.args="clients=200 seconds=20 warmup=5"
+ * Add url=/user=/password= to run against MySQL instead of in-memory H2:
+ * H2 commits do not wait for the disk, which hides most of the commit cost.
+ */
+public final class VoeuGroupCommitBenchmark {
+
+    private static final int SEANCES = 600;
+    private static final int TEACHERS = 50_000;
+
+    private VoeuGroupCommitBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Devtools would otherwise restart this main with the application's arguments
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        int clients = Integer.parseInt(option(args, "clients", "200"));
+        int seconds = Integer.parseInt(option(args, "seconds", "20"));
+        int warmup = Integer.parseInt(option(args, "warmup", "5"));
+        List<String> modes = Arrays.asList(option(args, "modes", "single,group").split(","));
+
+        List<String> report = new ArrayList<>();
+        for (String mode : modes) {
+            report.add(run(mode, args, clients, warmup, seconds));
+        }
+        System.out.printf("%n%d clients, %d s measured after %d s warm-up%n", clients, seconds, warmup);
+        System.out.printf("%-7s %9s %10s %10s %10s %9s %9s %8s%n",
+                "mode", "wishes/s", "assigned/s", "commits/s", "avg batch", "p50", "p99", "errors");
+        report.forEach(System.out::println);
+    }
+
+    private static String run(String mode, String[] args, int clients, int warmup, int seconds) throws Exception {
+        List<String> appArgs = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=" + option(args, "url",
+                        "jdbc:h2:mem:voeux-" + mode + ";MODE=MySQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"),
+                "--spring.datasource.username=" + option(args, "user", "sa"),
+                "--spring.datasource.password=" + option(args, "password", ""),
+                "--spring.datasource.hikari.maximum-pool-size=20",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--surveillance.admission.enabled=false",
+                "--surveillance.snapshot.enabled=false",
+                "--surveillance.audit.enabled=false",
+                "--surveillance.reconcile.enabled=false",
+                "--surveillance.idempotency.file=",
+                "--surveillance.voeux.group-commit.enabled=" + mode.equals("group"),
+                "--surveillance.voeux.group-commit.max-wait-ms=" + option(args, "maxWaitMs", "2")));
+        if (option(args, "url", null) == null) {
+            appArgs.add("--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect");
+        }
+
+        try (ConfigurableApplicationContext context =
+                     SpringApplication.run(SurveillanceExamsApplication.class, appArgs.toArray(new String[0]))) {
+            populate(context.getBean(JdbcTemplate.class), context.getBean(CampagneService.class).activeId());
+            String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api";
+            VoeuGroupCommitService groupCommit = context.getBean(VoeuGroupCommitService.class);
+
+            Load load = new Load(base, clients);
+            load.start();
+            Thread.sleep(warmup * 1000L);
+            Map<String, Object> before = groupCommit.getStatus();
+            load.measure();
+            Thread.sleep(seconds * 1000L);
+            load.stopMeasuring();
+            Map<String, Object> after = groupCommit.getStatus();
+            load.stop();
+
+            long[] latencies = merge(load.samples);
+            long requests = latencies.length;
+            long commits = requests;
+            double averageBatch = 1;
+            if (mode.equals("group")) {
+                long batches = delta(before, after, "batches");
+                long batched = delta(before, after, "requests");
+                commits = batches + delta(before, after, "fallbacks");
+                averageBatch = batches == 0 ? 0 : batched / (double) batches;
+            }
+            return String.format("%-7s %9.1f %10.1f %10.1f %10.1f %7.1fms %7.1fms %8d", mode,
+                    requests / (double) seconds, load.assigned.get() / (double) seconds,
+                    commits / (double) seconds, averageBatch,
+                    percentile(latencies, 0.50), percentile(latencies, 0.99), load.errors.get());
+        }
+    }
+
+    private static long delta(Map<String, Object> before, Map<String, Object> after, String key) {
+        return ((Number) after.get(key)).longValue() - ((Number) before.get(key)).longValue();
+    }
+
+    // =========================
+    // LOAD
+    // =========================
+    private static final class Load {
+        private final String base;
+        private final int clients;
+        private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        private final List<Thread> threads = new ArrayList<>();
+        private final List<Samples> samples = new ArrayList<>();
+        private final AtomicLong assigned = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private volatile boolean measuring;
+        private volatile boolean running = true;
+
+        Load(String base, int clients) {
+            this.base = base;
+            this.clients = clients;
+        }
+
+        void start() {
+            for (int i = 0; i < clients; i++) {
+                Samples s = new Samples();
+                samples.add(s);
+                int client = i;
+                threads.add(Thread.ofVirtual().start(() -> client(client, s)));
+            }
+        }
+
+        void measure() {
+            measuring = true;
+        }
+
+        void stopMeasuring() {
+            measuring = false;
+        }
+
+        void stop() throws InterruptedException {
+            running = false;
+            for (Thread t : threads) {
+                t.join(30_000);
+            }
+        }
+
+        private void client(int client, Samples s) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long teacher = 1 + client;
+            int wishes = 0;
+            while (running) {
+                // About ten wishes per teacher (quota 6), then the client's next teacher
+                if (++wishes > 10) {
+                    wishes = 0;
+                    teacher += clients;
+                    if (teacher > TEACHERS) {
+                        teacher = 1 + client;
+                    }
+                }
+                long seance = 1 + random.nextInt(SEANCES);
+                HttpRequest request = HttpRequest.newBuilder(URI.create(
+                                base + "/voeux?idEnseignant=" + teacher + "&idSeance=" + seance))
+                        .POST(HttpRequest.BodyPublishers.noBody()).timeout(Duration.ofSeconds(60)).build();
+                long start = System.nanoTime();
+                try {
+                    HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+                    if (!measuring) {
+                        continue;
+                    }
+                    s.add(System.nanoTime() - start);
+                    if (response.statusCode() >= 500) {
+                        errors.incrementAndGet();
+                    } else if (response.body().contains("assignment created")) {
+                        assigned.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    if (measuring) {
+                        errors.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Latencies of one client (single writer).
+     */
+    private static final class Samples {
+        long[] values = new long[1024];
+        int size;
+
+        void add(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+    }
+
+    private static long[] merge(List<Samples> all) {
+        long[] merged = all.stream().flatMapToLong(s -> Arrays.stream(s.values, 0, s.size)).toArray();
+        Arrays.sort(merged);
+        return merged;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+
+    // =========================
+    // DATA
+    // =========================
+    private static void populate(JdbcTemplate jdbc, long idCampagne) {
+        List<Object[]> matieres = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            matieres.add(new Object[]{i, "Matière " + i});
+        }
+        jdbc.batchUpdate("INSERT INTO matiere (id_matiere, nom) VALUES (?, ?)", matieres);
+
+        List<Object[]> seances = new ArrayList<>();
+        List<Object[]> epreuves = new ArrayList<>();
+        List<Object[]> paquets = new ArrayList<>();
+        LocalDate first = LocalDate.of(2025, 6, 2);
+        for (int i = 1; i <= SEANCES; i++) {
+            LocalTime debut = LocalTime.of(8 + (i % 4) * 2, 30);
+            seances.add(new Object[]{i, Date.valueOf(first.plusDays(i / 30)), Time.valueOf(debut),
+                    Time.valueOf(debut.plusMinutes(90)), 1000, 0, idCampagne});
+            epreuves.add(new Object[]{i, i % 2 == 0 ? "Gestion" : "Info", "L" + (1 + i % 3), i, 1 + i % 100});
+            paquets.add(new Object[]{i, i, 1 + i % 100});
+        }
+        jdbc.batchUpdate("INSERT INTO seance (id_seance, date_seance, heure_debut, heure_fin, " +
+                "nb_surveillants_necessaires, nb_surveillants_inscrits, id_campagne) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                seances);
+        jdbc.batchUpdate("INSERT INTO epreuve (id_epreuve, filiere, classe, id_seance, id_matiere) " +
+                "VALUES (?, ?, ?, ?, ?)", epreuves);
+        jdbc.batchUpdate("INSERT INTO paquet (id_paquet, id_epreuve, id_matiere) VALUES (?, ?, ?)", paquets);
+
+        List<Object[]> teachers = new ArrayList<>();
+        List<Object[]> subjects = new ArrayList<>();
+        for (int i = 1; i <= TEACHERS; i++) {
+            teachers.add(new Object[]{i, "Enseignant " + i, i % 3 == 0 ? "Professeur" : "Assistant", 10.0, 6.0});
+            subjects.add(new Object[]{i, 1 + i % 100});
+        }
+        jdbc.batchUpdate("INSERT INTO enseignant (id_enseignant, nom, grade, charge_enseignement, " +
+                "charge_surveillance) VALUES (?, ?, ?, ?, ?)", teachers);
+        jdbc.batchUpdate("INSERT INTO enseignant_matiere (id_enseignant, id_matiere) VALUES (?, ?)", subjects);
+    }
+
+    private static String option(String[] args, String name, String defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith(name + "=")) {
+                return arg.substring(name.length() + 1);
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,200 @@
+package org.fsegs.surveillanceexams.bulk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.fsegs.surveillanceexams.SurveillanceExamsApplication;
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.fsegs.surveillanceexams.service.SurveillanceService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Date;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Current list endpoints (entities serialized by the MVC ObjectMapper, as
+ * {@code GET /api/affectations} and {@code GET /api/seances} do) against the
+ * bulk path ({@code GET /api/bulk/...}), on an H2 database filled with one
+ * campaign: 3000 seances, 1500 teachers, 6000 assignments.
+ *
+ * Both sides include the database read. The response size of each variant
+ * is printed once at setup.
+ *
+ * Run: mvn -Pbenchmark test-compile exec:exec -Djmh.args="BulkJsonBenchmark -f 1"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BulkJsonBenchmark {
+
+    private static final int SEANCES = 3000;
+    private static final int TEACHERS = 1500;
+    private static final int AFFECTATIONS_PER_TEACHER = 4;
+
+    @Param({"affectations", "seances"})
+    public String dataset;
+
+    private ConfigurableApplicationContext context;
+    private SurveillanceService surveillanceService;
+    private BulkExportService bulkExportService;
+    private ObjectMapper objectMapper;
+    private TransactionTemplate tx;
+
+    @Setup
+    public void setUp() throws IOException {
+        SpringApplication app = new SpringApplication(SurveillanceExamsApplication.class);
+        app.setWebApplicationType(WebApplicationType.NONE);
+        context = app.run(
+                "--spring.datasource.url=jdbc:h2:mem:bench;MODE=MySQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false",
+                "--spring.devtools.restart.enabled=false",
+                "--logging.level.root=WARN",
+                "--surveillance.snapshot.enabled=false",
+                "--surveillance.audit.enabled=false",
+                "--surveillance.idempotency.file=",
+                "--surveillance.bulk.compression-level=" + System.getProperty("bulk.level", "4"));
+        surveillanceService = context.getBean(SurveillanceService.class);
+        bulkExportService = context.getBean(BulkExportService.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        tx = context.getBean(TransactionTemplate.class);
+        populate(context.getBean(JdbcTemplate.class), context.getBean(CampagneService.class).activeId());
+
+        System.out.printf("%n[%s] response bytes: entities=%d, entities+gzip=%d, bulk=%d, bulk+gzip=%d%n", dataset,
+                size(out -> entities(out, false)), size(out -> entities(out, true)),
+                size(out -> bulk(out, ContentEncoding.IDENTITY)), size(out -> bulk(out, ContentEncoding.GZIP)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long entityJson() throws IOException {
+        return size(out -> entities(out, false));
+    }
+
+    @Benchmark
+    public long entityJsonGzip() throws IOException {
+        return size(out -> entities(out, true));
+    }
+
+    @Benchmark
+    public long bulkJson() throws IOException {
+        return size(out -> bulk(out, ContentEncoding.IDENTITY));
+    }
+
+    @Benchmark
+    public long bulkJsonGzip() throws IOException {
+        return size(out -> bulk(out, ContentEncoding.GZIP));
+    }
+
+    // =========================
+    // VARIANTS
+    // =========================
+    private void entities(OutputStream out, boolean gzip) throws IOException {
+        // Same read as the controller, with the session open for the lazy collections (open-in-view)
+        Object body = tx.execute(status -> {
+            List<?> list = dataset.equals("seances")
+                    ? surveillanceService.getAllSeances()
+                    : surveillanceService.getAllAffectations();
+            try {
+                return objectMapper.writeValueAsBytes(list);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        OutputStream target = gzip ? new GZIPOutputStream(out, 1 << 16) : out;
+        target.write((byte[]) body);
+        target.close();
+    }
+
+    private void bulk(OutputStream out, ContentEncoding encoding) throws IOException {
+        bulkExportService.write(dataset.equals("seances")
+                ? BulkExportService.Dataset.SEANCES
+                : BulkExportService.Dataset.AFFECTATIONS, encoding, out);
+    }
+
+    private interface Body {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private static long size(Body body) throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        body.writeTo(out);
+        return out.count;
+    }
+
+    /**
+     * Stands in for the socket: counts bytes, keeps nothing.
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    // =========================
+    // DATA
+    // =========================
+    private static void populate(JdbcTemplate jdbc, long idCampagne) {
+        List<Object[]> matieres = new ArrayList<>();
+        for (int i = 1; i <= 200; i++) {
+            matieres.add(new Object[]{i, "Matière " + i});
+        }
+        jdbc.batchUpdate("INSERT INTO matiere (id_matiere, nom) VALUES (?, ?)", matieres);
+
+        List<Object[]> seances = new ArrayList<>();
+        List<Object[]> epreuves = new ArrayList<>();
+        LocalDate first = LocalDate.of(2025, 6, 2);
+        for (int i = 1; i <= SEANCES; i++) {
+            LocalTime debut = LocalTime.of(8 + (i % 4) * 2, 30);
+            seances.add(new Object[]{i, Date.valueOf(first.plusDays(i / 40)), Time.valueOf(debut),
+                    Time.valueOf(debut.plusMinutes(90)), 4, 2, idCampagne});
+            epreuves.add(new Object[]{i, "Gestion", "L" + (1 + i % 3), i, 1 + i % 200});
+        }
+        jdbc.batchUpdate("INSERT INTO seance (id_seance, date_seance, heure_debut, heure_fin, " +
+                "nb_surveillants_necessaires, nb_surveillants_inscrits, id_campagne) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                seances);
+        jdbc.batchUpdate("INSERT INTO epreuve (id_epreuve, filiere, classe, id_seance, id_matiere) " +
+                "VALUES (?, ?, ?, ?, ?)", epreuves);
+
+        List<Object[]> teachers = new ArrayList<>();
+        List<Object[]> affectations = new ArrayList<>();
+        for (int i = 1; i <= TEACHERS; i++) {
+            teachers.add(new Object[]{i, "Enseignant " + i, i % 3 == 0 ? "Professeur" : "Assistant", 10.0, 6.0});
+            for (int k = 0; k < AFFECTATIONS_PER_TEACHER; k++) {
+                affectations.add(new Object[]{i, 1 + (i * 7 + k * 401) % SEANCES});
+            }
+        }
+        jdbc.batchUpdate("INSERT INTO enseignant (id_enseignant, nom, grade, charge_enseignement, " +
+                "charge_surveillance) VALUES (?, ?, ?, ?, ?)", teachers);
+        jdbc.batchUpdate("INSERT INTO affectation (id_enseignant, id_seance) VALUES (?, ?)", affectations);
+    }
+}
@@ -0,0 +1,354 @@
+package org.fsegs.surveillanceexams.audit;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.fsegs.surveillanceexams.cluster.ChangeLogPoller;
+import org.fsegs.surveillanceexams.event.AffectationChangedEvent;
+import org.fsegs.surveillanceexams.event.VoeuChangedEvent;
+import org.fsegs.surveillanceexams.repository.AffectationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only log of committed wish and assignment changes.
+ *
+ * Committed events are only queued on the request thread. A single writer
+ * thread drains the queue in batches, appends each batch to the current
+ * segment and forces it to disk once (group commit), so the cost of the
+ * fsync is shared by every change in the batch.
+ *
+ * Segments are named after the sequence of their first record and rotated
+ * once they reach {@code surveillance.audit.segment-bytes}. On startup the
+ * last segment is scanned and truncated after its last valid record. When the
+ * log is created for the first time, the existing affectations are written as
+ * baseline records so that a replay always starts from a complete state.
+ */
+@Component
+public class AuditLog {
+
+    private static final int MAX_BATCH = 4096;
+
+    private final AffectationRepository affectationRepo;
+    private final boolean enabled;
+    private final Path dir;
+    private final long segmentBytes;
+    private final BlockingQueue<Pending> queue;
+
+    private record Pending(AuditRecord.Type type, long idEnseignant, long idSeance, long timestamp) {
+    }
+
+    // Writer thread state
+    private FileChannel channel;
+    private Path segment;
+    private long nextSequence;
+    private long lastTimestamp;
+    private Thread writer;
+    private volatile boolean running;
+
+    private final Object flushMonitor = new Object();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong lost = new AtomicLong();
+    private volatile long processed;
+    private volatile long written;
+    private volatile long batches;
+    private volatile long lastFsyncMicros;
+    private volatile String lastError;
+
+    public AuditLog(AffectationRepository affectationRepo,
+                    @Value("${surveillance.audit.enabled:true}") boolean enabled,
+                    @Value("${surveillance.audit.dir:data/audit}") String dir,
+                    @Value("${surveillance.audit.segment-bytes:67108864}") long segmentBytes,
+                    @Value("${surveillance.audit.queue-capacity:65536}") int queueCapacity) {
+        this.affectationRepo = affectationRepo;
+        this.enabled = enabled;
+        this.dir = Path.of(dir);
+        this.segmentBytes = Math.max(AuditRecord.SIZE, segmentBytes - segmentBytes % AuditRecord.SIZE);
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+    }
+
+    // =========================
+    // LIFECYCLE
+    // =========================
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(dir);
+        List<Path> segments = AuditReplayer.segments(dir);
+        if (segments.isEmpty()) {
+            openSegment(0);
+            writeBaseline();
+        } else {
+            recover(segments.get(segments.size() - 1));
+        }
+        running = true;
+        writer = new Thread(this::writeLoop, "audit-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        // No interrupt: it would close the FileChannel in the middle of a write
+        running = false;
+        writer.join(10_000);
+    }
+
+    /**
+     * Reopen the last segment, dropping a torn tail left by a crash.
+     */
+    private void recover(Path last) throws IOException {
+        segment = last;
+        channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size() - channel.size() % AuditRecord.SIZE;
+        nextSequence = firstSequenceOf(last);
+        long validBytes = 0;
+        if (size > 0) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            for (int off = 0; off < size; off += AuditRecord.SIZE) {
+                AuditRecord record = AuditRecord.readAt(buf, off);
+                if (record == null || record.sequence() != nextSequence) {
+                    break;
+                }
+                nextSequence++;
+                lastTimestamp = record.timestamp();
+                validBytes += AuditRecord.SIZE;
+            }
+        }
+        if (validBytes < channel.size()) {
+            System.err.println("Audit log: truncating " + (channel.size() - validBytes)
+                    + " trailing bytes of " + last);
+            channel.truncate(validBytes);
+        }
+        channel.position(validBytes);
+    }
+
+    private void writeBaseline() throws IOException {
+        long now = System.currentTimeMillis();
+        List<Pending> baseline = new ArrayList<>();
+        for (Object[] row : affectationRepo.findAllPairs()) {
+            if (row[0] != null && row[1] != null) {
+                baseline.add(new Pending(AuditRecord.Type.AFFECTATION_BASELINE, (Long) row[0], (Long) row[1], now));
+            }
+        }
+        for (int from = 0; from < baseline.size(); from += MAX_BATCH) {
+            append(baseline.subList(from, Math.min(baseline.size(), from + MAX_BATCH)));
+        }
+        if (!baseline.isEmpty()) {
+            System.out.println("Audit log created with " + baseline.size() + " baseline affectations");
+        }
+    }
+
+    // =========================
+    // EVENTS
+    // =========================
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAffectationChanged(AffectationChangedEvent event) {
+        enqueue(event.type() == AffectationChangedEvent.Type.ASSIGNED
+                        ? AuditRecord.Type.AFFECTATION_ADDED : AuditRecord.Type.AFFECTATION_REMOVED,
+                event.idEnseignant(), event.idSeance(), event.occurredAt());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVoeuChanged(VoeuChangedEvent event) {
+        AuditRecord.Type type = switch (event.type()) {
+            case SUBMITTED -> AuditRecord.Type.VOEU_SUBMITTED;
+            case APPROVED -> AuditRecord.Type.VOEU_APPROVED;
+            case REJECTED -> AuditRecord.Type.VOEU_REJECTED;
+            case CANCELLED -> AuditRecord.Type.VOEU_CANCELLED;
+        };
+        enqueue(type, event.idEnseignant(), event.idSeance(), event.occurredAt());
+    }
+
+    private void enqueue(AuditRecord.Type type, Long idEnseignant, Long idSeance, Instant occurredAt) {
+        // Changes replayed from another instance are in that instance's log
+        if (!enabled || idEnseignant == null || idSeance == null || ChangeLogPoller.isReplaying()) {
+            return;
+        }
+        try {
+            // Only blocks if the writer is far behind (queue full)
+            queue.put(new Pending(type, idEnseignant, idSeance, occurredAt.toEpochMilli()));
+            enqueued.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            lost.incrementAndGet();
+            System.err.println("Audit log: interrupted, dropped " + type + " " + idEnseignant + "/" + idSeance);
+        }
+    }
+
+    /**
+     * Wait until every change queued before this call has been handled by the
+     * writer: on disk, or counted in {@link #lostRecords()} if the write failed.
+     */
+    public boolean awaitFlushed(long timeoutMillis) throws InterruptedException {
+        long target = enqueued.get();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (flushMonitor) {
+            while (processed < target) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                flushMonitor.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    // =========================
+    // WRITER
+    // =========================
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+            } catch (InterruptedException e) {
+                running = false;
+                continue;
+            }
+            if (batch.isEmpty()) {
+                continue;
+            }
+            boolean ok = false;
+            try {
+                append(batch);
+                ok = true;
+            } catch (IOException | RuntimeException e) {
+                lost.addAndGet(batch.size());
+                lastError = Instant.now() + " " + e.getMessage();
+                System.err.println("Audit log: failed to write " + batch.size() + " records: " + e.getMessage());
+            }
+            synchronized (flushMonitor) {
+                if (ok) {
+                    written += batch.size();
+                }
+                processed += batch.size();
+                flushMonitor.notifyAll();
+            }
+            batch.clear();
+        }
+        closeChannel();
+    }
+
+    /**
+     * Append a batch as one write and one fsync, rotating the segment first
+     * if the batch would not fit.
+     */
+    private void append(List<Pending> batch) throws IOException {
+        long bytes = (long) batch.size() * AuditRecord.SIZE;
+        if (channel.position() > 0 && channel.position() + bytes > segmentBytes) {
+            closeChannel();
+            openSegment(nextSequence);
+        }
+        ByteBuffer buf = ByteBuffer.allocate((int) bytes);
+        for (Pending p : batch) {
+            // Keep timestamps non-decreasing so that "as of" scans can stop early
+            lastTimestamp = Math.max(lastTimestamp, p.timestamp());
+            new AuditRecord(nextSequence++, lastTimestamp, p.type(), p.idEnseignant(), p.idSeance()).writeTo(buf);
+        }
+        buf.flip();
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        long start = System.nanoTime();
+        channel.force(false);
+        lastFsyncMicros = (System.nanoTime() - start) / 1000;
+        batches++;
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        segment = dir.resolve(String.format("%s%020d%s", AuditReplayer.SEGMENT_PREFIX, firstSequence,
+                AuditReplayer.SEGMENT_SUFFIX));
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        nextSequence = firstSequence;
+    }
+
+    private void closeChannel() {
+        try {
+            if (channel != null && channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Audit log: failed to close " + segment + ": " + e.getMessage());
+        }
+    }
+
+    private static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(AuditReplayer.SEGMENT_PREFIX.length(),
+                name.length() - AuditReplayer.SEGMENT_SUFFIX.length()));
+    }
+
+    // =========================
+    // READ ACCESS
+    // =========================
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Changes dropped since startup (interrupted enqueue or failed write): the
+     * log no longer holds every committed change.
+     */
+    public long lostRecords() {
+        return lost.get();
+    }
+
+    public List<Path> segments() throws IOException {
+        return AuditReplayer.segments(dir);
+    }
+
+    public Map<String, Object> getStatus() throws IOException {
+        List<Path> segments = segments();
+        long totalBytes = 0;
+        for (Path p : segments) {
+            totalBytes += Files.size(p);
+        }
+        long batchCount = batches;
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("directory", dir.toAbsolutePath().toString());
+        status.put("segments", segments.size());
+        status.put("sizeBytes", totalBytes);
+        status.put("records", totalBytes / AuditRecord.SIZE);
+        status.put("queued", queue.size());
+        status.put("writtenSinceStart", written);
+        status.put("lostSinceStart", lost.get());
+        status.put("batches", batchCount);
+        status.put("averageBatchSize", batchCount == 0 ? 0 : (double) written / batchCount);
+        status.put("lastFsyncMicros", lastFsyncMicros);
+        status.put("lastError", lastError);
+        return status;
+    }
+}
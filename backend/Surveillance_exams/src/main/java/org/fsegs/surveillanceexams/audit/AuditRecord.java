@@ -0,0 +1,97 @@
+package org.fsegs.surveillanceexams.audit;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+/**
+ * One entry of the audit log.
+ *
+ * Records have a fixed size of {@link #SIZE} bytes (big-endian):
+ * <pre>
+ * sequence (8) | timestamp epoch ms (8) | idEnseignant (8) | idSeance (8) | type (1) | unused (3) | checksum (4)
+ * </pre>
+ * The checksum covers the first 36 bytes and lets readers stop cleanly at a
+ * torn or zero-filled tail after a crash.
+ */
+public record AuditRecord(long sequence, long timestamp, Type type, long idEnseignant, long idSeance) {
+
+    public static final int SIZE = 40;
+
+    public enum Type {
+        /** Assignment already present when the log was created. */
+        AFFECTATION_BASELINE(1),
+        AFFECTATION_ADDED(2),
+        AFFECTATION_REMOVED(3),
+        VOEU_SUBMITTED(4),
+        VOEU_APPROVED(5),
+        VOEU_REJECTED(6),
+        VOEU_CANCELLED(7);
+
+        private static final Type[] BY_CODE = new Type[8];
+
+        static {
+            for (Type t : values()) {
+                BY_CODE[t.code] = t;
+            }
+        }
+
+        private final byte code;
+
+        Type(int code) {
+            this.code = (byte) code;
+        }
+
+        public byte getCode() {
+            return code;
+        }
+
+        public static Type fromCode(byte code) {
+            return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+        }
+    }
+
+    public Instant instant() {
+        return Instant.ofEpochMilli(timestamp);
+    }
+
+    void writeTo(ByteBuffer buf) {
+        buf.putLong(sequence);
+        buf.putLong(timestamp);
+        buf.putLong(idEnseignant);
+        buf.putLong(idSeance);
+        buf.put(type.code);
+        buf.put((byte) 0).put((byte) 0).put((byte) 0);
+        buf.putInt(checksum(sequence, timestamp, idEnseignant, idSeance, type.code));
+    }
+
+    /**
+     * Decode the record at an absolute offset, or return null if it is not a
+     * valid record (torn write, zero fill, unknown type).
+     */
+    static AuditRecord readAt(ByteBuffer buf, int offset) {
+        long sequence = buf.getLong(offset);
+        long timestamp = buf.getLong(offset + 8);
+        long idEnseignant = buf.getLong(offset + 16);
+        long idSeance = buf.getLong(offset + 24);
+        byte code = buf.get(offset + 32);
+        Type type = Type.fromCode(code);
+        if (type == null || buf.getInt(offset + 36) != checksum(sequence, timestamp, idEnseignant, idSeance, code)) {
+            return null;
+        }
+        return new AuditRecord(sequence, timestamp, type, idEnseignant, idSeance);
+    }
+
+    /**
+     * Cheap 64-bit mix of the fields folded to 32 bits.
+     */
+    static int checksum(long sequence, long timestamp, long idEnseignant, long idSeance, byte code) {
+        long h = 0x9E3779B97F4A7C15L;
+        h = (h ^ sequence) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ timestamp) * 0x94D049BB133111EBL;
+        h = (h ^ idEnseignant) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ idSeance) * 0x94D049BB133111EBL;
+        h = (h ^ code) * 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 31;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,256 @@
+package org.fsegs.surveillanceexams.audit;
+
+import lombok.RequiredArgsConstructor;
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.fsegs.surveillanceexams.cluster.ChangeLogWriter;
+import org.fsegs.surveillanceexams.event.PlanningDataChangedEvent;
+import org.fsegs.surveillanceexams.repository.AffectationRepository;
+import org.fsegs.surveillanceexams.repository.SeanceRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Queries built on the {@link AuditLog}: planning state as of a timestamp,
+ * change history, and comparison / repair of the seance fill counters
+ * against a full replay.
+ */
+@Service
+@RequiredArgsConstructor
+public class AuditService {
+
+    private static final long FLUSH_TIMEOUT_MS = 5_000;
+    private static final int LOCK_CHUNK = 1000;
+
+    private final AuditLog auditLog;
+    private final SeanceRepository seanceRepo;
+    private final AffectationRepository affectationRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher events;
+    private final CampagneService campagneService;
+    private final ChangeLogWriter changeLogWriter;
+
+    // =========================
+    // STATE AS OF
+    // =========================
+    public Map<String, Object> stateAsOf(Instant asOf) throws IOException {
+        AuditReplayer.ReplayResult result = replay(asOf != null ? asOf.toEpochMilli() : Long.MAX_VALUE);
+
+        List<Map<String, Long>> affectations = new ArrayList<>();
+        for (long[] pair : result.assignmentPairs()) {
+            affectations.add(Map.of("idEnseignant", pair[0], "idSeance", pair[1]));
+        }
+
+        Map<String, Object> state = replayInfo(result);
+        state.put("asOf", asOf != null ? asOf.toString() : null);
+        state.put("inscritsBySeance", result.countsBySeance());
+        state.put("affectations", affectations);
+        return state;
+    }
+
+    // =========================
+    // HISTORY
+    // =========================
+    /**
+     * Changes concerning a seance and/or a teacher, oldest first.
+     */
+    public List<Map<String, Object>> history(Long idSeance, Long idEnseignant, Instant from, Instant to, int limit)
+            throws IOException {
+        awaitFlushed();
+        List<AuditRecord> records = AuditReplayer.find(auditLog.segments(),
+                from != null ? from.toEpochMilli() : Long.MIN_VALUE,
+                to != null ? to.toEpochMilli() : Long.MAX_VALUE,
+                r -> (idSeance == null || r.idSeance() == idSeance)
+                        && (idEnseignant == null || r.idEnseignant() == idEnseignant),
+                limit);
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (AuditRecord r : records) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("sequence", r.sequence());
+            m.put("timestamp", r.instant().toString());
+            m.put("type", r.type());
+            m.put("idEnseignant", r.idEnseignant());
+            m.put("idSeance", r.idSeance());
+            result.add(m);
+        }
+        return result;
+    }
+
+    // =========================
+    // COUNTER REBUILD
+    // =========================
+    /**
+     * Replay the whole log and compare with the database, for the seances of
+     * the active campaign (the log itself covers every campaign):
+     * - seance counters that differ from the number of replayed assignments
+     * - assignments present on one side only
+     * The log is written after commit and asynchronously, so it can lag or
+     * miss changes; it only points at suspect counters. With apply=true those
+     * seances are locked (id order, like every other writer) and their counter
+     * is set to the number of affectation rows, counted under the lock in the
+     * same transaction, as the consistency reconciler does. Refused in cluster
+     * mode, where each node's log only holds its own changes. Assignment rows
+     * are only reported, never changed.
+     */
+    @Transactional
+    public Map<String, Object> rebuildCounters(boolean apply) throws IOException {
+        if (apply && changeLogWriter.isEnabled()) {
+            throw new IllegalStateException(
+                    "Counters cannot be rebuilt from the audit log in cluster mode (surveillance.cluster.enabled=true)");
+        }
+        AuditReplayer.ReplayResult result = replay(Long.MAX_VALUE);
+        Map<Long, Integer> replayed = result.countsBySeance();
+
+        Long campagneId = campagneService.activeId();
+        Set<Long> seancesInScope = new HashSet<>();
+        List<Map<String, Object>> drifts = new ArrayList<>();
+        List<Long> drifted = new ArrayList<>();
+        for (Object[] row : seanceRepo.findPlanningRows(campagneId)) {
+            Long idSeance = (Long) row[0];
+            seancesInScope.add(idSeance);
+            int stored = row[5] != null ? (Integer) row[5] : 0;
+            int expected = replayed.getOrDefault(idSeance, 0);
+            if (stored != expected) {
+                Map<String, Object> drift = new LinkedHashMap<>();
+                drift.put("idSeance", idSeance);
+                drift.put("stored", stored);
+                drift.put("replayed", expected);
+                drifts.add(drift);
+                drifted.add(idSeance);
+            }
+        }
+
+        PairSet database = new PairSet(result.assignmentCount());
+        long onlyInDatabase = 0;
+        for (Object[] row : affectationRepo.findPairsByCampagneId(campagneId)) {
+            if (row[0] == null || row[1] == null) {
+                continue;
+            }
+            long idEnseignant = (Long) row[0];
+            long idSeance = (Long) row[1];
+            database.add(idEnseignant, idSeance);
+            if (!result.assignments().contains(idEnseignant, idSeance)) {
+                onlyInDatabase++;
+            }
+        }
+        long[] onlyInLog = new long[1];
+        result.assignments().forEach((idEnseignant, idSeance) -> {
+            if (seancesInScope.contains(idSeance) && !database.contains(idEnseignant, idSeance)) {
+                onlyInLog[0]++;
+            }
+        });
+
+        int rebuilt = apply && !drifted.isEmpty() ? rewriteCounters(drifted) : 0;
+
+        Map<String, Object> report = replayInfo(result);
+        report.put("applied", rebuilt > 0);
+        report.put("countersRebuilt", rebuilt);
+        report.put("countersDrifted", drifts.size());
+        report.put("drifts", drifts);
+        report.put("affectationsOnlyInDatabase", onlyInDatabase);
+        report.put("affectationsOnlyInLog", onlyInLog[0]);
+        return report;
+    }
+
+    /**
+     * Lock the seances and set each counter that differs from its number of
+     * affectation rows, counted under the lock.
+     *
+     * @return the number of counters written
+     */
+    private int rewriteCounters(List<Long> idSeances) {
+        Map<Long, Integer> stored = lockCounters(idSeances);
+        Map<Long, Integer> actual = new HashMap<>();
+        List<Long> ids = new ArrayList<>(stored.keySet());
+        for (int from = 0; from < ids.size(); from += LOCK_CHUNK) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + LOCK_CHUNK));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            jdbcTemplate.query("SELECT id_seance, COUNT(*) FROM affectation WHERE id_seance IN ("
+                            + placeholders + ") GROUP BY id_seance",
+                    rs -> {
+                        actual.put(rs.getLong(1), rs.getInt(2));
+                    }, chunk.toArray());
+        }
+
+        List<Object[]> updates = new ArrayList<>();
+        stored.forEach((idSeance, count) -> {
+            int expected = actual.getOrDefault(idSeance, 0);
+            if (count != expected) {
+                updates.add(new Object[]{expected, idSeance});
+            }
+        });
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE seance SET nb_surveillants_inscrits = ? WHERE id_seance = ?", updates);
+            for (Object[] u : updates) {
+                events.publishEvent(PlanningDataChangedEvent.seance((Long) u[1]));
+            }
+        }
+        return updates.size();
+    }
+
+    /**
+     * SELECT ... FOR UPDATE on the seances in ascending id order.
+     *
+     * @return the current counter of each seance still present
+     */
+    private Map<Long, Integer> lockCounters(List<Long> idSeances) {
+        List<Long> ids = new ArrayList<>(new TreeSet<>(idSeances));
+        Map<Long, Integer> counters = new TreeMap<>();
+        for (int from = 0; from < ids.size(); from += LOCK_CHUNK) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + LOCK_CHUNK));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            jdbcTemplate.query("SELECT id_seance, nb_surveillants_inscrits FROM seance WHERE id_seance IN ("
+                            + placeholders + ") ORDER BY id_seance FOR UPDATE",
+                    rs -> {
+                        counters.put(rs.getLong(1), rs.getInt(2));
+                    }, chunk.toArray());
+        }
+        return counters;
+    }
+
+    private AuditReplayer.ReplayResult replay(long asOfMillis) throws IOException {
+        if (!auditLog.isEnabled()) {
+            throw new IllegalStateException("Audit log is disabled (surveillance.audit.enabled=false)");
+        }
+        awaitFlushed();
+        return AuditReplayer.replay(auditLog.segments(), asOfMillis);
+    }
+
+    /**
+     * Wait for the queued changes to reach the log, and fail rather than
+     * answer from a log that is behind or missing records.
+     */
+    private void awaitFlushed() {
+        try {
+            if (!auditLog.awaitFlushed(FLUSH_TIMEOUT_MS)) {
+                throw new IllegalStateException("Audit log not flushed within " + FLUSH_TIMEOUT_MS + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the audit log");
+        }
+        long lost = auditLog.lostRecords();
+        if (lost > 0) {
+            throw new IllegalStateException("Audit log is missing " + lost
+                    + " record(s) since startup, see /api/audit/status lastError");
+        }
+    }
+
+    private static Map<String, Object> replayInfo(AuditReplayer.ReplayResult result) {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("eventsReplayed", result.events());
+        info.put("lastSequence", result.lastSequence());
+        info.put("lastEventAt", result.lastSequence() >= 0 ? Instant.ofEpochMilli(result.lastTimestamp()).toString() : null);
+        info.put("eventsByType", result.eventsByType());
+        info.put("replayMs", result.durationNanos() / 1_000_000.0);
+        info.put("eventsPerSecond", Math.round(result.eventsPerSecond()));
+        info.put("affectationCount", result.assignmentCount());
+        return info;
+    }
+}
@@ -0,0 +1,118 @@
+package org.fsegs.surveillanceexams.audit;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash set of (long, long) pairs stored in two primitive
+ * arrays (linear probing, backward-shift deletion, no tombstones).
+ *
+ * Used by the replay so that millions of add/remove operations run without
+ * allocating boxed keys. Long.MIN_VALUE is reserved as the empty marker.
+ */
+final class PairSet {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] first;
+    private long[] second;
+    private int mask;
+    private int size;
+
+    PairSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2) - 1) << 1;
+        allocate(capacity);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean add(long a, long b) {
+        int i = indexOf(a, b);
+        if (first[i] != EMPTY) {
+            return false;
+        }
+        first[i] = a;
+        second[i] = b;
+        if (++size * 2 > first.length) {
+            grow();
+        }
+        return true;
+    }
+
+    boolean remove(long a, long b) {
+        int i = indexOf(a, b);
+        if (first[i] == EMPTY) {
+            return false;
+        }
+        // Backward-shift: pull later entries of the probe chain into the hole
+        int hole = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (first[j] == EMPTY) {
+                break;
+            }
+            int home = hash(first[j], second[j]) & mask;
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                first[hole] = first[j];
+                second[hole] = second[j];
+                hole = j;
+            }
+        }
+        first[hole] = EMPTY;
+        size--;
+        return true;
+    }
+
+    boolean contains(long a, long b) {
+        return first[indexOf(a, b)] != EMPTY;
+    }
+
+    interface PairConsumer {
+        void accept(long a, long b);
+    }
+
+    void forEach(PairConsumer consumer) {
+        for (int i = 0; i < first.length; i++) {
+            if (first[i] != EMPTY) {
+                consumer.accept(first[i], second[i]);
+            }
+        }
+    }
+
+    private int indexOf(long a, long b) {
+        int i = hash(a, b) & mask;
+        while (first[i] != EMPTY && (first[i] != a || second[i] != b)) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private static int hash(long a, long b) {
+        long h = a * 0x9E3779B97F4A7C15L + b;
+        h ^= h >>> 32;
+        h *= 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 29));
+    }
+
+    private void grow() {
+        long[] oldFirst = first;
+        long[] oldSecond = second;
+        allocate(oldFirst.length * 2);
+        for (int i = 0; i < oldFirst.length; i++) {
+            if (oldFirst[i] != EMPTY) {
+                int j = indexOf(oldFirst[i], oldSecond[i]);
+                first[j] = oldFirst[i];
+                second[j] = oldSecond[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        first = new long[capacity];
+        second = new long[capacity];
+        Arrays.fill(first, EMPTY);
+        mask = capacity - 1;
+    }
+}
@@ -0,0 +1,150 @@
+package org.fsegs.surveillanceexams.bulk;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.fsegs.surveillanceexams.bulk.BulkJsonWriter.RowFormat;
+import org.fsegs.surveillanceexams.bulk.BulkJsonWriter.Type;
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+/**
+ * Bulk list exports of the active campaign as flat JSON arrays.
+ *
+ * Each dataset is one SQL query whose rows are written straight from the
+ * JDBC result set to the (optionally compressed) response stream by
+ * {@link BulkJsonWriter}: no entities, no intermediate lists and no object
+ * graph to walk, so memory stays flat and the CPU goes into encoding. The
+ * rows themselves are streamed from the database too (fetch size, or row by
+ * row on MySQL) instead of being buffered by the driver.
+ */
+@Service
+public class BulkExportService {
+
+    public enum Dataset {
+        SEANCES(
+                "SELECT id_seance, date_seance, heure_debut, heure_fin, nb_surveillants_necessaires, " +
+                "nb_surveillants_inscrits, nb_surveillants_inscrits >= nb_surveillants_necessaires " +
+                "FROM seance WHERE id_campagne = ? ORDER BY date_seance, heure_debut, id_seance",
+                RowFormat.builder()
+                        .field("id", Type.LONG)
+                        .field("date", Type.DATE)
+                        .field("heureDebut", Type.TIME)
+                        .field("heureFin", Type.TIME)
+                        .field("nbSurveillantsNecessaires", Type.INT)
+                        .field("nbSurveillantsInscrits", Type.INT)
+                        .field("saturee", Type.BOOLEAN)
+                        .build()),
+        AFFECTATIONS(
+                "SELECT a.id_affectation, a.id_enseignant, e.nom, a.id_seance, s.date_seance, " +
+                "s.heure_debut, s.heure_fin " +
+                "FROM affectation a JOIN seance s ON s.id_seance = a.id_seance " +
+                "LEFT JOIN enseignant e ON e.id_enseignant = a.id_enseignant " +
+                "WHERE s.id_campagne = ? ORDER BY a.id_affectation",
+                RowFormat.builder()
+                        .field("id", Type.LONG)
+                        .field("idEnseignant", Type.LONG)
+                        .field("nomEnseignant", Type.STRING)
+                        .field("idSeance", Type.LONG)
+                        .field("date", Type.DATE)
+                        .field("heureDebut", Type.TIME)
+                        .field("heureFin", Type.TIME)
+                        .build()),
+        VOEUX(
+                "SELECT v.id_voeu, v.id_enseignant, e.nom, v.id_seance, v.date_soumission, v.status " +
+                "FROM voeu v JOIN seance s ON s.id_seance = v.id_seance " +
+                "LEFT JOIN enseignant e ON e.id_enseignant = v.id_enseignant " +
+                "WHERE s.id_campagne = ? ORDER BY v.id_voeu",
+                RowFormat.builder()
+                        .field("id", Type.LONG)
+                        .field("idEnseignant", Type.LONG)
+                        .field("nomEnseignant", Type.STRING)
+                        .field("idSeance", Type.LONG)
+                        .field("dateSoumission", Type.DATETIME)
+                        .field("status", Type.STRING)
+                        .build()),
+        ENSEIGNANTS(
+                "SELECT e.id_enseignant, e.nom, e.grade, e.charge_enseignement, e.charge_surveillance, " +
+                "COUNT(s.id_seance) " +
+                "FROM enseignant e LEFT JOIN affectation a ON a.id_enseignant = e.id_enseignant " +
+                "LEFT JOIN seance s ON s.id_seance = a.id_seance AND s.id_campagne = ? " +
+                "GROUP BY e.id_enseignant, e.nom, e.grade, e.charge_enseignement, e.charge_surveillance " +
+                "ORDER BY e.id_enseignant",
+                RowFormat.builder()
+                        .field("id", Type.LONG)
+                        .field("nomComplet", Type.STRING)
+                        .field("grade", Type.STRING)
+                        .field("chargeEnseignement", Type.DOUBLE)
+                        .field("chargeSurveillance", Type.DOUBLE)
+                        .field("nbAffectations", Type.LONG)
+                        .build());
+
+        private final String sql;
+        private final RowFormat format;
+
+        Dataset(String sql, RowFormat format) {
+            this.sql = sql;
+            this.format = format;
+        }
+    }
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CampagneService campagneService;
+    private final int compressionLevel;
+    private final int fetchSize;
+
+    public BulkExportService(JdbcTemplate jdbcTemplate,
+                             CampagneService campagneService,
+                             @Value("${surveillance.bulk.compression-level:4}") int compressionLevel,
+                             @Value("${surveillance.bulk.fetch-size:500}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.campagneService = campagneService;
+        this.compressionLevel = compressionLevel;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Write the dataset as a JSON array to the stream, compressed with the
+     * given coding. The stream is closed when done.
+     *
+     * @return number of rows written
+     */
+    public long write(Dataset dataset, ContentEncoding encoding, OutputStream out) throws IOException {
+        Long campagneId = campagneService.activeId();
+        long[] rows = new long[1];
+        try (OutputStream body = encoding.wrap(out, compressionLevel);
+             JsonGenerator json = JSON.createGenerator(body, JsonEncoding.UTF8)) {
+            json.writeStartArray();
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(dataset.sql,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                // Connector/J only streams rows with this value; other drivers take the fetch size
+                ps.setFetchSize("MySQL".equals(con.getMetaData().getDatabaseProductName())
+                        ? Integer.MIN_VALUE : fetchSize);
+                ps.setObject(1, campagneId);
+                return ps;
+            }, rs -> {
+                try {
+                    BulkJsonWriter.writeRow(rs, dataset.format, json);
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            json.writeEndArray();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows[0];
+    }
+}
@@ -0,0 +1,136 @@
+package org.fsegs.surveillanceexams.bulk;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes JDBC rows as flat JSON objects, without going through entities or
+ * Jackson's reflective serializers.
+ *
+ * A {@link RowFormat} is built once per endpoint: it maps result set
+ * columns (by position) to JSON field names kept as {@link SerializedString}s,
+ * whose quoted UTF-8 form is computed on first use and then copied as is.
+ * Values are written with the typed generator methods, so a row costs no
+ * per-field lookup, boxing or reflection.
+ *
+ * Dates and times use the same ISO formats as the entity endpoints
+ * ("2025-06-02", "08:30:00", "2025-06-02T10:15:30").
+ */
+public final class BulkJsonWriter {
+
+    public enum Type {
+        LONG,
+        INT,
+        DOUBLE,
+        BOOLEAN,
+        STRING,
+        DATE,
+        TIME,
+        DATETIME
+    }
+
+    private record Field(SerializedString name, Type type) {
+    }
+
+    /**
+     * Column i of the result set (1-based) is written as field i of the format.
+     */
+    public static final class RowFormat {
+        private final Field[] fields;
+
+        private RowFormat(List<Field> fields) {
+            this.fields = fields.toArray(new Field[0]);
+        }
+
+        public static Builder builder() {
+            return new Builder();
+        }
+
+        public static final class Builder {
+            private final List<Field> fields = new ArrayList<>();
+
+            public Builder field(String name, Type type) {
+                fields.add(new Field(new SerializedString(name), type));
+                return this;
+            }
+
+            public RowFormat build() {
+                return new RowFormat(fields);
+            }
+        }
+    }
+
+    private BulkJsonWriter() {
+    }
+
+    /**
+     * Write the current row of the result set as one JSON object.
+     */
+    public static void writeRow(ResultSet rs, RowFormat format, JsonGenerator out) throws SQLException, IOException {
+        out.writeStartObject();
+        writeFields(rs, format, out);
+        out.writeEndObject();
+    }
+
+    /**
+     * Write the fields of the current row into an object the caller has
+     * already started, so it can append more fields before closing it.
+     */
+    public static void writeFields(ResultSet rs, RowFormat format, JsonGenerator out) throws SQLException, IOException {
+        Field[] fields = format.fields;
+        for (int i = 0; i < fields.length; i++) {
+            Field field = fields[i];
+            int column = i + 1;
+            out.writeFieldName(field.name());
+            switch (field.type()) {
+                case LONG -> {
+                    long v = rs.getLong(column);
+                    if (rs.wasNull()) out.writeNull(); else out.writeNumber(v);
+                }
+                case INT -> {
+                    int v = rs.getInt(column);
+                    if (rs.wasNull()) out.writeNull(); else out.writeNumber(v);
+                }
+                case DOUBLE -> {
+                    double v = rs.getDouble(column);
+                    if (rs.wasNull()) out.writeNull(); else out.writeNumber(v);
+                }
+                case BOOLEAN -> {
+                    boolean v = rs.getBoolean(column);
+                    if (rs.wasNull()) out.writeNull(); else out.writeBoolean(v);
+                }
+                case STRING -> writeString(out, rs.getString(column));
+                case DATE -> {
+                    LocalDate v = rs.getObject(column, LocalDate.class);
+                    writeString(out, v != null ? v.toString() : null);
+                }
+                case TIME -> {
+                    LocalTime v = rs.getObject(column, LocalTime.class);
+                    writeString(out, v != null ? DateTimeFormatter.ISO_LOCAL_TIME.format(v) : null);
+                }
+                case DATETIME -> {
+                    LocalDateTime v = rs.getObject(column, LocalDateTime.class);
+                    writeString(out, v != null ? DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(v) : null);
+                }
+            }
+        }
+    }
+
+    private static void writeString(JsonGenerator out, String value) throws IOException {
+        if (value == null) {
+            out.writeNull();
+        } else {
+            out.writeString(value);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.fsegs.surveillanceexams.bulk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Response compression negotiated from the Accept-Encoding request header.
+ *
+ * Only the codings the JDK can produce are offered: gzip, then deflate
+ * (zlib format, as HTTP defines it). "br" is accepted in the header but never
+ * chosen; a client offering only br gets an uncompressed response.
+ */
+public enum ContentEncoding {
+    GZIP("gzip"),
+    DEFLATE("deflate"),
+    IDENTITY(null);
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final String headerValue;
+
+    ContentEncoding(String headerValue) {
+        this.headerValue = headerValue;
+    }
+
+    /**
+     * @return the Content-Encoding header value, or null for identity
+     */
+    public String headerValue() {
+        return headerValue;
+    }
+
+    /**
+     * Pick the best supported coding: highest q-value, gzip winning ties.
+     * A "*" entry stands for every coding not listed explicitly.
+     */
+    public static ContentEncoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return IDENTITY;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double wildcard = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.split(";");
+            String coding = tokens[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1.0;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            switch (coding) {
+                case "gzip", "x-gzip" -> gzip = Math.max(gzip, q);
+                case "deflate" -> deflate = Math.max(deflate, q);
+                case "*" -> wildcard = q;
+                default -> {
+                }
+            }
+        }
+        if (gzip < 0) gzip = wildcard;
+        if (deflate < 0) deflate = wildcard;
+
+        if (gzip > 0 && gzip >= deflate) {
+            return GZIP;
+        }
+        if (deflate > 0) {
+            return DEFLATE;
+        }
+        return IDENTITY;
+    }
+
+    /**
+     * Wrap the response stream. Closing the returned stream finishes the
+     * compressed data and closes the underlying stream.
+     *
+     * @param level Deflater level (1 = fastest ... 9 = smallest)
+     */
+    public OutputStream wrap(OutputStream out, int level) throws IOException {
+        return switch (this) {
+            case GZIP -> new GZIPOutputStream(out, BUFFER_SIZE) {
+                {
+                    def.setLevel(level);
+                }
+            };
+            case DEFLATE -> new DeflaterOutputStream(out, new Deflater(level), BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        // Created here, so not released by DeflaterOutputStream
+                        def.end();
+                    }
+                }
+            };
+            case IDENTITY -> out;
+        };
+    }
+}
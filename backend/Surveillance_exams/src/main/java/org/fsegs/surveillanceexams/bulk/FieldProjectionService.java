@@ -0,0 +1,316 @@
+package org.fsegs.surveillanceexams.bulk;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.fsegs.surveillanceexams.bulk.BulkJsonWriter.RowFormat;
+import org.fsegs.surveillanceexams.bulk.BulkJsonWriter.Type;
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sparse fieldsets for the list endpoints ({@code GET /api/seances?fields=id,date}).
+ *
+ * A field selection is compiled into a {@link Plan}: a SELECT listing only
+ * the requested columns (derived values such as the assignment count are only
+ * computed when asked for) and a {@link RowFormat} to write them. Collection
+ * fields (a seance's epreuves, a teacher's matieres) cost one extra query
+ * each, and only when selected. Rows are streamed from the database (fetch
+ * size, or row by row on MySQL) and to the response like the bulk exports.
+ *
+ * Field names and JSON shapes are those of the entity endpoints; "id" is
+ * always returned. Plans are cached per resource and field set: unknown
+ * names are rejected before compiling, so the cache holds at most one plan
+ * per subset of the declared fields.
+ */
+@Service
+public class FieldProjectionService {
+
+    /**
+     * Writes one element of a collection field from the current row of its
+     * query (column 1 is the parent id).
+     */
+    interface ElementWriter {
+        void write(ResultSet rs, JsonGenerator out) throws SQLException, IOException;
+    }
+
+    /**
+     * @param campagne the expression takes the active campaign id as its parameter
+     */
+    record Column(String name, String expression, Type type, boolean campagne) {
+    }
+
+    /**
+     * @param sql parent id first, ordered so elements come out in a stable order
+     */
+    record Nested(String name, String sql, boolean campagne, ElementWriter writer) {
+    }
+
+    public enum Resource {
+        SEANCES("seances",
+                "FROM seance s WHERE s.id_campagne = ? ORDER BY s.date_seance, s.heure_debut, s.id_seance", true,
+                List.of(new Column("id", "s.id_seance", Type.LONG, false),
+                        new Column("date", "s.date_seance", Type.DATE, false),
+                        new Column("heureDebut", "s.heure_debut", Type.TIME, false),
+                        new Column("heureFin", "s.heure_fin", Type.TIME, false),
+                        new Column("nbSurveillantsNecessaires", "s.nb_surveillants_necessaires", Type.INT, false),
+                        new Column("nbSurveillantsInscrits", "s.nb_surveillants_inscrits", Type.INT, false),
+                        new Column("saturee", "s.nb_surveillants_inscrits >= s.nb_surveillants_necessaires",
+                                Type.BOOLEAN, false)),
+                List.of(new Nested("epreuves",
+                        "SELECT e.id_seance, e.id_epreuve, e.filiere, e.classe, m.id_matiere, m.nom " +
+                        "FROM epreuve e JOIN seance s ON s.id_seance = e.id_seance " +
+                        "LEFT JOIN matiere m ON m.id_matiere = e.id_matiere " +
+                        "WHERE s.id_campagne = ? ORDER BY e.id_seance, e.id_epreuve", true,
+                        FieldProjectionService::writeEpreuve))),
+        ENSEIGNANTS("enseignants",
+                "FROM enseignant e ORDER BY e.id_enseignant", false,
+                List.of(new Column("id", "e.id_enseignant", Type.LONG, false),
+                        new Column("nomComplet", "e.nom", Type.STRING, false),
+                        new Column("grade", "e.grade", Type.STRING, false),
+                        new Column("chargeEnseignement", "e.charge_enseignement", Type.DOUBLE, false),
+                        new Column("chargeSurveillance", "e.charge_surveillance", Type.DOUBLE, false),
+                        new Column("nbAffectations",
+                                "(SELECT COUNT(*) FROM affectation a JOIN seance s ON s.id_seance = a.id_seance " +
+                                "WHERE a.id_enseignant = e.id_enseignant AND s.id_campagne = ?)", Type.LONG, true)),
+                List.of(new Nested("matieres",
+                        "SELECT em.id_enseignant, m.id_matiere, m.nom FROM enseignant_matiere em " +
+                        "JOIN matiere m ON m.id_matiere = em.id_matiere ORDER BY em.id_enseignant, m.id_matiere",
+                        false, FieldProjectionService::writeMatiere)));
+
+        private final String label;
+        private final String from;
+        private final boolean fromCampagne;
+        private final List<Column> columns;
+        private final List<Nested> collections;
+        private final Map<String, Integer> indexByName = new HashMap<>();
+
+        Resource(String label, String from, boolean fromCampagne, List<Column> columns, List<Nested> collections) {
+            this.label = label;
+            this.from = from;
+            this.fromCampagne = fromCampagne;
+            this.columns = columns;
+            this.collections = collections;
+            for (int i = 0; i < columns.size(); i++) {
+                indexByName.put(columns.get(i).name(), i);
+            }
+            for (int i = 0; i < collections.size(); i++) {
+                indexByName.put(collections.get(i).name(), columns.size() + i);
+            }
+        }
+
+        /**
+         * @return the selectable field names, in output order
+         */
+        public List<String> fieldNames() {
+            List<String> names = new ArrayList<>();
+            columns.forEach(c -> names.add(c.name()));
+            collections.forEach(c -> names.add(c.name()));
+            return names;
+        }
+    }
+
+    /**
+     * A compiled field selection.
+     *
+     * @param campagneParams how many times the campaign id is bound, in order
+     */
+    public record Plan(String sql, int campagneParams, RowFormat format, List<Nested> collections) {
+    }
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CampagneService campagneService;
+    private final int compressionLevel;
+    private final int fetchSize;
+    private final Map<Resource, Map<Long, Plan>> plans = new EnumMap<>(Resource.class);
+
+    public FieldProjectionService(JdbcTemplate jdbcTemplate,
+                                  CampagneService campagneService,
+                                  @Value("${surveillance.bulk.compression-level:4}") int compressionLevel,
+                                  @Value("${surveillance.bulk.fetch-size:500}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.campagneService = campagneService;
+        this.compressionLevel = compressionLevel;
+        this.fetchSize = fetchSize;
+        for (Resource resource : Resource.values()) {
+            plans.put(resource, new ConcurrentHashMap<>());
+        }
+    }
+
+    // =========================
+    // COMPILATION
+    // =========================
+
+    /**
+     * Resolve a comma-separated field list to its (cached) plan.
+     *
+     * @throws IllegalArgumentException on an unknown field name
+     */
+    public Plan plan(Resource resource, String fields) {
+        long mask = 1L; // id
+        for (String name : fields.split(",")) {
+            String field = name.trim();
+            if (field.isEmpty()) {
+                continue;
+            }
+            Integer index = resource.indexByName.get(field);
+            if (index == null) {
+                throw new IllegalArgumentException("Unknown field '" + field + "' for " + resource.label
+                        + " (available: " + String.join(", ", resource.fieldNames()) + ")");
+            }
+            mask |= 1L << index;
+        }
+        return plans.get(resource).computeIfAbsent(mask, m -> compile(resource, m));
+    }
+
+    private static Plan compile(Resource resource, long mask) {
+        RowFormat.Builder format = RowFormat.builder();
+        List<String> select = new ArrayList<>();
+        int campagneParams = 0;
+        for (int i = 0; i < resource.columns.size(); i++) {
+            if ((mask & (1L << i)) != 0) {
+                Column column = resource.columns.get(i);
+                select.add(column.expression());
+                format.field(column.name(), column.type());
+                if (column.campagne()) {
+                    campagneParams++;
+                }
+            }
+        }
+        if (resource.fromCampagne) {
+            campagneParams++;
+        }
+        List<Nested> collections = new ArrayList<>();
+        for (int i = 0; i < resource.collections.size(); i++) {
+            if ((mask & (1L << (resource.columns.size() + i))) != 0) {
+                collections.add(resource.collections.get(i));
+            }
+        }
+        String sql = "SELECT " + String.join(", ", select) + " " + resource.from;
+        return new Plan(sql, campagneParams, format.build(), List.copyOf(collections));
+    }
+
+    // =========================
+    // EXECUTION
+    // =========================
+
+    /**
+     * Run the plan against the active campaign and write a JSON array to the
+     * stream, compressed with the given coding. The stream is closed when done.
+     *
+     * @return number of rows written
+     */
+    public long write(Plan plan, ContentEncoding encoding, OutputStream out) throws IOException {
+        Long campagneId = campagneService.activeId();
+        Map<Nested, Map<Long, TokenBuffer>> elements = new HashMap<>();
+        for (Nested collection : plan.collections()) {
+            elements.put(collection, loadElements(collection, campagneId));
+        }
+        Object[] params = new Object[plan.campagneParams()];
+        Arrays.fill(params, campagneId);
+
+        long[] rows = new long[1];
+        try (OutputStream body = encoding.wrap(out, compressionLevel);
+             JsonGenerator json = JSON.createGenerator(body, JsonEncoding.UTF8)) {
+            json.writeStartArray();
+            jdbcTemplate.query(streaming(plan.sql(), params), rs -> {
+                try {
+                    json.writeStartObject();
+                    BulkJsonWriter.writeFields(rs, plan.format(), json);
+                    long id = rs.getLong(1);
+                    for (Nested collection : plan.collections()) {
+                        json.writeArrayFieldStart(collection.name());
+                        TokenBuffer buffer = elements.get(collection).get(id);
+                        if (buffer != null) {
+                            buffer.serialize(json);
+                        }
+                        json.writeEndArray();
+                    }
+                    json.writeEndObject();
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            json.writeEndArray();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows[0];
+    }
+
+    /**
+     * Pre-render the elements of a collection field, grouped by parent id.
+     */
+    private Map<Long, TokenBuffer> loadElements(Nested collection, Long campagneId) {
+        Map<Long, TokenBuffer> byParent = new HashMap<>();
+        Object[] params = collection.campagne() ? new Object[]{campagneId} : new Object[0];
+        jdbcTemplate.query(streaming(collection.sql(), params), rs -> {
+            TokenBuffer buffer = byParent.computeIfAbsent(rs.getLong(1), id -> new TokenBuffer((ObjectCodec) null, false));
+            try {
+                collection.writer().write(rs, buffer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return byParent;
+    }
+
+    /**
+     * Forward-only statement whose rows are streamed rather than buffered by the driver.
+     */
+    private PreparedStatementCreator streaming(String sql, Object[] params) {
+        return con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // Connector/J only streams rows with this value; other drivers take the fetch size
+            ps.setFetchSize("MySQL".equals(con.getMetaData().getDatabaseProductName()) ? Integer.MIN_VALUE : fetchSize);
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            return ps;
+        };
+    }
+
+    // =========================
+    // COLLECTION ELEMENTS
+    // =========================
+    private static void writeEpreuve(ResultSet rs, JsonGenerator out) throws SQLException, IOException {
+        out.writeStartObject();
+        out.writeNumberField("id", rs.getLong(2));
+        out.writeStringField("filiere", rs.getString(3));
+        out.writeStringField("classe", rs.getString(4));
+        long idMatiere = rs.getLong(5);
+        if (rs.wasNull()) {
+            out.writeNullField("matiere");
+        } else {
+            out.writeObjectFieldStart("matiere");
+            out.writeNumberField("id", idMatiere);
+            out.writeStringField("nom", rs.getString(6));
+            out.writeEndObject();
+        }
+        out.writeEndObject();
+    }
+
+    private static void writeMatiere(ResultSet rs, JsonGenerator out) throws SQLException, IOException {
+        out.writeStartObject();
+        out.writeNumberField("id", rs.getLong(2));
+        out.writeStringField("nom", rs.getString(3));
+        out.writeEndObject();
+    }
+}
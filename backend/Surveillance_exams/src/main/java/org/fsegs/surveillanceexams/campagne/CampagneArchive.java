@@ -0,0 +1,346 @@
+package org.fsegs.surveillanceexams.campagne;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.fsegs.surveillanceexams.model.Campagne;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip-compressed JSON export of the rows of one campaign, used to move a
+ * closed campaign out of the database and to bring it back.
+ *
+ * Layout:
+ * <pre>
+ * {"format": "campagne-archive", "version": 1, "createdAt": "...",
+ *  "campagne": {"id": 3, "nom": "..."},
+ *  "tables": [{"name": "seance", "columns": [...], "types": [java.sql.Types...], "rows": [[...], ...]}, ...]}
+ * </pre>
+ * Tables are written parent first (seance, epreuve, paquet, then the rows
+ * referencing a seance) and rows keep their original ids, so references
+ * from other tables and from the audit log stay valid after a restore.
+ *
+ * Rows are streamed in both directions: neither side holds a whole table in memory.
+ */
+final class CampagneArchive {
+
+    static final String FORMAT = "campagne-archive";
+    static final int VERSION = 1;
+
+    private static final int BATCH_SIZE = 500;
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private static final String SEANCES = "SELECT id_seance FROM seance WHERE id_campagne = ?";
+
+    /**
+     * A table of the campaign, with the condition selecting its rows
+     * (one parameter: the campaign id).
+     */
+    private record Part(String table, String idColumn, String condition) {
+    }
+
+    private static final List<Part> PARTS = List.of(
+            new Part("seance", "id_seance", "id_campagne = ?"),
+            new Part("epreuve", "id_epreuve", "id_seance IN (" + SEANCES + ")"),
+            new Part("paquet", "id_paquet", "id_epreuve IN (SELECT e.id_epreuve FROM epreuve e " +
+                    "JOIN seance s ON s.id_seance = e.id_seance WHERE s.id_campagne = ?)"),
+            new Part("affectation", "id_affectation", "id_seance IN (" + SEANCES + ")"),
+            new Part("voeu", "id_voeu", "id_seance IN (" + SEANCES + ")"),
+            new Part("liste_attente", "id_attente", "id_seance IN (" + SEANCES + ")"));
+
+    private CampagneArchive() {
+    }
+
+    // =========================
+    // EXPORT
+    // =========================
+    /**
+     * Write the rows of the campaign to the file (atomically replaced).
+     *
+     * @return number of rows written per table
+     */
+    static Map<String, Integer> export(JdbcTemplate jdbc, Campagne campagne, Path file) throws IOException {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, "campagne", ".tmp");
+        try {
+            try (FileOutputStream fileOut = new FileOutputStream(tmp.toFile());
+                 BufferedOutputStream buffered = new BufferedOutputStream(fileOut, 1 << 16);
+                 GZIPOutputStream gzip = new GZIPOutputStream(buffered, 1 << 16);
+                 JsonGenerator out = JSON.createGenerator(gzip, JsonEncoding.UTF8)) {
+                out.writeStartObject();
+                out.writeStringField("format", FORMAT);
+                out.writeNumberField("version", VERSION);
+                out.writeStringField("createdAt", Instant.now().toString());
+                out.writeObjectFieldStart("campagne");
+                out.writeNumberField("id", campagne.getId());
+                out.writeStringField("nom", campagne.getNom());
+                out.writeEndObject();
+
+                out.writeArrayFieldStart("tables");
+                for (Part part : PARTS) {
+                    counts.put(part.table(), exportTable(jdbc, part, campagne.getId(), out));
+                }
+                out.writeEndArray();
+                out.writeEndObject();
+                out.flush();
+                gzip.finish();
+                buffered.flush();
+                fileOut.getFD().sync();
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return counts;
+    }
+
+    private static int exportTable(JdbcTemplate jdbc, Part part, long idCampagne, JsonGenerator out) {
+        int[] count = new int[1];
+        String sql = "SELECT * FROM " + part.table() + " WHERE " + part.condition() + " ORDER BY " + part.idColumn();
+        try {
+            out.writeStartObject();
+            out.writeStringField("name", part.table());
+            jdbc.query(sql, rs -> {
+                try {
+                    if (count[0] == 0) {
+                        writeHeader(rs.getMetaData(), out);
+                    }
+                    writeRow(rs, out);
+                    count[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, idCampagne);
+            if (count[0] == 0) {
+                out.writeArrayFieldStart("rows");
+            }
+            out.writeEndArray();
+            out.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return count[0];
+    }
+
+    private static void writeHeader(ResultSetMetaData meta, JsonGenerator out) throws SQLException, IOException {
+        out.writeArrayFieldStart("columns");
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            out.writeString(meta.getColumnLabel(i).toLowerCase(Locale.ROOT));
+        }
+        out.writeEndArray();
+        out.writeArrayFieldStart("types");
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            out.writeNumber(meta.getColumnType(i));
+        }
+        out.writeEndArray();
+        out.writeArrayFieldStart("rows");
+    }
+
+    private static void writeRow(ResultSet rs, JsonGenerator out) throws SQLException, IOException {
+        ResultSetMetaData meta = rs.getMetaData();
+        out.writeStartArray();
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            Object value = switch (meta.getColumnType(i)) {
+                case Types.BIGINT, Types.INTEGER, Types.SMALLINT, Types.TINYINT -> rs.getLong(i);
+                case Types.BIT, Types.BOOLEAN -> rs.getBoolean(i);
+                case Types.DOUBLE, Types.FLOAT, Types.REAL -> rs.getDouble(i);
+                case Types.DECIMAL, Types.NUMERIC -> rs.getBigDecimal(i);
+                case Types.DATE -> rs.getObject(i, LocalDate.class);
+                case Types.TIME -> rs.getObject(i, LocalTime.class);
+                case Types.TIMESTAMP -> rs.getObject(i, LocalDateTime.class);
+                default -> rs.getString(i);
+            };
+            if (value == null || rs.wasNull()) {
+                out.writeNull();
+            } else if (value instanceof Long l) {
+                out.writeNumber(l);
+            } else if (value instanceof Double d) {
+                out.writeNumber(d);
+            } else if (value instanceof java.math.BigDecimal d) {
+                out.writeNumber(d);
+            } else if (value instanceof Boolean b) {
+                out.writeBoolean(b);
+            } else {
+                out.writeString(value.toString());
+            }
+        }
+        out.writeEndArray();
+    }
+
+    // =========================
+    // DELETE
+    // =========================
+    /**
+     * Delete the rows of the campaign, children first.
+     *
+     * @return number of rows deleted per table
+     */
+    static Map<String, Integer> delete(JdbcTemplate jdbc, long idCampagne) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (int i = PARTS.size() - 1; i >= 0; i--) {
+            Part part = PARTS.get(i);
+            counts.put(part.table(), jdbc.update("DELETE FROM " + part.table() + " WHERE " + part.condition(),
+                    idCampagne));
+        }
+        return counts;
+    }
+
+    // =========================
+    // RESTORE
+    // =========================
+    /**
+     * Insert the rows of an archive back, parents first, with their original ids.
+     *
+     * @return number of rows inserted per table
+     */
+    static Map<String, Integer> restore(JdbcTemplate jdbc, long idCampagne, Path file) throws IOException {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16), 1 << 16);
+             JsonParser p = JSON.createParser(in)) {
+            expect(p.nextToken(), JsonToken.START_OBJECT);
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                switch (field) {
+                    case "format" -> {
+                        if (!FORMAT.equals(p.getText())) {
+                            throw new IOException("Not a campaign archive: " + file);
+                        }
+                    }
+                    case "version" -> {
+                        if (p.getIntValue() != VERSION) {
+                            throw new IOException("Unsupported campaign archive version " + p.getIntValue());
+                        }
+                    }
+                    case "campagne" -> {
+                        expect(value, JsonToken.START_OBJECT);
+                        while (p.nextToken() == JsonToken.FIELD_NAME) {
+                            String name = p.currentName();
+                            p.nextToken();
+                            if (name.equals("id") && p.getLongValue() != idCampagne) {
+                                throw new IOException("Archive " + file + " belongs to campaign " + p.getLongValue());
+                            }
+                            p.skipChildren();
+                        }
+                    }
+                    case "tables" -> {
+                        expect(value, JsonToken.START_ARRAY);
+                        while (p.nextToken() == JsonToken.START_OBJECT) {
+                            restoreTable(jdbc, p, counts);
+                        }
+                    }
+                    default -> p.skipChildren();
+                }
+            }
+        }
+        return counts;
+    }
+
+    private static void restoreTable(JdbcTemplate jdbc, JsonParser p, Map<String, Integer> counts) throws IOException {
+        String table = null;
+        List<String> columns = new ArrayList<>();
+        List<Integer> types = new ArrayList<>();
+        int count = 0;
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            switch (field) {
+                case "name" -> {
+                    table = p.getText();
+                    String name = table;
+                    if (PARTS.stream().noneMatch(part -> part.table().equals(name))) {
+                        throw new IOException("Unexpected table in campaign archive: " + table);
+                    }
+                }
+                case "columns" -> {
+                    expect(value, JsonToken.START_ARRAY);
+                    while (p.nextToken() != JsonToken.END_ARRAY) {
+                        String column = p.getText();
+                        if (!IDENTIFIER.matcher(column).matches()) {
+                            throw new IOException("Invalid column name in campaign archive: " + column);
+                        }
+                        columns.add(column);
+                    }
+                }
+                case "types" -> {
+                    expect(value, JsonToken.START_ARRAY);
+                    while (p.nextToken() != JsonToken.END_ARRAY) {
+                        types.add(p.getIntValue());
+                    }
+                }
+                case "rows" -> {
+                    expect(value, JsonToken.START_ARRAY);
+                    if (table == null) {
+                        throw new IOException("Campaign archive rows before the table name");
+                    }
+                    String sql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                            + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+                    List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+                    while (p.nextToken() == JsonToken.START_ARRAY) {
+                        Object[] row = new Object[columns.size()];
+                        for (int i = 0; i < row.length; i++) {
+                            row[i] = readValue(p, p.nextToken(), types.get(i));
+                        }
+                        expect(p.nextToken(), JsonToken.END_ARRAY);
+                        batch.add(row);
+                        if (batch.size() == BATCH_SIZE) {
+                            jdbc.batchUpdate(sql, batch);
+                            batch.clear();
+                        }
+                        count++;
+                    }
+                    if (!batch.isEmpty()) {
+                        jdbc.batchUpdate(sql, batch);
+                    }
+                }
+                default -> p.skipChildren();
+            }
+        }
+        counts.put(table, count);
+    }
+
+    private static Object readValue(JsonParser p, JsonToken token, int sqlType) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        return switch (sqlType) {
+            case Types.BIGINT, Types.INTEGER, Types.SMALLINT, Types.TINYINT -> p.getLongValue();
+            case Types.BIT, Types.BOOLEAN -> p.getBooleanValue();
+            case Types.DOUBLE, Types.FLOAT, Types.REAL -> p.getDoubleValue();
+            case Types.DECIMAL, Types.NUMERIC -> p.getDecimalValue();
+            case Types.DATE -> LocalDate.parse(p.getText());
+            case Types.TIME -> LocalTime.parse(p.getText());
+            case Types.TIMESTAMP -> LocalDateTime.parse(p.getText());
+            default -> p.getText();
+        };
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Malformed campaign archive: expected " + expected + " but found " + actual);
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package org.fsegs.surveillanceexams.campagne;
+
+import jakarta.annotation.PostConstruct;
+import org.fsegs.surveillanceexams.event.PlanningDataChangedEvent;
+import org.fsegs.surveillanceexams.model.Campagne;
+import org.fsegs.surveillanceexams.repository.CampagneRepository;
+import org.fsegs.surveillanceexams.repository.SeanceRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Exam campaigns and the active campaign.
+ *
+ * Every seance belongs to a campaign and the read and planning queries are
+ * restricted to the active one, so the working set stays the size of one
+ * session whatever the history kept in the database. The active campaign id
+ * is cached here and only changes through {@link #activate}.
+ *
+ * Lifecycle: OUVERTE -> CLOTUREE (no more wishes or assignments) ->
+ * ARCHIVEE (rows exported to a gzip JSON file and deleted) -> CLOTUREE
+ * again after a restore.
+ *
+ * At startup, when no campaign exists yet, a default campaign is created
+ * and made active; seances without a campaign are attached to the active one.
+ * {@code surveillance.campagne.init-on-startup=false} skips this, for boots
+ * that must not touch the database (the CDS training run of the build).
+ */
+@Service
+public class CampagneService {
+
+    private static final DateTimeFormatter ARCHIVE_STAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private final CampagneRepository campagneRepo;
+    private final SeanceRepository seanceRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher events;
+    private final Path archiveDir;
+    private final boolean initOnStartup;
+
+    private volatile Long activeId;
+
+    public CampagneService(CampagneRepository campagneRepo,
+                           SeanceRepository seanceRepo,
+                           JdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate,
+                           ApplicationEventPublisher events,
+                           @Value("${surveillance.campagne.archive-dir:data/archives}") String archiveDir,
+                           @Value("${surveillance.campagne.init-on-startup:true}") boolean initOnStartup) {
+        this.campagneRepo = campagneRepo;
+        this.seanceRepo = seanceRepo;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.events = events;
+        this.archiveDir = Path.of(archiveDir);
+        this.initOnStartup = initOnStartup;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!initOnStartup) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(tx -> {
+            Campagne active = campagneRepo.findFirstByActiveTrueOrderByIdDesc()
+                    .or(() -> campagneRepo.findFirstByStatutNotOrderByIdDesc(Campagne.CampagneStatut.ARCHIVEE))
+                    .orElseGet(this::createDefault);
+            active.setActive(true);
+            campagneRepo.save(active);
+            campagneRepo.deactivateAllExcept(active.getId());
+
+            int attached = attachOrphanSeances(active.getId());
+            if (attached > 0) {
+                System.out.println(attached + " seance(s) without campaign attached to campaign '"
+                        + active.getNom() + "'");
+            }
+            activeId = active.getId();
+        });
+    }
+
+    private Campagne createDefault() {
+        Campagne c = new Campagne();
+        c.setNom("Campagne par défaut");
+        c.setType(Campagne.CampagneType.PRINCIPALE);
+        return campagneRepo.save(c);
+    }
+
+    // =========================
+    // ACTIVE CAMPAIGN
+    // =========================
+    /**
+     * Id of the active campaign, the scope of planning and read queries.
+     */
+    public Long activeId() {
+        Long id = activeId;
+        if (id == null) {
+            throw new IllegalStateException("No active campaign");
+        }
+        return id;
+    }
+
+    public Campagne getActive() {
+        return campagneRepo.findById(activeId())
+                .orElseThrow(() -> new RuntimeException("Campagne not found"));
+    }
+
+    /**
+     * Re-read the active campaign from the database, after another instance
+     * may have switched it.
+     */
+    public void refreshActiveId() {
+        campagneRepo.findFirstByActiveTrueOrderByIdDesc().ifPresent(c -> activeId = c.getId());
+    }
+
+    // =========================
+    // CAMPAIGNS
+    // =========================
+    public List<Map<String, Object>> listCampagnes() {
+        Map<Long, Long> seances = new HashMap<>();
+        for (Object[] row : seanceRepo.countGroupedByCampagne()) {
+            seances.put((Long) row[0], (Long) row[1]);
+        }
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Campagne c : campagneRepo.findAllByOrderByIdDesc()) {
+            Map<String, Object> item = toMap(c);
+            item.put("seances", seances.getOrDefault(c.getId(), 0L));
+            result.add(item);
+        }
+        return result;
+    }
+
+    @Transactional
+    public Campagne createCampagne(String nom, Campagne.CampagneType type, String anneeUniversitaire,
+                                   LocalDate dateDebut, LocalDate dateFin) {
+        if (nom == null || nom.isBlank()) {
+            throw new IllegalArgumentException("Campaign name is required");
+        }
+        if (dateDebut != null && dateFin != null && dateFin.isBefore(dateDebut)) {
+            throw new IllegalArgumentException("Campaign end date is before its start date");
+        }
+        Campagne c = new Campagne();
+        c.setNom(nom.trim());
+        c.setType(type != null ? type : Campagne.CampagneType.PRINCIPALE);
+        c.setAnneeUniversitaire(anneeUniversitaire);
+        c.setDateDebut(dateDebut);
+        c.setDateFin(dateFin);
+        return campagneRepo.save(c);
+    }
+
+    /**
+     * Make a campaign the scope of the application. A closed campaign may be
+     * activated to consult it; it stays read-only.
+     */
+    @Transactional
+    public Campagne activate(Long idCampagne) {
+        Campagne c = find(idCampagne);
+        if (c.getStatut() == Campagne.CampagneStatut.ARCHIVEE) {
+            throw new IllegalStateException("Campaign '" + c.getNom() + "' is archived, restore it first");
+        }
+        c.setActive(true);
+        campagneRepo.save(c);
+        campagneRepo.deactivateAllExcept(c.getId());
+
+        // Registered before the event, so the new id is visible to its listeners
+        afterCommit(() -> activeId = c.getId());
+        events.publishEvent(PlanningDataChangedEvent.campagne(c.getId()));
+        return c;
+    }
+
+    /**
+     * Close a campaign: wishes and assignments on its seances are refused from now on.
+     */
+    @Transactional
+    public Campagne close(Long idCampagne) {
+        Campagne c = find(idCampagne);
+        if (c.getStatut() != Campagne.CampagneStatut.OUVERTE) {
+            throw new IllegalStateException("Campaign '" + c.getNom() + "' is not open");
+        }
+        c.setStatut(Campagne.CampagneStatut.CLOTUREE);
+        return campagneRepo.save(c);
+    }
+
+    /**
+     * Move the seances dated within [from, to] to a campaign. Seances of a
+     * closed campaign are left where they are.
+     *
+     * @return number of seances moved
+     */
+    @Transactional
+    public int attachSeances(Long idCampagne, LocalDate from, LocalDate to) {
+        Campagne c = find(idCampagne);
+        if (c.getStatut() == Campagne.CampagneStatut.ARCHIVEE) {
+            throw new IllegalStateException("Campaign '" + c.getNom() + "' is archived, restore it first");
+        }
+        int moved = jdbcTemplate.update(
+                "UPDATE seance SET id_campagne = ? WHERE date_seance BETWEEN ? AND ? " +
+                "AND (id_campagne IS NULL OR id_campagne IN " +
+                "(SELECT id_campagne FROM campagne WHERE statut = ?))",
+                c.getId(), from, to, Campagne.CampagneStatut.OUVERTE.name());
+        if (moved > 0) {
+            events.publishEvent(PlanningDataChangedEvent.campagne(c.getId()));
+        }
+        return moved;
+    }
+
+    private int attachOrphanSeances(Long idCampagne) {
+        return jdbcTemplate.update("UPDATE seance SET id_campagne = ? WHERE id_campagne IS NULL", idCampagne);
+    }
+
+    // =========================
+    // ARCHIVE / RESTORE
+    // =========================
+    /**
+     * Export the rows of a closed, inactive campaign to a compressed file
+     * and delete them from the database. The file is complete and synced
+     * before the rows are deleted.
+     */
+    @Transactional
+    public Map<String, Object> archive(Long idCampagne) throws IOException {
+        Campagne c = find(idCampagne);
+        if (c.getStatut() != Campagne.CampagneStatut.CLOTUREE) {
+            throw new IllegalStateException("Only a closed campaign can be archived");
+        }
+        if (c.isActive()) {
+            throw new IllegalStateException("The active campaign cannot be archived");
+        }
+
+        long start = System.nanoTime();
+        Path file = archiveDir.resolve("campagne-" + c.getId() + "-"
+                + LocalDateTime.now().format(ARCHIVE_STAMP) + ".json.gz");
+        Map<String, Integer> exported = CampagneArchive.export(jdbcTemplate, c, file);
+        Map<String, Integer> deleted = CampagneArchive.delete(jdbcTemplate, c.getId());
+        if (!exported.equals(deleted)) {
+            // Rows changed between export and delete: keep the database as it was
+            throw new IllegalStateException("Campaign rows changed during archiving, nothing was deleted");
+        }
+
+        c.setStatut(Campagne.CampagneStatut.ARCHIVEE);
+        c.setFichierArchive(file.toAbsolutePath().toString());
+        campagneRepo.save(c);
+        events.publishEvent(PlanningDataChangedEvent.campagne(c.getId()));
+
+        Map<String, Object> report = toMap(c);
+        report.put("rows", exported);
+        report.put("sizeBytes", Files.size(file));
+        report.put("durationMs", (System.nanoTime() - start) / 1_000_000);
+        return report;
+    }
+
+    /**
+     * Load an archived campaign back into the database (as CLOTUREE), with
+     * its original ids.
+     */
+    @Transactional
+    public Map<String, Object> restore(Long idCampagne) throws IOException {
+        Campagne c = find(idCampagne);
+        if (c.getStatut() != Campagne.CampagneStatut.ARCHIVEE) {
+            throw new IllegalStateException("Campaign '" + c.getNom() + "' is not archived");
+        }
+        if (c.getFichierArchive() == null || !Files.exists(Path.of(c.getFichierArchive()))) {
+            throw new IllegalStateException("Archive file not found: " + c.getFichierArchive());
+        }
+
+        long start = System.nanoTime();
+        Path file = Path.of(c.getFichierArchive());
+        Map<String, Integer> restored = CampagneArchive.restore(jdbcTemplate, c.getId(), file);
+
+        c.setStatut(Campagne.CampagneStatut.CLOTUREE);
+        c.setFichierArchive(null);
+        campagneRepo.save(c);
+        events.publishEvent(PlanningDataChangedEvent.campagne(c.getId()));
+
+        Map<String, Object> report = toMap(c);
+        report.put("archiveFile", file.toAbsolutePath().toString());
+        report.put("rows", restored);
+        report.put("durationMs", (System.nanoTime() - start) / 1_000_000);
+        return report;
+    }
+
+    // =========================
+    // HELPERS
+    // =========================
+    private Campagne find(Long idCampagne) {
+        return campagneRepo.findById(idCampagne)
+                .orElseThrow(() -> new RuntimeException("Campagne not found"));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    public static Map<String, Object> toMap(Campagne c) {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("idCampagne", c.getId());
+        item.put("nom", c.getNom());
+        item.put("type", c.getType());
+        item.put("anneeUniversitaire", c.getAnneeUniversitaire());
+        item.put("dateDebut", c.getDateDebut());
+        item.put("dateFin", c.getDateFin());
+        item.put("statut", c.getStatut());
+        item.put("active", c.isActive());
+        item.put("fichierArchive", c.getFichierArchive());
+        return item;
+    }
+}
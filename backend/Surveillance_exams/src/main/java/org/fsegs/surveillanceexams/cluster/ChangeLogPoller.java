@@ -0,0 +1,306 @@
+package org.fsegs.surveillanceexams.cluster;
+
+import jakarta.annotation.PostConstruct;
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.fsegs.surveillanceexams.event.AffectationChangedEvent;
+import org.fsegs.surveillanceexams.event.PlanningDataChangedEvent;
+import org.fsegs.surveillanceexams.model.ChangeLog;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Replays the changes made by the other instances, read from the change_log
+ * table, as local events: the planning state, statistics, calendar and repair
+ * tracking then update exactly as for a local change. Only the shared MySQL
+ * database is needed; there is no broker.
+ *
+ * Ordering: rows are applied in id order. An id may become visible after a
+ * higher one (auto-increment ids are taken at insert, not at commit), so an
+ * id skipped by the scan is remembered as a gap and looked up again on each
+ * poll until it shows up or {@code gap-timeout-ms} has passed (rolled back
+ * transactions leave permanent holes; an expired gap invalidates the derived
+ * state, in case it was a slow commit rather than a rollback). A late row can only belong to a
+ * transaction that did not lock the same seance or teacher as the rows
+ * already applied (see {@link ChangeLogWriter}), so per seance and per
+ * teacher the changes are applied in commit order, each exactly once.
+ *
+ * Staleness: a committed change is applied within one poll interval plus
+ * the query time while the database is reachable. If the instance cannot
+ * follow the log (polling failed for longer than the retention, or too many
+ * ids are missing at once), it drops everything it derived from the database
+ * instead, as if the campaign had changed.
+ */
+@Component
+public class ChangeLogPoller {
+
+    private static final int BATCH = 1000;
+    private static final int MAX_GAPS = 10_000;
+    private static final ThreadLocal<Boolean> REPLAYING = new ThreadLocal<>();
+
+    private static final String COLUMNS = "SELECT id, node, kind, id_enseignant, id_seance, id_ref, created_at " +
+            "FROM change_log ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher events;
+    private final CampagneService campagneService;
+    private final ChangeLogWriter writer;
+    private final long gapTimeoutMillis;
+    private final Duration retention;
+
+    private record Row(long id, String node, ChangeLog.Kind kind, Long idEnseignant, Long idSeance, Long idRef,
+                       LocalDateTime createdAt) {
+    }
+
+    // Poller thread state
+    private long lastId = -1;
+    /** Missing id -> time it was first noticed (ms) */
+    private final TreeMap<Long, Long> gaps = new TreeMap<>();
+    private long lastSuccess = System.currentTimeMillis();
+
+    private volatile long applied;
+    private volatile long skippedOwn;
+    private volatile long gapsFilled;
+    private volatile long gapsExpired;
+    private volatile long fullInvalidations;
+    private volatile long lastAppliedLagMillis;
+    private volatile String lastError;
+
+    public ChangeLogPoller(JdbcTemplate jdbcTemplate,
+                           ApplicationEventPublisher events,
+                           CampagneService campagneService,
+                           ChangeLogWriter writer,
+                           @Value("${surveillance.cluster.gap-timeout-ms:30000}") long gapTimeoutMillis,
+                           @Value("${surveillance.cluster.retention-minutes:60}") long retentionMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.events = events;
+        this.campagneService = campagneService;
+        this.writer = writer;
+        this.gapTimeoutMillis = gapTimeoutMillis;
+        this.retention = Duration.ofMinutes(retentionMinutes);
+    }
+
+    /**
+     * True on the poller thread while it publishes the changes of another
+     * instance: they must not be logged again, nor audited as local changes.
+     */
+    public static boolean isReplaying() {
+        return REPLAYING.get() != null;
+    }
+
+    // =========================
+    // START
+    // =========================
+    /**
+     * Start from the current end of the log, before the caches are first
+     * loaded: everything committed from now on is replayed. Recent missing ids
+     * may be transactions still in flight, so they start as gaps.
+     */
+    @PostConstruct
+    public synchronized void start() {
+        if (!writer.isEnabled()) {
+            return;
+        }
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM change_log", Long.class);
+        lastId = max != null ? max : 0;
+        long now = System.currentTimeMillis();
+        Set<Long> present = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT id FROM change_log WHERE id > ?", Long.class, lastId - BATCH));
+        for (long id = Math.max(1, lastId - BATCH + 1); id < lastId; id++) {
+            if (!present.contains(id)) {
+                gaps.put(id, now);
+            }
+        }
+        // The campaign may have been switched elsewhere since CampagneService read it
+        campagneService.refreshActiveId();
+    }
+
+    // =========================
+    // POLL
+    // =========================
+    @Scheduled(fixedDelayString = "${surveillance.cluster.poll-interval-ms:200}")
+    public synchronized void poll() {
+        if (!writer.isEnabled() || lastId < 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            if (now - lastSuccess > retention.toMillis()) {
+                // Rows we never read may have been purged meanwhile
+                invalidateAll();
+                lastId = Objects.requireNonNullElse(
+                        jdbcTemplate.queryForObject("SELECT MAX(id) FROM change_log", Long.class), 0L);
+                gaps.clear();
+            }
+
+            if (!gaps.isEmpty()) {
+                fillGaps(now);
+            }
+
+            List<Row> rows;
+            do {
+                rows = jdbcTemplate.query(COLUMNS + "WHERE id > ? ORDER BY id LIMIT ?",
+                        (rs, i) -> toRow(rs), lastId, BATCH);
+                for (Row row : rows) {
+                    for (long missing = lastId + 1; missing < row.id() && gaps.size() < MAX_GAPS; missing++) {
+                        gaps.put(missing, now);
+                    }
+                    if (gaps.size() >= MAX_GAPS) {
+                        // Cannot tell which changes we would miss
+                        gaps.clear();
+                        invalidateAll();
+                    }
+                    apply(row);
+                    lastId = row.id();
+                }
+            } while (rows.size() == BATCH);
+
+            lastSuccess = now;
+            lastError = null;
+        } catch (RuntimeException e) {
+            lastError = e.getMessage();
+        }
+    }
+
+    /**
+     * Apply the rows that showed up for remembered gaps. A gap older than the
+     * timeout is given up and everything derived from the database is dropped,
+     * since a change may have been missed.
+     */
+    private void fillGaps(long now) {
+        List<Long> ids = new ArrayList<>(gaps.keySet());
+        for (int from = 0; from < ids.size(); from += BATCH) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + BATCH));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            List<Row> late = jdbcTemplate.query(COLUMNS + "WHERE id IN (" + placeholders + ") ORDER BY id",
+                    (rs, i) -> toRow(rs), chunk.toArray());
+            for (Row row : late) {
+                gaps.remove(row.id());
+                gapsFilled++;
+                apply(row);
+            }
+        }
+        int expired = 0;
+        Iterator<Long> it = gaps.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next() > gapTimeoutMillis) {
+                it.remove();
+                expired++;
+            }
+        }
+        if (expired > 0) {
+            // Usually a rolled back transaction, but it may be one that committed
+            // later than the timeout: its changes would never be replayed
+            gapsExpired += expired;
+            System.err.println("[CLUSTER] " + expired + " change log id(s) still missing after "
+                    + gapTimeoutMillis + " ms, dropping derived state");
+            invalidateAll();
+        }
+    }
+
+    private static Row toRow(ResultSet rs) throws SQLException {
+        return new Row(rs.getLong(1), rs.getString(2), ChangeLog.Kind.valueOf(rs.getString(3)),
+                rs.getObject(4, Long.class), rs.getObject(5, Long.class), rs.getObject(6, Long.class),
+                rs.getTimestamp(7).toLocalDateTime());
+    }
+
+    // =========================
+    // REPLAY
+    // =========================
+    private void apply(Row row) {
+        if (writer.node().equals(row.node())) {
+            skippedOwn++;
+            return;
+        }
+        Object event = switch (row.kind()) {
+            case AFFECTATION_ADDED -> new AffectationChangedEvent(AffectationChangedEvent.Type.ASSIGNED,
+                    row.idEnseignant(), row.idSeance(), instant(row.createdAt()));
+            case AFFECTATION_REMOVED -> new AffectationChangedEvent(AffectationChangedEvent.Type.UNASSIGNED,
+                    row.idEnseignant(), row.idSeance(), instant(row.createdAt()));
+            case SEANCE -> PlanningDataChangedEvent.seance(row.idSeance());
+            case ENSEIGNANT -> PlanningDataChangedEvent.enseignant(row.idEnseignant());
+            case CAMPAGNE -> PlanningDataChangedEvent.campagne(row.idRef());
+        };
+        try {
+            if (row.kind() == ChangeLog.Kind.CAMPAGNE) {
+                campagneService.refreshActiveId();
+            }
+            replay(event);
+        } catch (RuntimeException e) {
+            // Some listeners may have seen the change and others not
+            lastError = "Change " + row.id() + " failed: " + e.getMessage();
+            invalidateAll();
+        }
+        applied++;
+        lastAppliedLagMillis = Math.max(0, Duration.between(row.createdAt(), LocalDateTime.now()).toMillis());
+    }
+
+    /**
+     * Drop all state derived from the database; it is rebuilt on next use.
+     */
+    private void invalidateAll() {
+        campagneService.refreshActiveId();
+        replay(PlanningDataChangedEvent.campagne(campagneService.activeId()));
+        fullInvalidations++;
+    }
+
+    private void replay(Object event) {
+        REPLAYING.set(Boolean.TRUE);
+        try {
+            events.publishEvent(event);
+        } finally {
+            REPLAYING.remove();
+        }
+    }
+
+    private static Instant instant(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    // =========================
+    // RETENTION
+    // =========================
+    @Scheduled(fixedDelayString = "${surveillance.cluster.purge-interval-ms:60000}")
+    public void purge() {
+        if (!writer.isEnabled()) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("DELETE FROM change_log WHERE created_at < ?",
+                    Timestamp.valueOf(LocalDateTime.now().minus(retention)));
+        } catch (RuntimeException e) {
+            lastError = e.getMessage();
+        }
+    }
+
+    // =========================
+    // STATUS
+    // =========================
+    public synchronized Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", writer.isEnabled());
+        status.put("node", writer.node());
+        status.put("lastId", lastId);
+        status.put("applied", applied);
+        status.put("skippedOwn", skippedOwn);
+        status.put("pendingGaps", gaps.size());
+        status.put("gapsFilled", gapsFilled);
+        status.put("gapsExpired", gapsExpired);
+        status.put("fullInvalidations", fullInvalidations);
+        status.put("lastAppliedLagMs", lastAppliedLagMillis);
+        status.put("msSinceLastPoll", System.currentTimeMillis() - lastSuccess);
+        status.put("lastError", lastError);
+        return status;
+    }
+}
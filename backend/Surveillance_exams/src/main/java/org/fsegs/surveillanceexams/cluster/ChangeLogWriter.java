@@ -0,0 +1,123 @@
+package org.fsegs.surveillanceexams.cluster;
+
+import org.fsegs.surveillanceexams.event.AffectationChangedEvent;
+import org.fsegs.surveillanceexams.event.PlanningDataChangedEvent;
+import org.fsegs.surveillanceexams.model.ChangeLog;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the changes of this instance in the change_log table, for the
+ * other instances (see {@link ChangeLogPoller}).
+ *
+ * Events are buffered per transaction and inserted with one batch just
+ * before the commit, in the same transaction: a change and its change_log
+ * rows become visible together, and nothing is written for a rollback.
+ * Being the last statements of the transaction, the inserts take their ids
+ * after every row lock of the transaction is held, so two transactions that
+ * touch the same seance or teacher get ids in commit order.
+ * Events published outside a transaction are written immediately.
+ */
+@Component
+public class ChangeLogWriter {
+
+    private static final String INSERT = "INSERT INTO change_log " +
+            "(node, kind, id_enseignant, id_seance, id_ref, created_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final String node;
+
+    private record Row(ChangeLog.Kind kind, Long idEnseignant, Long idSeance, Long idRef, LocalDateTime createdAt) {
+    }
+
+    public ChangeLogWriter(JdbcTemplate jdbcTemplate,
+                           @Value("${surveillance.cluster.enabled:false}") boolean enabled,
+                           @Value("${surveillance.cluster.node-id:}") String node) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.node = node.isBlank() ? ManagementFactory.getRuntimeMXBean().getName() : node;
+    }
+
+    public String node() {
+        return node;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // =========================
+    // EVENTS
+    // =========================
+    @EventListener
+    public void onAffectationChanged(AffectationChangedEvent event) {
+        record(new Row(event.type() == AffectationChangedEvent.Type.ASSIGNED
+                        ? ChangeLog.Kind.AFFECTATION_ADDED : ChangeLog.Kind.AFFECTATION_REMOVED,
+                event.idEnseignant(), event.idSeance(), null, LocalDateTime.now()));
+    }
+
+    @EventListener
+    public void onPlanningDataChanged(PlanningDataChangedEvent event) {
+        Row row = switch (event.kind()) {
+            case SEANCE -> new Row(ChangeLog.Kind.SEANCE, null, event.id(), null, LocalDateTime.now());
+            case ENSEIGNANT -> new Row(ChangeLog.Kind.ENSEIGNANT, event.id(), null, null, LocalDateTime.now());
+            case CAMPAGNE -> new Row(ChangeLog.Kind.CAMPAGNE, null, null, event.id(), LocalDateTime.now());
+        };
+        record(row);
+    }
+
+    private void record(Row row) {
+        if (!enabled || ChangeLogPoller.isReplaying()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            insert(List.of(row));
+            return;
+        }
+        PendingRows pending = (PendingRows) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            PendingRows rows = new PendingRows();
+            TransactionSynchronizationManager.bindResource(this, rows);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    insert(rows.rows);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ChangeLogWriter.this);
+                }
+            });
+            pending = rows;
+        }
+        pending.rows.add(row);
+    }
+
+    /** Rows of the current transaction, bound as its resource */
+    private static final class PendingRows {
+        final List<Row> rows = new ArrayList<>();
+    }
+
+    private void insert(List<Row> rows) {
+        jdbcTemplate.batchUpdate(INSERT, rows, rows.size(), (ps, r) -> {
+            ps.setString(1, node);
+            ps.setString(2, r.kind().name());
+            ps.setObject(3, r.idEnseignant());
+            ps.setObject(4, r.idSeance());
+            ps.setObject(5, r.idRef());
+            ps.setTimestamp(6, Timestamp.valueOf(r.createdAt()));
+        });
+    }
+}
@@ -0,0 +1,161 @@
+package org.fsegs.surveillanceexams.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control for the write endpoints (wish submission / cancellation,
+ * manual assignment and assignment swaps).
+ *
+ * Two limits are applied before the request reaches a Tomcat worker's controller:
+ * 1. A per-caller token bucket, so retries and double-clicks from one client
+ *    cannot multiply the load. The caller is the authenticated user when there
+ *    is one, otherwise the remote address: never a request parameter, which
+ *    the client could vary to dodge the limit or use to exhaust someone
+ *    else's budget. Manual assignment (an admin action, typically done in
+ *    bulk for many teachers) has its own, larger budget.
+ * 2. A global cap on concurrent writers, so the database sees a bounded number
+ *    of write transactions at a time.
+ *
+ * Requests over either limit get an immediate 429 with a Retry-After header
+ * instead of queueing, which keeps latency stable for admitted requests.
+ */
+@Component
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final TokenBucketTable buckets;
+    private final TokenBucketTable adminBuckets;
+    private final Semaphore writers;
+    private final int maxConcurrentWriters;
+
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong overCapacity = new AtomicLong();
+
+    public AdmissionControlFilter(
+            ObjectMapper objectMapper,
+            @Value("${surveillance.admission.enabled:true}") boolean enabled,
+            @Value("${surveillance.admission.rate-per-second:2}") double ratePerSecond,
+            @Value("${surveillance.admission.burst:5}") int burst,
+            @Value("${surveillance.admission.admin-rate-per-second:20}") double adminRatePerSecond,
+            @Value("${surveillance.admission.admin-burst:50}") int adminBurst,
+            @Value("${surveillance.admission.max-concurrent-writers:32}") int maxConcurrentWriters,
+            @Value("${surveillance.admission.client-slots:4096}") int clientSlots) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.buckets = new TokenBucketTable(clientSlots, burst, ratePerSecond);
+        this.adminBuckets = new TokenBucketTable(clientSlots, adminBurst, adminRatePerSecond);
+        this.writers = new Semaphore(maxConcurrentWriters);
+        this.maxConcurrentWriters = maxConcurrentWriters;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !isWriteEndpoint(request.getMethod(), request.getRequestURI());
+    }
+
+    static boolean isWriteEndpoint(String method, String uri) {
+        if (uri.endsWith("/")) {
+            uri = uri.substring(0, uri.length() - 1);
+        }
+        if (uri.endsWith("/api/voeux")) {
+            return "POST".equals(method) || "DELETE".equals(method);
+        }
+        return (isAdminEndpoint(method, uri) || uri.endsWith("/api/affectations/swap")) && "POST".equals(method);
+    }
+
+    /**
+     * Manual assignment, budgeted separately from the teachers' own requests.
+     */
+    static boolean isAdminEndpoint(String method, String uri) {
+        if (uri.endsWith("/")) {
+            uri = uri.substring(0, uri.length() - 1);
+        }
+        return uri.endsWith("/api/affectation") && "POST".equals(method);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        TokenBucketTable table = isAdminEndpoint(request.getMethod(), request.getRequestURI()) ? adminBuckets : buckets;
+        long waitNanos = table.tryAcquire(clientKey(request), System.nanoTime());
+        if (waitNanos > 0) {
+            rateLimited.incrementAndGet();
+            reject(response, waitNanos, "Too many requests, please retry later.");
+            return;
+        }
+
+        if (!writers.tryAcquire()) {
+            overCapacity.incrementAndGet();
+            reject(response, TimeUnit.SECONDS.toNanos(1), "Server is busy, please retry later.");
+            return;
+        }
+
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            writers.release();
+        }
+    }
+
+    /**
+     * Rate-limit per authenticated user, otherwise per remote address.
+     */
+    static String clientKey(HttpServletRequest request) {
+        String user = request.getRemoteUser();
+        if (user != null && !user.isBlank()) {
+            return "U:" + user;
+        }
+        return "A:" + request.getRemoteAddr();
+    }
+
+    private void reject(HttpServletResponse response, long waitNanos, String message) throws IOException {
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("success", false);
+        body.put("message", message);
+        body.put("data", null);
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+
+    // =========================
+    // METRICS
+    // =========================
+    public int activeWriters() {
+        return maxConcurrentWriters - writers.availablePermits();
+    }
+
+    public int maxConcurrentWriters() {
+        return maxConcurrentWriters;
+    }
+
+    public long rateLimitedCount() {
+        return rateLimited.get();
+    }
+
+    public long overCapacityCount() {
+        return overCapacity.get();
+    }
+}
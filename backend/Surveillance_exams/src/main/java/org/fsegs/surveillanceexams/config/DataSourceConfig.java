@@ -0,0 +1,34 @@
+package org.fsegs.surveillanceexams.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the pooled DataSource in a {@link ConcurrencyLimitedDataSource} when
+ * surveillance.jdbc.max-concurrent-connections is set (the "virtual" profile
+ * does so). Left unwrapped by default: with platform threads the Tomcat
+ * worker pool already bounds how many requests reach the database.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Bean
+    static BeanPostProcessor jdbcConcurrencyLimiter(Environment environment) {
+        int maxConcurrent = environment.getProperty("surveillance.jdbc.max-concurrent-connections", Integer.class, 0);
+        long acquireTimeoutMillis = environment.getProperty("surveillance.jdbc.acquire-timeout-ms", Long.class, 2000L);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (maxConcurrent > 0 && bean instanceof DataSource dataSource
+                        && !(bean instanceof ConcurrencyLimitedDataSource)) {
+                    return new ConcurrencyLimitedDataSource(dataSource, maxConcurrent, acquireTimeoutMillis);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,20 @@
+package org.fsegs.surveillanceexams.config;
+
+import org.fsegs.surveillanceexams.diagnostics.SqlCounter;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class HibernateConfig {
+
+    /**
+     * Count the statements Hibernate prepares, for the per-operation SQL counts
+     * of the operation tracer.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer sqlCounterCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new SqlCounter());
+    }
+}
@@ -0,0 +1,113 @@
+package org.fsegs.surveillanceexams.config;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free table of per-client token buckets.
+ *
+ * The table is a fixed array of slots indexed by the hash of the client key.
+ * Each slot holds an immutable {@link Bucket} that is replaced with a CAS, so
+ * acquiring a token never blocks and memory never grows with the number of
+ * clients.
+ *
+ * A client's bucket is looked up in {@value #PROBES} consecutive slots from
+ * its hash. A new client takes the first empty one; when all of them are
+ * taken it evicts the least recently used bucket and inherits its remaining
+ * tokens, so clients pushed out of a crowded neighbourhood share a budget
+ * instead of each getting a full bucket back.
+ */
+public class TokenBucketTable {
+
+    static final int PROBES = 4;
+
+    private final AtomicReferenceArray<Bucket> slots;
+    private final int mask;
+    private final double capacity;
+    private final double tokensPerNano;
+
+    /**
+     * @param slots         number of slots (rounded up to a power of two)
+     * @param capacity      maximum burst size in tokens
+     * @param ratePerSecond refill rate in tokens per second
+     */
+    public TokenBucketTable(int slots, int capacity, double ratePerSecond) {
+        int size = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.capacity = capacity;
+        this.tokensPerNano = ratePerSecond / 1_000_000_000d;
+    }
+
+    /**
+     * Try to take one token for the given client.
+     *
+     * @param key     client key (teacher id or remote address)
+     * @param nowNano current time from {@link System#nanoTime()}
+     * @return 0 if a token was taken, otherwise the nanoseconds to wait before one is available
+     */
+    public long tryAcquire(String key, long nowNano) {
+        int home = spread(key.hashCode()) & mask;
+        int probes = Math.min(PROBES, slots.length());
+        while (true) {
+            // The client's own bucket, else the first empty slot, else the least recently used one
+            int index = -1;
+            int empty = -1;
+            int oldest = -1;
+            Bucket oldestBucket = null;
+            Bucket current = null;
+            for (int i = 0; i < probes; i++) {
+                int slot = (home + i) & mask;
+                Bucket b = slots.get(slot);
+                if (b == null) {
+                    if (empty < 0) {
+                        empty = slot;
+                    }
+                } else if (b.key.equals(key)) {
+                    index = slot;
+                    current = b;
+                    break;
+                } else if (oldestBucket == null || b.lastRefillNano - oldestBucket.lastRefillNano < 0) {
+                    oldest = slot;
+                    oldestBucket = b;
+                }
+            }
+
+            double tokens;
+            if (index >= 0) {
+                tokens = refill(current, nowNano);
+            } else if (empty >= 0) {
+                index = empty;
+                tokens = capacity;
+            } else {
+                index = oldest;
+                current = oldestBucket;
+                tokens = refill(current, nowNano);
+            }
+
+            if (tokens < 1d) {
+                return (long) Math.ceil((1d - tokens) / tokensPerNano);
+            }
+
+            Bucket next = new Bucket(key, tokens - 1d, nowNano);
+            if (slots.compareAndSet(index, current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private double refill(Bucket bucket, long nowNano) {
+        long elapsed = Math.max(0, nowNano - bucket.lastRefillNano);
+        return Math.min(capacity, bucket.tokens + elapsed * tokensPerNano);
+    }
+
+    public int size() {
+        return slots.length();
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private record Bucket(String key, double tokens, long lastRefillNano) {
+    }
+}
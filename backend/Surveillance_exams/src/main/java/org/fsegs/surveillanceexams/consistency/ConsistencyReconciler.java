@@ -0,0 +1,422 @@
+package org.fsegs.surveillanceexams.consistency;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.fsegs.surveillanceexams.config.AdmissionControlFilter;
+import org.fsegs.surveillanceexams.config.ConcurrencyLimitedDataSource;
+import org.fsegs.surveillanceexams.event.PlanningDataChangedEvent;
+import org.fsegs.surveillanceexams.event.VoeuChangedEvent;
+import org.fsegs.surveillanceexams.model.Seance;
+import org.fsegs.surveillanceexams.model.Voeu;
+import org.fsegs.surveillanceexams.repository.AffectationRepository;
+import org.fsegs.surveillanceexams.repository.SeanceRepository;
+import org.fsegs.surveillanceexams.repository.VoeuRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background check of the data maintained in parallel with the affectation
+ * table, which is the source of truth:
+ * - {@code seance.nb_surveillants_inscrits} must equal the number of
+ *   affectation rows of the seance,
+ * - an APPROVED wish must have its affectation, and a wish on an assigned
+ *   (teacher, seance) pair must be APPROVED.
+ *
+ * A pass walks every seance in id order, in keyset chunks
+ * ({@code id > last id of the previous chunk}), and compares each chunk with
+ * the affectation pairs and wishes of the same id range: three indexed
+ * queries per chunk, no entity loaded. A seance that looks drifted is checked
+ * again under its row lock (the lock taken by the write operations), so a
+ * write committing between the chunk queries is not reported. With
+ * {@code repair} the counter and wish statuses are then fixed in the same
+ * short transaction: orphan APPROVED wishes are deleted, as
+ * {@code retirerSurveillant} does, and other wishes on an assigned pair are
+ * approved. Affectation rows are never changed.
+ *
+ * Throttling: the pass runs on its own thread and yields to the foreground
+ * load. Before each chunk it waits while more than {@code max-active-writers}
+ * requests are in the write endpoints ({@link AdmissionControlFilter}) or
+ * requests are waiting for a JDBC connection; after a chunk it sleeps long
+ * enough to stay under {@code duty-cycle}. A pass kept waiting longer than
+ * {@code max-wait-ms} stops, and the next one resumes from the same seance.
+ */
+@Component
+public class ConsistencyReconciler {
+
+    private static final int RECENT_DRIFTS = 100;
+
+    private final SeanceRepository seanceRepo;
+    private final AffectationRepository affectationRepo;
+    private final VoeuRepository voeuRepo;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher events;
+    private final AdmissionControlFilter admission;
+    private final DataSource dataSource;
+    private final boolean enabled;
+    private final boolean repair;
+    private final long intervalMillis;
+    private final long initialDelayMillis;
+    private final int chunkSize;
+    private final double dutyCycle;
+    private final int maxActiveWriters;
+    private final long maxWaitMillis;
+
+    public enum Kind {
+        /** Stored counter differs from the number of affectation rows */
+        COUNTER,
+        /** APPROVED wish without affectation */
+        APPROVED_WITHOUT_AFFECTATION,
+        /** PENDING or REJECTED wish on an assigned pair */
+        AFFECTATION_NOT_APPROVED
+    }
+
+    /**
+     * One inconsistency. For COUNTER, stored / actual are the counter and the
+     * number of affectation rows; otherwise idEnseignant / idVoeu identify the wish.
+     */
+    public record Drift(Kind kind, long idSeance, Long idEnseignant, Long idVoeu, int stored, int actual) {
+
+        Map<String, Object> toMap() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("kind", kind);
+            m.put("idSeance", idSeance);
+            if (kind == Kind.COUNTER) {
+                m.put("stored", stored);
+                m.put("actual", actual);
+            } else {
+                m.put("idEnseignant", idEnseignant);
+                m.put("idVoeu", idVoeu);
+            }
+            return m;
+        }
+    }
+
+    // Reconciler thread state
+    private Thread worker;
+    private volatile boolean running;
+    /** Pass requested through {@link #requestPass}: the repair flag to use */
+    private final BlockingQueue<Boolean> requests = new ArrayBlockingQueue<>(1);
+    /** Last seance id checked by an unfinished pass, 0 to start from the beginning */
+    private volatile long cursor;
+    private volatile boolean passRunning;
+    private volatile Map<String, Object> lastPass;
+    private final Deque<Map<String, Object>> recentDrifts = new ArrayDeque<>();
+
+    private final AtomicLong passes = new AtomicLong();
+    private final AtomicLong driftsFound = new AtomicLong();
+    private final AtomicLong driftsRepaired = new AtomicLong();
+
+    public ConsistencyReconciler(SeanceRepository seanceRepo,
+                                 AffectationRepository affectationRepo,
+                                 VoeuRepository voeuRepo,
+                                 TransactionTemplate transactionTemplate,
+                                 ApplicationEventPublisher events,
+                                 AdmissionControlFilter admission,
+                                 DataSource dataSource,
+                                 @Value("${surveillance.reconcile.enabled:true}") boolean enabled,
+                                 @Value("${surveillance.reconcile.repair:true}") boolean repair,
+                                 @Value("${surveillance.reconcile.interval-ms:900000}") long intervalMillis,
+                                 @Value("${surveillance.reconcile.initial-delay-ms:60000}") long initialDelayMillis,
+                                 @Value("${surveillance.reconcile.chunk-size:500}") int chunkSize,
+                                 @Value("${surveillance.reconcile.duty-cycle:0.2}") double dutyCycle,
+                                 @Value("${surveillance.reconcile.max-active-writers:0}") int maxActiveWriters,
+                                 @Value("${surveillance.reconcile.max-wait-ms:60000}") long maxWaitMillis) {
+        this.seanceRepo = seanceRepo;
+        this.affectationRepo = affectationRepo;
+        this.voeuRepo = voeuRepo;
+        this.transactionTemplate = transactionTemplate;
+        this.events = events;
+        this.admission = admission;
+        this.dataSource = dataSource;
+        this.enabled = enabled;
+        this.repair = repair;
+        this.intervalMillis = intervalMillis;
+        this.initialDelayMillis = initialDelayMillis;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.dutyCycle = Math.min(1.0, Math.max(0.01, dutyCycle));
+        this.maxActiveWriters = maxActiveWriters;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    // =========================
+    // LIFECYCLE
+    // =========================
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::loop, "consistency-reconciler");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (worker == null) {
+            return;
+        }
+        running = false;
+        worker.interrupt();
+        worker.join(10_000);
+    }
+
+    /**
+     * Run a pass as soon as possible, instead of waiting for the interval.
+     * @param repairOverride Repair flag for this pass, or null for the configured one
+     * @return false when the reconciler is disabled, or a pass is already running or requested
+     */
+    public boolean requestPass(Boolean repairOverride) {
+        return enabled && !passRunning && requests.offer(repairOverride != null ? repairOverride : repair);
+    }
+
+    private void loop() {
+        long wait = initialDelayMillis;
+        while (running) {
+            try {
+                Boolean requested = requests.poll(wait, TimeUnit.MILLISECONDS);
+                runPass(requested != null ? requested : repair);
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("Consistency reconciler: pass failed: " + e.getMessage());
+            }
+            wait = intervalMillis;
+        }
+    }
+
+    // =========================
+    // PASS
+    // =========================
+    private void runPass(boolean repairPass) throws InterruptedException {
+        passRunning = true;
+        long start = System.currentTimeMillis();
+        LocalDateTime startedAt = LocalDateTime.now();
+        long resumedFrom = cursor;
+        long[] throttledMillis = new long[1];
+        int seances = 0;
+        int chunks = 0;
+        int found = 0;
+        int repaired = 0;
+        boolean completed = false;
+        try {
+            while (true) {
+                if (!awaitQuiet(throttledMillis)) {
+                    break;
+                }
+                long chunkStart = System.nanoTime();
+                List<Object[]> rows = seanceRepo.findCounterRowsAfter(cursor, PageRequest.of(0, chunkSize));
+                if (rows.isEmpty()) {
+                    cursor = 0;
+                    completed = true;
+                    break;
+                }
+                for (Long idSeance : suspects(rows)) {
+                    List<Drift> drifts = confirm(idSeance, repairPass);
+                    found += drifts.size();
+                    if (repairPass) {
+                        repaired += drifts.size();
+                    }
+                    record(drifts, repairPass);
+                }
+                seances += rows.size();
+                chunks++;
+                cursor = (Long) rows.get(rows.size() - 1)[0];
+
+                // Stay under the duty cycle: work / (work + pause) <= dutyCycle
+                long workMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - chunkStart);
+                long pause = (long) (workMillis * (1 - dutyCycle) / dutyCycle);
+                if (pause > 0) {
+                    Thread.sleep(pause);
+                    throttledMillis[0] += pause;
+                }
+            }
+        } finally {
+            passRunning = false;
+            passes.incrementAndGet();
+            driftsFound.addAndGet(found);
+            driftsRepaired.addAndGet(repaired);
+
+            Map<String, Object> pass = new LinkedHashMap<>();
+            pass.put("startedAt", startedAt);
+            pass.put("completed", completed);
+            pass.put("repair", repairPass);
+            pass.put("resumedFromSeance", resumedFrom);
+            pass.put("seancesChecked", seances);
+            pass.put("chunks", chunks);
+            pass.put("drifts", found);
+            pass.put("repaired", repaired);
+            pass.put("throttledMillis", throttledMillis[0]);
+            pass.put("durationMillis", System.currentTimeMillis() - start);
+            lastPass = pass;
+            if (found > 0) {
+                System.out.println("Consistency reconciler: " + found + " drift(s) found, " + repaired + " repaired");
+            }
+        }
+    }
+
+    /**
+     * Wait until the foreground write load is below the limits.
+     * @return false when it stayed above them for max-wait-ms, or the reconciler stops
+     */
+    private boolean awaitQuiet(long[] throttledMillis) throws InterruptedException {
+        long waited = 0;
+        long pause = 50;
+        while (busy()) {
+            if (!running || waited >= maxWaitMillis) {
+                return false;
+            }
+            Thread.sleep(pause);
+            waited += pause;
+            throttledMillis[0] += pause;
+            pause = Math.min(pause * 2, 1000);
+        }
+        return running;
+    }
+
+    private boolean busy() {
+        return admission.activeWriters() > maxActiveWriters
+                || (dataSource instanceof ConcurrencyLimitedDataSource limited && limited.waitingThreads() > 0);
+    }
+
+    /**
+     * Seances of a chunk that look drifted, from the affectation pairs and
+     * wishes of the chunk's id range.
+     */
+    private List<Long> suspects(List<Object[]> counterRows) {
+        Long fromId = (Long) counterRows.get(0)[0];
+        Long toId = (Long) counterRows.get(counterRows.size() - 1)[0];
+
+        Map<Long, List<Long>> assigned = new HashMap<>();
+        for (Object[] pair : affectationRepo.findPairsBySeanceIdBetween(fromId, toId)) {
+            assigned.computeIfAbsent((Long) pair[1], id -> new ArrayList<>()).add((Long) pair[0]);
+        }
+        Map<Long, List<Object[]>> voeux = new HashMap<>();
+        for (Object[] row : voeuRepo.findStatusRowsBySeanceIdBetween(fromId, toId)) {
+            voeux.computeIfAbsent((Long) row[2], id -> new ArrayList<>()).add(row);
+        }
+
+        List<Long> suspects = new ArrayList<>();
+        for (Object[] row : counterRows) {
+            Long idSeance = (Long) row[0];
+            int stored = row[1] != null ? (Integer) row[1] : 0;
+            if (!check(idSeance, stored, assigned.getOrDefault(idSeance, List.of()),
+                    voeux.getOrDefault(idSeance, List.of())).isEmpty()) {
+                suspects.add(idSeance);
+            }
+        }
+        return suspects;
+    }
+
+    /**
+     * Check one seance again with its row locked, and repair it if asked.
+     */
+    private List<Drift> confirm(Long idSeance, boolean repairPass) {
+        return transactionTemplate.execute(tx -> {
+            Seance seance = seanceRepo.findByIdForUpdate(idSeance).orElse(null);
+            if (seance == null) {
+                return List.<Drift>of();
+            }
+            List<Drift> drifts = check(idSeance, seance.getNbSurveillantsInscrits(),
+                    affectationRepo.findEnseignantIdsBySeanceId(idSeance),
+                    voeuRepo.findStatusRowsBySeanceIdBetween(idSeance, idSeance));
+            if (!repairPass) {
+                return drifts;
+            }
+            for (Drift drift : drifts) {
+                switch (drift.kind()) {
+                    case COUNTER -> {
+                        seance.setNbSurveillantsInscrits(drift.actual());
+                        seanceRepo.save(seance);
+                        events.publishEvent(PlanningDataChangedEvent.seance(idSeance));
+                    }
+                    case APPROVED_WITHOUT_AFFECTATION -> {
+                        voeuRepo.deleteById(drift.idVoeu());
+                        events.publishEvent(VoeuChangedEvent.of(VoeuChangedEvent.Type.CANCELLED,
+                                drift.idEnseignant(), idSeance));
+                    }
+                    case AFFECTATION_NOT_APPROVED -> {
+                        voeuRepo.updateStatus(drift.idVoeu(), Voeu.VoeuStatus.APPROVED);
+                        events.publishEvent(VoeuChangedEvent.of(VoeuChangedEvent.Type.APPROVED,
+                                drift.idEnseignant(), idSeance));
+                    }
+                }
+            }
+            return drifts;
+        });
+    }
+
+    /**
+     * The consistency rules for one seance.
+     * @param stored The stored nbSurveillantsInscrits
+     * @param assigned Teacher id of each affectation row of the seance
+     * @param voeux [idVoeu, idEnseignant, idSeance, status] rows of the seance's wishes
+     */
+    static List<Drift> check(long idSeance, int stored, List<Long> assigned, List<Object[]> voeux) {
+        List<Drift> drifts = new ArrayList<>();
+        if (stored != assigned.size()) {
+            drifts.add(new Drift(Kind.COUNTER, idSeance, null, null, stored, assigned.size()));
+        }
+        if (voeux.isEmpty()) {
+            return drifts;
+        }
+        Set<Long> teachers = new HashSet<>(assigned);
+        for (Object[] v : voeux) {
+            Long idVoeu = (Long) v[0];
+            Long idEnseignant = (Long) v[1];
+            boolean approved = v[3] == Voeu.VoeuStatus.APPROVED;
+            boolean isAssigned = teachers.contains(idEnseignant);
+            if (approved && !isAssigned) {
+                drifts.add(new Drift(Kind.APPROVED_WITHOUT_AFFECTATION, idSeance, idEnseignant, idVoeu, 0, 0));
+            } else if (!approved && isAssigned) {
+                drifts.add(new Drift(Kind.AFFECTATION_NOT_APPROVED, idSeance, idEnseignant, idVoeu, 0, 0));
+            }
+        }
+        return drifts;
+    }
+
+    private void record(List<Drift> drifts, boolean repaired) {
+        synchronized (recentDrifts) {
+            for (Drift drift : drifts) {
+                Map<String, Object> m = drift.toMap();
+                m.put("repaired", repaired);
+                m.put("detectedAt", LocalDateTime.now());
+                recentDrifts.addFirst(m);
+                if (recentDrifts.size() > RECENT_DRIFTS) {
+                    recentDrifts.removeLast();
+                }
+            }
+        }
+    }
+
+    // =========================
+    // STATUS
+    // =========================
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("repair", repair);
+        status.put("running", passRunning);
+        status.put("cursor", cursor);
+        status.put("passes", passes.get());
+        status.put("driftsFound", driftsFound.get());
+        status.put("driftsRepaired", driftsRepaired.get());
+        status.put("lastPass", lastPass);
+        synchronized (recentDrifts) {
+            status.put("recentDrifts", new ArrayList<>(recentDrifts));
+        }
+        return status;
+    }
+}
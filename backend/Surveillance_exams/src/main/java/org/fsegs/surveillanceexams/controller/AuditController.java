@@ -0,0 +1,90 @@
+package org.fsegs.surveillanceexams.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.fsegs.surveillanceexams.audit.AuditLog;
+import org.fsegs.surveillanceexams.audit.AuditService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/audit")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "http://localhost:3000")
+public class AuditController {
+
+    private final AuditLog auditLog;
+    private final AuditService auditService;
+
+    @GetMapping("/status")
+    public Map<String, Object> getStatus() throws IOException {
+        return auditLog.getStatus();
+    }
+
+    /**
+     * Assignments and seance fill counters as they were at a given time,
+     * rebuilt by replaying the audit log.
+     *
+     * @param asOf Local date-time (e.g. 2025-06-02T10:30:00); now if omitted
+     */
+    @GetMapping("/state")
+    public Map<String, Object> getStateAsOf(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf)
+            throws IOException {
+        return auditService.stateAsOf(toInstant(asOf));
+    }
+
+    /**
+     * Who took or left a seat, and when.
+     */
+    @GetMapping("/events")
+    public List<Map<String, Object>> getEvents(
+            @RequestParam(required = false) Long idSeance,
+            @RequestParam(required = false) Long idEnseignant,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "200") int limit) throws IOException {
+        return auditService.history(idSeance, idEnseignant, toInstant(from), toInstant(to),
+                Math.max(1, Math.min(limit, 10_000)));
+    }
+
+    /**
+     * Compare nbSurveillantsInscrits with a full replay of the log.
+     *
+     * @param apply When true, reset the drifted counters to their number of affectation rows
+     * @return The report, or 409 when the log cannot be trusted (not flushed, records lost, cluster mode)
+     */
+    @PostMapping("/rebuild-counters")
+    public ResponseEntity<Map<String, Object>> rebuildCounters(
+            @RequestParam(defaultValue = "false") boolean apply) throws IOException {
+        Map<String, Object> report;
+        Map<String, Object> response = new HashMap<>();
+        try {
+            report = auditService.rebuildCounters(apply);
+        } catch (IllegalStateException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+
+        response.put("success", true);
+        response.put("message", report.get("countersDrifted") + " seance counter(s) differ from the audit log"
+                + (Boolean.TRUE.equals(report.get("applied")) ? ", " + report.get("countersRebuilt") + " corrected" : ""));
+        response.put("data", report);
+        return ResponseEntity.ok(response);
+    }
+
+    private static Instant toInstant(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.atZone(ZoneId.systemDefault()).toInstant() : null;
+    }
+}
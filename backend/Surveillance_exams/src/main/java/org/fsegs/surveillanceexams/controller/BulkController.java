@@ -0,0 +1,48 @@
+package org.fsegs.surveillanceexams.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.fsegs.surveillanceexams.bulk.BulkExportService;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+/**
+ * Flat, streamed versions of the list endpoints for large exports
+ * (one JSON object per row, ids instead of nested entities).
+ * Responses are gzip or deflate compressed when the client accepts it.
+ */
+@RestController
+@RequestMapping("/api/bulk")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "http://localhost:3000")
+public class BulkController {
+
+    private final BulkExportService bulkExportService;
+
+    @GetMapping("/seances")
+    public void getSeances(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        stream(BulkExportService.Dataset.SEANCES, request, response);
+    }
+
+    @GetMapping("/affectations")
+    public void getAffectations(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        stream(BulkExportService.Dataset.AFFECTATIONS, request, response);
+    }
+
+    @GetMapping("/voeux")
+    public void getVoeux(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        stream(BulkExportService.Dataset.VOEUX, request, response);
+    }
+
+    @GetMapping("/enseignants")
+    public void getEnseignants(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        stream(BulkExportService.Dataset.ENSEIGNANTS, request, response);
+    }
+
+    private void stream(BulkExportService.Dataset dataset, HttpServletRequest request,
+                        HttpServletResponse response) throws IOException {
+        JsonStreams.stream(request, response, (encoding, out) -> bulkExportService.write(dataset, encoding, out));
+    }
+}
@@ -0,0 +1,41 @@
+package org.fsegs.surveillanceexams.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.fsegs.surveillanceexams.service.CalendarService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "http://localhost:3000")
+public class CalendarController {
+
+    private final CalendarService calendarService;
+
+    /**
+     * Exam calendar of the active campaign grouped by day and start time,
+     * with epreuves, assigned teachers and fill counts per seance.
+     * Optionally restricted to one teacher's seances and/or a date range.
+     * Answers 304 when the client's ETag is still current.
+     */
+    @GetMapping("/calendar")
+    public ResponseEntity<Map<String, Object>> getCalendar(
+            @RequestParam(required = false) Long idEnseignant,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            WebRequest request) {
+        CalendarService.Grid grid = calendarService.getCalendar();
+        if (request.checkNotModified(grid.etag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(grid.etag())
+                .body(CalendarService.filter(grid, idEnseignant, from, to));
+    }
+}
@@ -0,0 +1,116 @@
+package org.fsegs.surveillanceexams.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.fsegs.surveillanceexams.model.Campagne;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+@RestController
+@RequestMapping("/api/campagnes")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "http://localhost:3000")
+public class CampagneController {
+
+    private final CampagneService campagneService;
+
+    @GetMapping
+    public List<Map<String, Object>> getAllCampagnes() {
+        return campagneService.listCampagnes();
+    }
+
+    @GetMapping("/active")
+    public Map<String, Object> getActiveCampagne() {
+        return CampagneService.toMap(campagneService.getActive());
+    }
+
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> createCampagne(
+            @RequestParam String nom,
+            @RequestParam(required = false) Campagne.CampagneType type,
+            @RequestParam(required = false) String anneeUniversitaire,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateDebut,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFin) {
+        return respond(() -> {
+            Campagne c = campagneService.createCampagne(nom, type, anneeUniversitaire, dateDebut, dateFin);
+            return result("Campaign '" + c.getNom() + "' created", CampagneService.toMap(c));
+        });
+    }
+
+    /**
+     * Make a campaign the scope of seances, wishes, assignments, statistics
+     * and planning endpoints.
+     */
+    @PostMapping("/{id}/activate")
+    public ResponseEntity<Map<String, Object>> activate(@PathVariable Long id) {
+        return respond(() -> {
+            Campagne c = campagneService.activate(id);
+            return result("Campaign '" + c.getNom() + "' is now active", CampagneService.toMap(c));
+        });
+    }
+
+    @PostMapping("/{id}/close")
+    public ResponseEntity<Map<String, Object>> close(@PathVariable Long id) {
+        return respond(() -> {
+            Campagne c = campagneService.close(id);
+            return result("Campaign '" + c.getNom() + "' closed", CampagneService.toMap(c));
+        });
+    }
+
+    /**
+     * Move the seances dated within [from, to] into the campaign
+     * (e.g. after importing the seances of a new session).
+     */
+    @PostMapping("/{id}/seances")
+    public ResponseEntity<Map<String, Object>> attachSeances(
+            @PathVariable Long id,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return respond(() -> {
+            int moved = campagneService.attachSeances(id, from, to);
+            return result(moved + " seance(s) attached to the campaign", Map.of("seances", moved));
+        });
+    }
+
+    /**
+     * Export a closed campaign to a compressed file and remove its rows from the database.
+     */
+    @PostMapping("/{id}/archive")
+    public ResponseEntity<Map<String, Object>> archive(@PathVariable Long id) {
+        return respond(() -> result("Campaign archived", campagneService.archive(id)));
+    }
+
+    @PostMapping("/{id}/restore")
+    public ResponseEntity<Map<String, Object>> restore(@PathVariable Long id) {
+        return respond(() -> result("Campaign restored", campagneService.restore(id)));
+    }
+
+    private static Map<String, Object> result(String message, Object data) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", message);
+        response.put("data", data);
+        return response;
+    }
+
+    private static ResponseEntity<Map<String, Object>> respond(Callable<Map<String, Object>> action) {
+        try {
+            return ResponseEntity.ok(action.call());
+        } catch (IOException e) {
+            throw new RuntimeException("Campaign archive I/O error: " + e.getMessage(), e);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+}
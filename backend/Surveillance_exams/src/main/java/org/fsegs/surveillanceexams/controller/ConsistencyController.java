@@ -0,0 +1,47 @@
+package org.fsegs.surveillanceexams.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.fsegs.surveillanceexams.consistency.ConsistencyReconciler;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/system/consistency")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "http://localhost:3000")
+public class ConsistencyController {
+
+    private final ConsistencyReconciler reconciler;
+
+    // =========================
+    // RECONCILER
+    // =========================
+    /**
+     * Reconciler state: last pass, totals and the most recent drifts found.
+     */
+    @GetMapping
+    public Map<String, Object> getStatus() {
+        return reconciler.getStatus();
+    }
+
+    /**
+     * Start a pass now in the background (same throttling as the periodic passes).
+     * @param repair Repair the drifts found, or only report them; defaults to surveillance.reconcile.repair
+     */
+    @PostMapping("/run")
+    public ResponseEntity<Map<String, Object>> runPass(@RequestParam(required = false) Boolean repair) {
+        Map<String, Object> response = new HashMap<>();
+        if (!reconciler.requestPass(repair)) {
+            response.put("success", false);
+            response.put("message", "Reconciler disabled, or a pass is already running");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+        response.put("success", true);
+        response.put("message", "Reconciliation pass started");
+        return ResponseEntity.ok(response);
+    }
+}
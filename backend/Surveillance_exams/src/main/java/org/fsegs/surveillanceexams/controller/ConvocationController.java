@@ -0,0 +1,69 @@
+package org.fsegs.surveillanceexams.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.fsegs.surveillanceexams.convocation.ConvocationService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/convocations")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "http://localhost:3000")
+public class ConvocationController {
+
+    private final ConvocationService convocationService;
+    private final ObjectMapper objectMapper;
+
+    // =========================
+    // CONVOCATIONS
+    // =========================
+    /**
+     * Zip of the active campaign's convocations, one HTML page and one PDF
+     * per teacher with assignments, streamed as the documents are rendered.
+     *
+     * @return The archive, or 409 while another archive is being generated
+     */
+    @GetMapping("/archive")
+    public void getArchive(HttpServletResponse response) throws IOException {
+        ConvocationService.Summary summary;
+        try {
+            summary = convocationService.write(campagneId -> {
+                response.setContentType("application/zip");
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"convocations-" + campagneId + ".zip\"");
+                return response.getOutputStream();
+            });
+        } catch (RuntimeException e) {
+            if (!response.isCommitted()) {
+                response.reset();
+            }
+            throw e;
+        }
+        if (summary == null) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("message", "A convocation archive is already being generated");
+            result.put("data", null);
+            response.setStatus(HttpStatus.CONFLICT.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            objectMapper.writeValue(response.getOutputStream(), result);
+        }
+    }
+
+    /**
+     * Generator settings, whether an archive is being generated and the last one's counts.
+     */
+    @GetMapping("/status")
+    public Map<String, Object> getStatus() {
+        return convocationService.getStatus();
+    }
+}
@@ -0,0 +1,65 @@
+package org.fsegs.surveillanceexams.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.fsegs.surveillanceexams.diagnostics.OperationTracer;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/system/slow-operations")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "http://localhost:3000")
+public class DiagnosticsController {
+
+    private final OperationTracer tracer;
+
+    // =========================
+    // SLOW OPERATIONS
+    // =========================
+    /**
+     * The slowest service operations since startup, slowest first, each with
+     * its steps (locks, rule checks, saves, commit), durations and SQL counts.
+     */
+    @GetMapping
+    public Map<String, Object> getSlowOperations() {
+        Map<String, Object> result = new LinkedHashMap<>(tracer.getStatus());
+        result.put("operations", tracer.getSlowest());
+        return result;
+    }
+
+    @DeleteMapping
+    public ResponseEntity<Map<String, Object>> resetSlowOperations() {
+        tracer.reset();
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", "Slow operations cleared");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Write the continuous JFR recording of service operations to a .jfr
+     * file, to open in JDK Mission Control or with {@code jfr print}.
+     */
+    @PostMapping("/dump")
+    public ResponseEntity<Map<String, Object>> dumpRecording() throws IOException {
+        Path file = tracer.dump();
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("file", file.toAbsolutePath().toString());
+        data.put("sizeBytes", Files.size(file));
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", "Flight recording written to " + file.toAbsolutePath());
+        response.put("data", data);
+        return ResponseEntity.ok(response);
+    }
+}
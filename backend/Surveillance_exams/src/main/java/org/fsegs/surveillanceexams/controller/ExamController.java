@@ -1,15 +1,29 @@
 package org.fsegs.surveillanceexams.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.fsegs.surveillanceexams.bulk.FieldProjectionService;
 import org.fsegs.surveillanceexams.dto.EnseignantDTO;
 import org.fsegs.surveillanceexams.model.*;
+import org.fsegs.surveillanceexams.service.IdempotencyStore;
 import org.fsegs.surveillanceexams.service.SurveillanceService;
+import org.fsegs.surveillanceexams.service.VoeuApprovalService;
+import org.fsegs.surveillanceexams.service.VoeuGroupCommitService;
+import org.fsegs.surveillanceexams.service.VoeuResult;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api")
@@ -18,6 +32,11 @@ import java.util.HashMap;
 public class ExamController {
 
     private final SurveillanceService service;
+    private final IdempotencyStore idempotencyStore;
+    private final VoeuApprovalService voeuApprovalService;
+    private final VoeuGroupCommitService voeuGroupCommitService;
+    private final ObjectMapper objectMapper;
+    private final FieldProjectionService fieldProjectionService;
 
     // =========================
     // SEANCES
@@ -27,6 +46,21 @@ public class ExamController {
         return service.getAllSeances();
     }
 
+    /**
+     * NEW: Sparse fieldset, e.g. ?fields=date,heureDebut,heureFin,nbSurveillantsInscrits
+     * 
+     * Only the requested fields are read (narrowed SQL, epreuves only when
+     * listed) and streamed; "id" is always included.
+     * 
+     * @return The active campaign's seances with the selected fields, or 400 on an unknown field
+     */
+    @GetMapping(value = "/seances", params = "fields")
+    public void getSeanceFields(@RequestParam String fields,
+                                HttpServletRequest request,
+                                HttpServletResponse response) throws IOException {
+        streamFields(FieldProjectionService.Resource.SEANCES, fields, request, response);
+    }
+
     @PostMapping("/seances/{id}/calculate-needs")
     public ResponseEntity<String> calculateNeeds(@PathVariable Long id) {
         service.updateSeanceNeeds(id);
@@ -75,6 +109,40 @@ public class ExamController {
         return service.getAllEnseignants();
     }
 
+    /**
+     * NEW: Sparse fieldset, e.g. ?fields=nomComplet,chargeSurveillance,nbAffectations
+     * 
+     * nbAffectations (assignments in the active campaign) and matieres are
+     * only computed when listed; "id" is always included.
+     * 
+     * @return All teachers with the selected fields, or 400 on an unknown field
+     */
+    @GetMapping(value = "/enseignants", params = "fields")
+    public void getEnseignantFields(@RequestParam String fields,
+                                    HttpServletRequest request,
+                                    HttpServletResponse response) throws IOException {
+        streamFields(FieldProjectionService.Resource.ENSEIGNANTS, fields, request, response);
+    }
+
+    private void streamFields(FieldProjectionService.Resource resource, String fields,
+                              HttpServletRequest request, HttpServletResponse response) throws IOException {
+        FieldProjectionService.Plan plan;
+        try {
+            plan = fieldProjectionService.plan(resource, fields);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            result.put("data", null);
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            objectMapper.writeValue(response.getOutputStream(), result);
+            return;
+        }
+        JsonStreams.stream(request, response, (encoding, out) -> fieldProjectionService.write(plan, encoding, out));
+    }
+
     @PostMapping("/enseignants/{id}/calculate-load")
     public ResponseEntity<String> calculateLoad(@PathVariable Long id) {
         service.updateEnseignantLoad(id);
@@ -180,24 +248,33 @@ public class ExamController {
     // VOEUX (WISHES)
     // =========================
     @PostMapping("/voeux")
-    public ResponseEntity<Map<String, Object>> submitVoeu(
+    public ResponseEntity<?> submitVoeu(
             @RequestParam Long idEnseignant, 
-            @RequestParam Long idSeance) {
+            @RequestParam Long idSeance,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return idempotent(idempotencyKey, "POST /voeux",
+                "idEnseignant=" + idEnseignant + "&idSeance=" + idSeance,
+                () -> doSubmitVoeu(idEnseignant, idSeance));
+    }
+
+    private ResponseEntity<Map<String, Object>> doSubmitVoeu(Long idEnseignant, Long idSeance) {
         try {
-            String result = service.soumettreVoeu(idEnseignant, idSeance);
-            
+            VoeuResult result = voeuGroupCommitService.soumettreVoeu(idEnseignant, idSeance);
+
             Map<String, Object> response = new HashMap<>();
-            boolean success = result.contains("successfully");
-            
-            response.put("success", success);
-            response.put("message", result);
-            
-            if (success) {
-                return ResponseEntity.ok(response);
-            } else {
-                return ResponseEntity.badRequest().body(response);
-            }
-        } catch (Exception e) {
+            response.put("success", result.accepted());
+            response.put("message", result.message());
+            return switch (result.outcome()) {
+                case ASSIGNED, PENDING -> ResponseEntity.ok(response);
+                case WAITLISTED -> {
+                    // Queued for the next freed seat: accepted, not refused
+                    response.put("data", Map.of("waitlistPosition", result.waitlistPosition()));
+                    yield ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+                }
+                case REFUSED -> ResponseEntity.badRequest().body(response);
+            };
+        } catch (IllegalArgumentException e) {
+            // Unknown seance or teacher; any other error goes to the exception handler and frees the key
             Map<String, Object> response = new HashMap<>();
             response.put("success", false);
             response.put("message", e.getMessage());
@@ -205,15 +282,73 @@ public class ExamController {
         }
     }
 
+    /**
+     * NEW: Waitlist of a saturated session, in promotion order.
+     * 
+     * @param id The session ID
+     * @return Waiting teachers with their position
+     */
+    @GetMapping("/seances/{id}/waitlist")
+    public List<Map<String, Object>> getWaitlist(@PathVariable Long id) {
+        List<ListeAttente> entries = service.getWaitlist(id);
+        List<Map<String, Object>> result = new ArrayList<>();
+        int position = 1;
+        for (ListeAttente entry : entries) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("position", position++);
+            item.put("idEnseignant", entry.getEnseignant().getId());
+            item.put("nomComplet", entry.getEnseignant().getNomComplet());
+            item.put("dateInscription", entry.getDateInscription());
+            result.add(item);
+        }
+        return result;
+    }
+
     @GetMapping("/voeux")
     public List<Voeu> getAllVoeux() {
         return service.getAllVoeux();
     }
 
+    /**
+     * Group commit counters: batches written, average and largest batch,
+     * wishes sent back to the one-transaction path.
+     */
+    @GetMapping("/voeux/group-commit")
+    public Map<String, Object> getVoeuGroupCommitStatus() {
+        return voeuGroupCommitService.getStatus();
+    }
+
+    /**
+     * NEW: Process all PENDING wishes in one batch (deferred approval mode).
+     * 
+     * Wishes are approved or rejected by priority using the same rules as
+     * manual assignment; approved wishes get their affectation created.
+     * 
+     * @return Counts of approved and rejected wishes, with rejection reasons
+     */
+    @PostMapping("/voeux/approval-run")
+    public ResponseEntity<Map<String, Object>> runVoeuApproval() {
+        Map<String, Object> report = voeuApprovalService.runApproval();
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", "Approved " + report.get("approved") + " and rejected "
+                + report.get("rejected") + " out of " + report.get("processed") + " pending wishes");
+        response.put("data", report);
+        return ResponseEntity.ok(response);
+    }
+
     @DeleteMapping("/voeux")
-    public ResponseEntity<Map<String, Object>> cancelVoeu(
+    public ResponseEntity<?> cancelVoeu(
             @RequestParam Long idEnseignant,
-            @RequestParam Long idSeance) {
+            @RequestParam Long idSeance,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return idempotent(idempotencyKey, "DELETE /voeux",
+                "idEnseignant=" + idEnseignant + "&idSeance=" + idSeance,
+                () -> doCancelVoeu(idEnseignant, idSeance));
+    }
+
+    private ResponseEntity<Map<String, Object>> doCancelVoeu(Long idEnseignant, Long idSeance) {
         try {
             String result = service.cancelVoeu(idEnseignant, idSeance);
             
@@ -228,7 +363,8 @@ public class ExamController {
             } else {
                 return ResponseEntity.badRequest().body(response);
             }
-        } catch (Exception e) {
+        } catch (IllegalArgumentException e) {
+            // Unknown seance or teacher; any other error goes to the exception handler and frees the key
             Map<String, Object> response = new HashMap<>();
             response.put("success", false);
             response.put("message", e.getMessage());
@@ -240,14 +376,18 @@ public class ExamController {
     // AFFECTATION (ASSIGNMENT)
     // =========================
     @PostMapping("/affectation")
-    public ResponseEntity<String> assignTeacher(
+    public ResponseEntity<?> assignTeacher(
             @RequestParam Long idEnseignant, 
-            @RequestParam Long idSeance) {
-        String result = service.affecterSurveillant(idSeance, idEnseignant);
-        if (result.equals("Assignment successful")) {
-            return ResponseEntity.ok(result);
-        }
-        return ResponseEntity.badRequest().body(result);
+            @RequestParam Long idSeance,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return idempotent(idempotencyKey, "POST /affectation",
+                "idEnseignant=" + idEnseignant + "&idSeance=" + idSeance, () -> {
+            String result = service.affecterSurveillant(idSeance, idEnseignant);
+            if (result.equals("Assignment successful")) {
+                return ResponseEntity.ok(result);
+            }
+            return ResponseEntity.badRequest().body(result);
+        });
     }
 
     @GetMapping("/affectations")
@@ -255,6 +395,107 @@ public class ExamController {
         return service.getAllAffectations();
     }
 
+    /**
+     * NEW: Atomically exchange the sessions of two teachers.
+     * 
+     * Teacher A moves to session B and teacher B to session A in a single
+     * transaction, after checking both sides against the subject and time rules.
+     * 
+     * @return "Swap successful" or the reason the swap was refused
+     */
+    @PostMapping("/affectations/swap")
+    public ResponseEntity<?> swapAffectations(
+            @RequestParam Long idEnseignantA,
+            @RequestParam Long idSeanceA,
+            @RequestParam Long idEnseignantB,
+            @RequestParam Long idSeanceB,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return idempotent(idempotencyKey, "POST /affectations/swap",
+                "idEnseignantA=" + idEnseignantA + "&idSeanceA=" + idSeanceA
+                        + "&idEnseignantB=" + idEnseignantB + "&idSeanceB=" + idSeanceB, () -> {
+            String result = service.swapAffectations(idEnseignantA, idSeanceA, idEnseignantB, idSeanceB);
+            if (result.equals("Swap successful")) {
+                return ResponseEntity.ok(result);
+            }
+            return ResponseEntity.badRequest().body(result);
+        });
+    }
+
+    // =========================
+    // IDEMPOTENCY
+    // =========================
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    /**
+     * Run a write operation at most once per Idempotency-Key.
+     *
+     * The first request with a key runs the operation and its response is stored.
+     * Retries with the same key and the same parameters get the stored response
+     * back without touching the database. Requests without a key run normally.
+     * Only responses count as outcomes: an operation that throws (database
+     * busy, lock timeout...) releases the key, so a retry runs it again.
+     */
+    private ResponseEntity<?> idempotent(String key, String operation, String parameters,
+                                         Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+
+        String scopedKey = operation + " " + key;
+        String fingerprint = operation + "?" + parameters;
+
+        IdempotencyStore.Claim claim = idempotencyStore.claim(scopedKey, fingerprint);
+        switch (claim.state()) {
+            case REPLAY:
+                IdempotencyStore.StoredResponse stored = claim.response();
+                return ResponseEntity.status(stored.status())
+                        .contentType(MediaType.parseMediaType(stored.contentType()))
+                        .header("Idempotent-Replayed", "true")
+                        .body(stored.body());
+            case IN_PROGRESS:
+                return idempotencyError(HttpStatus.CONFLICT,
+                        "A request with this Idempotency-Key is still being processed.");
+            case MISMATCH:
+                return idempotencyError(HttpStatus.UNPROCESSABLE_ENTITY,
+                        "This Idempotency-Key was already used for a different request.");
+            default:
+                break;
+        }
+
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            idempotencyStore.release(scopedKey);
+            throw e;
+        }
+
+        try {
+            Object body = response.getBody();
+            String contentType;
+            String serialized;
+            if (body instanceof String text) {
+                contentType = MediaType.TEXT_PLAIN_VALUE;
+                serialized = text;
+            } else {
+                contentType = MediaType.APPLICATION_JSON_VALUE;
+                serialized = objectMapper.writeValueAsString(body);
+            }
+            idempotencyStore.complete(scopedKey,
+                    new IdempotencyStore.StoredResponse(response.getStatusCode().value(), contentType, serialized));
+        } catch (JsonProcessingException e) {
+            idempotencyStore.release(scopedKey);
+        }
+        return response;
+    }
+
+    private ResponseEntity<Map<String, Object>> idempotencyError(HttpStatus status, String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", message);
+        return ResponseEntity.status(status).body(response);
+    }
+
     // =========================
     // LOGIN
     // =========================
@@ -0,0 +1,47 @@
+package org.fsegs.surveillanceexams.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.fsegs.surveillanceexams.bulk.ContentEncoding;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Shared response handling for the endpoints that stream JSON themselves
+ * instead of returning a body for the message converters.
+ */
+final class JsonStreams {
+
+    interface Body {
+        void writeTo(ContentEncoding encoding, OutputStream out) throws IOException;
+    }
+
+    private JsonStreams() {
+    }
+
+    /**
+     * Negotiate the content coding, set the headers and stream the body.
+     * A failure before anything was sent resets the response so the
+     * exception handler can write a plain JSON error instead.
+     */
+    static void stream(HttpServletRequest request, HttpServletResponse response, Body body) throws IOException {
+        ContentEncoding encoding = ContentEncoding.negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (encoding.headerValue() != null) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding.headerValue());
+        }
+        try {
+            body.writeTo(encoding, response.getOutputStream());
+        } catch (RuntimeException e) {
+            if (!response.isCommitted()) {
+                response.reset();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package org.fsegs.surveillanceexams.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.fsegs.surveillanceexams.cluster.ChangeLogPoller;
+import org.fsegs.surveillanceexams.dto.SimulationRequest;
+import org.fsegs.surveillanceexams.planning.PlanningFeasibilityService;
+import org.fsegs.surveillanceexams.planning.PlanningImportService;
+import org.fsegs.surveillanceexams.planning.PlanningRecommendationService;
+import org.fsegs.surveillanceexams.planning.PlanningRepairService;
+import org.fsegs.surveillanceexams.planning.PlanningSimulator;
+import org.fsegs.surveillanceexams.planning.PlanningSnapshotService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "http://localhost:3000")
+public class PlanningController {
+
+    private final PlanningSnapshotService snapshotService;
+    private final PlanningSimulator simulator;
+    private final PlanningRepairService repairService;
+    private final ChangeLogPoller changeLogPoller;
+    private final PlanningFeasibilityService feasibilityService;
+    private final PlanningImportService importService;
+    private final PlanningRecommendationService recommendationService;
+
+    // =========================
+    // SNAPSHOT
+    // =========================
+    @GetMapping("/system/snapshot")
+    public Map<String, Object> getSnapshotStatus() {
+        return snapshotService.getStatus();
+    }
+
+    /**
+     * Capture the planning state now into the binary snapshot file.
+     */
+    @PostMapping("/system/snapshot")
+    public ResponseEntity<Map<String, Object>> takeSnapshot() throws IOException {
+        Map<String, Object> status = snapshotService.writeSnapshot();
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", "Planning snapshot written (" + status.get("sizeBytes") + " bytes)");
+        response.put("data", status);
+        return ResponseEntity.ok(response);
+    }
+
+    // =========================
+    // CLUSTER
+    // =========================
+    /**
+     * Change log replication state of this instance: last change id read,
+     * changes replayed from other instances, pending gaps and lag.
+     */
+    @GetMapping("/system/cluster")
+    public Map<String, Object> getClusterStatus() {
+        return changeLogPoller.getStatus();
+    }
+
+    // =========================
+    // SIMULATION
+    // =========================
+    /**
+     * What-if: apply hypothetical adds and removes to an in-memory copy of
+     * the planning and report saturated seances, teachers over quota and
+     * conflicts. Nothing is written to the database.
+     *
+     * Body: {"operations": [{"action": "add", "idEnseignant": 1, "idSeance": 2}, ...], "strict": false}
+     */
+    @PostMapping("/planning/simulate")
+    public ResponseEntity<Map<String, Object>> simulate(@RequestBody SimulationRequest request) {
+        Map<String, Object> response = new HashMap<>();
+        List<PlanningSimulator.Operation> operations;
+        try {
+            operations = toOperations(request);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        Map<String, Object> report = simulator.simulate(operations, request.isStrict());
+        response.put("success", true);
+        response.put("message", "Simulated " + operations.size() + " operation(s): "
+                + report.get("operationsWithViolations") + " with violations");
+        response.put("data", report);
+        return ResponseEntity.ok(response);
+    }
+
+    private static List<PlanningSimulator.Operation> toOperations(SimulationRequest request) {
+        List<PlanningSimulator.Operation> operations = new ArrayList<>();
+        if (request.getOperations() != null) {
+            for (SimulationRequest.OperationDTO op : request.getOperations()) {
+                if (op.getIdEnseignant() == null || op.getIdSeance() == null) {
+                    throw new IllegalArgumentException("idEnseignant and idSeance are required");
+                }
+                PlanningSimulator.Action action = op.getAction() == null ? null
+                        : switch (op.getAction().trim().toLowerCase()) {
+                            case "add" -> PlanningSimulator.Action.ADD;
+                            case "remove" -> PlanningSimulator.Action.REMOVE;
+                            default -> null;
+                        };
+                if (action == null) {
+                    throw new IllegalArgumentException("Unknown action: " + op.getAction() + " (expected add or remove)");
+                }
+                operations.add(new PlanningSimulator.Operation(action, op.getIdEnseignant(), op.getIdSeance()));
+            }
+        }
+        return operations;
+    }
+
+    // =========================
+    // OFFLINE EDITING
+    // =========================
+    /**
+     * The current planning in the binary snapshot format, to open in the
+     * desktop planning console.
+     */
+    @GetMapping("/planning/export")
+    public ResponseEntity<byte[]> exportPlanning() throws IOException {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"planning.snap\"")
+                .body(snapshotService.export());
+    }
+
+    /**
+     * Apply a change set written by the planning console. Each operation is
+     * validated and applied on its own; refused ones are reported.
+     *
+     * Body: same operations as /planning/simulate ("strict" is ignored).
+     */
+    @PostMapping("/planning/changes")
+    public ResponseEntity<Map<String, Object>> importChanges(@RequestBody SimulationRequest request) {
+        Map<String, Object> response = new HashMap<>();
+        List<PlanningSimulator.Operation> operations;
+        try {
+            operations = toOperations(request);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        Map<String, Object> report = importService.importChanges(operations);
+        response.put("success", true);
+        response.put("message", "Applied " + report.get("applied") + " of " + operations.size()
+                + " change(s), " + report.get("refused") + " refused");
+        response.put("data", report);
+        return ResponseEntity.ok(response);
+    }
+
+    // =========================
+    // FEASIBILITY
+    // =========================
+    /**
+     * Can the remaining needs of the active campaign be covered? Maximum
+     * coverage per day and per time slot (free teachers without subject
+     * conflict, within their quotas), infeasible days and bottleneck slots.
+     */
+    @GetMapping("/planning/feasibility")
+    public ResponseEntity<Map<String, Object>> getFeasibility() {
+        Map<String, Object> report = feasibilityService.analyze();
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", (boolean) report.get("feasible")
+                ? "All " + report.get("totalNeed") + " seat(s) can be covered"
+                : report.get("maxCoverage") + " of " + report.get("totalNeed") + " seat(s) can be covered at most");
+        response.put("data", report);
+        return ResponseEntity.ok(response);
+    }
+
+    // =========================
+    // RECOMMENDATIONS
+    // =========================
+    /**
+     * The seances the teacher can still take, best first: most understaffed,
+     * on or next to the days they already supervise, weighted by their
+     * remaining quota. Each one passes the wish rules at the time of the call.
+     */
+    @GetMapping("/enseignants/{id}/recommendations")
+    public ResponseEntity<Map<String, Object>> getRecommendations(@PathVariable Long id,
+                                                                  @RequestParam(defaultValue = "10") int limit) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            Map<String, Object> report = recommendationService.recommend(id, limit);
+            response.put("success", true);
+            response.put("message", ((List<?>) report.get("recommendations")).size() + " of "
+                    + report.get("eligibleSeances") + " eligible seance(s)");
+            response.put("data", report);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    // =========================
+    // REPAIR
+    // =========================
+    /**
+     * Seances changed by cancellations or need updates since the last repair.
+     */
+    @GetMapping("/planning/repair/changes")
+    public Set<Long> getRepairChanges() {
+        return repairService.getChangedSeances();
+    }
+
+    /**
+     * Propose (and optionally apply) the assignments filling the holes left
+     * by cancellations and timetable changes. Existing affectations are kept.
+     *
+     * @param seances Seance ids to repair; if omitted, the tracked changed seances
+     * @param scope   "all" to consider every under-staffed seance
+     * @param apply   Perform the proposed assignments via affecterSurveillant
+     */
+    @PostMapping("/planning/repair")
+    public ResponseEntity<Map<String, Object>> repair(
+            @RequestParam(required = false) List<Long> seances,
+            @RequestParam(defaultValue = "changed") String scope,
+            @RequestParam(defaultValue = "false") boolean apply) {
+        List<Long> targets = "all".equalsIgnoreCase(scope) ? List.of() : seances;
+        Map<String, Object> report = repairService.repair(targets, apply);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        Object count = apply ? report.get("appliedCount") : ((List<?>) report.get("proposals")).size();
+        response.put("message", count + " assignment(s) " + (apply ? "applied" : "proposed") + ", " + ((List<?>) report.get("unfilled")).size()
+                + " seance(s) cannot be filled");
+        response.put("data", report);
+        return ResponseEntity.ok(response);
+    }
+}
@@ -0,0 +1,60 @@
+package org.fsegs.surveillanceexams.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.fsegs.surveillanceexams.search.SeanceSearchService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/seances/search")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "http://localhost:3000")
+public class SearchController {
+
+    private final SeanceSearchService seanceSearchService;
+
+    /**
+     * Search the active campaign's seances, e.g.
+     * ?from=2025-06-02&to=2025-06-02&saturee=false&filiere=Gestion&sansMatieresDe=12
+     *
+     * Results come in (date, start time) order, {@code limit} per page (max 200);
+     * pass the returned nextCursor to get the next page. The first page also
+     * carries the total and facet counts per filiere, classe and saturation.
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> searchSeances(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime heureMin,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime heureMax,
+            @RequestParam(required = false) Boolean saturee,
+            @RequestParam(required = false) String filiere,
+            @RequestParam(required = false) String classe,
+            @RequestParam(required = false) String matiere,
+            @RequestParam(required = false) Long sansMatieresDe,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        SeanceSearchService.Criteria criteria = new SeanceSearchService.Criteria(from, to, heureMin, heureMax,
+                saturee, blankToNull(filiere), blankToNull(classe), blankToNull(matiere), sansMatieresDe);
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.put("success", true);
+            response.put("data", seanceSearchService.search(criteria, cursor, limit));
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
@@ -0,0 +1,45 @@
+package org.fsegs.surveillanceexams.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.fsegs.surveillanceexams.service.StatisticsService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "http://localhost:3000")
+public class StatisticsController {
+
+    private final StatisticsService statisticsService;
+
+    /**
+     * Fairness and workload statistics: assignments against chargeSurveillance
+     * by grade, under-staffed seances per day and teachers at full quota.
+     */
+    @GetMapping("/statistics")
+    public Map<String, Object> getStatistics() {
+        return statisticsService.getStatistics();
+    }
+
+    /**
+     * Rebuild the statistics from the database.
+     * Reports whether the incrementally maintained aggregates had drifted.
+     */
+    @PostMapping("/statistics/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildStatistics() {
+        boolean drift = statisticsService.rebuild();
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", drift
+                ? "Statistics rebuilt: incremental aggregates had drifted and were corrected"
+                : "Statistics rebuilt: no drift detected");
+        response.put("drift", drift);
+        response.put("data", statisticsService.getStatistics());
+        return ResponseEntity.ok(response);
+    }
+}
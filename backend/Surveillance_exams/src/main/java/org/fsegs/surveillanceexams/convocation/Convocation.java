@@ -0,0 +1,16 @@
+package org.fsegs.surveillanceexams.convocation;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+/**
+ * One teacher's convocation: their assigned seances in date order, each with
+ * the epreuves held in it ("Comptabilité (Gestion L1)").
+ */
+public record Convocation(long idEnseignant, String nom, String grade, List<Slot> seances) {
+
+    public record Slot(long idSeance, LocalDate date, LocalTime heureDebut, LocalTime heureFin,
+                       List<String> epreuves) {
+    }
+}
@@ -0,0 +1,216 @@
+package org.fsegs.surveillanceexams.convocation;
+
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Renders a convocation as an HTML page and as a PDF with the same content:
+ * campaign, teacher, one row per seance (day, hours, epreuves) and the
+ * number of seances. Stateless, so the render workers share it.
+ */
+final class ConvocationRenderer {
+
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("EEEE dd/MM/yyyy", Locale.FRENCH);
+    private static final DateTimeFormatter SHORT_DAY = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final DateTimeFormatter HOUR = DateTimeFormatter.ofPattern("HH:mm");
+
+    private static final String TITLE = "Convocation à la surveillance des examens";
+    private static final String INTRO = "Vous êtes prié(e) d'assurer la surveillance des séances suivantes :";
+
+    // PDF columns (points from the left edge)
+    private static final float COL_DAY = PdfDocument.MARGIN;
+    private static final float COL_HOURS = 230;
+    private static final float COL_EPREUVES = 320;
+    private static final float LINE = 14;
+
+    private ConvocationRenderer() {
+    }
+
+    /**
+     * Entry name in the archive, without extension: zero-padded id (so the
+     * entries sort by teacher) and the name without accents.
+     */
+    static String fileName(Convocation c) {
+        String slug = Normalizer.normalize(c.nom() == null ? "" : c.nom(), Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("[^a-z0-9]+", "-")
+                .replaceAll("^-|-$", "");
+        if (slug.length() > 40) {
+            slug = slug.substring(0, 40).replaceAll("-$", "");
+        }
+        String id = String.format(Locale.ROOT, "%06d", c.idEnseignant());
+        return slug.isEmpty() ? id : id + "-" + slug;
+    }
+
+    // =========================
+    // HTML
+    // =========================
+    static byte[] html(Convocation c, String campagne, LocalDate editedOn) {
+        StringBuilder html = new StringBuilder(1024 + 160 * c.seances().size());
+        html.append("<!DOCTYPE html>\n<html lang=\"fr\">\n<head>\n<meta charset=\"utf-8\">\n<title>")
+                .append(escape(TITLE)).append(" - ").append(escape(c.nom())).append("</title>\n")
+                .append("<style>body{font-family:Helvetica,Arial,sans-serif;margin:2cm}")
+                .append("table{border-collapse:collapse;width:100%}")
+                .append("th,td{text-align:left;padding:4px 8px;border-bottom:1px solid #ccc;vertical-align:top}")
+                .append("</style>\n</head>\n<body>\n");
+        html.append("<h1>").append(escape(TITLE)).append("</h1>\n");
+        if (campagne != null) {
+            html.append("<p>").append(escape(campagne)).append("</p>\n");
+        }
+        html.append("<p><strong>Enseignant :</strong> ").append(escape(c.nom()));
+        if (c.grade() != null) {
+            html.append("<br>\n<strong>Grade :</strong> ").append(escape(c.grade()));
+        }
+        html.append("</p>\n<p>").append(escape(INTRO)).append("</p>\n");
+        html.append("<table>\n<thead><tr><th>Date</th><th>Horaire</th><th>Épreuves</th></tr></thead>\n<tbody>\n");
+        for (Convocation.Slot s : c.seances()) {
+            html.append("<tr><td>").append(escape(day(s))).append("</td><td>").append(escape(hours(s)))
+                    .append("</td><td>");
+            List<String> epreuves = s.epreuves();
+            for (int i = 0; i < epreuves.size(); i++) {
+                html.append(i == 0 ? "" : "<br>").append(escape(epreuves.get(i)));
+            }
+            html.append("</td></tr>\n");
+        }
+        html.append("</tbody>\n</table>\n<p><strong>").append(escape(total(c))).append("</strong></p>\n")
+                .append("<p>").append(escape(edited(editedOn))).append("</p>\n</body>\n</html>\n");
+        return html.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String escape(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder out = null;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            String entity = switch (ch) {
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '&' -> "&amp;";
+                case '"' -> "&quot;";
+                case '\'' -> "&#39;";
+                default -> null;
+            };
+            if (entity != null && out == null) {
+                out = new StringBuilder(text.length() + 16).append(text, 0, i);
+            }
+            if (out != null) {
+                if (entity != null) {
+                    out.append(entity);
+                } else {
+                    out.append(ch);
+                }
+            }
+        }
+        return out == null ? text : out.toString();
+    }
+
+    // =========================
+    // PDF
+    // =========================
+    static byte[] pdf(Convocation c, String campagne, LocalDate editedOn) {
+        PdfDocument pdf = new PdfDocument();
+        pdf.text(COL_DAY, 16, true, TITLE);
+        pdf.moveDown(22);
+        if (campagne != null) {
+            pdf.text(COL_DAY, 11, false, campagne);
+            pdf.moveDown(LINE);
+        }
+        pdf.moveDown(10);
+        pdf.text(COL_DAY, 11, true, "Enseignant : " + nullToEmpty(c.nom()));
+        pdf.moveDown(LINE);
+        if (c.grade() != null) {
+            pdf.text(COL_DAY, 11, false, "Grade : " + c.grade());
+            pdf.moveDown(LINE);
+        }
+        pdf.moveDown(10);
+        pdf.text(COL_DAY, 11, false, INTRO);
+        pdf.moveDown(LINE + 10);
+
+        tableHeader(pdf);
+        for (Convocation.Slot s : c.seances()) {
+            int lines = Math.max(1, s.epreuves().size());
+            if (pdf.y() - lines * LINE < PdfDocument.MARGIN) {
+                pdf.newPage();
+                tableHeader(pdf);
+            }
+            pdf.text(COL_DAY, 10, false, day(s));
+            pdf.text(COL_HOURS, 10, false, hours(s));
+            for (int i = 0; i < s.epreuves().size(); i++) {
+                if (i > 0) {
+                    pdf.moveDown(LINE);
+                }
+                pdf.text(COL_EPREUVES, 10, false,
+                        fit(s.epreuves().get(i), PdfDocument.WIDTH - PdfDocument.MARGIN - COL_EPREUVES, 10));
+            }
+            // Separator just under the row's last line
+            pdf.moveDown(4);
+            pdf.rule(COL_DAY, PdfDocument.WIDTH - PdfDocument.MARGIN, 0.3f);
+            pdf.moveDown(LINE);
+        }
+
+        pdf.ensureSpace(3 * LINE);
+        pdf.moveDown(6);
+        pdf.text(COL_DAY, 11, true, total(c));
+        pdf.moveDown(LINE + 6);
+        pdf.text(COL_DAY, 10, false, edited(editedOn));
+        return pdf.toBytes();
+    }
+
+    private static void tableHeader(PdfDocument pdf) {
+        pdf.text(COL_DAY, 10, true, "Date");
+        pdf.text(COL_HOURS, 10, true, "Horaire");
+        pdf.text(COL_EPREUVES, 10, true, "Épreuves");
+        pdf.moveDown(4);
+        pdf.rule(COL_DAY, PdfDocument.WIDTH - PdfDocument.MARGIN, 0.8f);
+        pdf.moveDown(LINE);
+    }
+
+    /**
+     * Cut the text with "..." to fit the width.
+     */
+    private static String fit(String text, float width, float size) {
+        if (PdfDocument.width(text, size) <= width) {
+            return text;
+        }
+        int end = text.length();
+        while (end > 0 && PdfDocument.width(text.substring(0, end) + "...", size) > width) {
+            end--;
+        }
+        return text.substring(0, end) + "...";
+    }
+
+    // =========================
+    // TEXT
+    // =========================
+    private static String day(Convocation.Slot s) {
+        return s.date() == null ? "Date à fixer" : DAY.format(s.date());
+    }
+
+    private static String hours(Convocation.Slot s) {
+        if (s.heureDebut() == null) {
+            return "";
+        }
+        return s.heureFin() == null ? HOUR.format(s.heureDebut())
+                : HOUR.format(s.heureDebut()) + " - " + HOUR.format(s.heureFin());
+    }
+
+    private static String total(Convocation c) {
+        int n = c.seances().size();
+        return "Total : " + n + (n > 1 ? " séances" : " séance");
+    }
+
+    private static String edited(LocalDate editedOn) {
+        return "Édité le " + SHORT_DAY.format(editedOn);
+    }
+
+    private static String nullToEmpty(String text) {
+        return text == null ? "" : text;
+    }
+}
@@ -0,0 +1,382 @@
+package org.fsegs.surveillanceexams.convocation;
+
+import jakarta.annotation.PreDestroy;
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Convocation archive of the active campaign: a zip with an HTML page and a
+ * PDF per teacher with assignments, listing their seances.
+ *
+ * The archive is produced as a pipeline:
+ * - one query streams all the campaign's assignments ordered by teacher,
+ *   date and hour, with the epreuves of each seance; rows are grouped into
+ *   the teacher's {@link Convocation} as they arrive, and the convocation
+ *   goes to the render pool when the next teacher's first row comes,
+ * - the render workers build both documents; they also deflate the PDF
+ *   pages and checksum the file, which is then stored as is in the zip,
+ * - the request thread writes finished documents to the zip in teacher
+ *   order between rows.
+ * At most {@code window} convocations are waiting, rendering or rendered
+ * but not written yet; when the window is full the reader waits for the
+ * oldest one. Memory depends on the window, not on the number of teachers,
+ * and the response is sent as it is written. On MySQL the result set is
+ * streamed by the driver instead of being loaded in full.
+ *
+ * One archive is generated at a time.
+ */
+@Service
+public class ConvocationService {
+
+    private static final String SQL =
+            "SELECT e.id_enseignant, e.nom, e.grade, s.id_seance, s.date_seance, s.heure_debut, s.heure_fin, " +
+            "m.nom, ep.filiere, ep.classe " +
+            "FROM affectation a JOIN seance s ON s.id_seance = a.id_seance " +
+            "JOIN enseignant e ON e.id_enseignant = a.id_enseignant " +
+            "LEFT JOIN epreuve ep ON ep.id_seance = s.id_seance " +
+            "LEFT JOIN matiere m ON m.id_matiere = ep.id_matiere " +
+            "WHERE s.id_campagne = ? " +
+            "ORDER BY e.id_enseignant, s.date_seance, s.heure_debut, s.id_seance, ep.id_epreuve";
+
+    /**
+     * Where the archive goes, opened once a generation has started (so a
+     * refused request has not sent anything yet).
+     */
+    public interface Target {
+        OutputStream open(Long campagneId) throws IOException;
+    }
+
+    /**
+     * Outcome of a generation.
+     */
+    public record Summary(Long campagneId, int convocations, int seances, long durationMs) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CampagneService campagneService;
+    private final int workers;
+    private final int window;
+    private final int fetchSize;
+    private final int compressionLevel;
+    private final ExecutorService pool;
+
+    private final AtomicBoolean generating = new AtomicBoolean();
+    private volatile Summary last;
+
+    public ConvocationService(JdbcTemplate jdbcTemplate,
+                              CampagneService campagneService,
+                              @Value("${surveillance.convocations.workers:4}") int workers,
+                              @Value("${surveillance.convocations.window:32}") int window,
+                              @Value("${surveillance.convocations.fetch-size:500}") int fetchSize,
+                              @Value("${surveillance.convocations.compression-level:6}") int compressionLevel) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.campagneService = campagneService;
+        this.workers = Math.max(1, workers);
+        this.window = Math.max(1, window);
+        this.fetchSize = Math.max(1, fetchSize);
+        this.compressionLevel = compressionLevel;
+        AtomicInteger threads = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(this.workers, r -> {
+            Thread t = new Thread(r, "convocation-render-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    // =========================
+    // GENERATE
+    // =========================
+    /**
+     * Write the convocation archive of the active campaign to the target,
+     * which is closed when done.
+     *
+     * @return what was written, or null if an archive is already being generated
+     */
+    public Summary write(Target target) throws IOException {
+        if (!generating.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            long start = System.nanoTime();
+            Long campagneId = campagneService.activeId();
+            String campagne = campagneLabel(campagneId);
+            OutputStream out = target.open(campagneId);
+            ZipOutputStream zip = new ZipOutputStream(out);
+            zip.setLevel(compressionLevel);
+            Pipeline pipeline = new Pipeline(pool, window, zip, campagne, LocalDate.now());
+            Assembler assembler = new Assembler();
+            boolean complete = false;
+            try {
+                jdbcTemplate.query(con -> {
+                    PreparedStatement ps = con.prepareStatement(SQL,
+                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    // Connector/J only streams rows with this value; other drivers take the fetch size
+                    ps.setFetchSize("MySQL".equals(con.getMetaData().getDatabaseProductName())
+                            ? Integer.MIN_VALUE : fetchSize);
+                    ps.setObject(1, campagneId);
+                    return ps;
+                }, rs -> {
+                    Convocation done = assembler.add(rs);
+                    if (done != null) {
+                        submit(pipeline, done);
+                    }
+                });
+                Convocation lastOne = assembler.finish();
+                if (lastOne != null) {
+                    pipeline.submit(lastOne);
+                }
+                pipeline.finish();
+                complete = true;
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                if (complete) {
+                    zip.close();
+                } else {
+                    // No central directory: a cut archive must not read as a complete one
+                    pipeline.cancel();
+                    out.close();
+                }
+            }
+            Summary summary = new Summary(campagneId, pipeline.convocations, pipeline.seances,
+                    (System.nanoTime() - start) / 1_000_000);
+            last = summary;
+            System.out.println("Convocations: " + summary.convocations() + " teachers, " + summary.seances() +
+                    " seances in " + summary.durationMs() + " ms");
+            return summary;
+        } finally {
+            generating.set(false);
+        }
+    }
+
+    private static void submit(Pipeline pipeline, Convocation convocation) {
+        try {
+            pipeline.submit(convocation);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String campagneLabel(Long campagneId) {
+        List<String> labels = jdbcTemplate.query(
+                "SELECT nom, annee_universitaire FROM campagne WHERE id_campagne = ?",
+                (rs, i) -> {
+                    String nom = rs.getString(1);
+                    String annee = rs.getString(2);
+                    return annee == null || nom.contains(annee) ? nom : nom + " " + annee;
+                },
+                campagneId);
+        return labels.isEmpty() ? null : labels.get(0);
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("generating", generating.get());
+        status.put("workers", workers);
+        status.put("window", window);
+        Summary s = last;
+        status.put("lastArchive", s == null ? null : Map.of(
+                "campagneId", s.campagneId(),
+                "convocations", s.convocations(),
+                "seances", s.seances(),
+                "durationMs", s.durationMs()));
+        return status;
+    }
+
+    // =========================
+    // ROWS -> CONVOCATIONS
+    // =========================
+    /**
+     * Groups the ordered rows: a convocation is complete when a row of
+     * another teacher arrives (or at the end).
+     */
+    static final class Assembler {
+        private long idEnseignant = -1;
+        private String nom;
+        private String grade;
+        private List<Convocation.Slot> seances;
+        private long idSeance = -1;
+        private LocalDate date;
+        private LocalTime heureDebut;
+        private LocalTime heureFin;
+        private List<String> epreuves;
+
+        Convocation add(ResultSet rs) throws SQLException {
+            Date date = rs.getDate(5);
+            Time debut = rs.getTime(6);
+            Time fin = rs.getTime(7);
+            return add(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getLong(4),
+                    date == null ? null : date.toLocalDate(),
+                    debut == null ? null : debut.toLocalTime(),
+                    fin == null ? null : fin.toLocalTime(),
+                    epreuve(rs.getString(8), rs.getString(9), rs.getString(10)));
+        }
+
+        Convocation add(long idEnseignant, String nom, String grade, long idSeance, LocalDate date,
+                        LocalTime heureDebut, LocalTime heureFin, String epreuve) {
+            Convocation done = null;
+            if (idEnseignant != this.idEnseignant) {
+                done = finish();
+                this.idEnseignant = idEnseignant;
+                this.nom = nom;
+                this.grade = grade;
+                this.seances = new ArrayList<>();
+            }
+            if (idSeance != this.idSeance) {
+                closeSeance();
+                this.idSeance = idSeance;
+                this.date = date;
+                this.heureDebut = heureDebut;
+                this.heureFin = heureFin;
+                this.epreuves = new ArrayList<>(2);
+            }
+            // Duplicate assignment rows repeat the epreuves
+            if (epreuve != null && !epreuves.contains(epreuve)) {
+                epreuves.add(epreuve);
+            }
+            return done;
+        }
+
+        Convocation finish() {
+            if (idEnseignant < 0) {
+                return null;
+            }
+            closeSeance();
+            Convocation done = new Convocation(idEnseignant, nom, grade, List.copyOf(seances));
+            idEnseignant = -1;
+            return done;
+        }
+
+        private void closeSeance() {
+            if (idSeance >= 0) {
+                seances.add(new Convocation.Slot(idSeance, date, heureDebut, heureFin, List.copyOf(epreuves)));
+                idSeance = -1;
+            }
+        }
+
+        static String epreuve(String matiere, String filiere, String classe) {
+            if (matiere == null && filiere == null && classe == null) {
+                return null;
+            }
+            String group = (Objects.toString(filiere, "") + " " + Objects.toString(classe, "")).trim();
+            String name = matiere != null ? matiere : "Épreuve";
+            return group.isEmpty() ? name : name + " (" + group + ")";
+        }
+    }
+
+    // =========================
+    // RENDER -> ZIP
+    // =========================
+    private record Rendered(String name, byte[] html, byte[] pdf, long pdfCrc) {
+    }
+
+    /**
+     * Renders convocations on the pool and writes them to the zip in
+     * submission order, with at most {@code window} of them in flight.
+     */
+    static final class Pipeline {
+        private final ExecutorService pool;
+        private final int window;
+        private final ZipOutputStream zip;
+        private final String campagne;
+        private final LocalDate editedOn;
+        private final ArrayDeque<Future<Rendered>> pending = new ArrayDeque<>();
+        int convocations;
+        int seances;
+
+        Pipeline(ExecutorService pool, int window, ZipOutputStream zip, String campagne, LocalDate editedOn) {
+            this.pool = pool;
+            this.window = window;
+            this.zip = zip;
+            this.campagne = campagne;
+            this.editedOn = editedOn;
+        }
+
+        void submit(Convocation c) throws IOException {
+            pending.add(pool.submit(() -> render(c)));
+            seances += c.seances().size();
+            // Write what is already rendered; wait for the oldest only when the window is full
+            while (!pending.isEmpty() && (pending.size() >= window || pending.peek().isDone())) {
+                write(await(pending.poll()));
+            }
+        }
+
+        void finish() throws IOException {
+            while (!pending.isEmpty()) {
+                write(await(pending.poll()));
+            }
+            zip.finish();
+        }
+
+        void cancel() {
+            pending.forEach(f -> f.cancel(true));
+            pending.clear();
+        }
+
+        private Rendered render(Convocation c) {
+            byte[] pdf = ConvocationRenderer.pdf(c, campagne, editedOn);
+            CRC32 crc = new CRC32();
+            crc.update(pdf);
+            return new Rendered(ConvocationRenderer.fileName(c),
+                    ConvocationRenderer.html(c, campagne, editedOn), pdf, crc.getValue());
+        }
+
+        private void write(Rendered r) throws IOException {
+            zip.putNextEntry(new ZipEntry(r.name() + ".html"));
+            zip.write(r.html());
+            zip.closeEntry();
+
+            // Pages are deflated already
+            ZipEntry pdf = new ZipEntry(r.name() + ".pdf");
+            pdf.setMethod(ZipEntry.STORED);
+            pdf.setSize(r.pdf().length);
+            pdf.setCompressedSize(r.pdf().length);
+            pdf.setCrc(r.pdfCrc());
+            zip.putNextEntry(pdf);
+            zip.write(r.pdf());
+            zip.closeEntry();
+            convocations++;
+        }
+
+        private static Rendered await(Future<Rendered> future) throws IOException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while rendering convocations");
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause
+                        : new IllegalStateException("Convocation rendering failed", e.getCause());
+            }
+        }
+    }
+}
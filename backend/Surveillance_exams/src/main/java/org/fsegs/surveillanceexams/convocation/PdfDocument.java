@@ -0,0 +1,187 @@
+package org.fsegs.surveillanceexams.convocation;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+/**
+ * Minimal PDF 1.4 writer for the convocations: A4 pages of text lines and
+ * horizontal rules, top to bottom, in the standard Helvetica fonts (every
+ * reader has them, so nothing is embedded and a document is a few KB).
+ *
+ * Text is encoded in WinAnsiEncoding (windows-1252), which covers French;
+ * other characters print as '?'. Strings go into the content streams in hex,
+ * so no escaping is needed. Page contents are deflated, and each page gets a
+ * "page / pages" footer when the document is written.
+ */
+final class PdfDocument {
+
+    static final float WIDTH = 595;
+    static final float HEIGHT = 842;
+    static final float MARGIN = 56;
+
+    private static final Charset WIN_ANSI = Charset.forName("windows-1252");
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final List<StringBuilder> pages = new ArrayList<>();
+    private StringBuilder page;
+    private float y;
+
+    PdfDocument() {
+        newPage();
+    }
+
+    // =========================
+    // LAYOUT
+    // =========================
+    /**
+     * Current baseline, in points from the bottom of the page.
+     */
+    float y() {
+        return y;
+    }
+
+    void moveDown(float points) {
+        y -= points;
+    }
+
+    /**
+     * Start a new page unless {@code points} are left above the bottom margin.
+     */
+    void ensureSpace(float points) {
+        if (y - points < MARGIN) {
+            newPage();
+        }
+    }
+
+    void newPage() {
+        page = new StringBuilder(2048);
+        pages.add(page);
+        y = HEIGHT - MARGIN;
+    }
+
+    void text(float x, float size, boolean bold, String text) {
+        text(page, x, y, size, bold, text);
+    }
+
+    void rule(float fromX, float toX, float width) {
+        page.append(number(width)).append(" w ")
+                .append(number(fromX)).append(' ').append(number(y)).append(" m ")
+                .append(number(toX)).append(' ').append(number(y)).append(" l S\n");
+    }
+
+    /**
+     * Width of the text in points, from the Helvetica metrics (approximate:
+     * ASCII letters and digits, the rest counted as an average glyph).
+     */
+    static float width(String text, float size) {
+        float units = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            units += c == ' ' || c == '.' || c == ',' || c == ':' || c == '/' || c == '|' ? 278
+                    : c == 'i' || c == 'j' || c == 'l' ? 222
+                    : c == 'f' || c == 't' || c == 'r' || c == '-' || c == '(' || c == ')' ? 333
+                    : c == 'm' || c == 'M' || c == 'W' ? 833
+                    : c >= 'A' && c <= 'Z' ? 667
+                    : 556;
+        }
+        return units * size / 1000;
+    }
+
+    // =========================
+    // OUTPUT
+    // =========================
+    byte[] toBytes() {
+        int count = pages.size();
+        // Objects: 1 catalog, 2 page tree, 3-4 fonts, then a page and its content per page
+        int objects = 4 + 2 * count;
+        long[] offsets = new long[objects + 1];
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096 * count);
+        // The binary comment marks the file as binary for transfer tools
+        write(out, "%PDF-1.4\n%âãÏÓ\n");
+
+        offsets[1] = out.size();
+        write(out, "1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj\n");
+        offsets[2] = out.size();
+        StringBuilder kids = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            kids.append(5 + 2 * i).append(" 0 R ");
+        }
+        write(out, "2 0 obj\n<< /Type /Pages /Kids [ " + kids + "] /Count " + count + " >>\nendobj\n");
+        offsets[3] = out.size();
+        write(out, "3 0 obj\n<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica " +
+                "/Encoding /WinAnsiEncoding >>\nendobj\n");
+        offsets[4] = out.size();
+        write(out, "4 0 obj\n<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica-Bold " +
+                "/Encoding /WinAnsiEncoding >>\nendobj\n");
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            for (int i = 0; i < count; i++) {
+                int pageObject = 5 + 2 * i;
+                StringBuilder content = pages.get(i);
+                String footer = (i + 1) + " / " + count;
+                text(content, WIDTH - MARGIN - width(footer, 8), MARGIN / 2, 8, false, footer);
+                byte[] stream = deflate(deflater, content.toString().getBytes(StandardCharsets.US_ASCII));
+
+                offsets[pageObject] = out.size();
+                write(out, pageObject + " 0 obj\n<< /Type /Page /Parent 2 0 R /MediaBox [0 0 " +
+                        number(WIDTH) + " " + number(HEIGHT) + "] /Resources << /Font << /F1 3 0 R " +
+                        "/F2 4 0 R >> >> /Contents " + (pageObject + 1) + " 0 R >>\nendobj\n");
+                offsets[pageObject + 1] = out.size();
+                write(out, (pageObject + 1) + " 0 obj\n<< /Length " + stream.length +
+                        " /Filter /FlateDecode >>\nstream\n");
+                out.writeBytes(stream);
+                write(out, "\nendstream\nendobj\n");
+            }
+        } finally {
+            deflater.end();
+        }
+
+        long xref = out.size();
+        StringBuilder table = new StringBuilder(20 * (objects + 1) + 128);
+        table.append("xref\n0 ").append(objects + 1).append('\n');
+        table.append("0000000000 65535 f \n");
+        for (int i = 1; i <= objects; i++) {
+            table.append(String.format(Locale.ROOT, "%010d 00000 n \n", offsets[i]));
+        }
+        table.append("trailer\n<< /Size ").append(objects + 1).append(" /Root 1 0 R >>\n")
+                .append("startxref\n").append(xref).append("\n%%EOF\n");
+        write(out, table.toString());
+        return out.toByteArray();
+    }
+
+    private static void text(StringBuilder content, float x, float y, float size, boolean bold, String text) {
+        content.append("BT /").append(bold ? "F2 " : "F1 ").append(number(size)).append(" Tf 1 0 0 1 ")
+                .append(number(x)).append(' ').append(number(y)).append(" Tm <");
+        for (byte b : text.getBytes(WIN_ANSI)) {
+            content.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+        }
+        content.append("> Tj ET\n");
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] input) {
+        deflater.reset();
+        deflater.setInput(input);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 3 + 64);
+        byte[] buffer = new byte[4096];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        return out.toByteArray();
+    }
+
+    private static String number(float value) {
+        return value == Math.rint(value) ? Integer.toString((int) value)
+                : String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private static void write(ByteArrayOutputStream out, String text) {
+        out.writeBytes(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
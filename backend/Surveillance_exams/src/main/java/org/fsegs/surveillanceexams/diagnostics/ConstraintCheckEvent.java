@@ -0,0 +1,32 @@
+package org.fsegs.surveillanceexams.diagnostics;
+
+import jdk.jfr.*;
+
+/**
+ * One planning rule evaluated by a traced operation (subject conflict, time
+ * conflict, quota, saturation, campaign open...).
+ */
+@Name("org.fsegs.surveillance.ConstraintCheck")
+@Label("Constraint Check")
+@Category({"Surveillance", "Service"})
+@StackTrace(false)
+public class ConstraintCheckEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Constraint")
+    String constraint;
+
+    @Label("Teacher Id")
+    long idEnseignant;
+
+    @Label("Seance Id")
+    long idSeance;
+
+    @Label("SQL Statements")
+    long sqlCount;
+
+    @Label("Violated")
+    boolean violated;
+}
@@ -0,0 +1,29 @@
+package org.fsegs.surveillanceexams.diagnostics;
+
+import jdk.jfr.*;
+
+/**
+ * A step of a traced operation that is not a rule check: row locks, saves,
+ * commit.
+ */
+@Name("org.fsegs.surveillance.OperationStep")
+@Label("Operation Step")
+@Category({"Surveillance", "Service"})
+@StackTrace(false)
+public class OperationStepEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Step")
+    String step;
+
+    @Label("Teacher Id")
+    long idEnseignant;
+
+    @Label("Seance Id")
+    long idSeance;
+
+    @Label("SQL Statements")
+    long sqlCount;
+}
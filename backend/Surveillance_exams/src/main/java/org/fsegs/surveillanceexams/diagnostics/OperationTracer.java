@@ -0,0 +1,339 @@
+package org.fsegs.surveillanceexams.diagnostics;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Recording;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Times service operations step by step.
+ *
+ * {@link #trace} wraps one operation; inside it, {@link #step} and
+ * {@link #check} time the row locks, saves and rule checks. Each of them
+ * emits a JFR event (operation, teacher and seance ids, SQL statement count)
+ * and is kept in the operation's breakdown. When the operation runs in a
+ * transaction it ends after the commit, which is recorded as its last step
+ * (the Hibernate flush happens there).
+ *
+ * Always on:
+ * - the slowest {@code surveillance.trace.slowest} operations with their
+ *   breakdown are kept in memory; once the set is full, an operation faster
+ *   than all of them costs one volatile read,
+ * - a continuous JFR recording of the three event types, bounded in size,
+ *   can be dumped to a .jfr file at any time.
+ * Outside a traced operation, step and check only run their body.
+ */
+@Component
+public class OperationTracer {
+
+    private static final int MAX_STEPS = 100;
+    private static final DateTimeFormatter DUMP_STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final ThreadLocal<Operation> CURRENT = new ThreadLocal<>();
+
+    private final boolean enabled;
+    private final int capacity;
+    private final boolean jfrRecording;
+    private final Duration jfrThreshold;
+    private final long jfrMaxBytes;
+    private final Path dumpDir;
+
+    /** Min-heap on duration: the head is the fastest of the slowest */
+    private final PriorityQueue<Trace> slowest = new PriorityQueue<>(Comparator.comparingLong(Trace::durationNanos));
+    private volatile long admissionNanos;
+    private final AtomicLong traced = new AtomicLong();
+    private Recording recording;
+
+    public record Step(String name, boolean check, boolean violated, long micros, long sqlCount) {
+    }
+
+    public record Trace(String operation, Long idEnseignant, Long idSeance, Instant startedAt, long durationNanos,
+                        long sqlCount, String outcome, String thread, List<Step> steps) {
+    }
+
+    private static final class Operation {
+        final String name;
+        final Long idEnseignant;
+        final Long idSeance;
+        final Instant startedAt = Instant.now();
+        final long start = System.nanoTime();
+        final long sqlStart = SqlCounter.current();
+        final ServiceOperationEvent event = new ServiceOperationEvent();
+        final List<Step> steps = new ArrayList<>();
+        String outcome;
+        long commitStart;
+        long commitSql;
+        boolean inTransaction;
+
+        Operation(String name, Long idEnseignant, Long idSeance) {
+            this.name = name;
+            this.idEnseignant = idEnseignant;
+            this.idSeance = idSeance;
+        }
+
+        void add(Step step) {
+            if (steps.size() < MAX_STEPS) {
+                steps.add(step);
+            }
+        }
+    }
+
+    public OperationTracer(@Value("${surveillance.trace.enabled:true}") boolean enabled,
+                           @Value("${surveillance.trace.slowest:50}") int capacity,
+                           @Value("${surveillance.trace.jfr-recording:true}") boolean jfrRecording,
+                           @Value("${surveillance.trace.jfr-threshold-ms:0}") long jfrThresholdMillis,
+                           @Value("${surveillance.trace.jfr-max-size-mb:64}") long jfrMaxSizeMb,
+                           @Value("${surveillance.trace.dump-dir:data/jfr}") String dumpDir) {
+        this.enabled = enabled;
+        this.capacity = Math.max(1, capacity);
+        this.jfrRecording = enabled && jfrRecording;
+        this.jfrThreshold = Duration.ofMillis(jfrThresholdMillis);
+        this.jfrMaxBytes = jfrMaxSizeMb * 1024 * 1024;
+        this.dumpDir = Path.of(dumpDir);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!jfrRecording) {
+            return;
+        }
+        recording = new Recording();
+        recording.setName("surveillance-operations");
+        recording.enable(ServiceOperationEvent.class).withThreshold(jfrThreshold);
+        recording.enable(OperationStepEvent.class).withThreshold(jfrThreshold);
+        recording.enable(ConstraintCheckEvent.class).withThreshold(jfrThreshold);
+        recording.setToDisk(true);
+        recording.setMaxSize(jfrMaxBytes);
+        recording.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+
+    // =========================
+    // TRACING
+    // =========================
+    /**
+     * Run one service operation. Nested operations are recorded as steps of
+     * the outer one.
+     */
+    public <T> T trace(String name, Long idEnseignant, Long idSeance, Supplier<T> body) {
+        if (!enabled) {
+            return body.get();
+        }
+        if (CURRENT.get() != null) {
+            return step(name, body);
+        }
+
+        Operation op = new Operation(name, idEnseignant, idSeance);
+        op.event.begin();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            op.inTransaction = true;
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    op.commitStart = System.nanoTime();
+                    op.commitSql = SqlCounter.current();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (op.commitStart != 0) {
+                        op.add(new Step(status == STATUS_COMMITTED ? "commit" : "rollback", false, false,
+                                (System.nanoTime() - op.commitStart) / 1000, SqlCounter.current() - op.commitSql));
+                    }
+                    if (status != STATUS_COMMITTED && op.outcome != null && !op.outcome.startsWith("failed")) {
+                        op.outcome = "rolled back: " + op.outcome;
+                    }
+                    finish(op);
+                }
+            });
+        }
+
+        CURRENT.set(op);
+        try {
+            T result = body.get();
+            op.outcome = String.valueOf(result);
+            return result;
+        } catch (RuntimeException e) {
+            op.outcome = "failed: " + e.getMessage();
+            throw e;
+        } finally {
+            CURRENT.remove();
+            if (!op.inTransaction) {
+                finish(op);
+            }
+        }
+    }
+
+    /**
+     * Time one step (lock, save...) of the current operation.
+     */
+    public <T> T step(String name, Supplier<T> body) {
+        Operation op = CURRENT.get();
+        if (op == null) {
+            return body.get();
+        }
+        OperationStepEvent event = new OperationStepEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long sql = SqlCounter.current();
+        try {
+            return body.get();
+        } finally {
+            long sqlCount = SqlCounter.current() - sql;
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = op.name;
+                event.step = name;
+                event.idEnseignant = idOrZero(op.idEnseignant);
+                event.idSeance = idOrZero(op.idSeance);
+                event.sqlCount = sqlCount;
+                event.commit();
+            }
+            op.add(new Step(name, false, false, (System.nanoTime() - start) / 1000, sqlCount));
+        }
+    }
+
+    public void step(String name, Runnable body) {
+        step(name, () -> {
+            body.run();
+            return null;
+        });
+    }
+
+    /**
+     * Evaluate one planning rule of the current operation.
+     *
+     * @param violated returns true when the rule rejects the operation
+     * @return the value of {@code violated}
+     */
+    public boolean check(String constraint, BooleanSupplier violated) {
+        Operation op = CURRENT.get();
+        if (op == null) {
+            return violated.getAsBoolean();
+        }
+        ConstraintCheckEvent event = new ConstraintCheckEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long sql = SqlCounter.current();
+        boolean result = false;
+        try {
+            result = violated.getAsBoolean();
+            return result;
+        } finally {
+            long sqlCount = SqlCounter.current() - sql;
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = op.name;
+                event.constraint = constraint;
+                event.idEnseignant = idOrZero(op.idEnseignant);
+                event.idSeance = idOrZero(op.idSeance);
+                event.sqlCount = sqlCount;
+                event.violated = result;
+                event.commit();
+            }
+            op.add(new Step(constraint, true, result, (System.nanoTime() - start) / 1000, sqlCount));
+        }
+    }
+
+    private void finish(Operation op) {
+        long duration = System.nanoTime() - op.start;
+        long sqlCount = SqlCounter.current() - op.sqlStart;
+        op.event.end();
+        if (op.event.shouldCommit()) {
+            op.event.operation = op.name;
+            op.event.idEnseignant = idOrZero(op.idEnseignant);
+            op.event.idSeance = idOrZero(op.idSeance);
+            op.event.sqlCount = sqlCount;
+            op.event.outcome = op.outcome;
+            op.event.commit();
+        }
+        traced.incrementAndGet();
+
+        if (duration <= admissionNanos) {
+            return;
+        }
+        Trace trace = new Trace(op.name, op.idEnseignant, op.idSeance, op.startedAt, duration, sqlCount,
+                op.outcome, Thread.currentThread().getName(), List.copyOf(op.steps));
+        synchronized (slowest) {
+            slowest.add(trace);
+            if (slowest.size() > capacity) {
+                slowest.poll();
+            }
+            if (slowest.size() == capacity) {
+                admissionNanos = slowest.peek().durationNanos();
+            }
+        }
+    }
+
+    private static long idOrZero(Long id) {
+        return id != null ? id : 0;
+    }
+
+    // =========================
+    // ADMIN
+    // =========================
+    /**
+     * The slowest operations seen since startup (or the last reset), slowest first.
+     */
+    public List<Trace> getSlowest() {
+        List<Trace> result;
+        synchronized (slowest) {
+            result = new ArrayList<>(slowest);
+        }
+        result.sort(Comparator.comparingLong(Trace::durationNanos).reversed());
+        return result;
+    }
+
+    public void reset() {
+        synchronized (slowest) {
+            slowest.clear();
+            admissionNanos = 0;
+        }
+    }
+
+    /**
+     * Write the continuous recording (service operations, steps and checks
+     * still within its size bound) to a new .jfr file.
+     */
+    public Path dump() throws IOException {
+        if (recording == null) {
+            throw new IllegalStateException("The JFR recording is disabled (surveillance.trace.jfr-recording)");
+        }
+        Files.createDirectories(dumpDir);
+        Path file = dumpDir.resolve("operations-" + LocalDateTime.now().format(DUMP_STAMP) + ".jfr");
+        recording.dump(file);
+        return file;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("operationsTraced", traced.get());
+        status.put("capacity", capacity);
+        status.put("admissionMs", admissionNanos / 1e6);
+        status.put("jfrRecording", recording != null ? recording.getState().name() : "DISABLED");
+        status.put("jfrThresholdMs", jfrThreshold.toMillis());
+        status.put("jfrMaxSizeBytes", jfrMaxBytes);
+        return status;
+    }
+}
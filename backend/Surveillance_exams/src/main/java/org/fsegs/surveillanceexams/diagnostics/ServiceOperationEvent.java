@@ -0,0 +1,29 @@
+package org.fsegs.surveillanceexams.diagnostics;
+
+import jdk.jfr.*;
+
+/**
+ * One call of a traced service operation (wish submission, cancellation,
+ * assignment, swap, approval run), commit included.
+ */
+@Name("org.fsegs.surveillance.ServiceOperation")
+@Label("Service Operation")
+@Category({"Surveillance", "Service"})
+@StackTrace(false)
+public class ServiceOperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Teacher Id")
+    long idEnseignant;
+
+    @Label("Seance Id")
+    long idSeance;
+
+    @Label("SQL Statements")
+    long sqlCount;
+
+    @Label("Outcome")
+    String outcome;
+}
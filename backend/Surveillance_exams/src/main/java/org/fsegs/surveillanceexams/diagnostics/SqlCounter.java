@@ -0,0 +1,27 @@
+package org.fsegs.surveillanceexams.diagnostics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts the SQL statements Hibernate prepares on each thread, so that a
+ * traced operation can report how many it issued (see {@link OperationTracer}).
+ * Statements sent through JdbcTemplate do not go through Hibernate and are
+ * not counted.
+ */
+public class SqlCounter implements StatementInspector {
+
+    private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+
+    /**
+     * Statements prepared so far on the current thread; callers subtract two readings.
+     */
+    public static long current() {
+        return COUNT.get()[0];
+    }
+}
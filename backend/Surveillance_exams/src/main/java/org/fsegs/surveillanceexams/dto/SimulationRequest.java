@@ -0,0 +1,25 @@
+package org.fsegs.surveillanceexams.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class SimulationRequest {
+
+    private List<OperationDTO> operations;
+
+    // When true, operations that break a rule are skipped, as affecterSurveillant would refuse them.
+    // When false (default), every operation is applied and its violations are only reported.
+    private boolean strict;
+
+    @Getter
+    @Setter
+    public static class OperationDTO {
+        private String action; // "add" or "remove"
+        private Long idEnseignant;
+        private Long idSeance;
+    }
+}
@@ -0,0 +1,26 @@
+package org.fsegs.surveillanceexams.event;
+
+import java.time.Instant;
+
+/**
+ * Published whenever a teacher is assigned to or removed from a seance.
+ *
+ * The event is published inside the service transaction; listeners that keep
+ * derived state should use {@code @TransactionalEventListener} so they only
+ * see committed changes.
+ */
+public record AffectationChangedEvent(Type type, Long idEnseignant, Long idSeance, Instant occurredAt) {
+
+    public enum Type {
+        ASSIGNED,
+        UNASSIGNED
+    }
+
+    public static AffectationChangedEvent assigned(Long idEnseignant, Long idSeance) {
+        return new AffectationChangedEvent(Type.ASSIGNED, idEnseignant, idSeance, Instant.now());
+    }
+
+    public static AffectationChangedEvent unassigned(Long idEnseignant, Long idSeance) {
+        return new AffectationChangedEvent(Type.UNASSIGNED, idEnseignant, idSeance, Instant.now());
+    }
+}
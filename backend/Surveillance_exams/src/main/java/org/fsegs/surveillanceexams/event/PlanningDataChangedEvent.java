@@ -0,0 +1,27 @@
+package org.fsegs.surveillanceexams.event;
+
+/**
+ * Published when reference data used by the planning rules changes:
+ * a seance's required number of surveillants, a teacher's surveillance load,
+ * or the set of seances in scope (campaign activated, archived, restored...).
+ */
+public record PlanningDataChangedEvent(Kind kind, Long id) {
+
+    public enum Kind {
+        SEANCE,
+        ENSEIGNANT,
+        CAMPAGNE
+    }
+
+    public static PlanningDataChangedEvent seance(Long idSeance) {
+        return new PlanningDataChangedEvent(Kind.SEANCE, idSeance);
+    }
+
+    public static PlanningDataChangedEvent enseignant(Long idEnseignant) {
+        return new PlanningDataChangedEvent(Kind.ENSEIGNANT, idEnseignant);
+    }
+
+    public static PlanningDataChangedEvent campagne(Long idCampagne) {
+        return new PlanningDataChangedEvent(Kind.CAMPAGNE, idCampagne);
+    }
+}
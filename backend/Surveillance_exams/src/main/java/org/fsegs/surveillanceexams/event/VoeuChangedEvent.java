@@ -0,0 +1,22 @@
+package org.fsegs.surveillanceexams.event;
+
+import java.time.Instant;
+
+/**
+ * Published whenever a wish changes state: submitted (pending), approved,
+ * rejected or cancelled. Assignment side effects are published separately
+ * as {@link AffectationChangedEvent}s.
+ */
+public record VoeuChangedEvent(Type type, Long idEnseignant, Long idSeance, Instant occurredAt) {
+
+    public enum Type {
+        SUBMITTED,
+        APPROVED,
+        REJECTED,
+        CANCELLED
+    }
+
+    public static VoeuChangedEvent of(Type type, Long idEnseignant, Long idSeance) {
+        return new VoeuChangedEvent(type, idEnseignant, idSeance, Instant.now());
+    }
+}
@@ -0,0 +1,65 @@
+package org.fsegs.surveillanceexams.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * An exam campaign (e.g. "Session principale 2024/2025").
+ * Every seance belongs to one campaign; planning, statistics and wish
+ * endpoints only see the seances of the active campaign.
+ */
+@Entity
+@Table(name = "campagne")
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor
+public class Campagne {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_campagne")
+    private Long id;
+
+    @Column(name = "nom", nullable = false)
+    private String nom;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type")
+    private CampagneType type = CampagneType.PRINCIPALE;
+
+    @Column(name = "annee_universitaire")
+    private String anneeUniversitaire;
+
+    @Column(name = "date_debut")
+    private LocalDate dateDebut;
+
+    @Column(name = "date_fin")
+    private LocalDate dateFin;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "statut")
+    private CampagneStatut statut = CampagneStatut.OUVERTE;
+
+    @Column(name = "active")
+    private boolean active;
+
+    @Column(name = "date_creation")
+    private LocalDateTime dateCreation = LocalDateTime.now();
+
+    /**
+     * Compressed export of the campaign's rows while it is ARCHIVEE.
+     */
+    @Column(name = "fichier_archive")
+    private String fichierArchive;
+
+    public enum CampagneType {
+        PRINCIPALE,
+        CONTROLE
+    }
+
+    public enum CampagneStatut {
+        OUVERTE,
+        CLOTUREE,
+        ARCHIVEE
+    }
+}
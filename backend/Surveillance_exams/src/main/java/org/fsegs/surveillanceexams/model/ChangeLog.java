@@ -0,0 +1,55 @@
+package org.fsegs.surveillanceexams.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * One committed change, written in the transaction that made it, so that the
+ * other backend instances can invalidate their in-memory state
+ * (see {@code cluster.ChangeLogPoller}). Rows are purged after the retention
+ * period.
+ */
+@Entity
+@Table(name = "change_log", indexes = @Index(name = "idx_change_log_created", columnList = "created_at"))
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor
+public class ChangeLog {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    /**
+     * Instance that made the change; it does not replay its own rows.
+     */
+    @Column(name = "node", nullable = false, length = 64)
+    private String node;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "kind", nullable = false, length = 24)
+    private Kind kind;
+
+    @Column(name = "id_enseignant")
+    private Long idEnseignant;
+
+    @Column(name = "id_seance")
+    private Long idSeance;
+
+    /**
+     * Campaign id for CAMPAGNE changes.
+     */
+    @Column(name = "id_ref")
+    private Long idRef;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public enum Kind {
+        AFFECTATION_ADDED,
+        AFFECTATION_REMOVED,
+        SEANCE,
+        ENSEIGNANT,
+        CAMPAGNE
+    }
+}
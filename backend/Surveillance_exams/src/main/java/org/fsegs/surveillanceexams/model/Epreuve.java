@@ -7,8 +7,14 @@ import java.util.Set;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
+/**
+ * Seance search filters on filiere/classe through EXISTS subqueries keyed by
+ * seance: the (filiere, classe, id_seance) index answers them without
+ * touching the table.
+ */
 @Entity
-@Table(name = "epreuve")
+@Table(name = "epreuve",
+       indexes = @Index(name = "idx_epreuve_filiere_classe", columnList = "filiere, classe, id_seance"))
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor
 public class Epreuve {
     @Id
@@ -0,0 +1,38 @@
+package org.fsegs.surveillanceexams.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * A teacher waiting for a seat on a saturated seance.
+ * Entries of a seance are served in id order (FIFO).
+ */
+@Entity
+@Table(name = "liste_attente",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"id_enseignant", "id_seance"}),
+       indexes = @Index(name = "idx_liste_attente_seance", columnList = "id_seance, id_attente"))
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor
+public class ListeAttente {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_attente")
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "id_enseignant")
+    private Enseignant enseignant;
+
+    @ManyToOne
+    @JoinColumn(name = "id_seance")
+    private Seance seance;
+
+    @Column(name = "date_inscription")
+    private LocalDateTime dateInscription = LocalDateTime.now();
+
+    public ListeAttente(Enseignant enseignant, Seance seance) {
+        this.enseignant = enseignant;
+        this.seance = seance;
+        this.dateInscription = LocalDateTime.now();
+    }
+}
@@ -6,10 +6,16 @@ import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.HashSet;
 import java.util.Set;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 
+/**
+ * Seances are read campaign by campaign, usually in date order: the
+ * (id_campagne, date_seance) index keeps those scans within the campaign.
+ */
 @Entity
-@Table(name = "seance")
+@Table(name = "seance",
+       indexes = @Index(name = "idx_seance_campagne_date", columnList = "id_campagne, date_seance"))
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor
 public class Seance {
     @Id
@@ -32,6 +38,11 @@ public class Seance {
     @Column(name = "nb_surveillants_inscrits")
     private int nbSurveillantsInscrits;
 
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "id_campagne")
+    @JsonIgnore
+    private Campagne campagne;
+
     @OneToMany(mappedBy = "seance", cascade = CascadeType.ALL)
     @JsonManagedReference
     private Set<Epreuve> epreuves = new HashSet<>();
@@ -0,0 +1,10 @@
+package org.fsegs.surveillanceexams.planning;
+
+/**
+ * Immutable view of an epreuve with its number of paquets.
+ *
+ * @param idSeance  seance the epreuve takes place in (may be null)
+ * @param idMatiere subject of the epreuve (may be null)
+ */
+public record EpreuveInfo(Long id, Long idSeance, Long idMatiere, String filiere, String classe, int nbPaquets) {
+}
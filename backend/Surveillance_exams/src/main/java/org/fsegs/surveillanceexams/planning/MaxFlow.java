@@ -0,0 +1,112 @@
+package org.fsegs.surveillanceexams.planning;
+
+import java.util.Arrays;
+
+/**
+ * Dinic maximum flow on int arrays (adjacency as linked edge lists, each edge
+ * stored next to its reverse edge). Used by {@link PlanningFeasibilityService}
+ * on networks of a few hundred thousand edges.
+ */
+final class MaxFlow {
+
+    private final int[] head;
+    private final int[] level;
+    private final int[] cursor;
+    private final int[] queue;
+    private int[] next;
+    private int[] to;
+    private int[] cap;
+    private int edges;
+
+    MaxFlow(int nodes, int expectedEdges) {
+        head = new int[nodes];
+        Arrays.fill(head, -1);
+        level = new int[nodes];
+        cursor = new int[nodes];
+        queue = new int[nodes];
+        int size = Math.max(16, 2 * expectedEdges);
+        next = new int[size];
+        to = new int[size];
+        cap = new int[size];
+    }
+
+    /**
+     * @return the edge index, to read its flow with {@link #flow}
+     */
+    int addEdge(int from, int target, int capacity) {
+        if (edges + 2 > to.length) {
+            int size = to.length * 2;
+            next = Arrays.copyOf(next, size);
+            to = Arrays.copyOf(to, size);
+            cap = Arrays.copyOf(cap, size);
+        }
+        int e = edges;
+        to[e] = target;
+        cap[e] = capacity;
+        next[e] = head[from];
+        head[from] = e;
+        to[e + 1] = from;
+        cap[e + 1] = 0;
+        next[e + 1] = head[target];
+        head[target] = e + 1;
+        edges += 2;
+        return e;
+    }
+
+    int flow(int edge) {
+        return cap[edge ^ 1];
+    }
+
+    long maxFlow(int source, int sink) {
+        long total = 0;
+        while (buildLevels(source, sink)) {
+            System.arraycopy(head, 0, cursor, 0, head.length);
+            int pushed;
+            while ((pushed = push(source, sink, Integer.MAX_VALUE)) > 0) {
+                total += pushed;
+            }
+        }
+        return total;
+    }
+
+    private boolean buildLevels(int source, int sink) {
+        Arrays.fill(level, -1);
+        level[source] = 0;
+        int read = 0;
+        int write = 0;
+        queue[write++] = source;
+        while (read < write) {
+            int u = queue[read++];
+            for (int e = head[u]; e >= 0; e = next[e]) {
+                if (cap[e] > 0 && level[to[e]] < 0) {
+                    level[to[e]] = level[u] + 1;
+                    queue[write++] = to[e];
+                }
+            }
+        }
+        return level[sink] >= 0;
+    }
+
+    /**
+     * Blocking-flow search; the recursion depth is the source-sink distance
+     * (4 in the feasibility networks).
+     */
+    private int push(int u, int sink, int limit) {
+        if (u == sink) {
+            return limit;
+        }
+        for (; cursor[u] >= 0; cursor[u] = next[cursor[u]]) {
+            int e = cursor[u];
+            int v = to[e];
+            if (cap[e] > 0 && level[v] == level[u] + 1) {
+                int pushed = push(v, sink, Math.min(limit, cap[e]));
+                if (pushed > 0) {
+                    cap[e] -= pushed;
+                    cap[e ^ 1] += pushed;
+                    return pushed;
+                }
+            }
+        }
+        return 0;
+    }
+}
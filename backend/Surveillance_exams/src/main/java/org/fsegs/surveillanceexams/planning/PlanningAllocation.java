@@ -0,0 +1,105 @@
+package org.fsegs.surveillanceexams.planning;
+
+import java.util.*;
+
+/**
+ * Mutable planning layered over a base {@link PlanningView}.
+ *
+ * Only the seances and teachers touched through {@link #assign} and
+ * {@link #unassign} are copied into the overlay; everything else is read from
+ * the base, which is never modified. Creating an allocation is therefore
+ * O(1) and many allocations can share the same base concurrently.
+ *
+ * An allocation itself is not thread-safe.
+ */
+public class PlanningAllocation implements PlanningView {
+
+    private final PlanningView base;
+    private final Map<Long, Integer> inscrits = new HashMap<>();
+    private final Map<Long, Set<Long>> assignments = new HashMap<>();
+
+    public PlanningAllocation(PlanningView base) {
+        this.base = base;
+    }
+
+    public PlanningView getBase() {
+        return base;
+    }
+
+    /**
+     * Assign without checking the rules (see {@link PlanningRules#check}).
+     *
+     * @return false if the teacher was already assigned to the seance
+     */
+    public boolean assign(Long idEnseignant, Long idSeance) {
+        if (!writableSeancesOf(idEnseignant).add(idSeance)) {
+            return false;
+        }
+        inscrits.put(idSeance, inscrits(idSeance) + 1);
+        return true;
+    }
+
+    /**
+     * Remove an assignment. Like {@code SurveillanceService.cancelVoeu},
+     * the fill counter never goes below zero.
+     *
+     * @return false if the teacher was not assigned to the seance
+     */
+    public boolean unassign(Long idEnseignant, Long idSeance) {
+        if (!writableSeancesOf(idEnseignant).remove(idSeance)) {
+            return false;
+        }
+        inscrits.put(idSeance, Math.max(0, inscrits(idSeance) - 1));
+        return true;
+    }
+
+    /**
+     * Ids of the seances whose counter differs from the base (or was touched).
+     */
+    public Set<Long> touchedSeances() {
+        return Collections.unmodifiableSet(inscrits.keySet());
+    }
+
+    /**
+     * Ids of the teachers whose assignments were touched.
+     */
+    public Set<Long> touchedTeachers() {
+        return Collections.unmodifiableSet(assignments.keySet());
+    }
+
+    private Set<Long> writableSeancesOf(Long idEnseignant) {
+        return assignments.computeIfAbsent(idEnseignant, id -> new HashSet<>(base.seancesOf(id)));
+    }
+
+    @Override
+    public SeanceSlot seance(Long idSeance) {
+        return base.seance(idSeance);
+    }
+
+    @Override
+    public TeacherProfile teacher(Long idEnseignant) {
+        return base.teacher(idEnseignant);
+    }
+
+    @Override
+    public Collection<SeanceSlot> seances() {
+        return base.seances();
+    }
+
+    @Override
+    public Collection<TeacherProfile> teachers() {
+        return base.teachers();
+    }
+
+    @Override
+    public int inscrits(Long idSeance) {
+        Integer overlay = inscrits.get(idSeance);
+        return overlay != null ? overlay : base.inscrits(idSeance);
+    }
+
+    @Override
+    public Set<Long> seancesOf(Long idEnseignant) {
+        Set<Long> overlay = assignments.get(idEnseignant);
+        return overlay != null ? Collections.unmodifiableSet(overlay) : base.seancesOf(idEnseignant);
+    }
+}
@@ -0,0 +1,293 @@
+package org.fsegs.surveillanceexams.planning;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * Can the active campaign be staffed at all? Answers it before registration
+ * opens, from the in-memory planning ({@link PlanningStateService#current()}).
+ *
+ * Seances of a day are grouped into time slots: seances that overlap, directly
+ * or through a chain, form one slot, and a teacher can cover at most one
+ * seance per slot. With the usual fixed exam slots this is exactly the time
+ * conflict rule; with irregular hours it is slightly stricter.
+ *
+ * The coverage is a maximum flow:
+ * source -> teacher (remaining quota) -> teacher x slot (1) -> seance (1 if
+ * the teacher is free and has no subject conflict) -> sink (remaining need).
+ * Existing assignments count as coverage already given: needs are reduced by
+ * the registered surveillants and quotas by the assignments held.
+ *
+ * Each day is solved on its own network, in parallel; days are independent
+ * except for the quotas, so a final network over the whole campaign gives
+ * the largest coverage achievable once quotas are shared between days.
+ */
+@Service
+@RequiredArgsConstructor
+public class PlanningFeasibilityService {
+
+    private final PlanningStateService planningState;
+
+    private record Slot(LocalDate date, LocalTime heureDebut, LocalTime heureFin, List<SeanceSlot> seances) {
+    }
+
+    /**
+     * Flow result of one network: covered seats per seance and the teachers
+     * able to cover at least one seance, per slot.
+     */
+    private record Coverage(Map<Long, Integer> covered, List<Integer> eligibleTeachers) {
+
+        int total() {
+            int total = 0;
+            for (int c : covered.values()) {
+                total += c;
+            }
+            return total;
+        }
+    }
+
+    public Map<String, Object> analyze() {
+        return analyze(planningState.current());
+    }
+
+    static Map<String, Object> analyze(PlanningView view) {
+        long start = System.nanoTime();
+        List<TeacherProfile> teachers = new ArrayList<>(view.teachers());
+        Map<LocalDate, List<Slot>> days = slotsByDay(view.seances());
+
+        // Days with their own network, solved in parallel
+        List<Map.Entry<LocalDate, List<Slot>>> entries = new ArrayList<>(days.entrySet());
+        List<Map<String, Object>> dayReports = entries.parallelStream()
+                .map(day -> dayReport(view, teachers, day.getKey(), day.getValue()))
+                .toList();
+
+        List<Slot> allSlots = new ArrayList<>();
+        days.values().forEach(allSlots::addAll);
+        int campaignCoverage = solve(view, teachers, allSlots).total();
+
+        int totalNeed = 0;
+        int sumOfDayCoverage = 0;
+        List<LocalDate> infeasibleDays = new ArrayList<>();
+        for (Map<String, Object> day : dayReports) {
+            totalNeed += (int) day.get("need");
+            sumOfDayCoverage += (int) day.get("maxCoverage");
+            if (!(boolean) day.get("feasible")) {
+                infeasibleDays.add((LocalDate) day.get("date"));
+            }
+        }
+
+        long totalQuota = 0;
+        int unlimitedTeachers = 0;
+        for (TeacherProfile t : teachers) {
+            int remaining = view.remainingQuota(t.id());
+            if (remaining == Integer.MAX_VALUE) {
+                unlimitedTeachers++;
+            } else {
+                totalQuota += remaining;
+            }
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("feasible", campaignCoverage == totalNeed);
+        report.put("totalNeed", totalNeed);
+        report.put("totalRemainingQuota", totalQuota);
+        report.put("teachersWithoutQuota", unlimitedTeachers);
+        report.put("quotaCoversNeed", unlimitedTeachers > 0 || totalQuota >= totalNeed);
+        report.put("maxCoverage", campaignCoverage);
+        report.put("shortfall", totalNeed - campaignCoverage);
+        // Seats lost because a teacher's quota cannot serve every day where they are needed
+        report.put("lostToQuotaSharing", sumOfDayCoverage - campaignCoverage);
+        report.put("infeasibleDays", infeasibleDays);
+        report.put("days", dayReports);
+        report.put("durationMs", (System.nanoTime() - start) / 1_000_000);
+        return report;
+    }
+
+    // =========================
+    // SLOTS
+    // =========================
+    /**
+     * Seances grouped by date, then into slots of chained overlaps. Seances
+     * without a date or hours never conflict and get a slot each, under a null date.
+     */
+    private static Map<LocalDate, List<Slot>> slotsByDay(Collection<SeanceSlot> seances) {
+        Map<LocalDate, List<SeanceSlot>> byDate = new TreeMap<>();
+        List<Slot> undated = new ArrayList<>();
+        for (SeanceSlot s : seances) {
+            if (s.date() == null || s.heureDebut() == null || s.heureFin() == null) {
+                undated.add(new Slot(null, null, null, List.of(s)));
+            } else {
+                byDate.computeIfAbsent(s.date(), d -> new ArrayList<>()).add(s);
+            }
+        }
+
+        Map<LocalDate, List<Slot>> days = new LinkedHashMap<>();
+        byDate.forEach((date, list) -> {
+            list.sort(Comparator.comparing(SeanceSlot::heureDebut).thenComparing(SeanceSlot::id));
+            List<Slot> slots = new ArrayList<>();
+            List<SeanceSlot> current = new ArrayList<>();
+            LocalTime slotStart = null;
+            LocalTime slotEnd = null;
+            for (SeanceSlot s : list) {
+                if (slotEnd != null && !s.heureDebut().isBefore(slotEnd)) {
+                    slots.add(new Slot(date, slotStart, slotEnd, current));
+                    current = new ArrayList<>();
+                    slotEnd = null;
+                }
+                if (slotEnd == null) {
+                    slotStart = s.heureDebut();
+                    slotEnd = s.heureFin();
+                } else if (s.heureFin().isAfter(slotEnd)) {
+                    slotEnd = s.heureFin();
+                }
+                current.add(s);
+            }
+            slots.add(new Slot(date, slotStart, slotEnd, current));
+            days.put(date, slots);
+        });
+        if (!undated.isEmpty()) {
+            days.put(null, undated);
+        }
+        return days;
+    }
+
+    // =========================
+    // MAX FLOW
+    // =========================
+    private static int remainingNeed(PlanningView view, SeanceSlot s) {
+        return Math.max(0, s.nbSurveillantsNecessaires() - view.inscrits(s.id()));
+    }
+
+    private static boolean canCover(PlanningView view, TeacherProfile t, SeanceSlot s) {
+        return !view.seancesOf(t.id()).contains(s.id())
+                && !PlanningRules.hasSubjectConflict(t, s)
+                && !PlanningRules.hasTimeConflict(view, t.id(), s);
+    }
+
+    private static Coverage solve(PlanningView view, List<TeacherProfile> teachers, List<Slot> slots) {
+        // Node layout: 0 source, 1 sink, teachers, seances, then teacher x slot nodes as they are created
+        int teacherBase = 2;
+        List<SeanceSlot> seances = new ArrayList<>();
+        for (Slot slot : slots) {
+            seances.addAll(slot.seances());
+        }
+        int seanceBase = teacherBase + teachers.size();
+        Map<Long, Integer> seanceIndex = new HashMap<>();
+        for (int i = 0; i < seances.size(); i++) {
+            seanceIndex.put(seances.get(i).id(), i);
+        }
+
+        // Pairs first, to size the network
+        List<int[]> pairSeances = new ArrayList<>();
+        List<Integer> pairTeacher = new ArrayList<>();
+        List<Integer> eligibleTeachers = new ArrayList<>();
+        int[] slotsPerTeacher = new int[teachers.size()];
+        int arcs = 0;
+        for (Slot slot : slots) {
+            int eligible = 0;
+            int[] buffer = new int[slot.seances().size()];
+            for (int t = 0; t < teachers.size(); t++) {
+                int n = 0;
+                for (SeanceSlot s : slot.seances()) {
+                    if (remainingNeed(view, s) > 0 && canCover(view, teachers.get(t), s)) {
+                        buffer[n++] = seanceIndex.get(s.id());
+                    }
+                }
+                if (n > 0) {
+                    pairSeances.add(Arrays.copyOf(buffer, n));
+                    pairTeacher.add(t);
+                    slotsPerTeacher[t]++;
+                    arcs += n;
+                    eligible++;
+                }
+            }
+            eligibleTeachers.add(eligible);
+        }
+
+        int pairBase = seanceBase + seances.size();
+        MaxFlow network = new MaxFlow(pairBase + pairSeances.size(),
+                teachers.size() + pairSeances.size() + arcs + seances.size());
+        for (int t = 0; t < teachers.size(); t++) {
+            if (slotsPerTeacher[t] > 0) {
+                int quota = Math.min(view.remainingQuota(teachers.get(t).id()), slotsPerTeacher[t]);
+                network.addEdge(0, teacherBase + t, quota);
+            }
+        }
+        for (int p = 0; p < pairSeances.size(); p++) {
+            network.addEdge(teacherBase + pairTeacher.get(p), pairBase + p, 1);
+            for (int s : pairSeances.get(p)) {
+                network.addEdge(pairBase + p, seanceBase + s, 1);
+            }
+        }
+        int[] sinkEdges = new int[seances.size()];
+        for (int s = 0; s < seances.size(); s++) {
+            sinkEdges[s] = network.addEdge(seanceBase + s, 1, remainingNeed(view, seances.get(s)));
+        }
+        network.maxFlow(0, 1);
+
+        Map<Long, Integer> covered = new HashMap<>();
+        for (int s = 0; s < seances.size(); s++) {
+            covered.put(seances.get(s).id(), network.flow(sinkEdges[s]));
+        }
+        return new Coverage(covered, eligibleTeachers);
+    }
+
+    // =========================
+    // REPORT
+    // =========================
+    private static Map<String, Object> dayReport(PlanningView view, List<TeacherProfile> teachers,
+                                                 LocalDate date, List<Slot> slots) {
+        Coverage coverage = solve(view, teachers, slots);
+
+        int dayNeed = 0;
+        int dayCovered = 0;
+        List<Map<String, Object>> slotReports = new ArrayList<>();
+        for (int i = 0; i < slots.size(); i++) {
+            Slot slot = slots.get(i);
+            int need = 0;
+            int covered = 0;
+            List<Map<String, Object>> shortSeances = new ArrayList<>();
+            for (SeanceSlot s : slot.seances()) {
+                int seanceNeed = remainingNeed(view, s);
+                int seanceCovered = coverage.covered().get(s.id());
+                need += seanceNeed;
+                covered += seanceCovered;
+                if (seanceCovered < seanceNeed) {
+                    Map<String, Object> m = new LinkedHashMap<>();
+                    m.put("idSeance", s.id());
+                    m.put("need", seanceNeed);
+                    m.put("maxCoverage", seanceCovered);
+                    shortSeances.add(m);
+                }
+            }
+            dayNeed += need;
+            dayCovered += covered;
+
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("heureDebut", slot.heureDebut());
+            m.put("heureFin", slot.heureFin());
+            m.put("seances", slot.seances().stream().map(SeanceSlot::id).toList());
+            m.put("need", need);
+            m.put("eligibleTeachers", coverage.eligibleTeachers().get(i));
+            m.put("maxCoverage", covered);
+            m.put("shortfall", need - covered);
+            // Not enough free teachers without subject conflict, whatever the quotas
+            m.put("bottleneck", coverage.eligibleTeachers().get(i) < need);
+            m.put("shortSeances", shortSeances);
+            slotReports.add(m);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("date", date);
+        report.put("need", dayNeed);
+        report.put("maxCoverage", dayCovered);
+        report.put("shortfall", dayNeed - dayCovered);
+        report.put("feasible", dayCovered == dayNeed);
+        report.put("slots", slotReports);
+        return report;
+    }
+}
@@ -0,0 +1,67 @@
+package org.fsegs.surveillanceexams.planning;
+
+import lombok.RequiredArgsConstructor;
+import org.fsegs.surveillanceexams.service.SurveillanceService;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Batch import of a change set prepared offline (e.g. with the desktop
+ * planning console, {@code ui.MainWindow}) on an export of the planning.
+ *
+ * Operations are applied in order, each in its own transaction through
+ * {@link SurveillanceService#affecterSurveillant} and
+ * {@link SurveillanceService#retirerSurveillant}: every change is checked
+ * again against the database, which may have moved since the export. A
+ * refused operation is reported and the import goes on with the next one.
+ */
+@Service
+@RequiredArgsConstructor
+public class PlanningImportService {
+
+    private final SurveillanceService surveillanceService;
+
+    public Map<String, Object> importChanges(List<PlanningSimulator.Operation> operations) {
+        long start = System.nanoTime();
+        List<Map<String, Object>> results = new ArrayList<>();
+        int applied = 0;
+        for (int i = 0; i < operations.size(); i++) {
+            PlanningSimulator.Operation op = operations.get(i);
+            String message;
+            boolean ok;
+            try {
+                if (op.action() == PlanningSimulator.Action.ADD) {
+                    message = surveillanceService.affecterSurveillant(op.idSeance(), op.idEnseignant());
+                    ok = message.equals("Assignment successful");
+                } else {
+                    message = surveillanceService.retirerSurveillant(op.idSeance(), op.idEnseignant());
+                    ok = message.equals("Unassignment successful");
+                }
+            } catch (RuntimeException e) {
+                message = e.getMessage();
+                ok = false;
+            }
+            if (ok) {
+                applied++;
+            }
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("index", i);
+            result.put("action", op.action());
+            result.put("idEnseignant", op.idEnseignant());
+            result.put("idSeance", op.idSeance());
+            result.put("applied", ok);
+            result.put("message", message);
+            results.add(result);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("operations", operations.size());
+        report.put("applied", applied);
+        report.put("refused", operations.size() - applied);
+        report.put("results", results);
+        report.put("durationMs", (System.nanoTime() - start) / 1_000_000);
+        return report;
+    }
+}
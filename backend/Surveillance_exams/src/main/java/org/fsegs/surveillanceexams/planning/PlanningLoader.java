@@ -0,0 +1,92 @@
+package org.fsegs.surveillanceexams.planning;
+
+import lombok.RequiredArgsConstructor;
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.fsegs.surveillanceexams.repository.AffectationRepository;
+import org.fsegs.surveillanceexams.repository.EnseignantRepository;
+import org.fsegs.surveillanceexams.repository.EpreuveRepository;
+import org.fsegs.surveillanceexams.repository.MatiereRepository;
+import org.fsegs.surveillanceexams.repository.PaquetRepository;
+import org.fsegs.surveillanceexams.repository.SeanceRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * Builds a {@link PlanningModel} from the database with a fixed number of
+ * scalar queries (no entity loading, no N+1 on lazy or eager collections).
+ *
+ * Run inside a single read-only transaction so that, under MySQL's default
+ * REPEATABLE READ isolation, all queries see the same consistent state.
+ *
+ * Only the seances of the active campaign (with their epreuves and
+ * assignments) are loaded; teachers and subjects are shared by all campaigns.
+ */
+@Service
+@RequiredArgsConstructor
+public class PlanningLoader {
+
+    private final SeanceRepository seanceRepo;
+    private final EnseignantRepository enseignantRepo;
+    private final PaquetRepository paquetRepo;
+    private final AffectationRepository affectationRepo;
+    private final EpreuveRepository epreuveRepo;
+    private final MatiereRepository matiereRepo;
+    private final CampagneService campagneService;
+
+    @Transactional(readOnly = true)
+    public PlanningModel load() {
+        Long campagneId = campagneService.activeId();
+        Map<Long, Set<Long>> seanceMatieres = groupPairs(paquetRepo.findSeanceMatierePairs(campagneId));
+        Map<Long, Set<Long>> teacherMatieres = groupPairs(enseignantRepo.findEnseignantMatierePairs());
+
+        List<SeanceSlot> seances = new ArrayList<>();
+        Map<Long, Integer> inscrits = new HashMap<>();
+        for (Object[] row : seanceRepo.findPlanningRows(campagneId)) {
+            Long id = (Long) row[0];
+            seances.add(new SeanceSlot(id, (LocalDate) row[1], (LocalTime) row[2], (LocalTime) row[3],
+                    (Integer) row[4], Set.copyOf(seanceMatieres.getOrDefault(id, Set.of()))));
+            inscrits.put(id, (Integer) row[5]);
+        }
+
+        List<TeacherProfile> teachers = new ArrayList<>();
+        for (Object[] row : enseignantRepo.findPlanningRows()) {
+            Long id = (Long) row[0];
+            teachers.add(new TeacherProfile(id, (String) row[1], (String) row[2], (Double) row[3],
+                    Set.copyOf(teacherMatieres.getOrDefault(id, Set.of()))));
+        }
+
+        Map<Long, Set<Long>> assignments = groupPairs(affectationRepo.findPairsByCampagneId(campagneId));
+
+        Map<Long, String> matieres = new LinkedHashMap<>();
+        for (Object[] row : matiereRepo.findAllRows()) {
+            matieres.put((Long) row[0], (String) row[1]);
+        }
+
+        Map<Long, Long> paquetCounts = new HashMap<>();
+        for (Object[] row : paquetRepo.countPaquetsGroupedByEpreuve(campagneId)) {
+            paquetCounts.put((Long) row[0], (Long) row[1]);
+        }
+        List<EpreuveInfo> epreuves = new ArrayList<>();
+        for (Object[] row : epreuveRepo.findPlanningRows(campagneId)) {
+            Long id = (Long) row[0];
+            epreuves.add(new EpreuveInfo(id, (Long) row[1], (Long) row[2], (String) row[3], (String) row[4],
+                    paquetCounts.getOrDefault(id, 0L).intValue()));
+        }
+
+        return new PlanningModel(seances, teachers, inscrits, assignments, matieres, epreuves);
+    }
+
+    private static Map<Long, Set<Long>> groupPairs(List<Object[]> rows) {
+        Map<Long, Set<Long>> result = new HashMap<>();
+        for (Object[] row : rows) {
+            if (row[0] != null && row[1] != null) {
+                result.computeIfAbsent((Long) row[0], k -> new HashSet<>()).add((Long) row[1]);
+            }
+        }
+        return result;
+    }
+}
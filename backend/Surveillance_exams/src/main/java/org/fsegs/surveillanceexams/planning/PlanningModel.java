@@ -0,0 +1,155 @@
+package org.fsegs.surveillanceexams.planning;
+
+import java.util.*;
+
+/**
+ * Immutable snapshot of the planning: seances, teachers, fill counters and
+ * assignments. Built by {@link PlanningLoader}; mutate through a
+ * {@link PlanningAllocation} layered on top of it.
+ */
+public final class PlanningModel implements PlanningView {
+
+    private final Map<Long, SeanceSlot> seances;
+    private final Map<Long, TeacherProfile> teachers;
+    private final Map<Long, Integer> inscrits;
+    private final Map<Long, Set<Long>> assignments;
+    private final Map<Long, String> matieres;
+    private final List<EpreuveInfo> epreuves;
+
+    /**
+     * @param inscrits    stored fill counter per seance id
+     * @param assignments seance ids per teacher id
+     */
+    public PlanningModel(Collection<SeanceSlot> seances, Collection<TeacherProfile> teachers,
+                         Map<Long, Integer> inscrits, Map<Long, Set<Long>> assignments) {
+        this(seances, teachers, inscrits, assignments, Map.of(), List.of());
+    }
+
+    /**
+     * @param inscrits    stored fill counter per seance id
+     * @param assignments seance ids per teacher id
+     * @param matieres    subject names per matiere id
+     * @param epreuves    epreuves with their paquet counts
+     */
+    public PlanningModel(Collection<SeanceSlot> seances, Collection<TeacherProfile> teachers,
+                         Map<Long, Integer> inscrits, Map<Long, Set<Long>> assignments,
+                         Map<Long, String> matieres, List<EpreuveInfo> epreuves) {
+        Map<Long, SeanceSlot> seanceMap = new LinkedHashMap<>();
+        for (SeanceSlot s : seances) {
+            seanceMap.put(s.id(), s);
+        }
+        Map<Long, TeacherProfile> teacherMap = new LinkedHashMap<>();
+        for (TeacherProfile t : teachers) {
+            teacherMap.put(t.id(), t);
+        }
+        Map<Long, Set<Long>> assignmentMap = new HashMap<>();
+        assignments.forEach((t, s) -> {
+            if (!s.isEmpty()) {
+                assignmentMap.put(t, Set.copyOf(s));
+            }
+        });
+
+        this.seances = Collections.unmodifiableMap(seanceMap);
+        this.teachers = Collections.unmodifiableMap(teacherMap);
+        this.inscrits = Map.copyOf(inscrits);
+        this.assignments = Collections.unmodifiableMap(assignmentMap);
+        this.matieres = Collections.unmodifiableMap(new LinkedHashMap<>(matieres));
+        this.epreuves = List.copyOf(epreuves);
+    }
+
+    private PlanningModel(PlanningModel source, Map<Long, Integer> inscrits, Map<Long, Set<Long>> assignments) {
+        this.seances = source.seances;
+        this.teachers = source.teachers;
+        this.matieres = source.matieres;
+        this.epreuves = source.epreuves;
+        this.inscrits = inscrits;
+        this.assignments = assignments;
+    }
+
+    /**
+     * Return a model with one assignment added or removed, sharing the seance,
+     * teacher and catalogue data with this one. Only the counter and assignment
+     * maps are copied, which is cheap at the size of an exam campaign.
+     *
+     * Applying a change that is already reflected returns this model unchanged,
+     * so replaying an event twice is harmless.
+     */
+    public PlanningModel withAssignment(Long idEnseignant, Long idSeance, boolean assigned) {
+        Set<Long> current = seancesOf(idEnseignant);
+        if (current.contains(idSeance) == assigned) {
+            return this;
+        }
+
+        Set<Long> next = new HashSet<>(current);
+        Map<Long, Set<Long>> nextAssignments = new HashMap<>(assignments);
+        Map<Long, Integer> nextInscrits = new HashMap<>(inscrits);
+        int count = inscrits(idSeance);
+        if (assigned) {
+            next.add(idSeance);
+            nextInscrits.put(idSeance, count + 1);
+        } else {
+            next.remove(idSeance);
+            nextInscrits.put(idSeance, Math.max(0, count - 1));
+        }
+        if (next.isEmpty()) {
+            nextAssignments.remove(idEnseignant);
+        } else {
+            nextAssignments.put(idEnseignant, Set.copyOf(next));
+        }
+        return new PlanningModel(this, Collections.unmodifiableMap(nextInscrits),
+                Collections.unmodifiableMap(nextAssignments));
+    }
+
+    @Override
+    public SeanceSlot seance(Long idSeance) {
+        return seances.get(idSeance);
+    }
+
+    @Override
+    public TeacherProfile teacher(Long idEnseignant) {
+        return teachers.get(idEnseignant);
+    }
+
+    @Override
+    public Collection<SeanceSlot> seances() {
+        return seances.values();
+    }
+
+    @Override
+    public Collection<TeacherProfile> teachers() {
+        return teachers.values();
+    }
+
+    @Override
+    public int inscrits(Long idSeance) {
+        return inscrits.getOrDefault(idSeance, 0);
+    }
+
+    @Override
+    public Set<Long> seancesOf(Long idEnseignant) {
+        return assignments.getOrDefault(idEnseignant, Set.of());
+    }
+
+    /**
+     * Subject names per matiere id (empty if the model was built without the catalogue).
+     */
+    public Map<Long, String> matieres() {
+        return matieres;
+    }
+
+    public List<EpreuveInfo> epreuves() {
+        return epreuves;
+    }
+
+    public Map<Long, Set<Long>> assignments() {
+        return assignments;
+    }
+
+    public int assignmentCount() {
+        int total = 0;
+        for (Set<Long> s : assignments.values()) {
+            total += s.size();
+        }
+        return total;
+    }
+}
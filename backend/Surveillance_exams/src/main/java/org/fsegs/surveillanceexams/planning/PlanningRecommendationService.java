@@ -0,0 +1,269 @@
+package org.fsegs.surveillanceexams.planning;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Ranks the seances a teacher can still take, so that a wish submitted from
+ * the list is accepted on the first attempt.
+ *
+ * Candidates pass the {@code soumettreVoeu} rules on the current planning
+ * ({@link PlanningStateService#current()}): not assigned, not saturated, no
+ * subject conflict, no overlap with the teacher's assignments, quota not
+ * reached. Each one is scored in [0, 1] from:
+ * - urgency: share of the seats still missing,
+ * - clustering: 1 on a day the teacher already supervises, 0.5 the day
+ *   before or after, 0 otherwise,
+ * and the weights depend on the remaining quota: a teacher with most of
+ * their quota left is steered to urgent seances, one close to it to the days
+ * they already come in.
+ *
+ * The seance data (dates, minutes, subjects) is indexed in arrays once per
+ * set of seances; all models derived by
+ * {@link PlanningModel#withAssignment} share it, so assignments do not
+ * rebuild the index. A request scans the index once and keeps the best
+ * {@code limit} seances in a min-heap.
+ */
+@Service
+@RequiredArgsConstructor
+public class PlanningRecommendationService {
+
+    private static final int MAX_LIMIT = 100;
+
+    private final PlanningStateService planningState;
+
+    private volatile Index index;
+
+    /**
+     * Seance attributes by position, for the scan.
+     */
+    private record Index(Collection<SeanceSlot> source, SeanceSlot[] seances, long[] day, int[] start, int[] end,
+                         long[][] matieres) {
+
+        static Index of(Collection<SeanceSlot> source) {
+            SeanceSlot[] seances = source.toArray(new SeanceSlot[0]);
+            int n = seances.length;
+            long[] day = new long[n];
+            int[] start = new int[n];
+            int[] end = new int[n];
+            long[][] matieres = new long[n][];
+            for (int i = 0; i < n; i++) {
+                SeanceSlot s = seances[i];
+                boolean dated = s.date() != null && s.heureDebut() != null && s.heureFin() != null;
+                day[i] = dated ? s.date().toEpochDay() : Long.MIN_VALUE;
+                start[i] = dated ? s.heureDebut().toSecondOfDay() / 60 : -1;
+                end[i] = dated ? s.heureFin().toSecondOfDay() / 60 : -1;
+                matieres[i] = s.matiereIds().stream().mapToLong(Long::longValue).toArray();
+            }
+            return new Index(source, seances, day, start, end, matieres);
+        }
+    }
+
+    public Map<String, Object> recommend(Long idEnseignant, int limit) {
+        return recommend(planningState.current(), idEnseignant, limit);
+    }
+
+    Map<String, Object> recommend(PlanningModel model, Long idEnseignant, int limit) {
+        long start = System.nanoTime();
+        TeacherProfile teacher = model.teacher(idEnseignant);
+        if (teacher == null) {
+            throw new IllegalArgumentException("Enseignant not found");
+        }
+        int k = Math.max(1, Math.min(limit, MAX_LIMIT));
+        Index idx = indexFor(model);
+
+        // The teacher's assignments: busy minutes per day and days present
+        Set<Long> assigned = model.seancesOf(idEnseignant);
+        Map<Long, List<int[]>> busy = new HashMap<>();
+        for (Long id : assigned) {
+            SeanceSlot s = model.seance(id);
+            if (s != null && s.date() != null && s.heureDebut() != null && s.heureFin() != null) {
+                busy.computeIfAbsent(s.date().toEpochDay(), d -> new ArrayList<>())
+                        .add(new int[]{s.heureDebut().toSecondOfDay() / 60, s.heureFin().toSecondOfDay() / 60});
+            }
+        }
+
+        int remaining = model.remainingQuota(idEnseignant);
+        Double charge = teacher.chargeSurveillance();
+        // Share of the quota left: 1 for an unlimited or untouched quota
+        double quotaLeft = charge == null || charge <= 0 ? 1.0 : Math.min(1.0, remaining / charge);
+        double urgencyWeight = 0.4 + 0.4 * quotaLeft;
+        double clusterWeight = 1.0 - urgencyWeight;
+
+        TopK top = new TopK(k);
+        int eligible = 0;
+        if (remaining > 0) {
+            for (int i = 0; i < idx.seances().length; i++) {
+                SeanceSlot s = idx.seances()[i];
+                int need = s.nbSurveillantsNecessaires();
+                int missing = need - model.inscrits(s.id());
+                if (missing <= 0 || assigned.contains(s.id())
+                        || teachesAny(teacher, idx.matieres()[i]) || overlaps(busy, idx, i)) {
+                    continue;
+                }
+                eligible++;
+                double urgency = (double) missing / need;
+                double cluster = busy.isEmpty() || idx.day()[i] == Long.MIN_VALUE ? 0
+                        : busy.containsKey(idx.day()[i]) ? 1
+                        : busy.containsKey(idx.day()[i] - 1) || busy.containsKey(idx.day()[i] + 1) ? 0.5 : 0;
+                top.offer(urgencyWeight * urgency + clusterWeight * cluster, i);
+            }
+        }
+
+        List<Map<String, Object>> recommendations = new ArrayList<>();
+        for (TopK.Entry entry : top.drainDescending()) {
+            SeanceSlot s = idx.seances()[entry.position()];
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("idSeance", s.id());
+            m.put("date", s.date());
+            m.put("heureDebut", s.heureDebut());
+            m.put("heureFin", s.heureFin());
+            m.put("nbSurveillantsNecessaires", s.nbSurveillantsNecessaires());
+            m.put("inscrits", model.inscrits(s.id()));
+            m.put("sameDay", s.date() != null && busy.containsKey(s.date().toEpochDay()));
+            m.put("score", Math.round(entry.score() * 1000) / 1000.0);
+            recommendations.add(m);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("idEnseignant", idEnseignant);
+        report.put("chargeSurveillance", charge);
+        report.put("assigned", assigned.size());
+        report.put("remainingQuota", remaining == Integer.MAX_VALUE ? null : remaining);
+        report.put("eligibleSeances", eligible);
+        report.put("recommendations", recommendations);
+        report.put("durationMicros", (System.nanoTime() - start) / 1000);
+        return report;
+    }
+
+    private Index indexFor(PlanningModel model) {
+        Index current = index;
+        if (current == null || current.source() != model.seances()) {
+            current = Index.of(model.seances());
+            index = current;
+        }
+        return current;
+    }
+
+    private static boolean teachesAny(TeacherProfile teacher, long[] matieres) {
+        for (long m : matieres) {
+            if (teacher.matiereIds().contains(m)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Same overlap rule as {@link SeanceSlot#overlaps}, on the indexed minutes.
+     */
+    private static boolean overlaps(Map<Long, List<int[]>> busy, Index idx, int i) {
+        if (idx.day()[i] == Long.MIN_VALUE) {
+            return false;
+        }
+        List<int[]> sameDay = busy.get(idx.day()[i]);
+        if (sameDay == null) {
+            return false;
+        }
+        for (int[] slot : sameDay) {
+            if (idx.start()[i] < slot[1] && slot[0] < idx.end()[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Best k (score, position) pairs, as a binary min-heap on the score: the
+     * root is the weakest kept, replaced when a better candidate comes.
+     * Ties go to the lower position (index order).
+     */
+    static final class TopK {
+
+        private final double[] scores;
+        private final int[] positions;
+        private int size;
+
+        record Entry(int position, double score) {
+        }
+
+        TopK(int k) {
+            scores = new double[k];
+            positions = new int[k];
+        }
+
+        void offer(double score, int position) {
+            if (size < scores.length) {
+                scores[size] = score;
+                positions[size] = position;
+                siftUp(size++);
+            } else if (score > scores[0]) {
+                scores[0] = score;
+                positions[0] = position;
+                siftDown(0);
+            }
+        }
+
+        /** Heap order: lower score first, and for equal scores the later position (dropped first) */
+        private boolean weaker(int a, int b) {
+            return scores[a] < scores[b] || (scores[a] == scores[b] && positions[a] > positions[b]);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!weaker(i, parent)) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                int smallest = i;
+                if (left < size && weaker(left, smallest)) {
+                    smallest = left;
+                }
+                if (left + 1 < size && weaker(left + 1, smallest)) {
+                    smallest = left + 1;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            double s = scores[a];
+            scores[a] = scores[b];
+            scores[b] = s;
+            int p = positions[a];
+            positions[a] = positions[b];
+            positions[b] = p;
+        }
+
+        /**
+         * Kept entries, best first. Empties the heap.
+         */
+        List<Entry> drainDescending() {
+            Entry[] result = new Entry[size];
+            for (int i = size - 1; i >= 0; i--) {
+                result[i] = new Entry(positions[0], scores[0]);
+                size--;
+                if (size > 0) {
+                    scores[0] = scores[size];
+                    positions[0] = positions[size];
+                    siftDown(0);
+                }
+            }
+            return Arrays.asList(result);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.fsegs.surveillanceexams.planning;
+
+/**
+ * In-memory version of the assignment rules enforced by
+ * {@code SurveillanceService.affecterSurveillant}:
+ * not already assigned, seance not saturated, no subject conflict,
+ * no overlapping assignment on the same date, quota not reached.
+ */
+public final class PlanningRules {
+
+    private PlanningRules() {
+    }
+
+    /**
+     * @return the first violated rule, or null if the assignment is allowed
+     */
+    public static Violation check(PlanningView view, Long idEnseignant, Long idSeance) {
+        TeacherProfile teacher = view.teacher(idEnseignant);
+        SeanceSlot seance = view.seance(idSeance);
+        if (teacher == null || seance == null) {
+            return Violation.UNKNOWN;
+        }
+        if (view.seancesOf(idEnseignant).contains(idSeance)) {
+            return Violation.ALREADY_ASSIGNED;
+        }
+        if (view.isSaturee(idSeance)) {
+            return Violation.SATURATED;
+        }
+        if (hasSubjectConflict(teacher, seance)) {
+            return Violation.SUBJECT_CONFLICT;
+        }
+        if (hasTimeConflict(view, idEnseignant, seance)) {
+            return Violation.TIME_CONFLICT;
+        }
+        if (!canTakeMore(view, teacher)) {
+            return Violation.QUOTA_REACHED;
+        }
+        return null;
+    }
+
+    public static boolean hasSubjectConflict(TeacherProfile teacher, SeanceSlot seance) {
+        for (Long idMatiere : seance.matiereIds()) {
+            if (teacher.matiereIds().contains(idMatiere)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static boolean hasTimeConflict(PlanningView view, Long idEnseignant, SeanceSlot seance) {
+        for (Long assigned : view.seancesOf(idEnseignant)) {
+            SeanceSlot other = view.seance(assigned);
+            if (other != null && other.overlaps(seance)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static boolean canTakeMore(PlanningView view, TeacherProfile teacher) {
+        Double charge = teacher.chargeSurveillance();
+        return charge == null || view.seancesOf(teacher.id()).size() < charge;
+    }
+}
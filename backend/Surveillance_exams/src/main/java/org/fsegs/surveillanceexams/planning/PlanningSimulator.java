@@ -0,0 +1,184 @@
+package org.fsegs.surveillanceexams.planning;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * What-if evaluation of a list of hypothetical assignment changes.
+ *
+ * Each simulation works on its own {@link PlanningAllocation} layered over
+ * the shared, immutable {@link PlanningStateService#current()} model: only the
+ * seances and teachers touched by the operations are copied, nothing is
+ * written to the database, and any number of simulations can run
+ * concurrently without locking.
+ *
+ * Operations are evaluated in order with the rules of
+ * {@code affecterSurveillant} ({@link PlanningRules}), then the resulting
+ * state is compared with the base: seances that became saturated or
+ * overbooked, teachers above chargeSurveillance, and the subject and time
+ * conflicts introduced by the added assignments.
+ */
+@Service
+@RequiredArgsConstructor
+public class PlanningSimulator {
+
+    public enum Action {
+        ADD,
+        REMOVE
+    }
+
+    public record Operation(Action action, Long idEnseignant, Long idSeance) {
+    }
+
+    private final PlanningStateService planningState;
+
+    /**
+     * @param strict skip operations that break a rule (as the real endpoint
+     *               would refuse them) instead of applying them anyway
+     */
+    public Map<String, Object> simulate(List<Operation> operations, boolean strict) {
+        long start = System.nanoTime();
+        PlanningModel base = planningState.current();
+        PlanningAllocation allocation = new PlanningAllocation(base);
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        int applied = 0;
+        int violations = 0;
+        for (int i = 0; i < operations.size(); i++) {
+            Operation op = operations.get(i);
+            Violation violation = op.action() == Action.ADD
+                    ? PlanningRules.check(allocation, op.idEnseignant(), op.idSeance())
+                    : checkRemoval(allocation, op.idEnseignant(), op.idSeance());
+
+            boolean apply = violation == null
+                    || (!strict && violation != Violation.UNKNOWN && violation != Violation.ALREADY_ASSIGNED
+                        && violation != Violation.NOT_ASSIGNED);
+            if (apply) {
+                if (op.action() == Action.ADD) {
+                    allocation.assign(op.idEnseignant(), op.idSeance());
+                } else {
+                    allocation.unassign(op.idEnseignant(), op.idSeance());
+                }
+                applied++;
+            }
+            if (violation != null) {
+                violations++;
+            }
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("index", i);
+            result.put("action", op.action());
+            result.put("idEnseignant", op.idEnseignant());
+            result.put("idSeance", op.idSeance());
+            result.put("applied", apply);
+            result.put("violation", violation);
+            result.put("message", violation != null ? violation.getMessage() : "OK");
+            results.add(result);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("strict", strict);
+        report.put("operations", operations.size());
+        report.put("applied", applied);
+        report.put("operationsWithViolations", violations);
+        report.put("results", results);
+        report.put("seances", seanceChanges(base, allocation));
+        report.put("teachersOverQuota", teachersOverQuota(allocation));
+        report.put("conflicts", newConflicts(base, allocation));
+        report.put("durationMicros", (System.nanoTime() - start) / 1000);
+        return report;
+    }
+
+    private static Violation checkRemoval(PlanningView view, Long idEnseignant, Long idSeance) {
+        if (view.teacher(idEnseignant) == null || view.seance(idSeance) == null) {
+            return Violation.UNKNOWN;
+        }
+        return view.seancesOf(idEnseignant).contains(idSeance) ? null : Violation.NOT_ASSIGNED;
+    }
+
+    private static List<Map<String, Object>> seanceChanges(PlanningView base, PlanningAllocation allocation) {
+        List<Map<String, Object>> seances = new ArrayList<>();
+        for (Long idSeance : new TreeSet<>(allocation.touchedSeances())) {
+            SeanceSlot s = base.seance(idSeance);
+            int after = allocation.inscrits(idSeance);
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("idSeance", idSeance);
+            m.put("date", s.date());
+            m.put("heureDebut", s.heureDebut());
+            m.put("heureFin", s.heureFin());
+            m.put("nbSurveillantsNecessaires", s.nbSurveillantsNecessaires());
+            m.put("inscritsBefore", base.inscrits(idSeance));
+            m.put("inscritsAfter", after);
+            m.put("becomesSaturated", !base.isSaturee(idSeance) && allocation.isSaturee(idSeance));
+            m.put("overbooked", after > s.nbSurveillantsNecessaires());
+            seances.add(m);
+        }
+        return seances;
+    }
+
+    private static List<Map<String, Object>> teachersOverQuota(PlanningAllocation allocation) {
+        List<Map<String, Object>> teachers = new ArrayList<>();
+        for (Long idEnseignant : new TreeSet<>(allocation.touchedTeachers())) {
+            TeacherProfile t = allocation.teacher(idEnseignant);
+            int assigned = allocation.seancesOf(idEnseignant).size();
+            if (t.chargeSurveillance() != null && assigned > t.chargeSurveillance()) {
+                Map<String, Object> m = new LinkedHashMap<>();
+                m.put("idEnseignant", idEnseignant);
+                m.put("nomComplet", t.nomComplet());
+                m.put("chargeSurveillance", t.chargeSurveillance());
+                m.put("assignedBefore", allocation.getBase().seancesOf(idEnseignant).size());
+                m.put("assignedAfter", assigned);
+                teachers.add(m);
+            }
+        }
+        return teachers;
+    }
+
+    /**
+     * Subject and time conflicts involving at least one added assignment.
+     */
+    private static List<Map<String, Object>> newConflicts(PlanningView base, PlanningAllocation allocation) {
+        List<Map<String, Object>> conflicts = new ArrayList<>();
+        for (Long idEnseignant : new TreeSet<>(allocation.touchedTeachers())) {
+            TeacherProfile teacher = allocation.teacher(idEnseignant);
+            Set<Long> before = base.seancesOf(idEnseignant);
+            Set<Long> after = new TreeSet<>(allocation.seancesOf(idEnseignant));
+            for (Long idSeance : after) {
+                if (before.contains(idSeance)) {
+                    continue;
+                }
+                SeanceSlot seance = allocation.seance(idSeance);
+                if (PlanningRules.hasSubjectConflict(teacher, seance)) {
+                    conflicts.add(conflict(Violation.SUBJECT_CONFLICT, teacher, idSeance, null));
+                }
+                for (Long other : after) {
+                    // Report a pair of added seances only once
+                    boolean otherAdded = !before.contains(other);
+                    if (other.equals(idSeance) || (otherAdded && other < idSeance)) {
+                        continue;
+                    }
+                    SeanceSlot otherSlot = allocation.seance(other);
+                    if (otherSlot != null && seance.overlaps(otherSlot)) {
+                        conflicts.add(conflict(Violation.TIME_CONFLICT, teacher, idSeance, other));
+                    }
+                }
+            }
+        }
+        return conflicts;
+    }
+
+    private static Map<String, Object> conflict(Violation type, TeacherProfile teacher, Long idSeance, Long withSeance) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("type", type);
+        m.put("message", type.getMessage());
+        m.put("idEnseignant", teacher.id());
+        m.put("nomComplet", teacher.nomComplet());
+        m.put("idSeance", idSeance);
+        if (withSeance != null) {
+            m.put("withSeance", withSeance);
+        }
+        return m;
+    }
+}
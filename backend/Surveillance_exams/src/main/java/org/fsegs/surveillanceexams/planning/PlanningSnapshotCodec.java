@@ -0,0 +1,291 @@
+package org.fsegs.surveillanceexams.planning;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary format for a {@link PlanningModel}, read and written through
+ * memory-mapped files.
+ *
+ * Layout (big-endian):
+ * <pre>
+ * header  : magic "PLNS", version, createdAt (epoch ms),
+ *           database fingerprint (count + longs), payload length, CRC32 of payload
+ * payload : matieres    (id, nom)
+ *           seances     (id, date, heureDebut, heureFin, necessaires, inscrits, matiere ids)
+ *           epreuves    (id, idSeance, idMatiere, filiere, classe, nbPaquets)
+ *           teachers    (id, nomComplet, grade, chargeSurveillance, matiere ids)
+ *           affectations(idEnseignant, idSeance)
+ * </pre>
+ * Nulls are encoded as Long.MIN_VALUE (ids, dates), -1 (times, strings) and NaN (doubles).
+ *
+ * The payload is encoded twice: once to compute its exact size, once directly
+ * into the mapped region of the file, so no intermediate copy is made.
+ */
+public final class PlanningSnapshotCodec {
+
+    private static final int MAGIC = 0x504C4E53; // "PLNS"
+    private static final int VERSION = 1;
+    private static final long NULL_LONG = Long.MIN_VALUE;
+
+    private PlanningSnapshotCodec() {
+    }
+
+    /**
+     * A decoded snapshot.
+     *
+     * @param fingerprint database fingerprint recorded when the snapshot was taken
+     */
+    public record Snapshot(PlanningModel model, long[] fingerprint, Instant createdAt, long sizeBytes) {
+    }
+
+    // =========================
+    // WRITE
+    // =========================
+    public static long write(Path file, PlanningModel model, long[] fingerprint) throws IOException {
+        Encoder counter = new Encoder(null);
+        encodePayload(counter, model);
+        long payloadLength = counter.position;
+
+        int headerLength = 4 + 4 + 8 + 4 + 8 * fingerprint.length + 8 + 8;
+        long total = headerLength + payloadLength;
+
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, "planning", ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, total);
+
+            ByteBuffer payload = buf.slice(headerLength, (int) payloadLength);
+            encodePayload(new Encoder(payload), model);
+
+            CRC32 crc = new CRC32();
+            crc.update(buf.slice(headerLength, (int) payloadLength));
+
+            buf.putInt(MAGIC);
+            buf.putInt(VERSION);
+            buf.putLong(System.currentTimeMillis());
+            buf.putInt(fingerprint.length);
+            for (long v : fingerprint) {
+                buf.putLong(v);
+            }
+            buf.putLong(payloadLength);
+            buf.putLong(crc.getValue());
+            buf.force();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return total;
+    }
+
+    private static void encodePayload(Encoder out, PlanningModel model) {
+        out.putInt(model.matieres().size());
+        for (Map.Entry<Long, String> m : model.matieres().entrySet()) {
+            out.putId(m.getKey());
+            out.putString(m.getValue());
+        }
+
+        out.putInt(model.seances().size());
+        for (SeanceSlot s : model.seances()) {
+            out.putId(s.id());
+            out.putLong(s.date() != null ? s.date().toEpochDay() : NULL_LONG);
+            out.putInt(s.heureDebut() != null ? s.heureDebut().toSecondOfDay() : -1);
+            out.putInt(s.heureFin() != null ? s.heureFin().toSecondOfDay() : -1);
+            out.putInt(s.nbSurveillantsNecessaires());
+            out.putInt(model.inscrits(s.id()));
+            out.putIds(s.matiereIds());
+        }
+
+        out.putInt(model.epreuves().size());
+        for (EpreuveInfo e : model.epreuves()) {
+            out.putId(e.id());
+            out.putId(e.idSeance());
+            out.putId(e.idMatiere());
+            out.putString(e.filiere());
+            out.putString(e.classe());
+            out.putInt(e.nbPaquets());
+        }
+
+        out.putInt(model.teachers().size());
+        for (TeacherProfile t : model.teachers()) {
+            out.putId(t.id());
+            out.putString(t.nomComplet());
+            out.putString(t.grade());
+            out.putDouble(t.chargeSurveillance() != null ? t.chargeSurveillance() : Double.NaN);
+            out.putIds(t.matiereIds());
+        }
+
+        out.putInt(model.assignmentCount());
+        for (Map.Entry<Long, Set<Long>> a : model.assignments().entrySet()) {
+            for (Long idSeance : a.getValue()) {
+                out.putId(a.getKey());
+                out.putId(idSeance);
+            }
+        }
+    }
+
+    // =========================
+    // READ
+    // =========================
+    public static Snapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            if (size < 12 || buf.getInt() != MAGIC) {
+                throw new IOException("Not a planning snapshot: " + file);
+            }
+            int version = buf.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported planning snapshot version " + version);
+            }
+            Instant createdAt = Instant.ofEpochMilli(buf.getLong());
+            long[] fingerprint = new long[buf.getInt()];
+            for (int i = 0; i < fingerprint.length; i++) {
+                fingerprint[i] = buf.getLong();
+            }
+            long payloadLength = buf.getLong();
+            long expectedCrc = buf.getLong();
+            if (buf.position() + payloadLength != size) {
+                throw new IOException("Truncated planning snapshot: " + file);
+            }
+
+            ByteBuffer payload = buf.slice(buf.position(), (int) payloadLength);
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if (crc.getValue() != expectedCrc) {
+                throw new IOException("Corrupted planning snapshot (CRC mismatch): " + file);
+            }
+
+            return new Snapshot(decodePayload(payload), fingerprint, createdAt, size);
+        }
+    }
+
+    private static PlanningModel decodePayload(ByteBuffer in) {
+        Map<Long, String> matieres = new LinkedHashMap<>();
+        for (int i = in.getInt(); i > 0; i--) {
+            matieres.put(getId(in), getString(in));
+        }
+
+        List<SeanceSlot> seances = new ArrayList<>();
+        Map<Long, Integer> inscrits = new HashMap<>();
+        for (int i = in.getInt(); i > 0; i--) {
+            Long id = getId(in);
+            long epochDay = in.getLong();
+            int debut = in.getInt();
+            int fin = in.getInt();
+            int necessaires = in.getInt();
+            inscrits.put(id, in.getInt());
+            seances.add(new SeanceSlot(id,
+                    epochDay != NULL_LONG ? LocalDate.ofEpochDay(epochDay) : null,
+                    debut >= 0 ? LocalTime.ofSecondOfDay(debut) : null,
+                    fin >= 0 ? LocalTime.ofSecondOfDay(fin) : null,
+                    necessaires, getIds(in)));
+        }
+
+        List<EpreuveInfo> epreuves = new ArrayList<>();
+        for (int i = in.getInt(); i > 0; i--) {
+            epreuves.add(new EpreuveInfo(getId(in), getId(in), getId(in), getString(in), getString(in), in.getInt()));
+        }
+
+        List<TeacherProfile> teachers = new ArrayList<>();
+        for (int i = in.getInt(); i > 0; i--) {
+            Long id = getId(in);
+            String nom = getString(in);
+            String grade = getString(in);
+            double charge = in.getDouble();
+            teachers.add(new TeacherProfile(id, nom, grade, Double.isNaN(charge) ? null : charge, getIds(in)));
+        }
+
+        Map<Long, Set<Long>> assignments = new HashMap<>();
+        for (int i = in.getInt(); i > 0; i--) {
+            assignments.computeIfAbsent(getId(in), k -> new HashSet<>()).add(getId(in));
+        }
+
+        return new PlanningModel(seances, teachers, inscrits, assignments, matieres, epreuves);
+    }
+
+    private static Long getId(ByteBuffer in) {
+        long v = in.getLong();
+        return v == NULL_LONG ? null : v;
+    }
+
+    private static Set<Long> getIds(ByteBuffer in) {
+        int n = in.getInt();
+        Long[] ids = new Long[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = in.getLong();
+        }
+        return Set.of(ids);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int len = in.getInt();
+        if (len < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[len];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes into a buffer, or only counts bytes when the buffer is null.
+     */
+    private static final class Encoder {
+        private final ByteBuffer buf;
+        private long position;
+
+        Encoder(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        void putInt(int v) {
+            if (buf != null) buf.putInt(v);
+            position += 4;
+        }
+
+        void putLong(long v) {
+            if (buf != null) buf.putLong(v);
+            position += 8;
+        }
+
+        void putDouble(double v) {
+            if (buf != null) buf.putDouble(v);
+            position += 8;
+        }
+
+        void putId(Long id) {
+            putLong(id != null ? id : NULL_LONG);
+        }
+
+        void putIds(Set<Long> ids) {
+            putInt(ids.size());
+            for (Long id : ids) {
+                putLong(id);
+            }
+        }
+
+        void putString(String s) {
+            if (s == null) {
+                putInt(-1);
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            if (buf != null) buf.put(bytes);
+            position += bytes.length;
+        }
+    }
+}
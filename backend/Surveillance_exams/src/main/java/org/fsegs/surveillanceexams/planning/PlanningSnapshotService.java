@@ -0,0 +1,227 @@
+package org.fsegs.surveillanceexams.planning;
+
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the planning to a binary snapshot (see {@link PlanningSnapshotCodec})
+ * periodically and on demand, and uses it for a warm start.
+ *
+ * At startup, before the application reports ready, the snapshot is read and
+ * its recorded database fingerprint is compared with the current one. If they
+ * match, the snapshot is installed as the current planning state, avoiding the
+ * full reload; otherwise the planning is loaded from the database and a fresh
+ * snapshot is written.
+ *
+ * The fingerprint is a handful of aggregates computed by the database over
+ * the active campaign's seances, epreuves, paquets and affectations, plus the
+ * teachers and matieres: row count, max id, and sums of each row's id times
+ * its columns. Weighting by the id makes in-place edits that keep plain
+ * counts and sums show up (a swapped affectation, a moved seance), while only
+ * a few rows per table come back. Text columns only count through their
+ * length; a same-length rename is picked up by the next scheduled snapshot.
+ */
+@Service
+public class PlanningSnapshotService implements ApplicationRunner {
+
+    private final PlanningLoader loader;
+    private final PlanningStateService planningState;
+    private final CampagneService campagneService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTx;
+    private final boolean enabled;
+    private final Path file;
+
+    private volatile Map<String, Object> lastStatus = Map.of();
+    private volatile String startup;
+
+    public PlanningSnapshotService(PlanningLoader loader,
+                                   PlanningStateService planningState,
+                                   CampagneService campagneService,
+                                   JdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   @Value("${surveillance.snapshot.enabled:true}") boolean enabled,
+                                   @Value("${surveillance.snapshot.file:data/planning.snap}") String file) {
+        this.loader = loader;
+        this.planningState = planningState;
+        this.campagneService = campagneService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTx = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTx.setReadOnly(true);
+        this.enabled = enabled;
+        this.file = Path.of(file);
+    }
+
+    // =========================
+    // WARM START
+    // =========================
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        String outcome;
+        try {
+            if (Files.exists(file)) {
+                PlanningSnapshotCodec.Snapshot snapshot = PlanningSnapshotCodec.read(file);
+                long[] fingerprint = fingerprint();
+                if (Arrays.equals(snapshot.fingerprint(), fingerprint)) {
+                    planningState.install(snapshot::model);
+                    outcome = "warm start from snapshot taken at " + snapshot.createdAt();
+                } else {
+                    outcome = "snapshot does not match the database, reloaded";
+                    writeSnapshot();
+                }
+            } else {
+                outcome = "no snapshot, loaded from database";
+                writeSnapshot();
+            }
+        } catch (IOException | RuntimeException e) {
+            outcome = "snapshot unusable (" + e.getMessage() + "), loaded from database";
+            planningState.current();
+        }
+        startup = outcome + " in " + (System.nanoTime() - start) / 1_000_000 + " ms";
+    }
+
+    // =========================
+    // WRITE
+    // =========================
+    @Scheduled(initialDelayString = "${surveillance.snapshot.interval-ms:300000}",
+               fixedDelayString = "${surveillance.snapshot.interval-ms:300000}")
+    public void scheduledSnapshot() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            writeSnapshot();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to write planning snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Load the planning and the database fingerprint in one read-only
+     * transaction (consistent view), install it as the current state and
+     * write it to disk.
+     */
+    public synchronized Map<String, Object> writeSnapshot() throws IOException {
+        long start = System.nanoTime();
+        PlanningModel[] loaded = new PlanningModel[1];
+        long[][] fingerprint = new long[1][];
+        planningState.install(() -> readOnlyTx.execute(tx -> {
+            fingerprint[0] = computeFingerprint();
+            loaded[0] = loader.load();
+            return loaded[0];
+        }));
+
+        // Write the model exactly as loaded, so that it matches its fingerprint
+        PlanningModel model = loaded[0];
+        long size = PlanningSnapshotCodec.write(file, model, fingerprint[0]);
+
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("file", file.toAbsolutePath().toString());
+        status.put("createdAt", Instant.now().toString());
+        status.put("sizeBytes", size);
+        status.put("seances", model.seances().size());
+        status.put("enseignants", model.teachers().size());
+        status.put("affectations", model.assignmentCount());
+        status.put("durationMs", (System.nanoTime() - start) / 1_000_000);
+        lastStatus = status;
+        return status;
+    }
+
+    /**
+     * The current planning in the snapshot format, for offline tools (see
+     * {@code ui.MainWindow}). Not tied to the database: the fingerprint is empty.
+     */
+    public byte[] export() throws IOException {
+        Path tmp = Files.createTempFile("planning-export", ".snap");
+        try {
+            PlanningSnapshotCodec.write(tmp, planningState.current(), new long[0]);
+            return Files.readAllBytes(tmp);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>(lastStatus);
+        status.put("enabled", enabled);
+        status.put("exists", Files.exists(file));
+        status.put("startup", startup);
+        return status;
+    }
+
+    // Per table: count, max id and id-weighted sums of the columns PlanningLoader reads.
+    // Campaign-scoped queries take the active campaign id as their only parameter.
+    private static final String[] FINGERPRINT_QUERIES = {
+            "SELECT COUNT(*), MAX(id_seance), " +
+                    "SUM(id_seance * (COALESCE(nb_surveillants_necessaires, 0) * 1009 " +
+                    "+ COALESCE(nb_surveillants_inscrits, 0))), " +
+                    "SUM(id_seance * (YEAR(date_seance) * 10000 + MONTH(date_seance) * 100 + DAYOFMONTH(date_seance))), " +
+                    "SUM(id_seance * (HOUR(heure_debut) * 60 + MINUTE(heure_debut) " +
+                    "+ (HOUR(heure_fin) * 60 + MINUTE(heure_fin)) * 1440)) " +
+                    "FROM seance WHERE id_campagne = ?",
+            "SELECT COUNT(*), MAX(a.id_affectation), SUM(a.id_affectation * (a.id_enseignant * 31 + a.id_seance)) " +
+                    "FROM affectation a JOIN seance s ON s.id_seance = a.id_seance WHERE s.id_campagne = ?",
+            "SELECT COUNT(*), MAX(e.id_epreuve), " +
+                    "SUM(e.id_epreuve * (e.id_seance * 31 + COALESCE(e.id_matiere, 0))), " +
+                    "SUM(e.id_epreuve * (CHAR_LENGTH(COALESCE(e.filiere, '')) * 31 + CHAR_LENGTH(COALESCE(e.classe, '')))) " +
+                    "FROM epreuve e JOIN seance s ON s.id_seance = e.id_seance WHERE s.id_campagne = ?",
+            "SELECT COUNT(*), MAX(p.id_paquet), SUM(p.id_paquet * (p.id_epreuve * 31 + COALESCE(p.id_matiere, 0))) " +
+                    "FROM paquet p JOIN epreuve e ON e.id_epreuve = p.id_epreuve " +
+                    "JOIN seance s ON s.id_seance = e.id_seance WHERE s.id_campagne = ?",
+            "SELECT COUNT(*), MAX(id_enseignant), " +
+                    "SUM(id_enseignant * (ROUND(COALESCE(charge_surveillance, 0) * 100) * 31 " +
+                    "+ CHAR_LENGTH(COALESCE(grade, '')))), " +
+                    "SUM(id_enseignant * CHAR_LENGTH(nom)) FROM enseignant",
+            "SELECT COUNT(*), SUM(id_enseignant * (id_matiere + 7)) FROM enseignant_matiere",
+            "SELECT COUNT(*), MAX(id_matiere), SUM(id_matiere * CHAR_LENGTH(nom)) FROM matiere"
+    };
+
+    /**
+     * Database fingerprint, in its own read-only transaction.
+     */
+    long[] fingerprint() {
+        return readOnlyTx.execute(tx -> computeFingerprint());
+    }
+
+    /**
+     * The aggregates of every fingerprint query, in order, then the active
+     * campaign. A NULL aggregate (no rows) counts as 0.
+     */
+    private long[] computeFingerprint() {
+        Long campagneId = campagneService.activeId();
+        long scope = campagneId == null ? -1 : campagneId;
+        List<Long> values = new ArrayList<>();
+        for (String query : FINGERPRINT_QUERIES) {
+            Object[] args = query.endsWith("?") ? new Object[]{scope} : new Object[0];
+            jdbcTemplate.query(query, rs -> {
+                int columns = rs.getMetaData().getColumnCount();
+                for (int c = 1; c <= columns; c++) {
+                    Object value = rs.getObject(c);
+                    values.add(value == null ? 0 : ((Number) value).longValue());
+                }
+            }, args);
+        }
+        values.add(scope);
+        return values.stream().mapToLong(Long::longValue).toArray();
+    }
+}
@@ -0,0 +1,116 @@
+package org.fsegs.surveillanceexams.planning;
+
+import lombok.RequiredArgsConstructor;
+import org.fsegs.surveillanceexams.event.AffectationChangedEvent;
+import org.fsegs.surveillanceexams.event.PlanningDataChangedEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Holds the current in-memory {@link PlanningModel} shared by the read-side
+ * features (simulation, recommendations, analysis...).
+ *
+ * The model is loaded on first use (or installed from a snapshot at startup)
+ * and then kept up to date from committed {@link AffectationChangedEvent}s.
+ * Reference data changes ({@link PlanningDataChangedEvent}) drop the model so
+ * that it is reloaded on next use.
+ *
+ * Readers always get an immutable model and never block writers.
+ */
+@Service
+@RequiredArgsConstructor
+public class PlanningStateService {
+
+    private final PlanningLoader loader;
+
+    private final Object loadLock = new Object();
+    private volatile PlanningModel current;
+
+    // Guarded by this: changes committed while a load is running
+    private List<AffectationChangedEvent> changesDuringLoad;
+    // Guarded by this: bumped on every invalidation
+    private long generation;
+
+    public PlanningModel current() {
+        PlanningModel model = current;
+        if (model != null) {
+            return model;
+        }
+        return load(loader::load, true);
+    }
+
+    /**
+     * Whether a model is currently loaded (without triggering a load).
+     */
+    public boolean isLoaded() {
+        return current != null;
+    }
+
+    /**
+     * Install a model from another source (e.g. a snapshot), replaying the
+     * changes committed while it was being produced.
+     */
+    public PlanningModel install(Supplier<PlanningModel> source) {
+        return load(source, false);
+    }
+
+    public synchronized void invalidate() {
+        current = null;
+        generation++;
+    }
+
+    private PlanningModel load(Supplier<PlanningModel> source, boolean onlyIfAbsent) {
+        synchronized (loadLock) {
+            PlanningModel model = current;
+            if (onlyIfAbsent && model != null) {
+                return model;
+            }
+            long loadGeneration;
+            synchronized (this) {
+                changesDuringLoad = new ArrayList<>();
+                loadGeneration = generation;
+            }
+            try {
+                model = source.get();
+                synchronized (this) {
+                    // The source may or may not include these changes; replaying is idempotent
+                    for (AffectationChangedEvent event : changesDuringLoad) {
+                        model = apply(model, event);
+                    }
+                    if (generation == loadGeneration) {
+                        current = model;
+                    }
+                    return model;
+                }
+            } finally {
+                synchronized (this) {
+                    changesDuringLoad = null;
+                }
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onAffectationChanged(AffectationChangedEvent event) {
+        if (changesDuringLoad != null) {
+            changesDuringLoad.add(event);
+        }
+        if (current != null) {
+            current = apply(current, event);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPlanningDataChanged(PlanningDataChangedEvent event) {
+        invalidate();
+    }
+
+    private static PlanningModel apply(PlanningModel model, AffectationChangedEvent event) {
+        return model.withAssignment(event.idEnseignant(), event.idSeance(),
+                event.type() == AffectationChangedEvent.Type.ASSIGNED);
+    }
+}
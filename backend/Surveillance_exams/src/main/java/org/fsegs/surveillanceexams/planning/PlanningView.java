@@ -0,0 +1,41 @@
+package org.fsegs.surveillanceexams.planning;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Read access to a planning state: seances, teachers, fill counters and assignments.
+ */
+public interface PlanningView {
+
+    SeanceSlot seance(Long idSeance);
+
+    TeacherProfile teacher(Long idEnseignant);
+
+    Collection<SeanceSlot> seances();
+
+    Collection<TeacherProfile> teachers();
+
+    /**
+     * Stored number of registered surveillants (Seance.nbSurveillantsInscrits).
+     */
+    int inscrits(Long idSeance);
+
+    /**
+     * Ids of the seances the teacher is assigned to (never null).
+     */
+    Set<Long> seancesOf(Long idEnseignant);
+
+    default boolean isSaturee(Long idSeance) {
+        SeanceSlot s = seance(idSeance);
+        return s != null && inscrits(idSeance) >= s.nbSurveillantsNecessaires();
+    }
+
+    default int remainingQuota(Long idEnseignant) {
+        TeacherProfile t = teacher(idEnseignant);
+        if (t == null || t.chargeSurveillance() == null) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) Math.max(0, Math.ceil(t.chargeSurveillance() - seancesOf(idEnseignant).size()));
+    }
+}
@@ -0,0 +1,28 @@
+package org.fsegs.surveillanceexams.planning;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Set;
+
+/**
+ * Immutable view of a seance as seen by the planning rules.
+ *
+ * @param matiereIds subjects examined in the seance (through its paquets)
+ */
+public record SeanceSlot(Long id, LocalDate date, LocalTime heureDebut, LocalTime heureFin,
+                         int nbSurveillantsNecessaires, Set<Long> matiereIds) {
+
+    /**
+     * Same overlap rule as {@code AffectationRepository.existsByEnseignantAndSeanceDateTime}:
+     * same date and A_start < B_end AND B_start < A_end.
+     */
+    public boolean overlaps(SeanceSlot other) {
+        if (date == null || heureDebut == null || heureFin == null
+                || other.date == null || other.heureDebut == null || other.heureFin == null) {
+            return false;
+        }
+        return date.equals(other.date)
+                && heureDebut.isBefore(other.heureFin)
+                && other.heureDebut.isBefore(heureFin);
+    }
+}
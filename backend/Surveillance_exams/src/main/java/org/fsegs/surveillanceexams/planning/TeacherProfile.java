@@ -0,0 +1,13 @@
+package org.fsegs.surveillanceexams.planning;
+
+import java.util.Set;
+
+/**
+ * Immutable view of a teacher as seen by the planning rules.
+ *
+ * @param chargeSurveillance surveillance quota, null when unlimited
+ * @param matiereIds         subjects taught by the teacher
+ */
+public record TeacherProfile(Long id, String nomComplet, String grade, Double chargeSurveillance,
+                             Set<Long> matiereIds) {
+}
@@ -0,0 +1,26 @@
+package org.fsegs.surveillanceexams.planning;
+
+/**
+ * Reasons why a teacher cannot be assigned to a seance, in the order
+ * they are checked by {@link PlanningRules}.
+ */
+public enum Violation {
+    UNKNOWN("Teacher or session not found"),
+    ALREADY_ASSIGNED("Already assigned"),
+    SATURATED("Session full"),
+    SUBJECT_CONFLICT("Subject conflict"),
+    TIME_CONFLICT("Time conflict"),
+    QUOTA_REACHED("Teacher has reached maximum surveillance load"),
+    // Only for removals (not checked by PlanningRules)
+    NOT_ASSIGNED("No assignment found");
+
+    private final String message;
+
+    Violation(String message) {
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
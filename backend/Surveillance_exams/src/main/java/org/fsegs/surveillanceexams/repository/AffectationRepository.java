@@ -1,6 +1,7 @@
 package org.fsegs.surveillanceexams.repository;
 
 import org.fsegs.surveillanceexams.model.Affectation;
+import org.fsegs.surveillanceexams.model.Campagne;
 import org.fsegs.surveillanceexams.model.Enseignant;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -9,10 +10,16 @@ import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface AffectationRepository extends JpaRepository<Affectation, Long> {
     boolean existsByEnseignantAndSeance(Enseignant enseignant, org.fsegs.surveillanceexams.model.Seance seance);
 
+    Optional<Affectation> findByEnseignantAndSeance(Enseignant enseignant,
+                                                    org.fsegs.surveillanceexams.model.Seance seance);
+
     /**
      * FIXED: Returns true if the given enseignant has any affectation that overlaps
      * with the provided time interval on the same date.
@@ -44,6 +51,24 @@ public interface AffectationRepository extends JpaRepository<Affectation, Long>
                                                 @Param("heureDebut") LocalTime heureDebut,
                                                 @Param("heureFin") LocalTime heureFin);
     
+    /**
+     * Same overlap check as {@link #existsByEnseignantAndSeanceDateTime}, ignoring
+     * one of the teacher's assignments. Used by swaps, where the teacher gives
+     * up that seance in exchange for the new one.
+     */
+    @Query("SELECT CASE WHEN COUNT(a) > 0 THEN true ELSE false END " +
+           "FROM Affectation a " +
+           "WHERE a.enseignant = :enseignant " +
+           "AND a.seance <> :excluded " +
+           "AND a.seance.date = :date " +
+           "AND a.seance.heureDebut < :heureFin " +
+           "AND :heureDebut < a.seance.heureFin")
+    boolean existsOverlappingAffectationExcluding(@Param("enseignant") Enseignant enseignant,
+                                                  @Param("excluded") org.fsegs.surveillanceexams.model.Seance excluded,
+                                                  @Param("date") LocalDate date,
+                                                  @Param("heureDebut") LocalTime heureDebut,
+                                                  @Param("heureFin") LocalTime heureFin);
+
     /**
      * NEW: Delete assignment by teacher and session.
      * Used when cancelling a wish.
@@ -55,4 +80,65 @@ public interface AffectationRepository extends JpaRepository<Affectation, Long>
     @Query("DELETE FROM Affectation a WHERE a.enseignant = :enseignant AND a.seance = :seance")
     void deleteByEnseignantAndSeance(@Param("enseignant") Enseignant enseignant,
                                      @Param("seance") org.fsegs.surveillanceexams.model.Seance seance);
-}
\ No newline at end of file
+
+    /**
+     * Number of assignments of a teacher within one campaign (the quota is per campaign).
+     */
+    @Query("SELECT COUNT(a) FROM Affectation a WHERE a.enseignant = :enseignant AND a.seance.campagne = :campagne")
+    long countByEnseignantAndCampagne(@Param("enseignant") Enseignant enseignant,
+                                      @Param("campagne") Campagne campagne);
+
+    /**
+     * Assignments on the seances of a campaign.
+     */
+    @Query("SELECT a FROM Affectation a WHERE a.seance.campagne.id = :campagneId")
+    List<Affectation> findAllByCampagneId(@Param("campagneId") Long campagneId);
+
+    /**
+     * Number of assignments per teacher within a campaign, as [idEnseignant, count] rows.
+     * Used to rebuild in-memory aggregates in a single query.
+     */
+    @Query("SELECT a.enseignant.id, COUNT(a) FROM Affectation a " +
+           "WHERE a.seance.campagne.id = :campagneId GROUP BY a.enseignant.id")
+    List<Object[]> countAffectationsGroupedByEnseignant(@Param("campagneId") Long campagneId);
+
+    /**
+     * Assignments on the seances of a campaign as [idEnseignant, idSeance] pairs.
+     */
+    @Query("SELECT a.enseignant.id, a.seance.id FROM Affectation a WHERE a.seance.campagne.id = :campagneId")
+    List<Object[]> findPairsByCampagneId(@Param("campagneId") Long campagneId);
+
+    /**
+     * All assignments, whatever their campaign, as [idEnseignant, idSeance] pairs.
+     */
+    @Query("SELECT a.enseignant.id, a.seance.id FROM Affectation a")
+    List<Object[]> findAllPairs();
+
+    /**
+     * Assignments on the seance ids in [fromId, toId] as [idEnseignant, idSeance] pairs.
+     */
+    @Query("SELECT a.enseignant.id, a.seance.id FROM Affectation a WHERE a.seance.id BETWEEN :fromId AND :toId")
+    List<Object[]> findPairsBySeanceIdBetween(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    /**
+     * Teachers assigned to a seance.
+     */
+    @Query("SELECT a.enseignant.id FROM Affectation a WHERE a.seance.id = :idSeance")
+    List<Long> findEnseignantIdsBySeanceId(@Param("idSeance") Long idSeance);
+
+    /**
+     * Assignments of the given teachers on the given dates, whatever their campaign, as
+     * [idEnseignant, idSeance, date, heureDebut, heureFin] rows: what the time conflict check of a wish reads.
+     */
+    @Query("SELECT a.enseignant.id, s.id, s.date, s.heureDebut, s.heureFin FROM Affectation a JOIN a.seance s " +
+           "WHERE a.enseignant.id IN :enseignantIds AND s.date IN :dates")
+    List<Object[]> findSlotsByEnseignantIdsAndDates(@Param("enseignantIds") Collection<Long> enseignantIds,
+                                                    @Param("dates") Collection<LocalDate> dates);
+
+    /**
+     * Number of assignments of the given teachers per campaign, as [idEnseignant, idCampagne, count] rows.
+     */
+    @Query("SELECT a.enseignant.id, a.seance.campagne.id, COUNT(a) FROM Affectation a " +
+           "WHERE a.enseignant.id IN :enseignantIds GROUP BY a.enseignant.id, a.seance.campagne.id")
+    List<Object[]> countGroupedByEnseignantIdsAndCampagne(@Param("enseignantIds") Collection<Long> enseignantIds);
+}
@@ -0,0 +1,30 @@
+package org.fsegs.surveillanceexams.repository;
+
+import org.fsegs.surveillanceexams.model.Campagne;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface CampagneRepository extends JpaRepository<Campagne, Long> {
+
+    Optional<Campagne> findFirstByActiveTrueOrderByIdDesc();
+
+    List<Campagne> findAllByOrderByIdDesc();
+
+    /**
+     * Most recent campaign that still has its rows in the database.
+     */
+    Optional<Campagne> findFirstByStatutNotOrderByIdDesc(Campagne.CampagneStatut statut);
+
+    /**
+     * Clear the active flag of every other campaign.
+     * @param id The campaign that stays active
+     */
+    @Modifying
+    @Query("UPDATE Campagne c SET c.active = false WHERE c.id <> :id AND c.active = true")
+    int deactivateAllExcept(@Param("id") Long id);
+}
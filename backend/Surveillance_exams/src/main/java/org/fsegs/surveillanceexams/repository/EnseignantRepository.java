@@ -1,7 +1,55 @@
 package org.fsegs.surveillanceexams.repository;
 
+import jakarta.persistence.LockModeType;
 import org.fsegs.surveillanceexams.model.Enseignant;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface EnseignantRepository extends JpaRepository<Enseignant, Long> {
-}
\ No newline at end of file
+
+    /**
+     * Scalar rows [id, nomComplet, grade, chargeSurveillance] for every teacher,
+     * without triggering the eager load of their matieres.
+     */
+    @Query("SELECT e.id, e.nomComplet, e.grade, e.chargeSurveillance FROM Enseignant e")
+    List<Object[]> findPlanningRows();
+
+    /**
+     * [idEnseignant, idMatiere] pairs: the subjects taught by each teacher.
+     */
+    @Query("SELECT e.id, m.id FROM Enseignant e JOIN e.matieres m")
+    List<Object[]> findEnseignantMatierePairs();
+
+    /**
+     * Load a teacher and lock its row until the end of the transaction, so
+     * that the teacher's assignments and quota cannot change between the
+     * checks and the write.
+     *
+     * Lock order: every write path locks its seance rows first
+     * ({@link SeanceRepository#findByIdForUpdate}), then its teacher rows,
+     * each in ascending id order when it needs several. Taking a teacher
+     * before a seance, or two teachers out of order, can deadlock against
+     * wishes, cancellations, swaps, waitlist promotion and approval runs.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM Enseignant e WHERE e.id = :id")
+    Optional<Enseignant> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Same rows as {@link #findPlanningRows()}, for the given teachers.
+     */
+    @Query("SELECT e.id, e.nomComplet, e.grade, e.chargeSurveillance FROM Enseignant e WHERE e.id IN :ids")
+    List<Object[]> findPlanningRowsByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Same pairs as {@link #findEnseignantMatierePairs()}, for the given teachers.
+     */
+    @Query("SELECT e.id, m.id FROM Enseignant e JOIN e.matieres m WHERE e.id IN :ids")
+    List<Object[]> findEnseignantMatierePairsByIds(@Param("ids") Collection<Long> ids);
+}
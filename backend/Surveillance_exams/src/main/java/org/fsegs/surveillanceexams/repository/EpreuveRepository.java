@@ -4,6 +4,7 @@ import org.fsegs.surveillanceexams.model.Epreuve;
 import org.fsegs.surveillanceexams.model.Matiere;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -22,4 +23,16 @@ public interface EpreuveRepository extends JpaRepository<Epreuve, Long> {
         WHERE p.epreuve.seance.id = :idSeance
     """)
     List<Matiere> findMatieresBySeanceId(Long idSeance);
+
+    /**
+     * Scalar rows [id, idSeance, idMatiere, filiere, classe] for the epreuves of a campaign.
+     */
+    @Query("""
+        SELECT e.id, s.id, m.id, e.filiere, e.classe
+        FROM Epreuve e
+        JOIN e.seance s
+        LEFT JOIN e.matiere m
+        WHERE s.campagne.id = :campagneId
+    """)
+    List<Object[]> findPlanningRows(@Param("campagneId") Long campagneId);
 }
@@ -0,0 +1,33 @@
+package org.fsegs.surveillanceexams.repository;
+
+import org.fsegs.surveillanceexams.model.Enseignant;
+import org.fsegs.surveillanceexams.model.ListeAttente;
+import org.fsegs.surveillanceexams.model.Seance;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface ListeAttenteRepository extends JpaRepository<ListeAttente, Long> {
+
+    Optional<ListeAttente> findByEnseignantAndSeance(Enseignant enseignant, Seance seance);
+
+    /**
+     * Head of the waitlist of a seance.
+     * Served by the (id_seance, id_attente) index, so it stays constant time
+     * regardless of the queue length.
+     * @param seance The session
+     * @return The oldest entry, if any
+     */
+    Optional<ListeAttente> findFirstBySeanceOrderByIdAsc(Seance seance);
+
+    /**
+     * Number of entries ahead of the given one, used to report a position.
+     * @param seance The session
+     * @param id The entry id
+     * @return Count of older entries
+     */
+    long countBySeanceAndIdLessThan(Seance seance, Long id);
+
+    List<ListeAttente> findBySeanceOrderByIdAsc(Seance seance);
+}
@@ -2,8 +2,17 @@ package org.fsegs.surveillanceexams.repository;
 
 import org.fsegs.surveillanceexams.model.Matiere;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface MatiereRepository extends JpaRepository<Matiere, Long> {
+
+    /**
+     * Scalar rows [id, nom] for every matiere.
+     */
+    @Query("SELECT m.id, m.nom FROM Matiere m")
+    List<Object[]> findAllRows();
 }
@@ -6,6 +6,9 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface PaquetRepository extends JpaRepository<Paquet, Long> {
     
@@ -30,4 +33,25 @@ public interface PaquetRepository extends JpaRepository<Paquet, Long> {
      */
     @Query("SELECT COUNT(p) FROM Paquet p WHERE p.epreuve.id = :idEpreuve")
     long countPaquetsByEpreuveId(@Param("idEpreuve") Long idEpreuve);
-}
\ No newline at end of file
+
+    /**
+     * Distinct [idSeance, idMatiere] pairs: the subjects examined in each seance of a campaign.
+     * Same relation as {@code EpreuveRepository.findMatieresBySeanceId}, for all seances at once.
+     */
+    @Query("SELECT DISTINCT s.id, p.matiere.id FROM Paquet p JOIN p.epreuve e JOIN e.seance s " +
+           "WHERE s.campagne.id = :campagneId")
+    List<Object[]> findSeanceMatierePairs(@Param("campagneId") Long campagneId);
+
+    /**
+     * Number of paquets per epreuve of a campaign, as [idEpreuve, count] rows.
+     */
+    @Query("SELECT e.id, COUNT(p) FROM Paquet p JOIN p.epreuve e JOIN e.seance s " +
+           "WHERE s.campagne.id = :campagneId GROUP BY e.id")
+    List<Object[]> countPaquetsGroupedByEpreuve(@Param("campagneId") Long campagneId);
+
+    /**
+     * Same pairs as {@link #findSeanceMatierePairs}, for the given seances.
+     */
+    @Query("SELECT DISTINCT s.id, p.matiere.id FROM Paquet p JOIN p.epreuve e JOIN e.seance s WHERE s.id IN :ids")
+    List<Object[]> findSeanceMatierePairsBySeanceIds(@Param("ids") Collection<Long> ids);
+}
@@ -1,13 +1,65 @@
 package org.fsegs.surveillanceexams.repository;
 
+import jakarta.persistence.LockModeType;
 import org.fsegs.surveillanceexams.model.Seance;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 public interface SeanceRepository extends JpaRepository<Seance, Long> {
-    // Count how many seances contain an epreuve of a specific matiere
+    // Count how many seances of a campaign contain an epreuve of a specific matiere
     // Formula requirement: "nombre de séances de ses matières"
-    @Query("SELECT COUNT(DISTINCT s) FROM Seance s JOIN s.epreuves e JOIN e.paquets p WHERE p.matiere.id = :matiereId")
-    long countSeancesByMatiereId(@Param("matiereId") Long matiereId);
-}
\ No newline at end of file
+    @Query("SELECT COUNT(DISTINCT s) FROM Seance s JOIN s.epreuves e JOIN e.paquets p " +
+           "WHERE p.matiere.id = :matiereId AND s.campagne.id = :campagneId")
+    long countSeancesByMatiereId(@Param("matiereId") Long matiereId, @Param("campagneId") Long campagneId);
+
+    /**
+     * Seances of a campaign, in date order (served by the (id_campagne, date_seance) index).
+     */
+    @Query("SELECT s FROM Seance s WHERE s.campagne.id = :campagneId ORDER BY s.date, s.heureDebut, s.id")
+    List<Seance> findAllByCampagneId(@Param("campagneId") Long campagneId);
+
+    /**
+     * Scalar rows [id, date, heureDebut, heureFin, nbSurveillantsNecessaires, nbSurveillantsInscrits]
+     * for the seances of a campaign, without loading entities. Used to build the in-memory planning.
+     */
+    @Query("SELECT s.id, s.date, s.heureDebut, s.heureFin, s.nbSurveillantsNecessaires, s.nbSurveillantsInscrits " +
+           "FROM Seance s WHERE s.campagne.id = :campagneId")
+    List<Object[]> findPlanningRows(@Param("campagneId") Long campagneId);
+
+    /**
+     * Number of seances per campaign, as [idCampagne, count] rows.
+     */
+    @Query("SELECT s.campagne.id, COUNT(s) FROM Seance s WHERE s.campagne IS NOT NULL GROUP BY s.campagne.id")
+    List<Object[]> countGroupedByCampagne();
+
+    /**
+     * Keyset page of [id, nbSurveillantsInscrits] rows, all campaigns, in id
+     * order after the given id. Used by the consistency reconciler.
+     */
+    @Query("SELECT s.id, s.nbSurveillantsInscrits FROM Seance s WHERE s.id > :afterId ORDER BY s.id")
+    List<Object[]> findCounterRowsAfter(@Param("afterId") Long afterId, Pageable page);
+
+    /**
+     * Load a seance and lock its row until the end of the transaction.
+     * Serializes writers on the same seance so that the saturation check,
+     * the counter update and waitlist promotion are atomic.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM Seance s WHERE s.id = :id")
+    Optional<Seance> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Scalar rows [id, date, heureDebut, heureFin, nbSurveillantsNecessaires, nbSurveillantsInscrits,
+     * idCampagne, campaign statut] for the given seances. Used by the wish group commit.
+     */
+    @Query("SELECT s.id, s.date, s.heureDebut, s.heureFin, s.nbSurveillantsNecessaires, s.nbSurveillantsInscrits, " +
+           "c.id, c.statut FROM Seance s LEFT JOIN s.campagne c WHERE s.id IN :ids")
+    List<Object[]> findWishRowsByIds(@Param("ids") Collection<Long> ids);
+}
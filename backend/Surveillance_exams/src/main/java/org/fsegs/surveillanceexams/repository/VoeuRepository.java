@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -47,4 +48,55 @@ public interface VoeuRepository extends JpaRepository<Voeu, Long> {
     @Query("DELETE FROM Voeu v WHERE v.enseignant = :enseignant AND v.seance = :seance")
     void deleteByEnseignantAndSeance(@Param("enseignant") Enseignant enseignant,
                                      @Param("seance") Seance seance);
-}
\ No newline at end of file
+
+    /**
+     * Scalar rows [idVoeu, idEnseignant, idSeance, dateSoumission] of the wishes in a given status
+     * on the seances of a campaign.
+     * Used by the batch approval run, which does not need the entities.
+     * @param status The wish status
+     * @param campagneId The campaign
+     * @return Matching rows
+     */
+    @Query("SELECT v.id, v.enseignant.id, v.seance.id, v.dateSoumission FROM Voeu v " +
+           "WHERE v.status = :status AND v.seance.campagne.id = :campagneId")
+    List<Object[]> findRowsByStatus(@Param("status") Voeu.VoeuStatus status,
+                                    @Param("campagneId") Long campagneId);
+
+    /**
+     * Wishes on the seances of a campaign.
+     * @param campagneId The campaign
+     * @return Matching wishes
+     */
+    @Query("SELECT v FROM Voeu v WHERE v.seance.campagne.id = :campagneId")
+    List<Voeu> findAllByCampagneId(@Param("campagneId") Long campagneId);
+
+    /**
+     * Scalar rows [idVoeu, idEnseignant, idSeance, status] of the wishes on the seance ids in [fromId, toId].
+     * @param fromId First seance id
+     * @param toId Last seance id
+     * @return Matching rows
+     */
+    @Query("SELECT v.id, v.enseignant.id, v.seance.id, v.status FROM Voeu v " +
+           "WHERE v.seance.id BETWEEN :fromId AND :toId")
+    List<Object[]> findStatusRowsBySeanceIdBetween(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    /**
+     * Change the status of a wish without loading it.
+     * @param id The wish
+     * @param status The new status
+     */
+    @Modifying
+    @Query("UPDATE Voeu v SET v.status = :status WHERE v.id = :id")
+    void updateStatus(@Param("id") Long id, @Param("status") Voeu.VoeuStatus status);
+
+    /**
+     * [idEnseignant, idSeance] pairs of the wishes of the given teachers on the given seances.
+     * @param enseignantIds The teachers
+     * @param seanceIds The seances
+     * @return Matching pairs
+     */
+    @Query("SELECT v.enseignant.id, v.seance.id FROM Voeu v " +
+           "WHERE v.enseignant.id IN :enseignantIds AND v.seance.id IN :seanceIds")
+    List<Object[]> findPairsByEnseignantIdsAndSeanceIds(@Param("enseignantIds") Collection<Long> enseignantIds,
+                                                        @Param("seanceIds") Collection<Long> seanceIds);
+}
@@ -0,0 +1,288 @@
+package org.fsegs.surveillanceexams.search;
+
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * Filtered search over the seances of the active campaign, for the teacher
+ * dashboard ("unsaturated seances on this date, for this filiere, without my
+ * subjects") instead of downloading every seance and filtering client-side.
+ *
+ * A request runs at most three statements, whatever the page size: the page
+ * itself (keyset pagination on date, start time, id; seances without a date
+ * or start time come after the others), the epreuves of the
+ * page's seances, and, on the first page only, the facet counts as one
+ * UNION ALL query. The filters are SQL predicates on seance columns plus
+ * EXISTS subqueries on epreuve, so the (id_campagne, date_seance) index on
+ * seance and the (filiere, classe) index on epreuve do the narrowing.
+ */
+@Service
+public class SeanceSearchService {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 200;
+
+    /**
+     * Search filters; every field is optional.
+     *
+     * @param heureMin         seances starting at or after this time
+     * @param heureMax         seances ending at or before this time
+     * @param matiere          case-insensitive part of a matiere name
+     * @param sansMatieresDe   exclude seances with an epreuve on a subject this teacher teaches
+     */
+    public record Criteria(LocalDate from, LocalDate to,
+                           LocalTime heureMin, LocalTime heureMax,
+                           Boolean saturee,
+                           String filiere, String classe, String matiere,
+                           Long sansMatieresDe) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CampagneService campagneService;
+
+    public SeanceSearchService(JdbcTemplate jdbcTemplate, CampagneService campagneService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.campagneService = campagneService;
+    }
+
+    /**
+     * @param cursor opaque cursor from a previous page, or null for the first page
+     * @return items, nextCursor (null on the last page) and, on the first page, total and facets
+     */
+    public Map<String, Object> search(Criteria criteria, String cursor, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_LIMIT : Math.max(1, Math.min(limit, MAX_LIMIT));
+        Long campagneId = campagneService.activeId();
+
+        // ----- Page -----
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(
+                "SELECT s.id_seance, s.date_seance, s.heure_debut, s.heure_fin, " +
+                "s.nb_surveillants_necessaires, s.nb_surveillants_inscrits FROM seance s WHERE ");
+        appendFilter(sql, params, criteria, campagneId);
+        if (cursor != null && !cursor.isBlank()) {
+            appendAfter(sql, params, decodeCursor(cursor));
+        }
+        // NULLs last, spelled out: MySQL and H2 would put them first
+        sql.append(" ORDER BY s.date_seance IS NULL, s.date_seance, s.heure_debut IS NULL, s.heure_debut, " +
+                "s.id_seance LIMIT ?");
+        params.add(pageSize + 1);
+
+        List<Map<String, Object>> items = jdbcTemplate.query(sql.toString(), (rs, i) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            int necessaires = rs.getInt(5);
+            int inscrits = rs.getInt(6);
+            item.put("id", rs.getLong(1));
+            item.put("date", rs.getObject(2, LocalDate.class));
+            item.put("heureDebut", rs.getObject(3, LocalTime.class));
+            item.put("heureFin", rs.getObject(4, LocalTime.class));
+            item.put("nbSurveillantsNecessaires", necessaires);
+            item.put("nbSurveillantsInscrits", inscrits);
+            item.put("saturee", inscrits >= necessaires);
+            return item;
+        }, params.toArray());
+
+        String nextCursor = null;
+        if (items.size() > pageSize) {
+            items = items.subList(0, pageSize);
+            Map<String, Object> last = items.get(pageSize - 1);
+            nextCursor = encodeCursor((LocalDate) last.get("date"), (LocalTime) last.get("heureDebut"),
+                    (Long) last.get("id"));
+        }
+
+        // ----- Epreuves of the page -----
+        if (!items.isEmpty()) {
+            loadEpreuves(items);
+        }
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("items", items);
+        data.put("nextCursor", nextCursor);
+
+        // ----- Facets (first page only: they do not depend on the cursor) -----
+        if (cursor == null || cursor.isBlank()) {
+            Map<String, Map<String, Long>> facets = facets(criteria, campagneId);
+            Map<String, Long> saturation = facets.get("saturee");
+            data.put("total", saturation.values().stream().mapToLong(Long::longValue).sum());
+            data.put("facets", facets);
+        }
+        return data;
+    }
+
+    // =========================
+    // SQL
+    // =========================
+
+    /**
+     * WHERE clause on seance s for the criteria, without the leading keyword.
+     */
+    private static void appendFilter(StringBuilder sql, List<Object> params, Criteria c, Long campagneId) {
+        sql.append("s.id_campagne = ?");
+        params.add(campagneId);
+        if (c.from() != null) {
+            sql.append(" AND s.date_seance >= ?");
+            params.add(Date.valueOf(c.from()));
+        }
+        if (c.to() != null) {
+            sql.append(" AND s.date_seance <= ?");
+            params.add(Date.valueOf(c.to()));
+        }
+        if (c.heureMin() != null) {
+            sql.append(" AND s.heure_debut >= ?");
+            params.add(Time.valueOf(c.heureMin()));
+        }
+        if (c.heureMax() != null) {
+            sql.append(" AND s.heure_fin <= ?");
+            params.add(Time.valueOf(c.heureMax()));
+        }
+        if (c.saturee() != null) {
+            sql.append(c.saturee()
+                    ? " AND s.nb_surveillants_inscrits >= s.nb_surveillants_necessaires"
+                    : " AND s.nb_surveillants_inscrits < s.nb_surveillants_necessaires");
+        }
+        // One epreuve of the seance must match all the epreuve filters
+        if (c.filiere() != null || c.classe() != null || c.matiere() != null) {
+            sql.append(" AND EXISTS (SELECT 1 FROM epreuve e WHERE e.id_seance = s.id_seance");
+            if (c.filiere() != null) {
+                sql.append(" AND e.filiere = ?");
+                params.add(c.filiere());
+            }
+            if (c.classe() != null) {
+                sql.append(" AND e.classe = ?");
+                params.add(c.classe());
+            }
+            if (c.matiere() != null) {
+                sql.append(" AND e.id_matiere IN (SELECT m.id_matiere FROM matiere m WHERE LOWER(m.nom) LIKE ?)");
+                params.add("%" + escapeLike(c.matiere().toLowerCase(Locale.ROOT)) + "%");
+            }
+            sql.append(")");
+        }
+        if (c.sansMatieresDe() != null) {
+            sql.append(" AND NOT EXISTS (SELECT 1 FROM epreuve e2 JOIN enseignant_matiere em " +
+                    "ON em.id_matiere = e2.id_matiere WHERE e2.id_seance = s.id_seance AND em.id_enseignant = ?)");
+            params.add(c.sansMatieresDe());
+        }
+    }
+
+    /**
+     * Rows strictly after the cursor key in the page order, where a NULL date
+     * or start time sorts after every value.
+     */
+    private static void appendAfter(StringBuilder sql, List<Object> params, Object[] key) {
+        String time = key[1] != null
+                ? "(s.heure_debut IS NULL OR s.heure_debut > ? OR (s.heure_debut = ? AND s.id_seance > ?))"
+                : "(s.heure_debut IS NULL AND s.id_seance > ?)";
+        if (key[0] != null) {
+            sql.append(" AND (s.date_seance IS NULL OR s.date_seance > ? OR (s.date_seance = ? AND ")
+                    .append(time).append("))");
+            Collections.addAll(params, key[0], key[0]);
+        } else {
+            sql.append(" AND (s.date_seance IS NULL AND ").append(time).append(")");
+        }
+        if (key[1] != null) {
+            Collections.addAll(params, key[1], key[1]);
+        }
+        params.add(key[2]);
+    }
+
+    private void loadEpreuves(List<Map<String, Object>> items) {
+        Map<Long, List<Map<String, Object>>> byId = new HashMap<>();
+        for (Map<String, Object> item : items) {
+            List<Map<String, Object>> epreuves = new ArrayList<>();
+            item.put("epreuves", epreuves);
+            byId.put((Long) item.get("id"), epreuves);
+        }
+        String placeholders = String.join(", ", Collections.nCopies(byId.size(), "?"));
+        jdbcTemplate.query(
+                "SELECT e.id_seance, e.id_epreuve, e.filiere, e.classe, m.id_matiere, m.nom " +
+                "FROM epreuve e LEFT JOIN matiere m ON m.id_matiere = e.id_matiere " +
+                "WHERE e.id_seance IN (" + placeholders + ") ORDER BY e.id_seance, e.id_epreuve",
+                rs -> {
+                    Map<String, Object> epreuve = new LinkedHashMap<>();
+                    epreuve.put("id", rs.getLong(2));
+                    epreuve.put("filiere", rs.getString(3));
+                    epreuve.put("classe", rs.getString(4));
+                    long idMatiere = rs.getLong(5);
+                    epreuve.put("matiere", rs.wasNull() ? null : Map.of("id", idMatiere, "nom", rs.getString(6)));
+                    byId.get(rs.getLong(1)).add(epreuve);
+                },
+                byId.keySet().toArray());
+    }
+
+    /**
+     * Seance counts per filiere, per classe and per saturation state over the
+     * whole result set. A seance with epreuves in several filieres counts once
+     * in each of them.
+     */
+    private Map<String, Map<String, Long>> facets(Criteria criteria, Long campagneId) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder();
+
+        sql.append("SELECT 'filiere', e.filiere, COUNT(DISTINCT s.id_seance) " +
+                "FROM seance s JOIN epreuve e ON e.id_seance = s.id_seance WHERE ");
+        appendFilter(sql, params, criteria, campagneId);
+        sql.append(" GROUP BY e.filiere UNION ALL ");
+
+        sql.append("SELECT 'classe', e.classe, COUNT(DISTINCT s.id_seance) " +
+                "FROM seance s JOIN epreuve e ON e.id_seance = s.id_seance WHERE ");
+        appendFilter(sql, params, criteria, campagneId);
+        sql.append(" GROUP BY e.classe UNION ALL ");
+
+        String state = "CASE WHEN s.nb_surveillants_inscrits >= s.nb_surveillants_necessaires " +
+                "THEN 'true' ELSE 'false' END";
+        sql.append("SELECT 'saturee', ").append(state).append(", COUNT(*) FROM seance s WHERE ");
+        appendFilter(sql, params, criteria, campagneId);
+        sql.append(" GROUP BY ").append(state);
+
+        Map<String, Map<String, Long>> facets = new LinkedHashMap<>();
+        facets.put("filiere", new TreeMap<>());
+        facets.put("classe", new TreeMap<>());
+        facets.put("saturee", new TreeMap<>(Map.of("true", 0L, "false", 0L)));
+        jdbcTemplate.query(sql.toString(), rs -> {
+            String value = rs.getString(2);
+            facets.get(rs.getString(1)).put(value != null ? value : "", rs.getLong(3));
+        }, params.toArray());
+        return facets;
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    // =========================
+    // CURSOR
+    // =========================
+
+    /**
+     * A missing date or start time is encoded as an empty field.
+     */
+    static String encodeCursor(LocalDate date, LocalTime heureDebut, long id) {
+        String key = (date != null ? date.toString() : "") + "|"
+                + (heureDebut != null ? heureDebut.toString() : "") + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return {date, heureDebut, id} as JDBC parameters, date and heureDebut possibly null
+     */
+    static Object[] decodeCursor(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException();
+            }
+            return new Object[]{parts[0].isEmpty() ? null : Date.valueOf(LocalDate.parse(parts[0])),
+                    parts[1].isEmpty() ? null : Time.valueOf(LocalTime.parse(parts[1])),
+                    Long.parseLong(parts[2])};
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package org.fsegs.surveillanceexams.service;
+
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.fsegs.surveillanceexams.event.AffectationChangedEvent;
+import org.fsegs.surveillanceexams.event.PlanningDataChangedEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * Exam calendar of the active campaign, grouped by day and start time, for
+ * the calendar pages: each seance comes with its epreuves, its assigned
+ * teachers and its fill counts, so the page needs a single request.
+ *
+ * Days are built from the database (three queries whatever their number)
+ * and cached. {@link AffectationChangedEvent} and seance changes only mark
+ * the seance's day dirty; the next read rebuilds the dirty days and reuses
+ * every other day as is. Activating another campaign drops the whole grid.
+ *
+ * Teacher loads are not part of the grid, so teacher changes do not
+ * invalidate it.
+ *
+ * Seances without a date (date_seance is nullable) are grouped in a last day
+ * whose date is null.
+ */
+@Service
+public class CalendarService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CampagneService campagneService;
+
+    // Undated seances last
+    private static final Comparator<LocalDate> DAY_ORDER = Comparator.nullsLast(Comparator.naturalOrder());
+
+    public CalendarService(JdbcTemplate jdbcTemplate, CampagneService campagneService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.campagneService = campagneService;
+    }
+
+    /**
+     * Cached calendar and its entity tag (changes whenever a day is rebuilt).
+     */
+    public record Grid(String etag, Map<String, Object> data) {
+    }
+
+    // Distinguishes versions across restarts, which start counting again from 1
+    private final String instance = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Object lock = new Object();
+
+    // Guarded by lock
+    private Long campagneId;
+    private final TreeMap<LocalDate, Map<String, Object>> days = new TreeMap<>(DAY_ORDER);
+    private final Map<Long, LocalDate> seanceDays = new HashMap<>();
+    private final Set<LocalDate> dirtyDays = new HashSet<>();
+    // Seances whose (new) day is not known yet: resolved on the next read
+    private final Set<Long> pendingSeances = new HashSet<>();
+    private boolean stale = true;
+    private long version;
+    private Grid view;
+
+    // =========================
+    // READ
+    // =========================
+    public Grid getCalendar() {
+        Long activeId = campagneService.activeId();
+        Set<LocalDate> toRebuild;
+        Set<Long> toResolve;
+        boolean full;
+        synchronized (lock) {
+            if (!Objects.equals(campagneId, activeId)) {
+                stale = true;
+            }
+            if (!stale && dirtyDays.isEmpty() && pendingSeances.isEmpty() && view != null) {
+                return view;
+            }
+            // Cleared before reading: an event arriving meanwhile marks its day again
+            full = stale;
+            stale = false;
+            toRebuild = new HashSet<>(dirtyDays);
+            toResolve = new HashSet<>(pendingSeances);
+            dirtyDays.clear();
+            pendingSeances.clear();
+        }
+
+        if (full) {
+            TreeMap<LocalDate, Map<String, Object>> built = new TreeMap<>(DAY_ORDER);
+            Map<Long, LocalDate> builtSeances = new HashMap<>();
+            load(activeId, null, built, builtSeances);
+            synchronized (lock) {
+                campagneId = activeId;
+                days.clear();
+                days.putAll(built);
+                seanceDays.clear();
+                seanceDays.putAll(builtSeances);
+                return publish();
+            }
+        }
+
+        if (!toResolve.isEmpty()) {
+            toRebuild.addAll(resolveDays(activeId, toResolve));
+        }
+        TreeMap<LocalDate, Map<String, Object>> built = new TreeMap<>(DAY_ORDER);
+        Map<Long, LocalDate> builtSeances = new HashMap<>();
+        if (!toRebuild.isEmpty()) {
+            load(activeId, toRebuild, built, builtSeances);
+        }
+        synchronized (lock) {
+            if (!Objects.equals(campagneId, activeId) || stale) {
+                // Campaign switched while we were reading: serve what we have, rebuild next time
+                return view != null ? view : publish();
+            }
+            for (LocalDate day : toRebuild) {
+                days.remove(day);
+            }
+            seanceDays.values().removeIf(toRebuild::contains);
+            days.putAll(built);
+            seanceDays.putAll(builtSeances);
+            return publish();
+        }
+    }
+
+    /**
+     * Caller holds lock.
+     */
+    private Grid publish() {
+        Set<LocalTime> slots = new TreeSet<>();
+        int seances = 0;
+        for (Map<String, Object> day : days.values()) {
+            seances += (int) day.get("seances");
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> daySlots = (List<Map<String, Object>>) day.get("slots");
+            for (Map<String, Object> slot : daySlots) {
+                if (slot.get("heureDebut") != null) {
+                    slots.add((LocalTime) slot.get("heureDebut"));
+                }
+            }
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("campagneId", campagneId);
+        data.put("seances", seances);
+        data.put("slots", new ArrayList<>(slots));
+        data.put("days", new ArrayList<>(days.values()));
+        view = new Grid("\"" + instance + "-" + (++version) + "\"", Collections.unmodifiableMap(data));
+        return view;
+    }
+
+    /**
+     * Restrict a calendar to a date range and/or to the seances a teacher is
+     * assigned to, without going back to the database.
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> filter(Grid grid, Long idEnseignant, LocalDate from, LocalDate to) {
+        if (idEnseignant == null && from == null && to == null) {
+            return grid.data();
+        }
+        List<Map<String, Object>> days = new ArrayList<>();
+        int seances = 0;
+        for (Map<String, Object> day : (List<Map<String, Object>>) grid.data().get("days")) {
+            LocalDate date = (LocalDate) day.get("date");
+            boolean outside = date == null
+                    ? from != null || to != null
+                    : (from != null && date.isBefore(from)) || (to != null && date.isAfter(to));
+            if (outside) {
+                continue;
+            }
+            if (idEnseignant == null) {
+                days.add(day);
+                seances += (int) day.get("seances");
+                continue;
+            }
+            Map<LocalTime, List<Map<String, Object>>> kept = new LinkedHashMap<>();
+            for (Map<String, Object> slot : (List<Map<String, Object>>) day.get("slots")) {
+                List<Map<String, Object>> mine = new ArrayList<>();
+                for (Map<String, Object> seance : (List<Map<String, Object>>) slot.get("seances")) {
+                    for (Map<String, Object> teacher : (List<Map<String, Object>>) seance.get("enseignants")) {
+                        if (idEnseignant.equals(teacher.get("id"))) {
+                            mine.add(seance);
+                            break;
+                        }
+                    }
+                }
+                if (!mine.isEmpty()) {
+                    kept.put((LocalTime) slot.get("heureDebut"), mine);
+                }
+            }
+            if (!kept.isEmpty()) {
+                Map<String, Object> filtered = dayView(date, kept);
+                days.add(filtered);
+                seances += (int) filtered.get("seances");
+            }
+        }
+        Map<String, Object> data = new LinkedHashMap<>(grid.data());
+        data.put("seances", seances);
+        data.put("days", days);
+        return data;
+    }
+
+    // =========================
+    // INVALIDATION
+    // =========================
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAffectationChanged(AffectationChangedEvent event) {
+        synchronized (lock) {
+            markSeance(event.idSeance());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPlanningDataChanged(PlanningDataChangedEvent event) {
+        synchronized (lock) {
+            switch (event.kind()) {
+                case CAMPAGNE -> stale = true;
+                case SEANCE -> {
+                    // Its old day, and its current day once resolved
+                    markSeance(event.id());
+                    pendingSeances.add(event.id());
+                }
+                case ENSEIGNANT -> {
+                }
+            }
+        }
+    }
+
+    /**
+     * Caller holds lock.
+     */
+    private void markSeance(Long idSeance) {
+        if (seanceDays.containsKey(idSeance)) {
+            // May be null: the undated seances
+            dirtyDays.add(seanceDays.get(idSeance));
+        } else {
+            pendingSeances.add(idSeance);
+        }
+    }
+
+    // =========================
+    // LOADING
+    // =========================
+    private Set<LocalDate> resolveDays(Long campagneId, Set<Long> seanceIds) {
+        String placeholders = String.join(", ", Collections.nCopies(seanceIds.size(), "?"));
+        List<Object> params = new ArrayList<>(seanceIds);
+        params.add(campagneId);
+        return new HashSet<>(jdbcTemplate.query(
+                "SELECT DISTINCT date_seance FROM seance WHERE id_seance IN (" + placeholders + ") " +
+                "AND id_campagne = ?",
+                (rs, i) -> rs.getObject(1, LocalDate.class), params.toArray()));
+    }
+
+    /**
+     * Build the given days (all days when null) of the campaign into
+     * {@code out}; a null day in {@code only} stands for the undated seances.
+     */
+    private void load(Long campagneId, Set<LocalDate> only,
+                      Map<LocalDate, Map<String, Object>> out, Map<Long, LocalDate> seanceDaysOut) {
+        List<Object> params = new ArrayList<>();
+        params.add(campagneId);
+        String dayFilter = "";
+        if (only != null) {
+            List<String> conditions = new ArrayList<>();
+            List<LocalDate> dated = only.stream().filter(Objects::nonNull).toList();
+            if (!dated.isEmpty()) {
+                conditions.add("s.date_seance IN (" + String.join(", ", Collections.nCopies(dated.size(), "?")) + ")");
+                dated.forEach(d -> params.add(Date.valueOf(d)));
+            }
+            if (only.contains(null)) {
+                conditions.add("s.date_seance IS NULL");
+            }
+            dayFilter = " AND (" + String.join(" OR ", conditions) + ")";
+        }
+        Object[] args = params.toArray();
+
+        Map<Long, Map<String, Object>> seances = new LinkedHashMap<>();
+        jdbcTemplate.query(
+                "SELECT s.id_seance, s.date_seance, s.heure_debut, s.heure_fin, s.nb_surveillants_necessaires, " +
+                "s.nb_surveillants_inscrits FROM seance s WHERE s.id_campagne = ?" + dayFilter +
+                " ORDER BY s.date_seance, s.heure_debut, s.id_seance",
+                rs -> {
+                    Map<String, Object> seance = new LinkedHashMap<>();
+                    int necessaires = rs.getInt(5);
+                    int inscrits = rs.getInt(6);
+                    seance.put("id", rs.getLong(1));
+                    seance.put("date", rs.getObject(2, LocalDate.class));
+                    seance.put("heureDebut", rs.getObject(3, LocalTime.class));
+                    seance.put("heureFin", rs.getObject(4, LocalTime.class));
+                    seance.put("nbSurveillantsNecessaires", necessaires);
+                    seance.put("nbSurveillantsInscrits", inscrits);
+                    seance.put("saturee", inscrits >= necessaires);
+                    seance.put("epreuves", new ArrayList<Map<String, Object>>());
+                    seance.put("enseignants", new ArrayList<Map<String, Object>>());
+                    seances.put(rs.getLong(1), seance);
+                }, args);
+
+        jdbcTemplate.query(
+                "SELECT e.id_seance, e.id_epreuve, e.filiere, e.classe, m.id_matiere, m.nom " +
+                "FROM epreuve e JOIN seance s ON s.id_seance = e.id_seance " +
+                "LEFT JOIN matiere m ON m.id_matiere = e.id_matiere WHERE s.id_campagne = ?" + dayFilter +
+                " ORDER BY e.id_seance, e.id_epreuve",
+                rs -> {
+                    Map<String, Object> epreuve = new LinkedHashMap<>();
+                    epreuve.put("id", rs.getLong(2));
+                    epreuve.put("filiere", rs.getString(3));
+                    epreuve.put("classe", rs.getString(4));
+                    long idMatiere = rs.getLong(5);
+                    epreuve.put("matiere", rs.wasNull() ? null : Map.of("id", idMatiere, "nom", rs.getString(6)));
+                    listOf(seances.get(rs.getLong(1)), "epreuves").add(epreuve);
+                }, args);
+
+        jdbcTemplate.query(
+                "SELECT a.id_seance, a.id_affectation, en.id_enseignant, en.nom, en.grade " +
+                "FROM affectation a JOIN seance s ON s.id_seance = a.id_seance " +
+                "JOIN enseignant en ON en.id_enseignant = a.id_enseignant WHERE s.id_campagne = ?" + dayFilter +
+                " ORDER BY a.id_seance, en.nom",
+                rs -> {
+                    Map<String, Object> teacher = new LinkedHashMap<>();
+                    teacher.put("idAffectation", rs.getLong(2));
+                    teacher.put("id", rs.getLong(3));
+                    teacher.put("nomComplet", rs.getString(4));
+                    teacher.put("grade", rs.getString(5));
+                    listOf(seances.get(rs.getLong(1)), "enseignants").add(teacher);
+                }, args);
+
+        // Group by day, then by start time
+        Map<LocalDate, Map<LocalTime, List<Map<String, Object>>>> grouped = new TreeMap<>(DAY_ORDER);
+        for (Map<String, Object> seance : seances.values()) {
+            LocalDate date = (LocalDate) seance.get("date");
+            seanceDaysOut.put((Long) seance.get("id"), date);
+            grouped.computeIfAbsent(date, d -> new TreeMap<>(Comparator.nullsFirst(Comparator.naturalOrder())))
+                    .computeIfAbsent((LocalTime) seance.get("heureDebut"), t -> new ArrayList<>())
+                    .add(seance);
+        }
+        grouped.forEach((date, bySlot) -> out.put(date, dayView(date, bySlot)));
+    }
+
+    private static Map<String, Object> dayView(LocalDate date, Map<LocalTime, List<Map<String, Object>>> bySlot) {
+        List<Map<String, Object>> slots = new ArrayList<>();
+        int seances = 0;
+        int dayNecessaires = 0;
+        int dayInscrits = 0;
+        for (Map.Entry<LocalTime, List<Map<String, Object>>> entry : bySlot.entrySet()) {
+            int necessaires = 0;
+            int inscrits = 0;
+            for (Map<String, Object> seance : entry.getValue()) {
+                necessaires += (int) seance.get("nbSurveillantsNecessaires");
+                inscrits += (int) seance.get("nbSurveillantsInscrits");
+            }
+            Map<String, Object> slot = new LinkedHashMap<>();
+            slot.put("heureDebut", entry.getKey());
+            slot.put("nbSurveillantsNecessaires", necessaires);
+            slot.put("nbSurveillantsInscrits", inscrits);
+            slot.put("seances", entry.getValue());
+            slots.add(slot);
+            seances += entry.getValue().size();
+            dayNecessaires += necessaires;
+            dayInscrits += inscrits;
+        }
+        Map<String, Object> day = new LinkedHashMap<>();
+        day.put("date", date);
+        day.put("seances", seances);
+        day.put("nbSurveillantsNecessaires", dayNecessaires);
+        day.put("nbSurveillantsInscrits", dayInscrits);
+        day.put("slots", slots);
+        return day;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> listOf(Map<String, Object> seance, String key) {
+        return (List<Map<String, Object>>) seance.get(key);
+    }
+}
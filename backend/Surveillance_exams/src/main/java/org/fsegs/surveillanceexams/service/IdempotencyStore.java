@@ -0,0 +1,243 @@
+package org.fsegs.surveillanceexams.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores the first response produced for each Idempotency-Key so that client
+ * retries are answered from memory without running the service method again.
+ *
+ * The store is bounded (oldest keys are evicted first) and every key expires
+ * after a fixed TTL. Because all keys share the same TTL, insertion order is
+ * also expiry order, so eviction only ever looks at the head of the map.
+ *
+ * Completed entries are flushed to a small binary file periodically and on
+ * shutdown, and reloaded on startup, so idempotency survives a restart.
+ */
+@Component
+public class IdempotencyStore {
+
+    private static final int FILE_MAGIC = 0x49444b31; // "IDK1"
+
+    public enum State {
+        /** Key is new: the caller must run the operation and call {@link #complete}. */
+        STARTED,
+        /** Key was already completed with the same request: replay the stored response. */
+        REPLAY,
+        /** Same key is still being processed by another request. */
+        IN_PROGRESS,
+        /** Key was already used for a different request. */
+        MISMATCH
+    }
+
+    public record StoredResponse(int status, String contentType, String body) {
+    }
+
+    public record Claim(State state, StoredResponse response) {
+    }
+
+    private static final class Entry {
+        final String fingerprint;
+        final long expiresAt;
+        StoredResponse response;
+
+        Entry(String fingerprint, long expiresAt, StoredResponse response) {
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+            this.response = response;
+        }
+    }
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Path file;
+    private boolean dirty;
+
+    public IdempotencyStore(
+            @Value("${surveillance.idempotency.max-entries:100000}") int maxEntries,
+            @Value("${surveillance.idempotency.ttl-minutes:60}") long ttlMinutes,
+            @Value("${surveillance.idempotency.file:data/idempotency.bin}") String file) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMinutes * 60_000L;
+        this.file = file == null || file.isBlank() ? null : Path.of(file);
+    }
+
+    /**
+     * Claim a key for a request. Only the caller receiving {@link State#STARTED}
+     * may run the operation.
+     *
+     * @param key         scoped idempotency key
+     * @param fingerprint description of the request (method, path, parameters)
+     */
+    public synchronized Claim claim(String key, String fingerprint) {
+        long now = System.currentTimeMillis();
+        evictExpired(now);
+
+        Entry existing = entries.get(key);
+        if (existing != null) {
+            if (!existing.fingerprint.equals(fingerprint)) {
+                return new Claim(State.MISMATCH, null);
+            }
+            if (existing.response == null) {
+                return new Claim(State.IN_PROGRESS, null);
+            }
+            return new Claim(State.REPLAY, existing.response);
+        }
+
+        entries.put(key, new Entry(fingerprint, now + ttlMillis, null));
+        while (entries.size() > maxEntries) {
+            Iterator<Entry> it = entries.values().iterator();
+            it.next();
+            it.remove();
+        }
+        return new Claim(State.STARTED, null);
+    }
+
+    /**
+     * Record the response of a claimed key.
+     */
+    public synchronized void complete(String key, StoredResponse response) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.response = response;
+            dirty = true;
+        }
+    }
+
+    /**
+     * Release a claimed key without storing a response (the operation failed
+     * unexpectedly), so that the client may retry it.
+     */
+    public synchronized void release(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.response == null) {
+            entries.remove(key);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().expiresAt > now) {
+                break;
+            }
+            it.remove();
+            dirty = true;
+        }
+    }
+
+    // =========================
+    // PERSISTENCE
+    // =========================
+    @PostConstruct
+    public void load() {
+        if (file == null || !Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC) {
+                System.err.println("Ignoring idempotency file with unknown format: " + file);
+                return;
+            }
+            long now = System.currentTimeMillis();
+            int count = in.readInt();
+            synchronized (this) {
+                for (int i = 0; i < count; i++) {
+                    String key = in.readUTF();
+                    String fingerprint = in.readUTF();
+                    long expiresAt = in.readLong();
+                    int status = in.readInt();
+                    String contentType = in.readUTF();
+                    String body = readString(in);
+                    if (expiresAt > now) {
+                        entries.put(key, new Entry(fingerprint, expiresAt,
+                                new StoredResponse(status, contentType, body)));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to load idempotency keys from " + file + ": " + e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${surveillance.idempotency.flush-interval-ms:10000}")
+    public void flush() {
+        if (file == null) {
+            return;
+        }
+
+        List<Map.Entry<String, Entry>> completed = new ArrayList<>();
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                if (e.getValue().response != null) {
+                    completed.add(Map.entry(e.getKey(), e.getValue()));
+                }
+            }
+            dirty = false;
+        }
+
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, "idempotency", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(completed.size());
+                for (Map.Entry<String, Entry> e : completed) {
+                    Entry entry = e.getValue();
+                    out.writeUTF(e.getKey());
+                    out.writeUTF(entry.fingerprint);
+                    out.writeLong(entry.expiresAt);
+                    out.writeInt(entry.response.status());
+                    out.writeUTF(entry.response.contentType());
+                    writeString(out, entry.response.body());
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            synchronized (this) {
+                dirty = true;
+            }
+            System.err.println("Failed to persist idempotency keys to " + file + ": " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
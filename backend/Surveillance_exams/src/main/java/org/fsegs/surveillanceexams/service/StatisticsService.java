@@ -0,0 +1,386 @@
+package org.fsegs.surveillanceexams.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.fsegs.surveillanceexams.event.AffectationChangedEvent;
+import org.fsegs.surveillanceexams.event.PlanningDataChangedEvent;
+import org.fsegs.surveillanceexams.model.Enseignant;
+import org.fsegs.surveillanceexams.model.Seance;
+import org.fsegs.surveillanceexams.repository.AffectationRepository;
+import org.fsegs.surveillanceexams.repository.EnseignantRepository;
+import org.fsegs.surveillanceexams.repository.SeanceRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Fairness and workload statistics for the admin dashboard.
+ *
+ * Aggregates are kept in memory and updated incrementally from
+ * {@link AffectationChangedEvent} and {@link PlanningDataChangedEvent}, so
+ * reading them never scans the affectation table:
+ * - per grade: teachers, total quota, total assignments, teachers at full quota
+ *   and a histogram of assignments / chargeSurveillance
+ * - per day: seances, under-staffed seances and missing surveillants
+ * Assignments and seances are those of the active campaign.
+ *
+ * The aggregates are built from the database on first use, and can be rebuilt
+ * on demand to verify that the incremental state has not drifted.
+ *
+ * Once built, reads never wait for the database: when the aggregates are
+ * stale (a change they could not apply, or one that landed while they were
+ * being rebuilt) readers get the last snapshot and a single background
+ * rebuild is started.
+ */
+@Service
+@RequiredArgsConstructor
+public class StatisticsService {
+
+    private static final String UNKNOWN_GRADE = "UNKNOWN";
+    private static final String[] LOAD_BUCKETS = {"0-24%", "25-49%", "50-74%", "75-99%", "100%+", "no quota"};
+
+    private final EnseignantRepository enseignantRepo;
+    private final SeanceRepository seanceRepo;
+    private final AffectationRepository affectationRepo;
+    private final CampagneService campagneService;
+
+    private record TeacherStat(String grade, Double chargeSurveillance, int affectations) {
+        boolean atFullQuota() {
+            return chargeSurveillance != null && affectations >= chargeSurveillance;
+        }
+
+        int loadBucket() {
+            if (chargeSurveillance == null || chargeSurveillance <= 0) {
+                return LOAD_BUCKETS.length - 1;
+            }
+            double ratio = affectations / chargeSurveillance;
+            return ratio >= 1 ? 4 : (int) (ratio * 4);
+        }
+    }
+
+    private record SeanceStat(LocalDate date, int necessaires, int inscrits) {
+        int missing() {
+            return Math.max(0, necessaires - inscrits);
+        }
+    }
+
+    private static final class GradeAggregate {
+        int teachers;
+        double totalChargeSurveillance;
+        long totalAffectations;
+        int atFullQuota;
+        final int[] loadHistogram = new int[LOAD_BUCKETS.length];
+    }
+
+    private static final class DayAggregate {
+        int seances;
+        int underStaffed;
+        long missing;
+    }
+
+    private final Object lock = new Object();
+
+    // Guarded by lock
+    private Map<Long, TeacherStat> teachers = new HashMap<>();
+    private Map<Long, SeanceStat> seances = new HashMap<>();
+    private final Map<String, GradeAggregate> grades = new TreeMap<>();
+    private final Map<LocalDate, DayAggregate> days = new TreeMap<>();
+    private boolean initialized;
+    private boolean stale;
+    private long changeCount;
+    private Map<String, Object> view;
+    private CompletableFuture<Boolean> rebuilding;
+
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "statistics-rebuild");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    // =========================
+    // READ
+    // =========================
+    public Map<String, Object> getStatistics() {
+        CompletableFuture<Boolean> first;
+        synchronized (lock) {
+            if (initialized) {
+                if (stale) {
+                    scheduleRebuild();
+                }
+                if (view == null) {
+                    view = buildView();
+                }
+                return view;
+            }
+            // Nothing to serve yet: every reader waits for the same first build
+            first = scheduleRebuild();
+        }
+        try {
+            first.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        synchronized (lock) {
+            if (view == null) {
+                view = buildView();
+            }
+            return view;
+        }
+    }
+
+    /**
+     * Start a background rebuild unless one is already running (caller holds lock).
+     */
+    private CompletableFuture<Boolean> scheduleRebuild() {
+        if (rebuilding == null) {
+            CompletableFuture<Boolean> result = new CompletableFuture<>();
+            rebuilding = result;
+            rebuilder.execute(() -> {
+                try {
+                    boolean drift = rebuild();
+                    rebuildFinished();
+                    result.complete(drift);
+                } catch (RuntimeException e) {
+                    System.err.println("[STATISTICS] Background rebuild failed: " + e.getMessage());
+                    rebuildFinished();
+                    result.completeExceptionally(e);
+                }
+            });
+        }
+        return rebuilding;
+    }
+
+    private void rebuildFinished() {
+        synchronized (lock) {
+            rebuilding = null;
+        }
+    }
+
+    /**
+     * Recompute all aggregates from the database.
+     *
+     * @return true if the previous incremental state differed from the database
+     */
+    public boolean rebuild() {
+        long changesBefore;
+        synchronized (lock) {
+            changesBefore = changeCount;
+        }
+
+        Long campagneId = campagneService.activeId();
+        Map<Long, Long> counts = new HashMap<>();
+        for (Object[] row : affectationRepo.countAffectationsGroupedByEnseignant(campagneId)) {
+            counts.put((Long) row[0], (Long) row[1]);
+        }
+
+        Map<Long, TeacherStat> newTeachers = new HashMap<>();
+        for (Enseignant e : enseignantRepo.findAll()) {
+            int affectations = counts.getOrDefault(e.getId(), 0L).intValue();
+            newTeachers.put(e.getId(), toStat(e, affectations));
+        }
+
+        Map<Long, SeanceStat> newSeances = new HashMap<>();
+        for (Seance s : seanceRepo.findAllByCampagneId(campagneId)) {
+            newSeances.put(s.getId(), toStat(s));
+        }
+
+        synchronized (lock) {
+            boolean drift = initialized && (!teachers.equals(newTeachers) || !seances.equals(newSeances));
+
+            teachers = new HashMap<>();
+            seances = new HashMap<>();
+            grades.clear();
+            days.clear();
+            newTeachers.forEach(this::putTeacher);
+            newSeances.forEach(this::putSeance);
+
+            initialized = true;
+            // A change committed while we were reading may or may not be in the result:
+            // readers keep this snapshot and the next read rebuilds in the background
+            stale = changeCount != changesBefore;
+            view = null;
+            return drift;
+        }
+    }
+
+    // =========================
+    // INCREMENTAL UPDATES
+    // =========================
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAffectationChanged(AffectationChangedEvent event) {
+        int delta = event.type() == AffectationChangedEvent.Type.ASSIGNED ? 1 : -1;
+
+        synchronized (lock) {
+            changeCount++;
+            if (!initialized) {
+                return;
+            }
+            TeacherStat t = teachers.get(event.idEnseignant());
+            SeanceStat s = seances.get(event.idSeance());
+            if (t == null || s == null) {
+                // Unknown teacher or seance: reload everything on next read
+                stale = true;
+                return;
+            }
+            putTeacher(event.idEnseignant(),
+                    new TeacherStat(t.grade(), t.chargeSurveillance(), Math.max(0, t.affectations() + delta)));
+            putSeance(event.idSeance(),
+                    new SeanceStat(s.date(), s.necessaires(), Math.max(0, s.inscrits() + delta)));
+            view = null;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPlanningDataChanged(PlanningDataChangedEvent event) {
+        synchronized (lock) {
+            changeCount++;
+            if (!initialized) {
+                return;
+            }
+            if (event.kind() == PlanningDataChangedEvent.Kind.CAMPAGNE) {
+                // Different set of seances and assignments: reload everything on next read
+                stale = true;
+                return;
+            }
+        }
+
+        if (event.kind() == PlanningDataChangedEvent.Kind.SEANCE) {
+            Long campagneId = campagneService.activeId();
+            seanceRepo.findById(event.id())
+                    .filter(s -> s.getCampagne() != null && campagneId.equals(s.getCampagne().getId()))
+                    .ifPresent(s -> {
+                        synchronized (lock) {
+                            putSeance(s.getId(), toStat(s));
+                            view = null;
+                        }
+                    });
+        } else {
+            enseignantRepo.findById(event.id()).ifPresent(e -> {
+                synchronized (lock) {
+                    TeacherStat previous = teachers.get(e.getId());
+                    if (previous == null) {
+                        stale = true;
+                        return;
+                    }
+                    putTeacher(e.getId(), toStat(e, previous.affectations()));
+                    view = null;
+                }
+            });
+        }
+    }
+
+    // =========================
+    // AGGREGATE MAINTENANCE (caller holds lock)
+    // =========================
+    private void putTeacher(Long id, TeacherStat stat) {
+        TeacherStat previous = teachers.put(id, stat);
+        if (previous != null) {
+            addTeacher(previous, -1);
+        }
+        addTeacher(stat, 1);
+    }
+
+    private void addTeacher(TeacherStat t, int sign) {
+        GradeAggregate g = grades.computeIfAbsent(t.grade(), k -> new GradeAggregate());
+        g.teachers += sign;
+        g.totalChargeSurveillance += sign * (t.chargeSurveillance() != null ? t.chargeSurveillance() : 0);
+        g.totalAffectations += sign * t.affectations();
+        g.atFullQuota += sign * (t.atFullQuota() ? 1 : 0);
+        g.loadHistogram[t.loadBucket()] += sign;
+        if (g.teachers == 0) {
+            grades.remove(t.grade());
+        }
+    }
+
+    private void putSeance(Long id, SeanceStat stat) {
+        SeanceStat previous = seances.put(id, stat);
+        if (previous != null) {
+            addSeance(previous, -1);
+        }
+        addSeance(stat, 1);
+    }
+
+    private void addSeance(SeanceStat s, int sign) {
+        if (s.date() == null) {
+            return;
+        }
+        DayAggregate d = days.computeIfAbsent(s.date(), k -> new DayAggregate());
+        d.seances += sign;
+        d.underStaffed += sign * (s.missing() > 0 ? 1 : 0);
+        d.missing += sign * s.missing();
+        if (d.seances == 0) {
+            days.remove(s.date());
+        }
+    }
+
+    private Map<String, Object> buildView() {
+        List<Map<String, Object>> gradeList = new ArrayList<>();
+        int teachersAtFullQuota = 0;
+        for (Map.Entry<String, GradeAggregate> entry : grades.entrySet()) {
+            GradeAggregate g = entry.getValue();
+            Map<String, Integer> histogram = new LinkedHashMap<>();
+            for (int i = 0; i < LOAD_BUCKETS.length; i++) {
+                histogram.put(LOAD_BUCKETS[i], g.loadHistogram[i]);
+            }
+
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("grade", entry.getKey());
+            item.put("teachers", g.teachers);
+            item.put("totalChargeSurveillance", g.totalChargeSurveillance);
+            item.put("totalAffectations", g.totalAffectations);
+            item.put("teachersAtFullQuota", g.atFullQuota);
+            item.put("loadDistribution", histogram);
+            gradeList.add(item);
+            teachersAtFullQuota += g.atFullQuota;
+        }
+
+        List<Map<String, Object>> dayList = new ArrayList<>();
+        int underStaffedSeances = 0;
+        long missingSurveillants = 0;
+        for (Map.Entry<LocalDate, DayAggregate> entry : days.entrySet()) {
+            DayAggregate d = entry.getValue();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("date", entry.getKey().toString());
+            item.put("seances", d.seances);
+            item.put("underStaffedSeances", d.underStaffed);
+            item.put("missingSurveillants", d.missing);
+            dayList.add(item);
+            underStaffedSeances += d.underStaffed;
+            missingSurveillants += d.missing;
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("totalTeachers", teachers.size());
+        result.put("teachersAtFullQuota", teachersAtFullQuota);
+        result.put("totalSeances", seances.size());
+        result.put("underStaffedSeances", underStaffedSeances);
+        result.put("missingSurveillants", missingSurveillants);
+        result.put("byGrade", gradeList);
+        result.put("byDay", dayList);
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static TeacherStat toStat(Enseignant e, int affectations) {
+        String grade = e.getGrade() != null && !e.getGrade().isBlank() ? e.getGrade() : UNKNOWN_GRADE;
+        return new TeacherStat(grade, e.getChargeSurveillance(), affectations);
+    }
+
+    private static SeanceStat toStat(Seance s) {
+        return new SeanceStat(s.getDate(), s.getNbSurveillantsNecessaires(), s.getNbSurveillantsInscrits());
+    }
+}
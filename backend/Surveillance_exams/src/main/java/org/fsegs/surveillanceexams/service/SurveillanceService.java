@@ -1,9 +1,16 @@
 package org.fsegs.surveillanceexams.service;
 
 import lombok.RequiredArgsConstructor;
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.fsegs.surveillanceexams.diagnostics.OperationTracer;
 import org.fsegs.surveillanceexams.dto.EnseignantDTO;
+import org.fsegs.surveillanceexams.event.AffectationChangedEvent;
+import org.fsegs.surveillanceexams.event.PlanningDataChangedEvent;
+import org.fsegs.surveillanceexams.event.VoeuChangedEvent;
 import org.fsegs.surveillanceexams.model.*;
 import org.fsegs.surveillanceexams.repository.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -11,6 +18,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -25,12 +33,45 @@ public class SurveillanceService {
     private final UserRepository userRepo;
     private final EpreuveRepository epreuveRepo;
     private final PaquetRepository paquetRepo;
+    private final ListeAttenteRepository listeAttenteRepo;
+    private final ApplicationEventPublisher events;
+    private final CampagneService campagneService;
+    private final OperationTracer tracer;
+
+    /**
+     * When true, wishes are only recorded as PENDING and turned into
+     * assignments later by {@link VoeuApprovalService}.
+     */
+    @Value("${surveillance.voeux.deferred-approval:false}")
+    private boolean deferredApproval;
+
+    // Wish result messages, also used by VoeuGroupCommitService
+    static final String WISH_ALREADY_SUBMITTED = "Wish already submitted for this session.";
+    static final String WISH_ASSIGNED = "Wish submitted and assignment created successfully!";
+    static final String WISH_PENDING = "Wish submitted successfully and is pending approval.";
+    static final String WISH_SUBJECT_CONFLICT = "Cannot supervise sessions with your own subjects.";
+    static final String WISH_TIME_CONFLICT = "Time conflict with existing assignment.";
+
+    static String wishQuotaReached(Double chargeSurveillance) {
+        return "You have reached your surveillance quota (" + chargeSurveillance + " sessions).";
+    }
+
+    private static String wishWaitlisted(long position) {
+        return "Session is already saturated. You have been added to its waitlist (position " + position + ").";
+    }
+
+    private static String wishAlreadyWaitlisted(long position) {
+        return "Session is already saturated. You are already on its waitlist (position " + position + ").";
+    }
 
     // =========================
     // SEANCES
     // =========================
+    /**
+     * Seances of the active campaign, in date order.
+     */
     public List<Seance> getAllSeances() {
-        return seanceRepo.findAll();
+        return seanceRepo.findAllByCampagneId(campagneService.activeId());
     }
 
     /**
@@ -58,6 +99,7 @@ public class SurveillanceService {
         
         s.setNbSurveillantsNecessaires(needed);
         seanceRepo.save(s);
+        events.publishEvent(PlanningDataChangedEvent.seance(idSeance));
     }
 
     // =========================
@@ -95,6 +137,7 @@ public class SurveillanceService {
         double load = calculateSurveillanceLoad(e);
         e.setChargeSurveillance(load);
         enseignantRepo.save(e);
+        events.publishEvent(PlanningDataChangedEvent.enseignant(idEnseignant));
     }
 
     /**
@@ -109,10 +152,11 @@ public class SurveillanceService {
         // Step 1: Get base surveillance requirement (teaching load * 1.5)
         double baseSurveillanceLoad = e.getChargeEnseignement() * 1.5;
         
-        // Step 2: Count sessions containing any of this teacher's subjects
+        // Step 2: Count sessions of the active campaign containing any of this teacher's subjects
         // A teacher teaches a subject, so they get "credit" (reduction) for sessions of that subject
+        Long campagneId = campagneService.activeId();
         long sessionsOfOwnSubjects = e.getMatieres().stream()
-                .mapToLong(m -> seanceRepo.countSeancesByMatiereId(m.getId()))
+                .mapToLong(m -> seanceRepo.countSeancesByMatiereId(m.getId(), campagneId))
                 .sum();
         
         // Step 3: Apply formula - subtract sessions of own subjects
@@ -204,36 +248,77 @@ public class SurveillanceService {
     // =========================
     // VOEUX (WISHES)
     // =========================
+    /**
+     * The seance row, then the teacher row, are locked (the order used by swaps):
+     * the seat count, the time conflicts and the quota cannot change under the
+     * checks, whichever instance serves a concurrent request.
+     */
     @Transactional
-    public String soumettreVoeu(Long idEnseignant, Long idSeance) {
-        Enseignant ens = enseignantRepo.findById(idEnseignant)
-                .orElseThrow(() -> new RuntimeException("Enseignant not found"));
-        Seance seance = seanceRepo.findById(idSeance)
-                .orElseThrow(() -> new RuntimeException("Seance not found"));
+    public VoeuResult soumettreVoeu(Long idEnseignant, Long idSeance) {
+        return tracer.trace("soumettreVoeu", idEnseignant, idSeance, () -> doSoumettreVoeu(idEnseignant, idSeance));
+    }
+
+    private VoeuResult doSoumettreVoeu(Long idEnseignant, Long idSeance) {
+        Seance seance = lockSeance(idSeance);
+        Enseignant ens = lockEnseignant(idEnseignant);
+
+        String closed = checkCampaignOpen(seance);
+        if (closed != null) {
+            return VoeuResult.refused(closed);
+        }
+        if (tracer.check("duplicateWish", () -> voeuRepo.existsByEnseignantAndSeance(ens, seance))) {
+            return VoeuResult.refused(WISH_ALREADY_SUBMITTED);
+        }
+        if (deferredApproval) {
+            return recordPendingVoeu(ens, seance);
+        }
 
-        if (voeuRepo.existsByEnseignantAndSeance(ens, seance)) {
-            return "Wish already submitted for this session.";
+        String ineligibility = checkEligibility(ens, seance);
+        if (ineligibility != null) {
+            return VoeuResult.refused(ineligibility);
         }
-        if (seance.isSaturee()) {
-            return "Session is already saturated.";
+        if (tracer.check("saturation", seance::isSaturee)) {
+            return joinWaitlist(ens, seance);
         }
+
+        createApprovedAssignment(ens, seance);
+        return VoeuResult.assigned();
+    }
+
+    /**
+     * Subject, time and quota rules of a wish (saturation is checked separately).
+     * 
+     * @return the rejection message, or null if the teacher may take the session
+     */
+    private String checkEligibility(Enseignant ens, Seance seance) {
         if (hasSubjectConflict(ens, seance)) {
-            return "Cannot supervise sessions with your own subjects.";
+            return WISH_SUBJECT_CONFLICT;
         }
         if (hasTimeConflict(ens, seance)) {
-            return "Time conflict with existing assignment.";
+            return WISH_TIME_CONFLICT;
         }
 
-        long currentAssignments = ens.getAffectations().size();
         Double chargeSurveillance = ens.getChargeSurveillance();
-        if (chargeSurveillance != null && currentAssignments >= chargeSurveillance) {
-            return "You have reached your surveillance quota (" + chargeSurveillance + " sessions).";
+        if (chargeSurveillance != null && tracer.check("quota",
+                () -> countAssignmentsInCampaign(ens, seance) >= chargeSurveillance)) {
+            return wishQuotaReached(chargeSurveillance);
         }
+        return null;
+    }
+
+    /**
+     * Record an approved wish with its assignment and count it on the seance.
+     */
+    private void createApprovedAssignment(Enseignant ens, Seance seance) {
+        tracer.step("saveAssignment", () -> doCreateApprovedAssignment(ens, seance));
+    }
 
+    private void doCreateApprovedAssignment(Enseignant ens, Seance seance) {
         Voeu voeu = new Voeu();
         voeu.setEnseignant(ens);
         voeu.setSeance(seance);
         voeu.setDateSoumission(LocalDateTime.now());
+        voeu.setStatus(Voeu.VoeuStatus.APPROVED);
         voeuRepo.save(voeu);
 
         Affectation affectation = new Affectation(ens, seance);
@@ -241,19 +326,109 @@ public class SurveillanceService {
 
         seance.setNbSurveillantsInscrits(seance.getNbSurveillantsInscrits() + 1);
         seanceRepo.save(seance);
+        events.publishEvent(VoeuChangedEvent.of(VoeuChangedEvent.Type.APPROVED, ens.getId(), seance.getId()));
+        events.publishEvent(AffectationChangedEvent.assigned(ens.getId(), seance.getId()));
+    }
+
+    // =========================
+    // WAITLIST
+    // =========================
+
+    /**
+     * NEW: Put an eligible teacher on the FIFO waitlist of a saturated session.
+     * The teacher is promoted automatically when a seat is freed by cancelVoeu.
+     */
+    private VoeuResult joinWaitlist(Enseignant ens, Seance seance) {
+        Optional<ListeAttente> existing = listeAttenteRepo.findByEnseignantAndSeance(ens, seance);
+        if (existing.isPresent()) {
+            long position = waitlistPosition(existing.get());
+            return VoeuResult.waitlisted(wishAlreadyWaitlisted(position), position);
+        }
+
+        ListeAttente entry = listeAttenteRepo.save(new ListeAttente(ens, seance));
+        long position = waitlistPosition(entry);
+        return VoeuResult.waitlisted(wishWaitlisted(position), position);
+    }
+
+    private long waitlistPosition(ListeAttente entry) {
+        return listeAttenteRepo.countBySeanceAndIdLessThan(entry.getSeance(), entry.getId()) + 1;
+    }
+
+    /**
+     * NEW: Give the seats freed on a session to the first eligible teachers of its waitlist.
+     * 
+     * Must run in the transaction that freed the seat, with the seance row locked.
+     * The subject, time and quota rules are checked again at promotion time;
+     * entries that are no longer eligible are dropped from the queue. Each entry
+     * is therefore examined once, which keeps promotion constant time per
+     * cancellation (amortized) whatever the length of the queue.
+     */
+    private void promoteFromWaitlist(Seance seance) {
+        while (!seance.isSaturee()) {
+            Optional<ListeAttente> head = listeAttenteRepo.findFirstBySeanceOrderByIdAsc(seance);
+            if (head.isEmpty()) {
+                return;
+            }
+
+            ListeAttente entry = head.get();
+            listeAttenteRepo.delete(entry);
+
+            Enseignant candidate = lockEnseignant(entry.getEnseignant().getId());
+            if (affectationRepo.existsByEnseignantAndSeance(candidate, seance)
+                    || checkEligibility(candidate, seance) != null) {
+                continue;
+            }
+            createApprovedAssignment(candidate, seance);
+        }
+    }
+
+    public List<ListeAttente> getWaitlist(Long idSeance) {
+        Seance seance = seanceRepo.findById(idSeance)
+                .orElseThrow(() -> new RuntimeException("Seance not found"));
+        return listeAttenteRepo.findBySeanceOrderByIdAsc(seance);
+    }
+
+    /**
+     * Deferred mode: only permanent rules (subject conflict) are checked now.
+     * Saturation, time conflicts and quota are decided by the approval run.
+     */
+    private VoeuResult recordPendingVoeu(Enseignant ens, Seance seance) {
+        if (hasSubjectConflict(ens, seance)) {
+            return VoeuResult.refused(WISH_SUBJECT_CONFLICT);
+        }
+
+        Voeu voeu = new Voeu();
+        voeu.setEnseignant(ens);
+        voeu.setSeance(seance);
+        voeu.setDateSoumission(LocalDateTime.now());
+        voeu.setStatus(Voeu.VoeuStatus.PENDING);
+        voeuRepo.save(voeu);
+        events.publishEvent(VoeuChangedEvent.of(VoeuChangedEvent.Type.SUBMITTED, ens.getId(), seance.getId()));
 
-        return "Wish submitted and assignment created successfully!";
+        return VoeuResult.pending();
     }
 
     @Transactional
     public String cancelVoeu(Long idEnseignant, Long idSeance) {
+        return tracer.trace("cancelVoeu", idEnseignant, idSeance, () -> doCancelVoeu(idEnseignant, idSeance));
+    }
+
+    private String doCancelVoeu(Long idEnseignant, Long idSeance) {
         Enseignant ens = enseignantRepo.findById(idEnseignant)
-                .orElseThrow(() -> new RuntimeException("Enseignant not found"));
+                .orElseThrow(() -> new IllegalArgumentException("Enseignant not found"));
         
-        Seance seance = seanceRepo.findById(idSeance)
-                .orElseThrow(() -> new RuntimeException("Seance not found"));
+        Seance seance = lockSeance(idSeance);
 
+        String closed = checkCampaignOpen(seance);
+        if (closed != null) {
+            return closed;
+        }
         if (!voeuRepo.existsByEnseignantAndSeance(ens, seance)) {
+            Optional<ListeAttente> waiting = listeAttenteRepo.findByEnseignantAndSeance(ens, seance);
+            if (waiting.isPresent()) {
+                listeAttenteRepo.delete(waiting.get());
+                return "Removed from the waitlist successfully.";
+            }
             return "No wish found for this session.";
         }
 
@@ -261,6 +436,7 @@ public class SurveillanceService {
             voeuRepo.findByEnseignant(ens).stream()
                     .filter(v -> v.getSeance().getId().equals(idSeance))
                     .forEach(voeuRepo::delete);
+            events.publishEvent(VoeuChangedEvent.of(VoeuChangedEvent.Type.CANCELLED, idEnseignant, idSeance));
             return "Wish cancelled (no assignment found).";
         }
 
@@ -276,32 +452,49 @@ public class SurveillanceService {
                 seance.setNbSurveillantsInscrits(currentCount - 1);
                 seanceRepo.save(seance);
             }
+            events.publishEvent(VoeuChangedEvent.of(VoeuChangedEvent.Type.CANCELLED, idEnseignant, idSeance));
+            events.publishEvent(AffectationChangedEvent.unassigned(idEnseignant, idSeance));
+
+            tracer.step("promoteFromWaitlist", () -> promoteFromWaitlist(seance));
 
             return "Wish and assignment cancelled successfully!";
             
         } catch (Exception e) {
-            throw new RuntimeException("Failed to cancel wish: " + e.getMessage());
+            throw new RuntimeException("Failed to cancel wish: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Wishes on the seances of the active campaign.
+     */
     public List<Voeu> getAllVoeux() {
-        return voeuRepo.findAll();
+        return voeuRepo.findAllByCampagneId(campagneService.activeId());
     }
 
     // =========================
     // AFFECTATION
     // =========================
+    /**
+     * Locks the seance, then the teacher, like {@link #soumettreVoeu}.
+     */
     @Transactional
     public String affecterSurveillant(Long idSeance, Long idEnseignant) {
-        Seance s = seanceRepo.findById(idSeance)
-                .orElseThrow(() -> new RuntimeException("Seance not found"));
-        Enseignant e = enseignantRepo.findById(idEnseignant)
-                .orElseThrow(() -> new RuntimeException("Enseignant not found"));
+        return tracer.trace("affecterSurveillant", idEnseignant, idSeance,
+                () -> doAffecterSurveillant(idSeance, idEnseignant));
+    }
+
+    private String doAffecterSurveillant(Long idSeance, Long idEnseignant) {
+        Seance s = lockSeance(idSeance);
+        Enseignant e = lockEnseignant(idEnseignant);
 
-        if (affectationRepo.existsByEnseignantAndSeance(e, s)) {
+        String closed = checkCampaignOpen(s);
+        if (closed != null) {
+            return closed;
+        }
+        if (tracer.check("alreadyAssigned", () -> affectationRepo.existsByEnseignantAndSeance(e, s))) {
             return "Already assigned";
         }
-        if (s.isSaturee()) {
+        if (tracer.check("saturation", s::isSaturee)) {
             return "Session full";
         }
         if (hasSubjectConflict(e, s)) {
@@ -310,27 +503,222 @@ public class SurveillanceService {
         if (hasTimeConflict(e, s)) {
             return "Time conflict";
         }
-        if (!e.canTakeMoreSurveillances()) {
+        if (e.getChargeSurveillance() != null
+                && tracer.check("quota", () -> countAssignmentsInCampaign(e, s) >= e.getChargeSurveillance())) {
             return "Teacher has reached maximum surveillance load";
         }
 
-        Affectation aff = new Affectation(e, s);
-        affectationRepo.save(aff);
+        tracer.step("saveAssignment", () -> {
+            affectationRepo.save(new Affectation(e, s));
+            s.setNbSurveillantsInscrits(s.getNbSurveillantsInscrits() + 1);
+            seanceRepo.save(s);
+        });
+        events.publishEvent(AffectationChangedEvent.assigned(idEnseignant, idSeance));
+
+        return "Assignment successful";
+    }
+
+    /**
+     * Remove an assignment made by an administrator (with or without a wish),
+     * then promote the waitlist of the seance. Locks like {@link #affecterSurveillant}.
+     */
+    @Transactional
+    public String retirerSurveillant(Long idSeance, Long idEnseignant) {
+        return tracer.trace("retirerSurveillant", idEnseignant, idSeance,
+                () -> doRetirerSurveillant(idSeance, idEnseignant));
+    }
+
+    private String doRetirerSurveillant(Long idSeance, Long idEnseignant) {
+        Seance s = lockSeance(idSeance);
+        Enseignant e = lockEnseignant(idEnseignant);
+
+        String closed = checkCampaignOpen(s);
+        if (closed != null) {
+            return closed;
+        }
+        if (!affectationRepo.existsByEnseignantAndSeance(e, s)) {
+            return "No assignment found";
+        }
 
-        s.setNbSurveillantsInscrits(s.getNbSurveillantsInscrits() + 1);
+        boolean hadVoeu = voeuRepo.existsByEnseignantAndSeance(e, s);
+        voeuRepo.findByEnseignant(e).stream()
+                .filter(v -> v.getSeance().getId().equals(idSeance))
+                .forEach(voeuRepo::delete);
+        affectationRepo.deleteByEnseignantAndSeance(e, s);
+        s.setNbSurveillantsInscrits(Math.max(0, s.getNbSurveillantsInscrits() - 1));
         seanceRepo.save(s);
+        if (hadVoeu) {
+            events.publishEvent(VoeuChangedEvent.of(VoeuChangedEvent.Type.CANCELLED, idEnseignant, idSeance));
+        }
+        events.publishEvent(AffectationChangedEvent.unassigned(idEnseignant, idSeance));
 
-        return "Assignment successful";
+        tracer.step("promoteFromWaitlist", () -> promoteFromWaitlist(s));
+        return "Unassignment successful";
     }
 
+    /**
+     * Assignments on the seances of the active campaign.
+     */
     public List<Affectation> getAllAffectations() {
-        return affectationRepo.findAll();
+        return affectationRepo.findAllByCampagneId(campagneService.activeId());
+    }
+
+    // =========================
+    // SWAP
+    // =========================
+    /**
+     * Exchange two assignments in one transaction: teacher A takes the seat
+     * of teacher B on seance B and B takes A's seat on seance A. Nobody else
+     * can grab a freed seat in between, and the fill counters do not change.
+     *
+     * Both seances, then both teachers, are locked in ascending id order, so
+     * concurrent swaps (including crossing ones) serialize instead of
+     * deadlocking. Each side is checked against the subject and time rules,
+     * ignoring the seance the teacher gives up. The number of assignments of
+     * each teacher is unchanged, so the quota cannot be exceeded by a swap.
+     */
+    @Transactional
+    public String swapAffectations(Long idEnseignantA, Long idSeanceA, Long idEnseignantB, Long idSeanceB) {
+        return tracer.trace("swapAffectations", idEnseignantA, idSeanceA,
+                () -> doSwapAffectations(idEnseignantA, idSeanceA, idEnseignantB, idSeanceB));
+    }
+
+    private String doSwapAffectations(Long idEnseignantA, Long idSeanceA, Long idEnseignantB, Long idSeanceB) {
+        if (idEnseignantA.equals(idEnseignantB)) {
+            return "Cannot swap two assignments of the same teacher.";
+        }
+        if (idSeanceA.equals(idSeanceB)) {
+            return "Both teachers are assigned to the same session.";
+        }
+
+        Seance firstSeance = lockSeance(Math.min(idSeanceA, idSeanceB));
+        Seance secondSeance = lockSeance(Math.max(idSeanceA, idSeanceB));
+        Seance seanceA = firstSeance.getId().equals(idSeanceA) ? firstSeance : secondSeance;
+        Seance seanceB = seanceA == firstSeance ? secondSeance : firstSeance;
+        String closed = checkCampaignOpen(seanceA);
+        if (closed == null) {
+            closed = checkCampaignOpen(seanceB);
+        }
+        if (closed != null) {
+            return closed;
+        }
+
+        Enseignant firstEns = lockEnseignant(Math.min(idEnseignantA, idEnseignantB));
+        Enseignant secondEns = lockEnseignant(Math.max(idEnseignantA, idEnseignantB));
+        Enseignant ensA = firstEns.getId().equals(idEnseignantA) ? firstEns : secondEns;
+        Enseignant ensB = ensA == firstEns ? secondEns : firstEns;
+
+        Optional<Affectation> affA = affectationRepo.findByEnseignantAndSeance(ensA, seanceA);
+        if (affA.isEmpty()) {
+            return ensA.getNomComplet() + " is not assigned to session " + idSeanceA + ".";
+        }
+        Optional<Affectation> affB = affectationRepo.findByEnseignantAndSeance(ensB, seanceB);
+        if (affB.isEmpty()) {
+            return ensB.getNomComplet() + " is not assigned to session " + idSeanceB + ".";
+        }
+
+        String problem = checkSwapSide(ensA, seanceB, seanceA);
+        if (problem == null) {
+            problem = checkSwapSide(ensB, seanceA, seanceB);
+        }
+        if (problem != null) {
+            return problem;
+        }
+
+        affA.get().setSeance(seanceB);
+        affB.get().setSeance(seanceA);
+        affectationRepo.save(affA.get());
+        affectationRepo.save(affB.get());
+
+        // Wishes follow the seats
+        moveVoeu(ensA, seanceA, seanceB);
+        moveVoeu(ensB, seanceB, seanceA);
+
+        events.publishEvent(AffectationChangedEvent.unassigned(ensA.getId(), seanceA.getId()));
+        events.publishEvent(AffectationChangedEvent.unassigned(ensB.getId(), seanceB.getId()));
+        events.publishEvent(AffectationChangedEvent.assigned(ensA.getId(), seanceB.getId()));
+        events.publishEvent(AffectationChangedEvent.assigned(ensB.getId(), seanceA.getId()));
+
+        return "Swap successful";
+    }
+
+    private Seance lockSeance(Long idSeance) {
+        return tracer.step("lockSeance", () -> seanceRepo.findByIdForUpdate(idSeance)
+                .orElseThrow(() -> new IllegalArgumentException("Seance not found")));
+    }
+
+    private Enseignant lockEnseignant(Long idEnseignant) {
+        return tracer.step("lockEnseignant", () -> enseignantRepo.findByIdForUpdate(idEnseignant)
+                .orElseThrow(() -> new IllegalArgumentException("Enseignant not found")));
+    }
+
+    /**
+     * Can the teacher take the target seance while giving up the released one?
+     */
+    private String checkSwapSide(Enseignant ens, Seance target, Seance released) {
+        if (tracer.check("alreadyAssigned", () -> affectationRepo.existsByEnseignantAndSeance(ens, target))) {
+            return ens.getNomComplet() + ": Already assigned";
+        }
+        if (hasSubjectConflict(ens, target)) {
+            return ens.getNomComplet() + ": Subject conflict";
+        }
+        if (target.getDate() != null && target.getHeureDebut() != null && target.getHeureFin() != null
+                && tracer.check("timeConflict", () -> affectationRepo.existsOverlappingAffectationExcluding(
+                        ens, released, target.getDate(), target.getHeureDebut(), target.getHeureFin()))) {
+            return ens.getNomComplet() + ": Time conflict";
+        }
+        return null;
+    }
+
+    private void moveVoeu(Enseignant ens, Seance from, Seance to) {
+        // A leftover wish or waitlist entry on the new seat would become a duplicate
+        listeAttenteRepo.findByEnseignantAndSeance(ens, to).ifPresent(listeAttenteRepo::delete);
+        for (Voeu v : voeuRepo.findByEnseignant(ens)) {
+            if (v.getSeance().getId().equals(to.getId())) {
+                voeuRepo.delete(v);
+            } else if (v.getSeance().getId().equals(from.getId())) {
+                v.setSeance(to);
+                voeuRepo.save(v);
+            }
+        }
+    }
+
+    // =========================
+    // CAMPAIGN HELPERS
+    // =========================
+    /**
+     * Wishes and assignments are frozen once the seance's campaign is closed.
+     *
+     * @return the rejection message, or null if the campaign is open
+     */
+    private String checkCampaignOpen(Seance seance) {
+        Campagne campagne = seance.getCampagne();
+        if (campagne != null && tracer.check("campaignOpen",
+                () -> campagne.getStatut() != Campagne.CampagneStatut.OUVERTE)) {
+            return "Campaign '" + campagne.getNom() + "' is closed.";
+        }
+        return null;
+    }
+
+    /**
+     * Assignments of the teacher counted against the quota: those of the
+     * seance's campaign.
+     */
+    private long countAssignmentsInCampaign(Enseignant ens, Seance seance) {
+        if (seance.getCampagne() == null) {
+            return ens.getAffectations().size();
+        }
+        return affectationRepo.countByEnseignantAndCampagne(ens, seance.getCampagne());
     }
 
     // =========================
     // CONFLICT DETECTION HELPERS
     // =========================
     private boolean hasSubjectConflict(Enseignant ens, Seance seance) {
+        return tracer.check("subjectConflict", () -> doHasSubjectConflict(ens, seance));
+    }
+
+    private boolean doHasSubjectConflict(Enseignant ens, Seance seance) {
         Set<Long> teacherMatiereIds = ens.getMatieres().stream()
                 .map(Matiere::getId)
                 .collect(Collectors.toSet());
@@ -350,7 +738,8 @@ public class SurveillanceService {
             return false;
         }
 
-        return affectationRepo.existsByEnseignantAndSeanceDateTime(ens, date, heureDebut, heureFin);
+        return tracer.check("timeConflict",
+                () -> affectationRepo.existsByEnseignantAndSeanceDateTime(ens, date, heureDebut, heureFin));
     }
 
     // =========================
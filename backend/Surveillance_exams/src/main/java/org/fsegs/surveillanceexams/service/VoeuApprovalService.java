@@ -0,0 +1,301 @@
+package org.fsegs.surveillanceexams.service;
+
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.fsegs.surveillanceexams.diagnostics.OperationTracer;
+import org.fsegs.surveillanceexams.event.AffectationChangedEvent;
+import org.fsegs.surveillanceexams.event.VoeuChangedEvent;
+import org.fsegs.surveillanceexams.model.Campagne;
+import org.fsegs.surveillanceexams.model.Voeu;
+import org.fsegs.surveillanceexams.planning.PlanningAllocation;
+import org.fsegs.surveillanceexams.planning.PlanningLoader;
+import org.fsegs.surveillanceexams.planning.PlanningModel;
+import org.fsegs.surveillanceexams.planning.PlanningRules;
+import org.fsegs.surveillanceexams.planning.TeacherProfile;
+import org.fsegs.surveillanceexams.planning.Violation;
+import org.fsegs.surveillanceexams.repository.VoeuRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Batch approval of PENDING wishes of the active campaign (deferred mode, see
+ * {@code surveillance.voeux.deferred-approval}).
+ *
+ * A run locks the seance rows, then the teacher rows, of the pending wishes
+ * (each in id order, like {@code soumettreVoeu} and the group commit), so
+ * no wish, cancellation or assignment can change them until it commits. It
+ * then re-reads the pending wishes, loads the whole planning into memory,
+ * processes the wishes by priority and applies the same rules as
+ * {@code affecterSurveillant} to an in-memory allocation. The outcome is
+ * written with JDBC batch statements in the same transaction:
+ * - voeu statuses (APPROVED / REJECTED), only for wishes still PENDING
+ * - new affectation rows, for the wishes whose status was written
+ * - seance fill counters, by the number of rows inserted
+ *
+ * Priority: {@code surveillance.voeux.approval-order}, by default earliest
+ * submission, then grade (order given by
+ * {@code surveillance.voeux.grade-priority}), then most remaining quota, and
+ * finally the wish id. Submission times almost never tie, so with the default
+ * the grade and quota only separate wishes submitted at the same instant;
+ * {@code grade,quota,submission} lets a higher grade beat an earlier wish
+ * during the deferred window.
+ */
+@Service
+public class VoeuApprovalService {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int LOCK_CHUNK = 1000;
+
+    private final VoeuRepository voeuRepo;
+    private final PlanningLoader planningLoader;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher events;
+    private final CampagneService campagneService;
+    private final OperationTracer tracer;
+    private final List<String> gradePriority;
+    private final List<PriorityKey> approvalOrder;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public VoeuApprovalService(VoeuRepository voeuRepo,
+                               PlanningLoader planningLoader,
+                               JdbcTemplate jdbcTemplate,
+                               ApplicationEventPublisher events,
+                               CampagneService campagneService,
+                               OperationTracer tracer,
+                               @Value("${surveillance.voeux.grade-priority:}") List<String> gradePriority,
+                               @Value("${surveillance.voeux.approval-order:submission,grade,quota}") List<String> approvalOrder) {
+        this.voeuRepo = voeuRepo;
+        this.planningLoader = planningLoader;
+        this.jdbcTemplate = jdbcTemplate;
+        this.events = events;
+        this.campagneService = campagneService;
+        this.tracer = tracer;
+        this.gradePriority = gradePriority.stream().map(String::trim).filter(g -> !g.isEmpty()).toList();
+        this.approvalOrder = approvalOrder.stream().map(String::trim).filter(k -> !k.isEmpty())
+                .map(PriorityKey::parse).toList();
+    }
+
+    /**
+     * Keys of {@code surveillance.voeux.approval-order}.
+     */
+    enum PriorityKey {
+        SUBMISSION, GRADE, QUOTA;
+
+        static PriorityKey parse(String key) {
+            for (PriorityKey k : values()) {
+                if (k.name().equalsIgnoreCase(key)) {
+                    return k;
+                }
+            }
+            throw new IllegalArgumentException("Unknown approval order key '" + key
+                    + "', expected submission, grade or quota");
+        }
+    }
+
+    private record PendingVoeu(Long id, Long idEnseignant, Long idSeance, LocalDateTime dateSoumission) {
+    }
+
+    @Transactional
+    public Map<String, Object> runApproval() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("An approval run is already in progress");
+        }
+        try {
+            return tracer.trace("runApproval", null, null, this::doRunApproval);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private Map<String, Object> doRunApproval() {
+        long start = System.nanoTime();
+        Campagne campagne = campagneService.getActive();
+        if (campagne.getStatut() != Campagne.CampagneStatut.OUVERTE) {
+            throw new IllegalStateException("Campaign '" + campagne.getNom() + "' is closed");
+        }
+        // Serializes runs across instances; a second run then finds no pending wish left
+        tracer.step("lockCampagne", () -> jdbcTemplate.queryForObject(
+                "SELECT id_campagne FROM campagne WHERE id_campagne = ? FOR UPDATE", Long.class, campagne.getId()));
+
+        List<PendingVoeu> pending = new ArrayList<>();
+        tracer.step("lockRows", () -> {
+            List<PendingVoeu> seen = loadPending(campagne.getId());
+            Set<Long> seanceIds = new TreeSet<>();
+            Set<Long> teacherIds = new TreeSet<>();
+            for (PendingVoeu v : seen) {
+                seanceIds.add(v.idSeance());
+                teacherIds.add(v.idEnseignant());
+            }
+            lockRows("seance", "id_seance", seanceIds);
+            lockRows("enseignant", "id_enseignant", teacherIds);
+            // Wishes cancelled before the locks are gone; those submitted since on other rows wait for the next run
+            for (PendingVoeu v : loadPending(campagne.getId())) {
+                if (seanceIds.contains(v.idSeance()) && teacherIds.contains(v.idEnseignant())) {
+                    pending.add(v);
+                }
+            }
+        });
+
+        PlanningModel model = tracer.step("loadPlanning", planningLoader::load);
+        PlanningAllocation allocation = new PlanningAllocation(model);
+        pending.sort(priorityOrder(model));
+
+        List<PendingVoeu> approved = new ArrayList<>();
+        List<PendingVoeu> rejected = new ArrayList<>();
+        Set<Long> assigning = new HashSet<>();
+        Map<Long, String> reasons = new HashMap<>();
+
+        tracer.step("allocate", () -> {
+            for (PendingVoeu v : pending) {
+                if (allocation.seancesOf(v.idEnseignant()).contains(v.idSeance())) {
+                    // Legacy wish whose assignment already exists
+                    approved.add(v);
+                    continue;
+                }
+                Violation violation = PlanningRules.check(allocation, v.idEnseignant(), v.idSeance());
+                if (violation == null) {
+                    allocation.assign(v.idEnseignant(), v.idSeance());
+                    approved.add(v);
+                    assigning.add(v.id());
+                } else {
+                    rejected.add(v);
+                    reasons.put(v.id(), violation.getMessage());
+                }
+            }
+        });
+
+        List<long[]> newAffectations = new ArrayList<>();
+        Map<String, Integer> rejections = new TreeMap<>();
+        tracer.step("write", () -> {
+            // A wish whose status is no longer PENDING is left out, with its affectation
+            List<PendingVoeu> approvedWritten = writeStatuses(approved, Voeu.VoeuStatus.APPROVED);
+            List<PendingVoeu> rejectedWritten = writeStatuses(rejected, Voeu.VoeuStatus.REJECTED);
+            approved.clear();
+            approved.addAll(approvedWritten);
+            rejected.clear();
+            rejected.addAll(rejectedWritten);
+            for (PendingVoeu v : rejected) {
+                rejections.merge(reasons.get(v.id()), 1, Integer::sum);
+            }
+            Map<Long, Integer> increments = new TreeMap<>();
+            for (PendingVoeu v : approved) {
+                if (assigning.contains(v.id())) {
+                    newAffectations.add(new long[]{v.idEnseignant(), v.idSeance()});
+                    increments.merge(v.idSeance(), 1, Integer::sum);
+                }
+            }
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO affectation (id_enseignant, id_seance) VALUES (?, ?)",
+                    newAffectations, BATCH_SIZE,
+                    (ps, a) -> {
+                        ps.setLong(1, a[0]);
+                        ps.setLong(2, a[1]);
+                    });
+
+            List<Object[]> counters = new ArrayList<>();
+            increments.forEach((idSeance, n) -> counters.add(new Object[]{n, idSeance}));
+            jdbcTemplate.batchUpdate("UPDATE seance SET nb_surveillants_inscrits = nb_surveillants_inscrits + ? " +
+                    "WHERE id_seance = ?", counters);
+        });
+
+        for (PendingVoeu v : approved) {
+            events.publishEvent(VoeuChangedEvent.of(VoeuChangedEvent.Type.APPROVED, v.idEnseignant(), v.idSeance()));
+        }
+        for (PendingVoeu v : rejected) {
+            events.publishEvent(VoeuChangedEvent.of(VoeuChangedEvent.Type.REJECTED, v.idEnseignant(), v.idSeance()));
+        }
+        for (long[] a : newAffectations) {
+            events.publishEvent(AffectationChangedEvent.assigned(a[0], a[1]));
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("processed", pending.size());
+        report.put("approved", approved.size());
+        report.put("assignmentsCreated", newAffectations.size());
+        report.put("rejected", rejected.size());
+        report.put("rejectionsByReason", rejections);
+        report.put("durationMs", (System.nanoTime() - start) / 1_000_000);
+        return report;
+    }
+
+    private Comparator<PendingVoeu> priorityOrder(PlanningModel model) {
+        Comparator<PendingVoeu> order = (a, b) -> 0;
+        for (PriorityKey key : approvalOrder) {
+            order = order.thenComparing(switch (key) {
+                case SUBMISSION -> Comparator.comparing(PendingVoeu::dateSoumission,
+                        Comparator.nullsLast(Comparator.naturalOrder()));
+                case GRADE -> Comparator.comparingInt(
+                        (PendingVoeu v) -> gradeRank(model.teacher(v.idEnseignant())));
+                case QUOTA -> Comparator.comparingInt(
+                        (PendingVoeu v) -> model.remainingQuota(v.idEnseignant())).reversed();
+            });
+        }
+        return order.thenComparing(PendingVoeu::id);
+    }
+
+    private int gradeRank(TeacherProfile teacher) {
+        if (teacher == null || teacher.grade() == null) {
+            return gradePriority.size();
+        }
+        for (int i = 0; i < gradePriority.size(); i++) {
+            if (gradePriority.get(i).equalsIgnoreCase(teacher.grade().trim())) {
+                return i;
+            }
+        }
+        return gradePriority.size();
+    }
+
+    private List<PendingVoeu> loadPending(Long campagneId) {
+        List<PendingVoeu> pending = new ArrayList<>();
+        for (Object[] row : voeuRepo.findRowsByStatus(Voeu.VoeuStatus.PENDING, campagneId)) {
+            pending.add(new PendingVoeu((Long) row[0], (Long) row[1], (Long) row[2], (LocalDateTime) row[3]));
+        }
+        return pending;
+    }
+
+    /**
+     * Lock the rows in ascending id order, in chunks.
+     */
+    private void lockRows(String table, String idColumn, Set<Long> sortedIds) {
+        List<Long> ids = new ArrayList<>(sortedIds);
+        for (int from = 0; from < ids.size(); from += LOCK_CHUNK) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + LOCK_CHUNK));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            jdbcTemplate.queryForList("SELECT " + idColumn + " FROM " + table + " WHERE " + idColumn
+                    + " IN (" + placeholders + ") ORDER BY " + idColumn + " FOR UPDATE", Long.class, chunk.toArray());
+        }
+    }
+
+    /**
+     * Set the status of the wishes that are still PENDING.
+     *
+     * @return the wishes actually updated
+     */
+    private List<PendingVoeu> writeStatuses(List<PendingVoeu> voeux, Voeu.VoeuStatus status) {
+        int[][] counts = jdbcTemplate.batchUpdate(
+                "UPDATE voeu SET status = ? WHERE id_voeu = ? AND status = 'PENDING'", voeux, BATCH_SIZE,
+                (ps, v) -> {
+                    ps.setString(1, status.name());
+                    ps.setLong(2, v.id());
+                });
+        List<PendingVoeu> updated = new ArrayList<>(voeux.size());
+        int i = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                // Drivers rewriting batches may not report per-row counts
+                if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                    updated.add(voeux.get(i));
+                }
+                i++;
+            }
+        }
+        return updated;
+    }
+}
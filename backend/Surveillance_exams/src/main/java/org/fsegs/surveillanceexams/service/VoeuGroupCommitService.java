@@ -0,0 +1,510 @@
+package org.fsegs.surveillanceexams.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.fsegs.surveillanceexams.diagnostics.OperationTracer;
+import org.fsegs.surveillanceexams.event.AffectationChangedEvent;
+import org.fsegs.surveillanceexams.event.VoeuChangedEvent;
+import org.fsegs.surveillanceexams.model.Campagne;
+import org.fsegs.surveillanceexams.model.Voeu;
+import org.fsegs.surveillanceexams.planning.PlanningRules;
+import org.fsegs.surveillanceexams.planning.SeanceSlot;
+import org.fsegs.surveillanceexams.planning.TeacherProfile;
+import org.fsegs.surveillanceexams.repository.AffectationRepository;
+import org.fsegs.surveillanceexams.repository.EnseignantRepository;
+import org.fsegs.surveillanceexams.repository.PaquetRepository;
+import org.fsegs.surveillanceexams.repository.SeanceRepository;
+import org.fsegs.surveillanceexams.repository.VoeuRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Group commit of wish submissions ({@code POST /api/voeux}), enabled by
+ * {@code surveillance.voeux.group-commit.enabled}.
+ *
+ * Submissions are queued and a single flusher thread takes them in batches:
+ * the first waiting request plus those arriving within {@code max-wait-ms}, up
+ * to {@code max-batch}. A batch is one transaction:
+ * 1. lock the seance rows, then the teacher rows, each in id order (the
+ *    order of {@code soumettreVoeu} and swaps, so no deadlock with them),
+ * 2. read what the wish rules need for these rows only, with a fixed number
+ *    of queries,
+ * 3. decide every request in arrival order on that in-memory view, each
+ *    decision seeing the wishes accepted before it in the batch,
+ * 4. write the voeu and affectation rows and the seance counters with JDBC
+ *    batch statements, and commit once.
+ * Each caller then gets the result {@code soumettreVoeu} would have returned.
+ *
+ * Requests outside the common case go through
+ * {@link SurveillanceService#soumettreVoeu} after the batch, on the caller's
+ * thread: unknown seance or teacher, seance without campaign or in a closed
+ * campaign (exact error messages), saturated seance (waitlist), and every
+ * request of a batch whose transaction failed.
+ *
+ * A caller never waits for ever: requests left in the queue when the flusher
+ * stops also go through their own transaction, and a caller gives up after
+ * {@code timeout-ms} (falling back if its request was not taken yet, failing
+ * otherwise, since its batch may still commit).
+ */
+@Service
+public class VoeuGroupCommitService {
+
+    private final SurveillanceService surveillanceService;
+    private final SeanceRepository seanceRepo;
+    private final EnseignantRepository enseignantRepo;
+    private final AffectationRepository affectationRepo;
+    private final VoeuRepository voeuRepo;
+    private final PaquetRepository paquetRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher events;
+    private final OperationTracer tracer;
+    private final boolean enabled;
+    private final boolean deferredApproval;
+    private final long maxWaitNanos;
+    private final int maxBatch;
+    private final long timeoutMillis;
+
+    private record Request(Long idEnseignant, Long idSeance, CompletableFuture<VoeuResult> result) {
+    }
+
+    private record Pair(long idEnseignant, long idSeance) {
+    }
+
+    private final LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private Thread flusher;
+    private volatile boolean running;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong batchedRequests = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private volatile int largestBatch;
+
+    public VoeuGroupCommitService(SurveillanceService surveillanceService,
+                                  SeanceRepository seanceRepo,
+                                  EnseignantRepository enseignantRepo,
+                                  AffectationRepository affectationRepo,
+                                  VoeuRepository voeuRepo,
+                                  PaquetRepository paquetRepo,
+                                  JdbcTemplate jdbcTemplate,
+                                  TransactionTemplate transactionTemplate,
+                                  ApplicationEventPublisher events,
+                                  OperationTracer tracer,
+                                  @Value("${surveillance.voeux.group-commit.enabled:false}") boolean enabled,
+                                  @Value("${surveillance.voeux.deferred-approval:false}") boolean deferredApproval,
+                                  @Value("${surveillance.voeux.group-commit.max-wait-ms:2}") double maxWaitMillis,
+                                  @Value("${surveillance.voeux.group-commit.max-batch:128}") int maxBatch,
+                                  @Value("${surveillance.voeux.group-commit.timeout-ms:10000}") long timeoutMillis) {
+        this.surveillanceService = surveillanceService;
+        this.seanceRepo = seanceRepo;
+        this.enseignantRepo = enseignantRepo;
+        this.affectationRepo = affectationRepo;
+        this.voeuRepo = voeuRepo;
+        this.paquetRepo = paquetRepo;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.events = events;
+        this.tracer = tracer;
+        this.enabled = enabled;
+        this.deferredApproval = deferredApproval;
+        this.maxWaitNanos = (long) (maxWaitMillis * 1_000_000);
+        this.maxBatch = Math.max(1, maxBatch);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    // =========================
+    // LIFECYCLE
+    // =========================
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::flushLoop, "voeu-group-commit");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        running = false;
+        flusher.join(10_000);
+        releaseQueued();
+    }
+
+    /**
+     * Callers still waiting fall back to their own transaction.
+     */
+    private void releaseQueued() {
+        Request left;
+        while ((left = queue.poll()) != null) {
+            left.result().complete(null);
+        }
+    }
+
+    // =========================
+    // SUBMIT
+    // =========================
+    /**
+     * Same contract as {@link SurveillanceService#soumettreVoeu}; in group
+     * commit mode the wish is written with the other wishes of its batch.
+     */
+    public VoeuResult soumettreVoeu(Long idEnseignant, Long idSeance) {
+        if (!running) {
+            return surveillanceService.soumettreVoeu(idEnseignant, idSeance);
+        }
+        Request request = new Request(idEnseignant, idSeance, new CompletableFuture<>());
+        queue.add(request);
+        VoeuResult result;
+        if (!running && queue.remove(request)) {
+            // The flusher stopped after the check above and will not take it
+            result = null;
+        } else {
+            result = await(request);
+        }
+        if (result == null) {
+            fallbacks.incrementAndGet();
+            return surveillanceService.soumettreVoeu(idEnseignant, idSeance);
+        }
+        return result;
+    }
+
+    private VoeuResult await(Request request) {
+        try {
+            return request.result().get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (queue.remove(request)) {
+                return null;
+            }
+            throw new QueryTimeoutException("Wish group commit did not answer within " + timeoutMillis + " ms");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause
+                    ? cause : new IllegalStateException("Wish group commit failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queue.remove(request);
+            throw new IllegalStateException("Interrupted while waiting for the wish group commit");
+        }
+    }
+
+    private void flushLoop() {
+        List<Request> batch = new ArrayList<>();
+        try {
+            flush(batch);
+        } finally {
+            running = false;
+            for (Request r : batch) {
+                r.result().complete(null);
+            }
+            releaseQueued();
+        }
+    }
+
+    private void flush(List<Request> batch) {
+        while (running) {
+            try {
+                Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatch) {
+                    Request next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                queue.drainTo(batch, maxBatch - batch.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                try {
+                    commit(batch);
+                } catch (Throwable t) {
+                    // Transaction failures are handled by commit(); this is anything else (an Error...)
+                    failedBatches.incrementAndGet();
+                    System.err.println("Wish group commit: batch of " + batch.size() + " failed: " + t);
+                    for (Request r : batch) {
+                        r.result().completeExceptionally(t);
+                    }
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<Request> requests) {
+        VoeuResult[] results;
+        try {
+            results = tracer.trace("soumettreVoeuBatch", null, null,
+                    () -> transactionTemplate.execute(tx -> doCommit(requests)));
+        } catch (RuntimeException e) {
+            failedBatches.incrementAndGet();
+            System.err.println("Wish group commit: batch of " + requests.size()
+                    + " failed, retrying each wish in its own transaction: " + e.getMessage());
+            results = new VoeuResult[requests.size()];
+        }
+        batches.incrementAndGet();
+        batchedRequests.addAndGet(requests.size());
+        largestBatch = Math.max(largestBatch, requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            requests.get(i).result().complete(results[i]);
+        }
+    }
+
+    private VoeuResult[] doCommit(List<Request> requests) {
+        Set<Long> seanceIds = new TreeSet<>();
+        Set<Long> teacherIds = new TreeSet<>();
+        for (Request r : requests) {
+            seanceIds.add(r.idSeance());
+            teacherIds.add(r.idEnseignant());
+        }
+
+        tracer.step("lock", () -> {
+            lockRows("seance", "id_seance", seanceIds);
+            lockRows("enseignant", "id_enseignant", teacherIds);
+        });
+        Batch batch = tracer.step("load", () -> load(seanceIds, teacherIds));
+
+        VoeuResult[] results = new VoeuResult[requests.size()];
+        tracer.step("decide", () -> {
+            for (int i = 0; i < requests.size(); i++) {
+                Request r = requests.get(i);
+                results[i] = batch.decide(r.idEnseignant(), r.idSeance(), deferredApproval);
+            }
+        });
+        tracer.step("write", () -> write(batch));
+        return results;
+    }
+
+    private void lockRows(String table, String idColumn, Set<Long> ids) {
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        jdbcTemplate.queryForList("SELECT " + idColumn + " FROM " + table + " WHERE " + idColumn
+                + " IN (" + placeholders + ") ORDER BY " + idColumn + " FOR UPDATE", Long.class, ids.toArray());
+    }
+
+    private Batch load(Set<Long> seanceIds, Set<Long> teacherIds) {
+        Batch batch = new Batch();
+        Map<Long, Set<Long>> seanceMatieres = groupPairs(paquetRepo.findSeanceMatierePairsBySeanceIds(seanceIds));
+        Set<LocalDate> dates = new HashSet<>();
+        for (Object[] row : seanceRepo.findWishRowsByIds(seanceIds)) {
+            Long id = (Long) row[0];
+            batch.addSeance(new SeanceSlot(id, (LocalDate) row[1], (LocalTime) row[2], (LocalTime) row[3],
+                            (Integer) row[4], seanceMatieres.getOrDefault(id, Set.of())),
+                    (Integer) row[5], (Long) row[6], row[7] == Campagne.CampagneStatut.OUVERTE);
+            if (row[1] != null) {
+                dates.add((LocalDate) row[1]);
+            }
+        }
+
+        Map<Long, Set<Long>> teacherMatieres = groupPairs(enseignantRepo.findEnseignantMatierePairsByIds(teacherIds));
+        for (Object[] row : enseignantRepo.findPlanningRowsByIds(teacherIds)) {
+            Long id = (Long) row[0];
+            batch.addTeacher(new TeacherProfile(id, (String) row[1], (String) row[2], (Double) row[3],
+                    teacherMatieres.getOrDefault(id, Set.of())));
+        }
+        for (Object[] row : affectationRepo.countGroupedByEnseignantIdsAndCampagne(teacherIds)) {
+            batch.addAssignmentCount((Long) row[0], (Long) row[1], ((Long) row[2]).intValue());
+        }
+        if (!dates.isEmpty()) {
+            for (Object[] row : affectationRepo.findSlotsByEnseignantIdsAndDates(teacherIds, dates)) {
+                batch.addAssignedSlot((Long) row[0], new SeanceSlot((Long) row[1], (LocalDate) row[2],
+                        (LocalTime) row[3], (LocalTime) row[4], 0, Set.of()));
+            }
+        }
+        for (Object[] row : voeuRepo.findPairsByEnseignantIdsAndSeanceIds(teacherIds, seanceIds)) {
+            batch.addVoeu((Long) row[0], (Long) row[1]);
+        }
+        return batch;
+    }
+
+    private void write(Batch batch) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> voeux = new ArrayList<>();
+        for (Pair p : batch.approved) {
+            voeux.add(new Object[]{p.idEnseignant(), p.idSeance(), now, Voeu.VoeuStatus.APPROVED.name()});
+        }
+        for (Pair p : batch.pending) {
+            voeux.add(new Object[]{p.idEnseignant(), p.idSeance(), now, Voeu.VoeuStatus.PENDING.name()});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO voeu (id_enseignant, id_seance, date_soumission, status) " +
+                "VALUES (?, ?, ?, ?)", voeux);
+
+        List<Object[]> affectations = new ArrayList<>();
+        Map<Long, Integer> increments = new TreeMap<>();
+        for (Pair p : batch.approved) {
+            affectations.add(new Object[]{p.idEnseignant(), p.idSeance()});
+            increments.merge(p.idSeance(), 1, Integer::sum);
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO affectation (id_enseignant, id_seance) VALUES (?, ?)", affectations);
+        List<Object[]> counters = new ArrayList<>();
+        increments.forEach((idSeance, n) -> counters.add(new Object[]{n, idSeance}));
+        jdbcTemplate.batchUpdate("UPDATE seance SET nb_surveillants_inscrits = nb_surveillants_inscrits + ? " +
+                "WHERE id_seance = ?", counters);
+
+        for (Pair p : batch.approved) {
+            events.publishEvent(VoeuChangedEvent.of(VoeuChangedEvent.Type.APPROVED, p.idEnseignant(), p.idSeance()));
+            events.publishEvent(AffectationChangedEvent.assigned(p.idEnseignant(), p.idSeance()));
+        }
+        for (Pair p : batch.pending) {
+            events.publishEvent(VoeuChangedEvent.of(VoeuChangedEvent.Type.SUBMITTED, p.idEnseignant(), p.idSeance()));
+        }
+    }
+
+    private static Map<Long, Set<Long>> groupPairs(List<Object[]> rows) {
+        Map<Long, Set<Long>> result = new HashMap<>();
+        for (Object[] row : rows) {
+            if (row[0] != null && row[1] != null) {
+                result.computeIfAbsent((Long) row[0], k -> new HashSet<>()).add((Long) row[1]);
+            }
+        }
+        return result;
+    }
+
+    // =========================
+    // BATCH VIEW
+    // =========================
+    /**
+     * The rows a batch has locked and read, updated with each accepted wish
+     * so that the next decisions see it.
+     */
+    static final class Batch {
+
+        private final Map<Long, SeanceSlot> seances = new HashMap<>();
+        private final Map<Long, Integer> inscrits = new HashMap<>();
+        private final Map<Long, Long> campagneOf = new HashMap<>();
+        private final Set<Long> openSeances = new HashSet<>();
+        private final Map<Long, TeacherProfile> teachers = new HashMap<>();
+        /** Teacher -> campaign -> number of assignments */
+        private final Map<Long, Map<Long, Integer>> assignmentCounts = new HashMap<>();
+        /** Teacher -> assigned seances on the dates of the batch */
+        private final Map<Long, List<SeanceSlot>> assignedSlots = new HashMap<>();
+        private final Set<Pair> voeux = new HashSet<>();
+        /** Pairs sent to the one-transaction path: later requests for them go there too */
+        private final Set<Pair> deferred = new HashSet<>();
+
+        final List<Pair> approved = new ArrayList<>();
+        final List<Pair> pending = new ArrayList<>();
+
+        void addSeance(SeanceSlot seance, int nbInscrits, Long idCampagne, boolean campagneOuverte) {
+            seances.put(seance.id(), seance);
+            inscrits.put(seance.id(), nbInscrits);
+            if (idCampagne != null && campagneOuverte) {
+                campagneOf.put(seance.id(), idCampagne);
+                openSeances.add(seance.id());
+            }
+        }
+
+        void addTeacher(TeacherProfile teacher) {
+            teachers.put(teacher.id(), teacher);
+        }
+
+        void addAssignmentCount(Long idEnseignant, Long idCampagne, int count) {
+            if (idCampagne != null) {
+                assignmentCounts.computeIfAbsent(idEnseignant, k -> new HashMap<>()).put(idCampagne, count);
+            }
+        }
+
+        void addAssignedSlot(Long idEnseignant, SeanceSlot slot) {
+            assignedSlots.computeIfAbsent(idEnseignant, k -> new ArrayList<>()).add(slot);
+        }
+
+        void addVoeu(Long idEnseignant, Long idSeance) {
+            voeux.add(new Pair(idEnseignant, idSeance));
+        }
+
+        /**
+         * The rules of {@code soumettreVoeu}, in the same order.
+         * @return the result for the caller, or null to run the request in its own transaction
+         */
+        VoeuResult decide(Long idEnseignant, Long idSeance, boolean deferredApproval) {
+            Pair pair = new Pair(idEnseignant, idSeance);
+            SeanceSlot seance = seances.get(idSeance);
+            TeacherProfile teacher = teachers.get(idEnseignant);
+            if (seance == null || teacher == null || !openSeances.contains(idSeance) || deferred.contains(pair)) {
+                deferred.add(pair);
+                return null;
+            }
+            if (voeux.contains(pair)) {
+                return VoeuResult.refused(SurveillanceService.WISH_ALREADY_SUBMITTED);
+            }
+            if (PlanningRules.hasSubjectConflict(teacher, seance)) {
+                return VoeuResult.refused(SurveillanceService.WISH_SUBJECT_CONFLICT);
+            }
+            if (deferredApproval) {
+                voeux.add(pair);
+                pending.add(pair);
+                return VoeuResult.pending();
+            }
+
+            for (SeanceSlot slot : assignedSlots.getOrDefault(idEnseignant, List.of())) {
+                if (slot.overlaps(seance)) {
+                    return VoeuResult.refused(SurveillanceService.WISH_TIME_CONFLICT);
+                }
+            }
+            Long idCampagne = campagneOf.get(idSeance);
+            int count = assignmentCounts.getOrDefault(idEnseignant, Map.of()).getOrDefault(idCampagne, 0);
+            if (teacher.chargeSurveillance() != null && count >= teacher.chargeSurveillance()) {
+                return VoeuResult.refused(SurveillanceService.wishQuotaReached(teacher.chargeSurveillance()));
+            }
+            if (inscrits.get(idSeance) >= seance.nbSurveillantsNecessaires()) {
+                // Waitlist
+                deferred.add(pair);
+                return null;
+            }
+
+            voeux.add(pair);
+            approved.add(pair);
+            inscrits.merge(idSeance, 1, Integer::sum);
+            assignmentCounts.computeIfAbsent(idEnseignant, k -> new HashMap<>()).merge(idCampagne, 1, Integer::sum);
+            addAssignedSlot(idEnseignant, seance);
+            return VoeuResult.assigned();
+        }
+    }
+
+    // =========================
+    // STATUS
+    // =========================
+    public Map<String, Object> getStatus() {
+        long b = batches.get();
+        long r = batchedRequests.get();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("maxWaitMs", maxWaitNanos / 1e6);
+        status.put("maxBatch", maxBatch);
+        status.put("timeoutMs", timeoutMillis);
+        status.put("batches", b);
+        status.put("requests", r);
+        status.put("averageBatchSize", b == 0 ? 0 : Math.round(r * 10.0 / b) / 10.0);
+        status.put("largestBatch", largestBatch);
+        status.put("fallbacks", fallbacks.get());
+        status.put("failedBatches", failedBatches.get());
+        status.put("queued", queue.size());
+        return status;
+    }
+}
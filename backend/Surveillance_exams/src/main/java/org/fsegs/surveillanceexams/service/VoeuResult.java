@@ -0,0 +1,44 @@
+package org.fsegs.surveillanceexams.service;
+
+/**
+ * Outcome of a wish submission: what happened to the wish, the message for
+ * the teacher, and the waitlist position when the wish was queued.
+ *
+ * Callers decide on {@link #outcome()}; the message is for display only.
+ */
+public record VoeuResult(Outcome outcome, String message, Long waitlistPosition) {
+
+    public enum Outcome {
+        /** Approved, with its assignment */
+        ASSIGNED,
+        /** Recorded, decided by the next approval run (deferred mode) */
+        PENDING,
+        /** Session full: on its waitlist, now or since an earlier request */
+        WAITLISTED,
+        /** Not recorded (duplicate, conflict, quota, closed campaign) */
+        REFUSED
+    }
+
+    static VoeuResult assigned() {
+        return new VoeuResult(Outcome.ASSIGNED, SurveillanceService.WISH_ASSIGNED, null);
+    }
+
+    static VoeuResult pending() {
+        return new VoeuResult(Outcome.PENDING, SurveillanceService.WISH_PENDING, null);
+    }
+
+    static VoeuResult waitlisted(String message, long position) {
+        return new VoeuResult(Outcome.WAITLISTED, message, position);
+    }
+
+    static VoeuResult refused(String message) {
+        return new VoeuResult(Outcome.REFUSED, message, null);
+    }
+
+    /**
+     * True unless the wish was refused.
+     */
+    public boolean accepted() {
+        return outcome != Outcome.REFUSED;
+    }
+}
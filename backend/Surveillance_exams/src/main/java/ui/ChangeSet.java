@@ -0,0 +1,69 @@
+package ui;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Net assignment changes made in the console since the planning was opened.
+ *
+ * Removing an assignment added in the console (or the reverse) cancels both
+ * edits, so the set only holds what differs from the export. It is written
+ * as the JSON body of {@code POST /api/planning/changes}, removals first so
+ * that the seats and quotas they free are available to the additions.
+ */
+public class ChangeSet {
+
+    public record Change(boolean add, long idEnseignant, long idSeance) {
+    }
+
+    private record Key(long idEnseignant, long idSeance) {
+    }
+
+    private final Map<Key, Change> changes = new LinkedHashMap<>();
+
+    public void add(long idEnseignant, long idSeance) {
+        record(new Change(true, idEnseignant, idSeance));
+    }
+
+    public void remove(long idEnseignant, long idSeance) {
+        record(new Change(false, idEnseignant, idSeance));
+    }
+
+    private void record(Change change) {
+        Key key = new Key(change.idEnseignant(), change.idSeance());
+        Change previous = changes.remove(key);
+        if (previous == null || previous.add() == change.add()) {
+            changes.put(key, change);
+        }
+    }
+
+    public int size() {
+        return changes.size();
+    }
+
+    public void clear() {
+        changes.clear();
+    }
+
+    public List<Change> ordered() {
+        List<Change> ordered = new ArrayList<>(changes.values());
+        ordered.sort(Comparator.comparing(Change::add));
+        return ordered;
+    }
+
+    public void write(Path file) throws IOException {
+        List<Map<String, Object>> operations = new ArrayList<>();
+        for (Change c : ordered()) {
+            Map<String, Object> op = new LinkedHashMap<>();
+            op.put("action", c.add() ? "add" : "remove");
+            op.put("idEnseignant", c.idEnseignant());
+            op.put("idSeance", c.idSeance());
+            operations.add(op);
+        }
+        new ObjectMapper().writerWithDefaultPrettyPrinter()
+                .writeValue(file.toFile(), Map.of("operations", operations));
+    }
+}
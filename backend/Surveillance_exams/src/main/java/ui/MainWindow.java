@@ -1,17 +1,358 @@
 package ui;
 
+import org.fsegs.surveillanceexams.planning.*;
+
 import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
-public class MainWindow {
+/**
+ * Offline planning console.
+ *
+ * Opens a planning export ({@code GET /api/planning/export}) or a snapshot
+ * file written by the server ({@code data/planning.snap}) and works on it in
+ * memory, without calling the API:
+ * - day x slot grid of the campaign (see {@link PlanningGridModel}),
+ * - seances of the selected slot, their assigned and eligible teachers,
+ * - what-if assignments and removals checked with the server rules
+ *   ({@link PlanningRules}), and a whole-planning check after each edit,
+ * - the edits are saved as a change set to import with
+ *   {@code POST /api/planning/changes}.
+ *
+ * Usage: {@code java -cp <application classpath> ui.MainWindow [planning.snap]}
+ */
+@SuppressWarnings("serial")
+public final class MainWindow extends JFrame {
 
-    public static void main(String[] args) {
-        JFrame f = new JFrame("Gestion des surveillances");
-        f.setSize(400, 200);
-        f.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+    private final PlanningGridModel gridModel = new PlanningGridModel();
+    private final JTable grid = new JTable(gridModel);
+    private final SeanceTableModel seanceModel = new SeanceTableModel();
+    private final JTable seanceTable = new JTable(seanceModel);
+    private final DefaultListModel<TeacherProfile> assignedModel = new DefaultListModel<>();
+    private final JList<TeacherProfile> assignedList = new JList<>(assignedModel);
+    private final JComboBox<TeacherProfile> eligibleBox = new JComboBox<>();
+    private final DefaultListModel<String> problemsModel = new DefaultListModel<>();
+    private final JLabel status = new JLabel("Aucun planning ouvert");
+    private final ChangeSet changes = new ChangeSet();
+
+    private Path file;
+    private PlanningAllocation allocation;
+
+    public MainWindow() {
+        super("Gestion des surveillances - console de planification");
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setSize(1280, 800);
+        setJMenuBar(createMenu());
+
+        grid.setDefaultRenderer(Object.class, new PlanningGridModel.CellRenderer());
+        grid.setCellSelectionEnabled(true);
+        grid.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        grid.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+        grid.setRowHeight(24);
+        grid.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                showSlot();
+            }
+        });
+        grid.getColumnModel().getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                showSlot();
+            }
+        });
+
+        seanceTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        seanceTable.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                showSeance();
+            }
+        });
+
+        ListCellRenderer<Object> teacherRenderer = new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+                if (value instanceof TeacherProfile t) {
+                    setText(t.nomComplet() + " (" + t.grade() + ", " + allocation.seancesOf(t.id()).size()
+                            + "/" + (t.chargeSurveillance() != null ? t.chargeSurveillance() : "-") + ")");
+                }
+                return this;
+            }
+        };
+        assignedList.setCellRenderer(teacherRenderer);
+        eligibleBox.setRenderer(teacherRenderer);
+
+        JButton remove = new JButton("Retirer");
+        remove.addActionListener(e -> removeSelected());
+        JButton assign = new JButton("Affecter");
+        assign.addActionListener(e -> assignSelected());
+
+        JPanel assignedPanel = new JPanel(new BorderLayout());
+        assignedPanel.setBorder(BorderFactory.createTitledBorder("Surveillants affectés"));
+        assignedPanel.add(new JScrollPane(assignedList), BorderLayout.CENTER);
+        assignedPanel.add(remove, BorderLayout.SOUTH);
+
+        JPanel eligiblePanel = new JPanel(new BorderLayout());
+        eligiblePanel.setBorder(BorderFactory.createTitledBorder("Enseignants éligibles"));
+        eligiblePanel.add(eligibleBox, BorderLayout.CENTER);
+        eligiblePanel.add(assign, BorderLayout.EAST);
+
+        JPanel teachers = new JPanel(new BorderLayout());
+        teachers.add(assignedPanel, BorderLayout.CENTER);
+        teachers.add(eligiblePanel, BorderLayout.SOUTH);
+
+        JSplitPane detail = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT,
+                new JScrollPane(seanceTable), teachers);
+        detail.setResizeWeight(0.5);
+
+        JList<String> problems = new JList<>(problemsModel);
+        JPanel problemsPanel = new JPanel(new BorderLayout());
+        problemsPanel.setBorder(BorderFactory.createTitledBorder("Problèmes détectés"));
+        problemsPanel.add(new JScrollPane(problems), BorderLayout.CENTER);
 
-        JLabel label = new JLabel("Bienvenue dans le système de gestion des surveillances");
-        f.add(label);
+        JSplitPane bottom = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, detail, problemsPanel);
+        bottom.setResizeWeight(0.7);
+        JSplitPane main = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(grid), bottom);
+        main.setResizeWeight(0.55);
+
+        add(main, BorderLayout.CENTER);
+        status.setBorder(BorderFactory.createEmptyBorder(4, 8, 4, 8));
+        add(status, BorderLayout.SOUTH);
+    }
+
+    private JMenuBar createMenu() {
+        JMenu fileMenu = new JMenu("Fichier");
+        JMenuItem open = new JMenuItem("Ouvrir un export...");
+        open.addActionListener(e -> chooseAndOpen());
+        JMenuItem save = new JMenuItem("Enregistrer les modifications...");
+        save.addActionListener(e -> saveChanges());
+        JMenuItem quit = new JMenuItem("Quitter");
+        quit.addActionListener(e -> dispose());
+        fileMenu.add(open);
+        fileMenu.add(save);
+        fileMenu.addSeparator();
+        fileMenu.add(quit);
+
+        JMenuBar bar = new JMenuBar();
+        bar.add(fileMenu);
+        return bar;
+    }
+
+    // =========================
+    // OPEN / SAVE
+    // =========================
+    private void chooseAndOpen() {
+        JFileChooser chooser = new JFileChooser(file != null ? file.toFile().getParentFile() : new File("."));
+        chooser.setFileFilter(new FileNameExtensionFilter("Export du planning (*.snap)", "snap"));
+        if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            open(chooser.getSelectedFile().toPath());
+        }
+    }
+
+    /**
+     * Decode the file off the event thread, then show it.
+     */
+    public void open(Path path) {
+        if (changes.size() > 0 && JOptionPane.showConfirmDialog(this,
+                changes.size() + " modification(s) non enregistrée(s) seront perdues. Continuer ?",
+                "Ouvrir", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        status.setText("Chargement de " + path + "...");
+        new SwingWorker<PlanningSnapshotCodec.Snapshot, Void>() {
+            @Override
+            protected PlanningSnapshotCodec.Snapshot doInBackground() throws IOException {
+                return PlanningSnapshotCodec.read(path);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    PlanningSnapshotCodec.Snapshot snapshot = get();
+                    file = path;
+                    allocation = new PlanningAllocation(snapshot.model());
+                    changes.clear();
+                    gridModel.setPlanning(allocation);
+                    grid.getColumnModel().getColumn(0).setPreferredWidth(100);
+                    for (int c = 1; c < grid.getColumnCount(); c++) {
+                        grid.getColumnModel().getColumn(c).setPreferredWidth(160);
+                    }
+                    seanceModel.show(List.of());
+                    showSeance();
+                    runChecks();
+                } catch (Exception e) {
+                    status.setText("Échec du chargement");
+                    JOptionPane.showMessageDialog(MainWindow.this, "Impossible de lire " + path + " : "
+                            + e.getMessage(), "Ouvrir", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    private void saveChanges() {
+        if (changes.size() == 0) {
+            JOptionPane.showMessageDialog(this, "Aucune modification à enregistrer.");
+            return;
+        }
+        JFileChooser chooser = new JFileChooser(file != null ? file.toFile().getParentFile() : new File("."));
+        chooser.setSelectedFile(new File("modifications.json"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            changes.write(chooser.getSelectedFile().toPath());
+            status.setText(changes.size() + " modification(s) enregistrée(s) dans " + chooser.getSelectedFile()
+                    + " (à importer avec POST /api/planning/changes)");
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Échec de l'enregistrement : " + e.getMessage(),
+                    "Enregistrer", JOptionPane.ERROR_MESSAGE);
+        }
+    }
 
-        f.setVisible(true);
+    // =========================
+    // SELECTION
+    // =========================
+    private void showSlot() {
+        if (allocation == null) {
+            return;
+        }
+        seanceModel.show(gridModel.seancesAt(grid.getSelectedRow(), grid.getSelectedColumn()));
+        showSeance();
+    }
+
+    private SeanceSlot selectedSeance() {
+        int row = seanceTable.getSelectedRow();
+        return row >= 0 ? seanceModel.seances.get(row) : null;
+    }
+
+    private void showSeance() {
+        assignedModel.clear();
+        eligibleBox.removeAllItems();
+        SeanceSlot seance = selectedSeance();
+        if (seance == null) {
+            return;
+        }
+        List<TeacherProfile> eligible = new ArrayList<>();
+        for (TeacherProfile t : allocation.teachers()) {
+            if (allocation.seancesOf(t.id()).contains(seance.id())) {
+                assignedModel.addElement(t);
+            } else if (PlanningRules.check(allocation, t.id(), seance.id()) == null) {
+                eligible.add(t);
+            }
+        }
+        // Least loaded first
+        eligible.sort(Comparator.comparingInt((TeacherProfile t) -> allocation.seancesOf(t.id()).size())
+                .thenComparing(TeacherProfile::nomComplet, Comparator.nullsLast(Comparator.naturalOrder())));
+        eligible.forEach(eligibleBox::addItem);
+    }
+
+    // =========================
+    // EDITS
+    // =========================
+    private void assignSelected() {
+        SeanceSlot seance = selectedSeance();
+        TeacherProfile teacher = (TeacherProfile) eligibleBox.getSelectedItem();
+        if (seance == null || teacher == null) {
+            return;
+        }
+        Violation violation = PlanningRules.check(allocation, teacher.id(), seance.id());
+        if (violation != null) {
+            JOptionPane.showMessageDialog(this, violation.getMessage(), "Affecter", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        allocation.assign(teacher.id(), seance.id());
+        changes.add(teacher.id(), seance.id());
+        edited(seance);
+    }
+
+    private void removeSelected() {
+        SeanceSlot seance = selectedSeance();
+        TeacherProfile teacher = assignedList.getSelectedValue();
+        if (seance == null || teacher == null) {
+            return;
+        }
+        allocation.unassign(teacher.id(), seance.id());
+        changes.remove(teacher.id(), seance.id());
+        edited(seance);
+    }
+
+    private void edited(SeanceSlot seance) {
+        int row = seanceTable.getSelectedRow();
+        gridModel.seanceChanged(seance.id());
+        seanceModel.fireTableRowsUpdated(row, row);
+        showSeance();
+        runChecks();
+    }
+
+    private void runChecks() {
+        long start = System.nanoTime();
+        PlanningChecks.Result result = PlanningChecks.check(allocation);
+        problemsModel.clear();
+        result.problems().forEach(problemsModel::addElement);
+        gridModel.setFlagged(result.seances());
+        status.setText(file.getFileName() + " : " + allocation.seances().size() + " séances, "
+                + allocation.teachers().size() + " enseignants | " + changes.size() + " modification(s) | "
+                + result.problems().size() + " problème(s) (vérifié en "
+                + (System.nanoTime() - start) / 1_000_000 + " ms)");
+    }
+
+    /**
+     * Seances of the selected slot.
+     */
+    @SuppressWarnings("serial")
+    private class SeanceTableModel extends AbstractTableModel {
+
+        private static final String[] COLUMNS = {"Séance", "Début", "Fin", "Inscrits", "Besoin"};
+
+        private List<SeanceSlot> seances = List.of();
+
+        void show(List<SeanceSlot> seances) {
+            this.seances = seances;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return seances.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            SeanceSlot s = seances.get(row);
+            return switch (column) {
+                case 0 -> s.id();
+                case 1 -> s.heureDebut();
+                case 2 -> s.heureFin();
+                case 3 -> allocation.inscrits(s.id());
+                default -> s.nbSurveillantsNecessaires();
+            };
+        }
+    }
+
+    public static void main(String[] args) {
+        SwingUtilities.invokeLater(() -> {
+            MainWindow window = new MainWindow();
+            window.setVisible(true);
+            if (args.length > 0) {
+                window.open(Path.of(args[0]));
+            }
+        });
     }
 }
@@ -0,0 +1,71 @@
+package ui;
+
+import org.fsegs.surveillanceexams.planning.PlanningRules;
+import org.fsegs.surveillanceexams.planning.PlanningView;
+import org.fsegs.surveillanceexams.planning.SeanceSlot;
+import org.fsegs.surveillanceexams.planning.TeacherProfile;
+
+import java.util.*;
+
+/**
+ * Whole-planning check run by the console after each edit: overbooked
+ * seances, and per teacher quota overruns, subject conflicts and
+ * overlapping assignments (the rules of {@link PlanningRules}).
+ */
+public final class PlanningChecks {
+
+    public record Result(List<String> problems, Set<Long> seances) {
+    }
+
+    private PlanningChecks() {
+    }
+
+    public static Result check(PlanningView view) {
+        List<String> problems = new ArrayList<>();
+        Set<Long> seances = new HashSet<>();
+
+        for (SeanceSlot s : view.seances()) {
+            if (view.inscrits(s.id()) > s.nbSurveillantsNecessaires()) {
+                problems.add("Séance " + s.id() + " : " + view.inscrits(s.id()) + " inscrits pour "
+                        + s.nbSurveillantsNecessaires() + " places");
+                seances.add(s.id());
+            }
+        }
+
+        for (TeacherProfile t : view.teachers()) {
+            Set<Long> assigned = view.seancesOf(t.id());
+            if (assigned.isEmpty()) {
+                continue;
+            }
+            if (t.chargeSurveillance() != null && assigned.size() > t.chargeSurveillance()) {
+                problems.add(t.nomComplet() + " : " + assigned.size() + " surveillances pour une charge de "
+                        + t.chargeSurveillance());
+                seances.addAll(assigned);
+            }
+            List<SeanceSlot> slots = new ArrayList<>();
+            for (Long id : assigned) {
+                SeanceSlot s = view.seance(id);
+                if (s != null) {
+                    slots.add(s);
+                }
+            }
+            slots.sort(Comparator.comparing(SeanceSlot::id));
+            for (int i = 0; i < slots.size(); i++) {
+                SeanceSlot s = slots.get(i);
+                if (PlanningRules.hasSubjectConflict(t, s)) {
+                    problems.add(t.nomComplet() + " : surveille sa propre matière (séance " + s.id() + ")");
+                    seances.add(s.id());
+                }
+                for (int j = i + 1; j < slots.size(); j++) {
+                    if (s.overlaps(slots.get(j))) {
+                        problems.add(t.nomComplet() + " : séances " + s.id() + " et " + slots.get(j).id()
+                                + " se chevauchent");
+                        seances.add(s.id());
+                        seances.add(slots.get(j).id());
+                    }
+                }
+            }
+        }
+        return new Result(problems, seances);
+    }
+}
@@ -0,0 +1,184 @@
+package ui;
+
+import org.fsegs.surveillanceexams.planning.PlanningView;
+import org.fsegs.surveillanceexams.planning.SeanceSlot;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.*;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Day x slot grid of the planning: one row per date, one column per start
+ * time, each cell holding the seances of that slot.
+ *
+ * The seances are indexed once when a planning is opened; the table only
+ * asks for the visible cells, and each cell summary is computed from its
+ * own seances, so scrolling stays cheap whatever the size of the campaign.
+ * Seances without a date or start time are shown on a last row / column.
+ */
+@SuppressWarnings("serial")
+public class PlanningGridModel extends AbstractTableModel {
+
+    private PlanningView view;
+    private List<LocalDate> days = List.of();
+    private List<LocalTime> slots = List.of();
+    /** Row-major, {@code slots.size()} cells per row; null for an empty cell */
+    private List<List<SeanceSlot>> cells = List.of();
+    private final Map<Long, int[]> cellOfSeance = new HashMap<>();
+    private Set<Long> flagged = Set.of();
+
+    public void setPlanning(PlanningView view) {
+        this.view = view;
+        Comparator<LocalDate> byDate = Comparator.nullsLast(Comparator.naturalOrder());
+        Comparator<LocalTime> byTime = Comparator.nullsLast(Comparator.naturalOrder());
+        TreeSet<LocalDate> dates = new TreeSet<>(byDate);
+        TreeSet<LocalTime> times = new TreeSet<>(byTime);
+        for (SeanceSlot s : view.seances()) {
+            dates.add(s.date());
+            times.add(s.heureDebut());
+        }
+        days = new ArrayList<>(dates);
+        slots = new ArrayList<>(times);
+
+        Map<LocalDate, Integer> row = new HashMap<>();
+        for (int i = 0; i < days.size(); i++) {
+            row.put(days.get(i), i);
+        }
+        Map<LocalTime, Integer> column = new HashMap<>();
+        for (int i = 0; i < slots.size(); i++) {
+            column.put(slots.get(i), i);
+        }
+        cells = new ArrayList<>(Collections.nCopies(days.size() * slots.size(), null));
+        cellOfSeance.clear();
+        for (SeanceSlot s : view.seances()) {
+            int r = row.get(s.date());
+            int c = column.get(s.heureDebut());
+            int index = r * slots.size() + c;
+            if (cells.get(index) == null) {
+                cells.set(index, new ArrayList<>());
+            }
+            cells.get(index).add(s);
+            cellOfSeance.put(s.id(), new int[]{r, c});
+        }
+        for (List<SeanceSlot> cell : cells) {
+            if (cell != null) {
+                cell.sort(Comparator.comparing(SeanceSlot::id));
+            }
+        }
+        fireTableStructureChanged();
+    }
+
+    /**
+     * Seances reported by the last conflict check, highlighted in their cells.
+     */
+    public void setFlagged(Set<Long> flagged) {
+        this.flagged = flagged;
+        fireTableDataChanged();
+    }
+
+    public boolean isFlagged(Long idSeance) {
+        return flagged.contains(idSeance);
+    }
+
+    public void seanceChanged(Long idSeance) {
+        int[] cell = cellOfSeance.get(idSeance);
+        if (cell != null) {
+            fireTableCellUpdated(cell[0], cell[1] + 1);
+        }
+    }
+
+    public List<SeanceSlot> seancesAt(int row, int column) {
+        if (row < 0 || column < 1 || row >= days.size() || column > slots.size()) {
+            return List.of();
+        }
+        List<SeanceSlot> cell = cells.get(row * slots.size() + column - 1);
+        return cell != null ? cell : List.of();
+    }
+
+    public PlanningView getView() {
+        return view;
+    }
+
+    @Override
+    public int getRowCount() {
+        return days.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return slots.size() + 1;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        if (column == 0) {
+            return "Date";
+        }
+        LocalTime time = slots.get(column - 1);
+        return time != null ? time.toString() : "Sans horaire";
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (column == 0) {
+            LocalDate date = days.get(row);
+            return date != null ? date.toString() : "Sans date";
+        }
+        return seancesAt(row, column);
+    }
+
+    // =========================
+    // RENDERING
+    // =========================
+    /**
+     * "n séances  inscrits/besoin", colored by the worst state of the cell:
+     * red when a seance is flagged by the conflict check, orange when one is
+     * under-staffed, green when every seance is full.
+     */
+    @SuppressWarnings("serial")
+    public static class CellRenderer extends DefaultTableCellRenderer {
+
+        private static final Color FLAGGED = new Color(0xF4C7C3);
+        private static final Color MISSING = new Color(0xFCE8B2);
+        private static final Color FULL = new Color(0xB7E1CD);
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            if (!(value instanceof List<?> list) || list.isEmpty()) {
+                if (!isSelected) {
+                    setBackground(table.getBackground());
+                }
+                if (column > 0) {
+                    setText("");
+                }
+                return this;
+            }
+
+            PlanningGridModel model = (PlanningGridModel) table.getModel();
+            int inscrits = 0;
+            int besoin = 0;
+            boolean flagged = false;
+            boolean missing = false;
+            for (Object o : list) {
+                SeanceSlot s = (SeanceSlot) o;
+                int seanceInscrits = model.view.inscrits(s.id());
+                inscrits += seanceInscrits;
+                besoin += s.nbSurveillantsNecessaires();
+                flagged |= model.isFlagged(s.id());
+                missing |= seanceInscrits < s.nbSurveillantsNecessaires();
+            }
+            setText(list.size() + " séance(s)  " + inscrits + "/" + besoin);
+            if (!isSelected) {
+                setBackground(flagged ? FLAGGED : missing ? MISSING : FULL);
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.fsegs.surveillanceexams.audit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.fsegs.surveillanceexams.event.AffectationChangedEvent;
+import org.fsegs.surveillanceexams.event.VoeuChangedEvent;
+import org.fsegs.surveillanceexams.repository.AffectationRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+class AuditLogTest {
+
+    private final AffectationRepository affectationRepo = mock(AffectationRepository.class);
+
+    private AuditLog openLog(Path dir, long segmentBytes) throws IOException {
+        AuditLog log = new AuditLog(affectationRepo, true, dir.toString(), segmentBytes, 1024);
+        log.open();
+        return log;
+    }
+
+    @Test
+    void replayRebuildsAssignmentsAsOfTimestamp(@TempDir Path dir) throws Exception {
+        when(affectationRepo.findAllPairs()).thenReturn(List.<Object[]>of(new Object[]{1L, 10L}));
+        AuditLog log = openLog(dir, 1 << 20);
+
+        Instant t0 = Instant.now().plusSeconds(3600);
+        log.onVoeuChanged(new VoeuChangedEvent(VoeuChangedEvent.Type.APPROVED, 2L, 10L, t0));
+        log.onAffectationChanged(new AffectationChangedEvent(AffectationChangedEvent.Type.ASSIGNED, 2L, 10L, t0));
+        log.onAffectationChanged(new AffectationChangedEvent(AffectationChangedEvent.Type.UNASSIGNED, 1L, 10L,
+                t0.plusSeconds(60)));
+        assertTrue(log.awaitFlushed(5_000));
+        log.shutdown();
+
+        AuditReplayer.ReplayResult now = AuditReplayer.replay(log.segments(), Long.MAX_VALUE);
+        assertEquals(4, now.events());
+        assertEquals(Map.of(10L, 1), now.countsBySeance());
+        assertTrue(now.assignments().contains(2L, 10L));
+
+        AuditReplayer.ReplayResult before = AuditReplayer.replay(log.segments(), t0.plusSeconds(30).toEpochMilli());
+        assertEquals(Map.of(10L, 2), before.countsBySeance());
+    }
+
+    @Test
+    void segmentsRotateAndTornTailIsTruncatedOnRestart(@TempDir Path dir) throws Exception {
+        when(affectationRepo.findAllPairs()).thenReturn(List.of());
+        AuditLog log = openLog(dir, 4L * AuditRecord.SIZE);
+        for (long i = 0; i < 10; i++) {
+            log.onAffectationChanged(AffectationChangedEvent.assigned(i, 100L));
+            assertTrue(log.awaitFlushed(5_000));
+        }
+        log.shutdown();
+        List<Path> segments = log.segments();
+        assertTrue(segments.size() >= 3);
+
+        // Simulate a crash in the middle of a write
+        try (FileChannel channel = FileChannel.open(segments.get(segments.size() - 1), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5}), channel.size());
+        }
+
+        AuditLog reopened = openLog(dir, 4L * AuditRecord.SIZE);
+        reopened.onAffectationChanged(AffectationChangedEvent.unassigned(0L, 100L));
+        assertTrue(reopened.awaitFlushed(5_000));
+        reopened.shutdown();
+
+        AuditReplayer.ReplayResult result = AuditReplayer.replay(reopened.segments(), Long.MAX_VALUE);
+        assertEquals(11, result.events());
+        assertEquals(10, result.lastSequence());
+        assertEquals(Map.of(100L, 9), result.countsBySeance());
+    }
+
+    @Test
+    void pairSetMatchesHashSet() {
+        PairSet set = new PairSet(4);
+        Set<List<Long>> expected = new HashSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            long a = random.nextInt(300);
+            long b = random.nextInt(300);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(List.of(a, b)), set.add(a, b));
+            } else {
+                assertEquals(expected.remove(List.of(a, b)), set.remove(a, b));
+            }
+        }
+        assertEquals(expected.size(), set.size());
+        set.forEach((a, b) -> assertTrue(expected.contains(List.of(a, b))));
+    }
+}
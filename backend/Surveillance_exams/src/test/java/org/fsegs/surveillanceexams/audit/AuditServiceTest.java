@@ -0,0 +1,52 @@
+package org.fsegs.surveillanceexams.audit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.fsegs.surveillanceexams.cluster.ChangeLogWriter;
+import org.fsegs.surveillanceexams.repository.AffectationRepository;
+import org.fsegs.surveillanceexams.repository.SeanceRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Counters are never rebuilt from a log that may be incomplete.
+ */
+class AuditServiceTest {
+
+    private final AuditLog auditLog = mock(AuditLog.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final ChangeLogWriter changeLogWriter = mock(ChangeLogWriter.class);
+    private final AuditService service = new AuditService(auditLog, mock(SeanceRepository.class),
+            mock(AffectationRepository.class), jdbcTemplate, mock(ApplicationEventPublisher.class),
+            mock(CampagneService.class), changeLogWriter);
+
+    @Test
+    void refusesToRebuildWhileTheLogIsBehind() throws Exception {
+        when(auditLog.isEnabled()).thenReturn(true);
+        when(auditLog.awaitFlushed(anyLong())).thenReturn(false);
+
+        assertThrows(IllegalStateException.class, () -> service.rebuildCounters(true));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void refusesToRebuildAfterLostRecords() throws Exception {
+        when(auditLog.isEnabled()).thenReturn(true);
+        when(auditLog.awaitFlushed(anyLong())).thenReturn(true);
+        when(auditLog.lostRecords()).thenReturn(3L);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> service.rebuildCounters(false));
+        assertTrue(e.getMessage().contains("3 record(s)"));
+    }
+
+    @Test
+    void refusesToApplyInClusterMode() {
+        when(changeLogWriter.isEnabled()).thenReturn(true);
+
+        assertThrows(IllegalStateException.class, () -> service.rebuildCounters(true));
+        verifyNoInteractions(auditLog, jdbcTemplate);
+    }
+}
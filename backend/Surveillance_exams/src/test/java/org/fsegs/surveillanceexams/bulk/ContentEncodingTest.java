@@ -0,0 +1,45 @@
+package org.fsegs.surveillanceexams.bulk;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+class ContentEncodingTest {
+
+    @Test
+    void negotiatesBestSupportedCoding() {
+        assertEquals(ContentEncoding.IDENTITY, ContentEncoding.negotiate(null));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("gzip, deflate, br"));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0.5, deflate"));
+        assertEquals(ContentEncoding.IDENTITY, ContentEncoding.negotiate("br"));
+        assertEquals(ContentEncoding.IDENTITY, ContentEncoding.negotiate("gzip;q=0, deflate;q=0"));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("br, *;q=0.1"));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0, *"));
+    }
+
+    @Test
+    void compressedStreamsRoundTrip() throws IOException {
+        byte[] body = "[{\"id\":1,\"date\":\"2025-06-02\"}]".repeat(100).getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        try (OutputStream out = ContentEncoding.GZIP.wrap(gzip, 4)) {
+            out.write(body);
+        }
+        assertTrue(gzip.size() < body.length);
+        assertArrayEquals(body, new GZIPInputStream(new ByteArrayInputStream(gzip.toByteArray())).readAllBytes());
+
+        ByteArrayOutputStream deflate = new ByteArrayOutputStream();
+        try (OutputStream out = ContentEncoding.DEFLATE.wrap(deflate, 1)) {
+            out.write(body);
+        }
+        assertArrayEquals(body, new InflaterInputStream(new ByteArrayInputStream(deflate.toByteArray())).readAllBytes());
+    }
+}
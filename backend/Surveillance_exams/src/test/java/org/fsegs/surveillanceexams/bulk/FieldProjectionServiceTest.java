@@ -0,0 +1,39 @@
+package org.fsegs.surveillanceexams.bulk;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.fsegs.surveillanceexams.bulk.FieldProjectionService.Plan;
+import org.fsegs.surveillanceexams.bulk.FieldProjectionService.Resource;
+import org.junit.jupiter.api.Test;
+
+class FieldProjectionServiceTest {
+
+    private final FieldProjectionService service = new FieldProjectionService(null, null, 4, 500);
+
+    @Test
+    void compilesOnlyTheRequestedColumns() {
+        Plan plan = service.plan(Resource.SEANCES, "date, heureDebut");
+
+        assertEquals("SELECT s.id_seance, s.date_seance, s.heure_debut FROM seance s WHERE s.id_campagne = ? "
+                + "ORDER BY s.date_seance, s.heure_debut, s.id_seance", plan.sql());
+        assertEquals(1, plan.campagneParams());
+        assertTrue(plan.collections().isEmpty());
+
+        Plan teachers = service.plan(Resource.ENSEIGNANTS, "nomComplet,nbAffectations,matieres");
+        assertTrue(teachers.sql().startsWith("SELECT e.id_enseignant, e.nom, (SELECT COUNT(*)"));
+        assertEquals(1, teachers.campagneParams());
+        assertEquals("matieres", teachers.collections().get(0).name());
+        assertEquals(0, service.plan(Resource.ENSEIGNANTS, "grade").campagneParams());
+    }
+
+    @Test
+    void cachesPlansPerFieldSetAndRejectsUnknownFields() {
+        Plan plan = service.plan(Resource.SEANCES, "heureFin,date");
+
+        assertSame(plan, service.plan(Resource.SEANCES, "date,heureFin,id"));
+        assertNotSame(plan, service.plan(Resource.SEANCES, "date"));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> service.plan(Resource.SEANCES, "date,salle"));
+        assertTrue(e.getMessage().contains("salle"));
+    }
+}
@@ -0,0 +1,126 @@
+package org.fsegs.surveillanceexams.campagne;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.fsegs.surveillanceexams.model.*;
+import org.fsegs.surveillanceexams.repository.*;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A closed campaign is exported and deleted, then restored with its
+ * original ids; the active campaign is untouched throughout.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:campagne;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "surveillance.snapshot.enabled=false",
+        "surveillance.audit.enabled=false",
+        "surveillance.idempotency.file=",
+        "surveillance.campagne.archive-dir=target/test-archives"})
+class CampagneArchiveTest {
+
+    @Autowired
+    private CampagneService campagneService;
+    @Autowired
+    private SeanceRepository seanceRepo;
+    @Autowired
+    private EnseignantRepository enseignantRepo;
+    @Autowired
+    private MatiereRepository matiereRepo;
+    @Autowired
+    private EpreuveRepository epreuveRepo;
+    @Autowired
+    private PaquetRepository paquetRepo;
+    @Autowired
+    private AffectationRepository affectationRepo;
+    @Autowired
+    private VoeuRepository voeuRepo;
+
+    @Test
+    void archiveAndRestoreClosedCampaign() throws Exception {
+        Long activeId = campagneService.activeId();
+        Campagne old = campagneService.createCampagne("Session 2023/2024", Campagne.CampagneType.PRINCIPALE,
+                "2023/2024", LocalDate.of(2024, 6, 1), LocalDate.of(2024, 6, 20));
+
+        Matiere matiere = new Matiere();
+        matiere.setNom("Comptabilité");
+        matiere = matiereRepo.save(matiere);
+        Enseignant ens = new Enseignant();
+        ens.setNomComplet("Teacher");
+        ens.setChargeEnseignement(10.0);
+        ens = enseignantRepo.save(ens);
+
+        Seance current = seance(LocalDate.of(2025, 6, 2), activeId);
+        Seance archived = seance(LocalDate.of(2024, 6, 3), old.getId());
+
+        Epreuve epreuve = new Epreuve();
+        epreuve.setFiliere("Gestion");
+        epreuve.setClasse("L1");
+        epreuve.setSeance(archived);
+        epreuve.setMatiere(matiere);
+        epreuve = epreuveRepo.save(epreuve);
+        Paquet paquet = new Paquet();
+        paquet.setEpreuve(epreuve);
+        paquet.setMatiere(matiere);
+        paquetRepo.save(paquet);
+
+        affectationRepo.save(new Affectation(ens, archived));
+        affectationRepo.save(new Affectation(ens, current));
+        Voeu voeu = new Voeu();
+        voeu.setEnseignant(ens);
+        voeu.setSeance(archived);
+        voeu.setStatus(Voeu.VoeuStatus.APPROVED);
+        voeuRepo.save(voeu);
+
+        assertThrows(IllegalStateException.class, () -> campagneService.archive(old.getId()),
+                "an open campaign cannot be archived");
+        campagneService.close(old.getId());
+
+        Map<String, Object> report = campagneService.archive(old.getId());
+        assertEquals(Map.of("seance", 1, "epreuve", 1, "paquet", 1, "affectation", 1, "voeu", 1,
+                "liste_attente", 0), report.get("rows"));
+        assertTrue(Files.exists(Path.of((String) report.get("fichierArchive"))));
+        assertFalse(seanceRepo.existsById(archived.getId()));
+        assertFalse(epreuveRepo.existsById(epreuve.getId()));
+        assertEquals(List.of(current.getId()),
+                seanceRepo.findAllByCampagneId(activeId).stream().map(Seance::getId).toList());
+        assertEquals(1, affectationRepo.count());
+
+        Map<String, Object> restored = campagneService.restore(old.getId());
+        assertEquals(report.get("rows"), restored.get("rows"));
+        Seance back = seanceRepo.findById(archived.getId()).orElseThrow();
+        assertEquals(LocalDate.of(2024, 6, 3), back.getDate());
+        assertEquals(LocalTime.of(8, 30), back.getHeureDebut());
+        assertEquals(1, back.getNbSurveillantsInscrits());
+        assertEquals(1, paquetRepo.countPaquetsBySeanceId(archived.getId()));
+        assertEquals(2, affectationRepo.count());
+        assertEquals(Voeu.VoeuStatus.APPROVED, voeuRepo.findById(voeu.getId()).orElseThrow().getStatus());
+        assertEquals(activeId, campagneService.activeId());
+    }
+
+    private Seance seance(LocalDate date, Long idCampagne) {
+        Seance s = new Seance();
+        s.setDate(date);
+        s.setHeureDebut(LocalTime.of(8, 30));
+        s.setHeureFin(LocalTime.of(10, 0));
+        s.setNbSurveillantsNecessaires(2);
+        s.setNbSurveillantsInscrits(1);
+        Campagne c = new Campagne();
+        c.setId(idCampagne);
+        s.setCampagne(c);
+        return seanceRepo.save(s);
+    }
+}
@@ -0,0 +1,155 @@
+package org.fsegs.surveillanceexams.cluster;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.fsegs.surveillanceexams.SurveillanceExamsApplication;
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.fsegs.surveillanceexams.event.AffectationChangedEvent;
+import org.fsegs.surveillanceexams.event.PlanningDataChangedEvent;
+import org.fsegs.surveillanceexams.service.StatisticsService;
+import org.fsegs.surveillanceexams.service.SurveillanceService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.PayloadApplicationEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Two instances of the application on one database: a change made through
+ * one of them reaches the in-memory state of the other through the change log.
+ */
+class ChangeLogPollerTest {
+
+    private static final long GAP_TIMEOUT_MS = 1000;
+
+    private static ConfigurableApplicationContext node1;
+    private static ConfigurableApplicationContext node2;
+    private static final List<Object> node1Events = new CopyOnWriteArrayList<>();
+    private static final List<Object> node2Events = new CopyOnWriteArrayList<>();
+
+    @BeforeAll
+    static void startNodes() {
+        node1 = start("node1", "create-drop", node1Events);
+        node2 = start("node2", "none", node2Events);
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        node2.close();
+        node1.close();
+    }
+
+    private static ConfigurableApplicationContext start(String node, String ddl, List<Object> captured) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(SurveillanceExamsApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:cluster;MODE=MySQL;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.hibernate.ddl-auto=" + ddl,
+                        "--spring.jpa.show-sql=false",
+                        "--surveillance.snapshot.enabled=false",
+                        "--surveillance.audit.enabled=false",
+                        "--surveillance.idempotency.file=",
+                        "--surveillance.cluster.enabled=true",
+                        "--surveillance.cluster.node-id=" + node,
+                        // Polled by the test
+                        "--surveillance.cluster.poll-interval-ms=3600000",
+                        "--surveillance.cluster.gap-timeout-ms=" + GAP_TIMEOUT_MS);
+        context.addApplicationListener(event -> {
+            if (event instanceof PayloadApplicationEvent<?> payload) {
+                captured.add(payload.getPayload());
+            }
+        });
+        return context;
+    }
+
+    @BeforeEach
+    void clearEvents() {
+        node1Events.clear();
+        node2Events.clear();
+    }
+
+    @Test
+    void assignmentOnOneNodeUpdatesTheOther() {
+        JdbcTemplate jdbc = node1.getBean(JdbcTemplate.class);
+        long campagne = node1.getBean(CampagneService.class).activeId();
+        jdbc.update("INSERT INTO seance (id_seance, date_seance, heure_debut, heure_fin, " +
+                        "nb_surveillants_necessaires, nb_surveillants_inscrits, id_campagne) VALUES (1, ?, ?, ?, 2, 0, ?)",
+                LocalDate.of(2025, 6, 2), LocalTime.of(8, 30), LocalTime.of(10, 0), campagne);
+        jdbc.update("INSERT INTO enseignant (id_enseignant, nom, grade, charge_enseignement, charge_surveillance) " +
+                "VALUES (7, 'Trabelsi', 'Assistant', 10, 6)");
+        StatisticsService node2Statistics = node2.getBean(StatisticsService.class);
+        node2Statistics.getStatistics();
+
+        assertEquals("Assignment successful", node1.getBean(SurveillanceService.class).affecterSurveillant(1L, 7L));
+        node1.getBean(ChangeLogPoller.class).poll();
+        node2.getBean(ChangeLogPoller.class).poll();
+
+        assertTrue(node2Events.stream().anyMatch(e -> e instanceof AffectationChangedEvent a
+                && a.type() == AffectationChangedEvent.Type.ASSIGNED && a.idEnseignant() == 7L && a.idSeance() == 1L));
+        // node1 does not replay its own change
+        assertEquals(1, node1Events.stream().filter(e -> e instanceof AffectationChangedEvent).count());
+        // node2's incrementally maintained statistics match the database
+        assertFalse(node2Statistics.rebuild());
+    }
+
+    @Test
+    void lateRowIsAppliedOnceAfterTheRowsAboveIt() {
+        JdbcTemplate jdbc = node1.getBean(JdbcTemplate.class);
+        ChangeLogPoller poller = node2.getBean(ChangeLogPoller.class);
+        poller.poll();
+        Long max = jdbc.queryForObject("SELECT COALESCE(MAX(id), 0) FROM change_log", Long.class);
+
+        // A transaction took id max+1 but commits after the one that took max+2
+        insertSeanceChange(jdbc, max + 2, 502L);
+        poller.poll();
+        insertSeanceChange(jdbc, max + 1, 501L);
+        poller.poll();
+        poller.poll();
+
+        List<Object> replayed = node2Events.stream().filter(e -> e instanceof PlanningDataChangedEvent).toList();
+        assertEquals(List.of(PlanningDataChangedEvent.seance(502L), PlanningDataChangedEvent.seance(501L)), replayed);
+        assertEquals(0, poller.getStatus().get("pendingGaps"));
+    }
+
+    @Test
+    void expiredGapDropsTheDerivedState() throws Exception {
+        JdbcTemplate jdbc = node1.getBean(JdbcTemplate.class);
+        ChangeLogPoller poller = node2.getBean(ChangeLogPoller.class);
+        poller.poll();
+        Long max = jdbc.queryForObject("SELECT COALESCE(MAX(id), 0) FROM change_log", Long.class);
+        long invalidations = (Long) poller.getStatus().get("fullInvalidations");
+        long expired = (Long) poller.getStatus().get("gapsExpired");
+
+        // max+1 never shows up: rolled back, or committed too late to be seen
+        insertSeanceChange(jdbc, max + 2, 602L);
+        poller.poll();
+        assertEquals(1, poller.getStatus().get("pendingGaps"));
+        node2Events.clear();
+
+        Thread.sleep(GAP_TIMEOUT_MS + 100);
+        poller.poll();
+
+        assertEquals(0, poller.getStatus().get("pendingGaps"));
+        assertEquals(expired + 1, poller.getStatus().get("gapsExpired"));
+        assertEquals(invalidations + 1, poller.getStatus().get("fullInvalidations"));
+        assertTrue(node2Events.stream().anyMatch(e -> e instanceof PlanningDataChangedEvent p
+                && p.kind() == PlanningDataChangedEvent.Kind.CAMPAGNE));
+    }
+
+    private static void insertSeanceChange(JdbcTemplate jdbc, long id, long idSeance) {
+        jdbc.update("INSERT INTO change_log (id, node, kind, id_seance, created_at) VALUES (?, 'node3', 'SEANCE', ?, ?)",
+                id, idSeance, LocalDateTime.now());
+    }
+}
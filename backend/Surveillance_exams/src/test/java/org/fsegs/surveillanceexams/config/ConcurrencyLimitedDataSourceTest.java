@@ -0,0 +1,55 @@
+package org.fsegs.surveillanceexams.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+
+class ConcurrencyLimitedDataSourceTest {
+
+    private static ConcurrencyLimitedDataSource limited(int max) {
+        return new ConcurrencyLimitedDataSource(
+                new DriverManagerDataSource("jdbc:h2:mem:limiter;DB_CLOSE_DELAY=-1", "sa", ""), max, 50);
+    }
+
+    @Test
+    void permitIsReleasedOnceWhenConnectionCloses() throws Exception {
+        ConcurrencyLimitedDataSource dataSource = limited(2);
+
+        Connection connection = dataSource.getConnection();
+        assertEquals(1, dataSource.activeConnections());
+
+        connection.close();
+        connection.close();
+        assertEquals(0, dataSource.activeConnections());
+    }
+
+    @Test
+    void callerOverTheLimitFailsFastWithTransientError() throws Exception {
+        ConcurrencyLimitedDataSource dataSource = limited(1);
+
+        try (Connection held = dataSource.getConnection()) {
+            assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+            assertEquals(1, dataSource.timeoutCount());
+        }
+        try (Connection next = dataSource.getConnection()) {
+            assertTrue(next.isValid(1));
+        }
+    }
+
+    @Test
+    void closeClosesThePool() {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:mem:limiter;DB_CLOSE_DELAY=-1");
+        pool.setUsername("sa");
+
+        try (ConcurrencyLimitedDataSource dataSource = new ConcurrencyLimitedDataSource(pool, 1, 50)) {
+            assertEquals(0, dataSource.activeConnections());
+        }
+        assertTrue(pool.isClosed());
+    }
+}
@@ -0,0 +1,92 @@
+package org.fsegs.surveillanceexams.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+class TokenBucketTableTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void burstIsAdmittedThenLimited() {
+        TokenBucketTable table = new TokenBucketTable(16, 3, 1);
+
+        assertEquals(0, table.tryAcquire("E:1", 0));
+        assertEquals(0, table.tryAcquire("E:1", 0));
+        assertEquals(0, table.tryAcquire("E:1", 0));
+
+        long wait = table.tryAcquire("E:1", 0);
+        assertTrue(wait > 0 && wait <= SECOND);
+    }
+
+    @Test
+    void tokensRefillOverTime() {
+        TokenBucketTable table = new TokenBucketTable(16, 1, 2);
+
+        assertEquals(0, table.tryAcquire("E:1", 0));
+        assertTrue(table.tryAcquire("E:1", SECOND / 4) > 0);
+        assertEquals(0, table.tryAcquire("E:1", SECOND / 2));
+    }
+
+    @Test
+    void clientsHaveIndependentBuckets() {
+        TokenBucketTable table = new TokenBucketTable(1024, 1, 1);
+
+        assertEquals(0, table.tryAcquire("E:1", 0));
+        assertTrue(table.tryAcquire("E:1", 0) > 0);
+        assertEquals(0, table.tryAcquire("E:2", 0));
+    }
+
+    @Test
+    void collidingClientsDoNotGetFreshBuckets() {
+        // Two slots, so every key lands in the same probe window
+        TokenBucketTable table = new TokenBucketTable(2, 1, 1);
+
+        assertEquals(0, table.tryAcquire("E:1", 0));
+        assertEquals(0, table.tryAcquire("E:2", 0));
+        for (int i = 0; i < 10; i++) {
+            assertTrue(table.tryAcquire("E:3", 0) > 0);
+            assertTrue(table.tryAcquire("E:4", 0) > 0);
+            assertTrue(table.tryAcquire("E:1", 0) > 0);
+            assertTrue(table.tryAcquire("E:2", 0) > 0);
+        }
+
+        // The inherited budget refills at the normal rate
+        assertEquals(0, table.tryAcquire("E:3", SECOND));
+    }
+
+    @Test
+    void slotCountIsBounded() {
+        assertEquals(16, new TokenBucketTable(10, 1, 1).size());
+        assertEquals(4096, new TokenBucketTable(4096, 1, 1).size());
+    }
+
+    @Test
+    void onlyWriteEndpointsAreFiltered() {
+        assertTrue(AdmissionControlFilter.isWriteEndpoint("POST", "/api/voeux"));
+        assertTrue(AdmissionControlFilter.isWriteEndpoint("DELETE", "/api/voeux"));
+        assertTrue(AdmissionControlFilter.isWriteEndpoint("POST", "/api/affectation"));
+        assertFalse(AdmissionControlFilter.isWriteEndpoint("GET", "/api/voeux"));
+        assertFalse(AdmissionControlFilter.isWriteEndpoint("GET", "/api/affectations"));
+    }
+
+    @Test
+    void manualAssignmentHasItsOwnBudget() {
+        assertTrue(AdmissionControlFilter.isAdminEndpoint("POST", "/api/affectation"));
+        assertFalse(AdmissionControlFilter.isAdminEndpoint("POST", "/api/affectations/swap"));
+        assertFalse(AdmissionControlFilter.isAdminEndpoint("POST", "/api/voeux"));
+    }
+
+    @Test
+    void clientKeyIgnoresRequestParameters() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/voeux");
+        request.setRemoteAddr("10.0.0.7");
+        request.setParameter("idEnseignant", "42");
+        assertEquals("A:10.0.0.7", AdmissionControlFilter.clientKey(request));
+
+        request.setRemoteUser("ali");
+        assertEquals("U:ali", AdmissionControlFilter.clientKey(request));
+    }
+}
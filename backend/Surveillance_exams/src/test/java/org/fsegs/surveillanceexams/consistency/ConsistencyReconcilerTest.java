@@ -0,0 +1,46 @@
+package org.fsegs.surveillanceexams.consistency;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.fsegs.surveillanceexams.consistency.ConsistencyReconciler.Drift;
+import org.fsegs.surveillanceexams.consistency.ConsistencyReconciler.Kind;
+import org.fsegs.surveillanceexams.model.Voeu.VoeuStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class ConsistencyReconcilerTest {
+
+    private static Object[] voeu(long id, long idEnseignant, VoeuStatus status) {
+        return new Object[]{id, idEnseignant, 7L, status};
+    }
+
+    @Test
+    void consistentSeanceHasNoDrift() {
+        assertEquals(List.of(), ConsistencyReconciler.check(7, 2, List.of(1L, 2L),
+                List.<Object[]>of(voeu(10, 1, VoeuStatus.APPROVED), voeu(11, 3, VoeuStatus.PENDING),
+                        voeu(12, 4, VoeuStatus.REJECTED))));
+        assertEquals(List.of(), ConsistencyReconciler.check(8, 0, List.of(), List.of()));
+    }
+
+    @Test
+    void reportsCounterAndWishDrifts() {
+        List<Drift> drifts = ConsistencyReconciler.check(7, 3, List.of(1L, 2L),
+                List.<Object[]>of(voeu(10, 1, VoeuStatus.PENDING),
+                        voeu(11, 3, VoeuStatus.APPROVED),
+                        voeu(12, 2, VoeuStatus.REJECTED)));
+
+        assertEquals(List.of(
+                new Drift(Kind.COUNTER, 7, null, null, 3, 2),
+                new Drift(Kind.AFFECTATION_NOT_APPROVED, 7, 1L, 10L, 0, 0),
+                new Drift(Kind.APPROVED_WITHOUT_AFFECTATION, 7, 3L, 11L, 0, 0),
+                new Drift(Kind.AFFECTATION_NOT_APPROVED, 7, 2L, 12L, 0, 0)), drifts);
+    }
+
+    @Test
+    void duplicateAffectationRowsCountInTheCounter() {
+        List<Drift> drifts = ConsistencyReconciler.check(7, 1, List.of(1L, 1L),
+                List.<Object[]>of(voeu(10, 1, VoeuStatus.APPROVED)));
+        assertEquals(List.of(new Drift(Kind.COUNTER, 7, null, null, 1, 2)), drifts);
+    }
+}
@@ -0,0 +1,74 @@
+package org.fsegs.surveillanceexams.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.fsegs.surveillanceexams.bulk.FieldProjectionService;
+import org.fsegs.surveillanceexams.service.IdempotencyStore;
+import org.fsegs.surveillanceexams.service.SurveillanceService;
+import org.fsegs.surveillanceexams.service.VoeuApprovalService;
+import org.fsegs.surveillanceexams.service.VoeuGroupCommitService;
+import org.fsegs.surveillanceexams.service.VoeuResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Map;
+
+/**
+ * Wish endpoint responses and their Idempotency-Key handling: business
+ * outcomes (including a waitlist place) are replayed, failures leave the key
+ * free for a retry.
+ */
+class ExamControllerTest {
+
+    private final SurveillanceService service = mock(SurveillanceService.class);
+    private final VoeuGroupCommitService groupCommit = mock(VoeuGroupCommitService.class);
+    private final ExamController controller = new ExamController(service,
+            new IdempotencyStore(100, 60, ""), mock(VoeuApprovalService.class), groupCommit,
+            new ObjectMapper(), mock(FieldProjectionService.class));
+
+    @Test
+    void failedSubmissionCanBeRetriedWithTheSameKey() {
+        when(groupCommit.soumettreVoeu(1L, 2L))
+                .thenThrow(new CannotAcquireLockException("Lock wait timeout exceeded"))
+                .thenReturn(new VoeuResult(VoeuResult.Outcome.ASSIGNED, "Wish submitted and assignment created successfully!", null));
+
+        assertThrows(CannotAcquireLockException.class, () -> controller.submitVoeu(1L, 2L, "k1"));
+        ResponseEntity<?> retry = controller.submitVoeu(1L, 2L, "k1");
+
+        assertEquals(200, retry.getStatusCode().value());
+        verify(groupCommit, times(2)).soumettreVoeu(1L, 2L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void waitlistedWishIsAccepted() {
+        when(groupCommit.soumettreVoeu(3L, 4L))
+                .thenReturn(new VoeuResult(VoeuResult.Outcome.WAITLISTED, "Added to the waitlist", 2L));
+
+        ResponseEntity<?> first = controller.submitVoeu(3L, 4L, "k3");
+        ResponseEntity<?> replay = controller.submitVoeu(3L, 4L, "k3");
+
+        assertEquals(202, first.getStatusCode().value());
+        Map<String, Object> body = (Map<String, Object>) first.getBody();
+        assertEquals(true, body.get("success"));
+        assertEquals(Map.of("waitlistPosition", 2L), body.get("data"));
+        assertEquals(202, replay.getStatusCode().value());
+        verify(groupCommit, times(1)).soumettreVoeu(3L, 4L);
+    }
+
+    @Test
+    void unknownSeanceIsReplayed() {
+        when(service.cancelVoeu(1L, 99L)).thenThrow(new IllegalArgumentException("Seance not found"));
+
+        ResponseEntity<?> first = controller.cancelVoeu(1L, 99L, "k2");
+        ResponseEntity<?> replay = controller.cancelVoeu(1L, 99L, "k2");
+
+        assertEquals(400, first.getStatusCode().value());
+        assertEquals(400, replay.getStatusCode().value());
+        assertEquals("true", replay.getHeaders().getFirst("Idempotent-Replayed"));
+        verify(service, times(1)).cancelVoeu(1L, 99L);
+    }
+}
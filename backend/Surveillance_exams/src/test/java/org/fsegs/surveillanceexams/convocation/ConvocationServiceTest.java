@@ -0,0 +1,134 @@
+package org.fsegs.surveillanceexams.convocation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+class ConvocationServiceTest {
+
+    private static final LocalDate MONDAY = LocalDate.of(2025, 6, 2);
+
+    @Test
+    void groupsOrderedRowsByTeacherAndSeance() {
+        ConvocationService.Assembler assembler = new ConvocationService.Assembler();
+        List<Convocation> done = new ArrayList<>();
+        Object[][] rows = {
+                {1L, "Ali", 10L, 8, "Comptabilité (Gestion L1)"},
+                {1L, "Ali", 10L, 8, "Droit (Gestion L2)"},
+                {1L, "Ali", 10L, 8, "Comptabilité (Gestion L1)"},   // duplicate assignment
+                {1L, "Ali", 11L, 14, null},                         // seance without epreuve
+                {2L, "Sana", 10L, 8, "Comptabilité (Gestion L1)"},
+        };
+        for (Object[] r : rows) {
+            Convocation c = assembler.add((Long) r[0], (String) r[1], "Assistant", (Long) r[2], MONDAY,
+                    LocalTime.of((Integer) r[3], 0), LocalTime.of((Integer) r[3] + 2, 0), (String) r[4]);
+            if (c != null) {
+                done.add(c);
+            }
+        }
+        done.add(assembler.finish());
+        assertNull(assembler.finish());
+
+        assertEquals(2, done.size());
+        Convocation ali = done.get(0);
+        assertEquals(List.of(10L, 11L), ali.seances().stream().map(Convocation.Slot::idSeance).toList());
+        assertEquals(List.of("Comptabilité (Gestion L1)", "Droit (Gestion L2)"), ali.seances().get(0).epreuves());
+        assertEquals(List.of(), ali.seances().get(1).epreuves());
+        assertEquals(1, done.get(1).seances().size());
+        assertEquals("Droit (Gestion)", ConvocationService.Assembler.epreuve("Droit", "Gestion", null));
+    }
+
+    @Test
+    void writesBothDocumentsPerTeacherInOrder() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(archive)) {
+            ConvocationService.Pipeline pipeline =
+                    new ConvocationService.Pipeline(pool, 3, zip, "Session principale 2024/2025", MONDAY);
+            for (long id = 1; id <= 200; id++) {
+                // Teacher 7 has enough seances for several PDF pages
+                int count = id == 7 ? 80 : 1 + (int) (id % 5);
+                List<Convocation.Slot> slots = new ArrayList<>();
+                for (int i = 0; i < count; i++) {
+                    slots.add(new Convocation.Slot(i, MONDAY.plusDays(i / 4), LocalTime.of(8 + (i % 4) * 2, 30),
+                            LocalTime.of(10 + (i % 4) * 2, 0), List.of("Matière " + i + " (Info L" + (1 + i % 3) + ")")));
+                }
+                pipeline.submit(new Convocation(id, "Enseignant <" + id + "> Ben Salah", "Assistant", slots));
+            }
+            pipeline.finish();
+            assertEquals(200, pipeline.convocations);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(archive.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                names.add(entry.getName());
+                byte[] body = in.readAllBytes();
+                if (entry.getName().equals("000007-enseignant-7-ben-salah.pdf")) {
+                    String pdf = new String(body, StandardCharsets.ISO_8859_1);
+                    assertTrue(pdf.startsWith("%PDF-1.4"));
+                    assertTrue(pdf.endsWith("%%EOF\n"));
+                    assertTrue(pdf.contains("/Count 3 "));
+                    int startxref = pdf.lastIndexOf("startxref\n") + "startxref\n".length();
+                    int xref = Integer.parseInt(pdf.substring(startxref, pdf.indexOf('\n', startxref)));
+                    assertTrue(pdf.startsWith("xref\n", xref));
+                } else if (entry.getName().equals("000007-enseignant-7-ben-salah.html")) {
+                    String html = new String(body, StandardCharsets.UTF_8);
+                    assertTrue(html.contains("Enseignant &lt;7&gt; Ben Salah"));
+                    assertTrue(html.contains("Total : 80 séances"));
+                }
+            }
+        }
+        assertEquals(400, names.size());
+        assertEquals("000001-enseignant-1-ben-salah.html", names.get(0));
+        assertEquals("000001-enseignant-1-ben-salah.pdf", names.get(1));
+        assertEquals("000200-enseignant-200-ben-salah.pdf", names.get(399));
+    }
+
+    @Test
+    void teachersWithTheSameNameGetDistinctEntries() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        List<Convocation.Slot> slots = List.of(new Convocation.Slot(10L, MONDAY, LocalTime.of(8, 30),
+                LocalTime.of(10, 0), List.of("Droit (Gestion L1)")));
+        // Same name, and a name that only differs by accents and punctuation: same slug
+        try (ZipOutputStream zip = new ZipOutputStream(archive)) {
+            ConvocationService.Pipeline pipeline =
+                    new ConvocationService.Pipeline(pool, 2, zip, "Session principale 2024/2025", MONDAY);
+            pipeline.submit(new Convocation(3L, "Ben Salah Ali", "Assistant", slots));
+            pipeline.submit(new Convocation(4L, "Ben Salah Ali", "Professeur", slots));
+            pipeline.submit(new Convocation(5L, "Ben-Saläh, Ali", "Assistant", slots));
+            pipeline.finish();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(archive.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                names.add(entry.getName());
+            }
+        }
+        assertEquals(List.of(
+                "000003-ben-salah-ali.html", "000003-ben-salah-ali.pdf",
+                "000004-ben-salah-ali.html", "000004-ben-salah-ali.pdf",
+                "000005-ben-salah-ali.html", "000005-ben-salah-ali.pdf"), names);
+    }
+}
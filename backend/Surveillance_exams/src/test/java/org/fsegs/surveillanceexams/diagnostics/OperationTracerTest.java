@@ -0,0 +1,94 @@
+package org.fsegs.surveillanceexams.diagnostics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+class OperationTracerTest {
+
+    @TempDir
+    Path dir;
+
+    private OperationTracer tracer;
+
+    @BeforeEach
+    void start() {
+        tracer = new OperationTracer(true, 3, true, 0, 16, dir.toString());
+        tracer.start();
+    }
+
+    @AfterEach
+    void stop() {
+        tracer.stop();
+    }
+
+    @Test
+    void operationKeepsItsStepsAndChecks() {
+        String result = tracer.trace("affecterSurveillant", 7L, 1L, () -> {
+            tracer.step("lockSeance", () -> sleep(2));
+            boolean conflict = tracer.check("timeConflict", () -> true);
+            return conflict ? "Time conflict" : "Assignment successful";
+        });
+
+        assertEquals("Time conflict", result);
+        OperationTracer.Trace trace = tracer.getSlowest().get(0);
+        assertEquals("affecterSurveillant", trace.operation());
+        assertEquals(7L, trace.idEnseignant());
+        assertEquals("Time conflict", trace.outcome());
+        assertEquals(List.of("lockSeance", "timeConflict"), trace.steps().stream().map(OperationTracer.Step::name).toList());
+        assertTrue(trace.steps().get(1).check() && trace.steps().get(1).violated());
+        assertTrue(trace.steps().get(0).micros() >= 2000);
+    }
+
+    @Test
+    void onlyTheSlowestOperationsAreKept() {
+        for (int ms : new int[]{30, 0, 50, 0, 40, 0}) {
+            tracer.trace("op" + ms, null, null, () -> sleep(ms));
+        }
+        assertEquals(List.of("op50", "op40", "op30"),
+                tracer.getSlowest().stream().map(OperationTracer.Trace::operation).toList());
+
+        tracer.reset();
+        assertTrue(tracer.getSlowest().isEmpty());
+    }
+
+    @Test
+    void failedOperationIsRecordedAndRethrown() {
+        assertThrows(RuntimeException.class, () -> tracer.trace("cancelVoeu", 1L, 2L, () -> {
+            throw new RuntimeException("Seance not found");
+        }));
+        assertEquals("failed: Seance not found", tracer.getSlowest().get(0).outcome());
+    }
+
+    @Test
+    void dumpContainsTheJfrEvents() throws Exception {
+        tracer.trace("soumettreVoeu", 7L, 1L, () -> tracer.check("quota", () -> false));
+
+        Path file = tracer.dump();
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        RecordedEvent operation = events.stream()
+                .filter(e -> e.getEventType().getName().equals("org.fsegs.surveillance.ServiceOperation"))
+                .findFirst().orElseThrow();
+        assertEquals("soumettreVoeu", operation.getString("operation"));
+        assertEquals(7L, operation.getLong("idEnseignant"));
+        assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("org.fsegs.surveillance.ConstraintCheck")
+                && e.getString("constraint").equals("quota") && !e.getBoolean("violated")));
+    }
+
+    private static Object sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,75 @@
+package org.fsegs.surveillanceexams.planning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+class PlanningFeasibilityServiceTest {
+
+    private static final LocalDate DAY1 = LocalDate.of(2025, 6, 2);
+    private static final LocalDate DAY2 = LocalDate.of(2025, 6, 3);
+    private static final LocalDate DAY3 = LocalDate.of(2025, 6, 4);
+
+    private static SeanceSlot seance(long id, LocalDate day, int debut, int fin, int needed, Long... matieres) {
+        return new SeanceSlot(id, day, LocalTime.of(debut, 0), LocalTime.of(fin, 0), needed, Set.of(matieres));
+    }
+
+    private static final List<TeacherProfile> TEACHERS = List.of(
+            new TeacherProfile(1L, "A", "Assistant", 1.0, Set.of(100L)),
+            new TeacherProfile(2L, "B", "Assistant", null, Set.of()),
+            new TeacherProfile(3L, "C", "Assistant", 1.0, Set.of()));
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reportsBottlenecksAndQuotaSharing() {
+        PlanningModel model = new PlanningModel(
+                List.of(seance(1, DAY1, 8, 10, 2, 100L), seance(2, DAY1, 9, 11, 1),   // one slot
+                        seance(3, DAY2, 14, 16, 2),
+                        seance(4, DAY3, 8, 10, 3, 100L)),                             // only B and C can take it
+                TEACHERS, Map.of(), Map.of());
+
+        Map<String, Object> report = PlanningFeasibilityService.analyze(model);
+
+        assertEquals(8, report.get("totalNeed"));
+        assertEquals(false, report.get("feasible"));
+        // A and C give one seat each, B one per slot
+        assertEquals(5, report.get("maxCoverage"));
+        // Days alone: 3 + 2 + 2
+        assertEquals(2, report.get("lostToQuotaSharing"));
+        assertEquals(List.of(DAY3), report.get("infeasibleDays"));
+
+        List<Map<String, Object>> days = (List<Map<String, Object>>) report.get("days");
+        List<Map<String, Object>> day1Slots = (List<Map<String, Object>>) days.get(0).get("slots");
+        assertEquals(1, day1Slots.size());
+        assertEquals(List.of(1L, 2L), day1Slots.get(0).get("seances"));
+        assertEquals(LocalTime.of(11, 0), day1Slots.get(0).get("heureFin"));
+        assertEquals(true, days.get(0).get("feasible"));
+
+        Map<String, Object> day3Slot = ((List<Map<String, Object>>) days.get(2).get("slots")).get(0);
+        assertEquals(2, day3Slot.get("eligibleTeachers"));
+        assertEquals(true, day3Slot.get("bottleneck"));
+        assertEquals(1, day3Slot.get("shortfall"));
+    }
+
+    @Test
+    void existingAssignmentsReduceNeedsAndQuotas() {
+        PlanningModel model = new PlanningModel(
+                List.of(seance(1, DAY1, 8, 10, 2), seance(2, DAY1, 9, 11, 1), seance(3, DAY2, 8, 10, 1)),
+                TEACHERS,
+                Map.of(1L, 1),
+                Map.of(3L, Set.of(1L)));
+
+        Map<String, Object> report = PlanningFeasibilityService.analyze(model);
+
+        assertEquals(3, report.get("totalNeed"));
+        // C is busy on day 1 and out of quota; A and B cover the rest
+        assertEquals(3, report.get("maxCoverage"));
+        assertEquals(true, report.get("feasible"));
+    }
+}
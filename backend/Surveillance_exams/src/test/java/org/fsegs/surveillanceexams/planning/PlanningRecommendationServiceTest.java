@@ -0,0 +1,69 @@
+package org.fsegs.surveillanceexams.planning;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+
+class PlanningRecommendationServiceTest {
+
+    private static final LocalDate MONDAY = LocalDate.of(2025, 6, 2);
+
+    private static SeanceSlot seance(long id, int day, int debut, int fin, int needed, Long... matieres) {
+        return new SeanceSlot(id, MONDAY.plusDays(day), LocalTime.of(debut, 0), LocalTime.of(fin, 0), needed,
+                Set.of(matieres));
+    }
+
+    private final PlanningRecommendationService service =
+            new PlanningRecommendationService(mock(PlanningStateService.class));
+
+    @SuppressWarnings("unchecked")
+    private static List<Long> ids(Map<String, Object> report) {
+        return ((List<Map<String, Object>>) report.get("recommendations")).stream()
+                .map(m -> (Long) m.get("idSeance")).toList();
+    }
+
+    @Test
+    void ranksEligibleSeancesByUrgencyAndDays() {
+        PlanningModel model = new PlanningModel(
+                List.of(seance(1, 0, 8, 10, 2),          // assigned
+                        seance(2, 0, 9, 11, 4),          // overlaps seance 1
+                        seance(3, 0, 14, 16, 2),         // same day, half staffed
+                        seance(4, 1, 8, 10, 2),          // next day, half staffed
+                        seance(5, 3, 8, 10, 2),          // far, empty
+                        seance(6, 3, 14, 16, 2, 100L),   // own subject
+                        seance(7, 4, 8, 10, 1)),         // full
+                List.of(new TeacherProfile(1L, "A", "Assistant", 6.0, Set.of(100L))),
+                Map.of(1L, 1, 3L, 1, 4L, 1, 7L, 1),
+                Map.of(1L, Set.of(1L)));
+
+        Map<String, Object> report = service.recommend(model, 1L, 10);
+
+        // 5 of 6 quota left: urgency weight 0.73, clustering 0.27
+        assertEquals(3, report.get("eligibleSeances"));
+        assertEquals(List.of(5L, 3L, 4L), ids(report));
+        assertEquals(List.of(5L), ids(service.recommend(model, 1L, 1)));
+
+        // Half the quota left: the day already worked overtakes the empty seance
+        PlanningModel busy = new PlanningModel(model.seances(),
+                List.of(new TeacherProfile(1L, "A", "Assistant", 2.0, Set.of(100L))),
+                Map.of(1L, 1, 3L, 1, 4L, 1, 7L, 1), Map.of(1L, Set.of(1L)));
+        assertEquals(List.of(3L, 5L, 4L), ids(service.recommend(busy, 1L, 10)));
+
+        PlanningModel full = new PlanningModel(model.seances(),
+                List.of(new TeacherProfile(1L, "A", "Assistant", 1.0, Set.of())),
+                Map.of(1L, 1), Map.of(1L, Set.of(1L)));
+        assertEquals(List.of(), ids(service.recommend(full, 1L, 10)));
+    }
+
+    @Test
+    void assignmentsKeepTheSeanceIndex() {
+        PlanningModel model = new PlanningModel(List.of(seance(1, 0, 8, 10, 2)), List.of(), Map.of(), Map.of());
+        // The index is reused as long as the seance collection is the same object
+        assertSame(model.seances(), model.withAssignment(1L, 1L, true).seances());
+    }
+}
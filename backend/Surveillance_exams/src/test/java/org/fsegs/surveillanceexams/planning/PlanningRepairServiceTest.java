@@ -0,0 +1,57 @@
+package org.fsegs.surveillanceexams.planning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+
+class PlanningRepairServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 6, 2);
+
+    private static SeanceSlot seance(long id, int debut, int fin, int needed, Long... matieres) {
+        return new SeanceSlot(id, DAY, LocalTime.of(debut, 0), LocalTime.of(fin, 0), needed, Set.of(matieres));
+    }
+
+    @Test
+    void fillsMostConstrainedHoleFirstAndKeepsExistingAssignments() {
+        // Seances 1 and 2 overlap; teacher 2 teaches the subject of seance 2, so only teacher 1 can take it
+        PlanningModel model = new PlanningModel(
+                List.of(seance(1, 8, 10, 1), seance(2, 9, 11, 1, 100L), seance(3, 14, 16, 2)),
+                List.of(new TeacherProfile(1L, "A", "Assistant", 3.0, Set.of()),
+                        new TeacherProfile(2L, "B", "Assistant", 3.0, Set.of(100L)),
+                        new TeacherProfile(3L, "C", "Assistant", 1.0, Set.of())),
+                Map.of(3L, 1),
+                Map.of(3L, Set.of(3L)));
+
+        PlanningRepairService.RepairPlan plan = PlanningRepairService.propose(model, List.of(1L, 2L, 3L));
+
+        Set<List<Long>> additions = new HashSet<>();
+        for (long[] a : plan.additions()) {
+            additions.add(List.of(a[0], a[1]));
+        }
+        assertEquals(3, plan.holes());
+        assertEquals(Set.of(List.of(1L, 2L), List.of(2L, 1L), List.of(1L, 3L)), additions);
+        assertTrue(plan.unfilled().isEmpty());
+        // Teacher 3 has no spare quota and is not considered
+        assertEquals(2, plan.teachersConsidered());
+    }
+
+    @Test
+    void reportsHolesThatCannotBeFilled() {
+        PlanningModel model = new PlanningModel(
+                List.of(seance(1, 8, 10, 2, 100L)),
+                List.of(new TeacherProfile(1L, "A", "Assistant", 2.0, Set.of()),
+                        new TeacherProfile(2L, "B", "Assistant", 2.0, Set.of(100L))),
+                Map.of(),
+                Map.of());
+
+        PlanningRepairService.RepairPlan plan = PlanningRepairService.propose(model, List.of(1L));
+
+        assertEquals(1, plan.additions().size());
+        assertEquals(Map.of(1L, 1), plan.unfilled());
+    }
+}
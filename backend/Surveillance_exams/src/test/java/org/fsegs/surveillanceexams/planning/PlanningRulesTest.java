@@ -0,0 +1,68 @@
+package org.fsegs.surveillanceexams.planning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+class PlanningRulesTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 6, 2);
+
+    private static SeanceSlot seance(long id, int debut, int fin, int needed, Long... matieres) {
+        return new SeanceSlot(id, DAY, LocalTime.of(debut, 0), LocalTime.of(fin, 0), needed, Set.of(matieres));
+    }
+
+    private final PlanningModel model = new PlanningModel(
+            List.of(seance(1, 8, 10, 2, 100L), seance(2, 9, 11, 1), seance(3, 10, 12, 1), seance(4, 14, 16, 1),
+                    seance(5, 16, 18, 1)),
+            List.of(new TeacherProfile(1L, "A", "Assistant", 2.0, Set.of(100L)),
+                    new TeacherProfile(2L, "B", "Assistant", null, Set.of())),
+            Map.of(3L, 1),
+            Map.of(2L, Set.of(3L)));
+
+    @Test
+    void appliesServiceRulesInOrder() {
+        assertEquals(Violation.SUBJECT_CONFLICT, PlanningRules.check(model, 1L, 1L));
+        assertEquals(Violation.ALREADY_ASSIGNED, PlanningRules.check(model, 2L, 3L));
+        assertEquals(Violation.SATURATED, PlanningRules.check(model, 1L, 3L));
+        assertEquals(Violation.UNKNOWN, PlanningRules.check(model, 9L, 1L));
+        assertNull(PlanningRules.check(model, 1L, 2L));
+        // 9:00-11:00 overlaps the 10:00-12:00 assignment; 8:00-10:00 only touches it
+        assertEquals(Violation.TIME_CONFLICT, PlanningRules.check(model, 2L, 2L));
+        assertNull(PlanningRules.check(model, 2L, 1L));
+    }
+
+    @Test
+    void quotaIsEnforced() {
+        PlanningAllocation allocation = new PlanningAllocation(model);
+        allocation.assign(1L, 2L);
+        allocation.assign(1L, 4L);
+
+        assertEquals(0, allocation.remainingQuota(1L));
+        assertEquals(Violation.QUOTA_REACHED, PlanningRules.check(allocation, 1L, 5L));
+        assertNull(PlanningRules.check(model, 1L, 5L));
+    }
+
+    @Test
+    void allocationDoesNotModifyBase() {
+        PlanningAllocation allocation = new PlanningAllocation(model);
+        assertTrue(allocation.assign(2L, 4L));
+        assertFalse(allocation.assign(2L, 4L));
+        assertTrue(allocation.unassign(2L, 3L));
+
+        assertEquals(1, allocation.inscrits(4L));
+        assertEquals(0, allocation.inscrits(3L));
+        assertEquals(Set.of(4L), allocation.seancesOf(2L));
+
+        assertEquals(0, model.inscrits(4L));
+        assertEquals(1, model.inscrits(3L));
+        assertEquals(Set.of(3L), model.seancesOf(2L));
+        assertEquals(Set.of(3L, 4L), allocation.touchedSeances());
+    }
+}
@@ -0,0 +1,84 @@
+package org.fsegs.surveillanceexams.planning;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+class PlanningSimulatorTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 6, 2);
+
+    private static SeanceSlot seance(long id, int debut, int fin, int needed, Long... matieres) {
+        return new SeanceSlot(id, DAY, LocalTime.of(debut, 0), LocalTime.of(fin, 0), needed, Set.of(matieres));
+    }
+
+    private final PlanningModel model = new PlanningModel(
+            List.of(seance(1, 8, 10, 1, 100L), seance(2, 9, 11, 1), seance(3, 14, 16, 2)),
+            List.of(new TeacherProfile(1L, "A", "Assistant", 1.0, Set.of(100L)),
+                    new TeacherProfile(2L, "B", "Assistant", null, Set.of())),
+            Map.of(3L, 1),
+            Map.of(2L, Set.of(3L)));
+
+    private final PlanningStateService state = mock(PlanningStateService.class);
+    private final PlanningSimulator simulator = new PlanningSimulator(state);
+
+    private static PlanningSimulator.Operation add(long t, long s) {
+        return new PlanningSimulator.Operation(PlanningSimulator.Action.ADD, t, s);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reportsEffectsWithoutChangingTheBase() {
+        when(state.current()).thenReturn(model);
+
+        Map<String, Object> report = simulator.simulate(List.of(
+                add(1L, 2L),   // OK, reaches quota
+                add(1L, 1L),   // subject + time conflict + quota
+                add(2L, 2L),   // seance 2 already full -> overbooked
+                new PlanningSimulator.Operation(PlanningSimulator.Action.REMOVE, 2L, 3L),
+                new PlanningSimulator.Operation(PlanningSimulator.Action.REMOVE, 1L, 3L)), false);
+
+        assertEquals(4, report.get("applied"));
+        List<Map<String, Object>> results = (List<Map<String, Object>>) report.get("results");
+        assertNull(results.get(0).get("violation"));
+        assertEquals(Violation.SUBJECT_CONFLICT, results.get(1).get("violation"));
+        assertEquals(Violation.SATURATED, results.get(2).get("violation"));
+        assertEquals(Violation.NOT_ASSIGNED, results.get(4).get("violation"));
+
+        List<Map<String, Object>> seances = (List<Map<String, Object>>) report.get("seances");
+        assertEquals(2, seances.get(1).get("inscritsAfter"));
+        assertEquals(true, seances.get(1).get("overbooked"));
+        assertEquals(0, seances.get(2).get("inscritsAfter"));
+
+        List<Map<String, Object>> overQuota = (List<Map<String, Object>>) report.get("teachersOverQuota");
+        assertEquals(1, overQuota.size());
+        assertEquals(1L, overQuota.get(0).get("idEnseignant"));
+
+        List<Map<String, Object>> conflicts = (List<Map<String, Object>>) report.get("conflicts");
+        assertEquals(2, conflicts.size());
+
+        assertEquals(Set.of(), model.seancesOf(1L));
+        assertEquals(1, model.inscrits(3L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void strictModeSkipsRejectedOperations() {
+        when(state.current()).thenReturn(model);
+
+        Map<String, Object> report = simulator.simulate(List.of(add(1L, 2L), add(1L, 3L)), true);
+
+        assertEquals(1, report.get("applied"));
+        assertTrue(((List<?>) report.get("teachersOverQuota")).isEmpty());
+        List<Map<String, Object>> results = (List<Map<String, Object>>) report.get("results");
+        assertEquals(Violation.QUOTA_REACHED, results.get(1).get("violation"));
+        assertEquals(false, results.get(1).get("applied"));
+    }
+}
@@ -0,0 +1,73 @@
+package org.fsegs.surveillanceexams.planning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+class PlanningSnapshotCodecTest {
+
+    private final PlanningModel model = new PlanningModel(
+            List.of(new SeanceSlot(1L, LocalDate.of(2025, 6, 2), LocalTime.of(8, 30), LocalTime.of(10, 0), 3, Set.of(7L)),
+                    new SeanceSlot(2L, null, null, null, 0, Set.of())),
+            List.of(new TeacherProfile(5L, "Ben Salah", "Assistant", 4.5, Set.of(7L, 8L)),
+                    new TeacherProfile(6L, "Trabelsi", null, null, Set.of())),
+            Map.of(1L, 2),
+            Map.of(6L, Set.of(1L, 2L)),
+            Map.of(7L, "Économie", 8L, "Gestion"),
+            List.of(new EpreuveInfo(11L, 1L, 7L, "LFE", "L1", 4), new EpreuveInfo(12L, null, null, null, null, 0)));
+
+    @Test
+    void roundTrip(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("planning.snap");
+        long[] fingerprint = {1, 2, 3};
+        PlanningSnapshotCodec.write(file, model, fingerprint);
+
+        PlanningSnapshotCodec.Snapshot snapshot = PlanningSnapshotCodec.read(file);
+        PlanningModel read = snapshot.model();
+
+        assertArrayEquals(fingerprint, snapshot.fingerprint());
+        assertEquals(List.copyOf(model.seances()), List.copyOf(read.seances()));
+        assertEquals(List.copyOf(model.teachers()), List.copyOf(read.teachers()));
+        assertEquals(model.matieres(), read.matieres());
+        assertEquals(model.epreuves(), read.epreuves());
+        assertEquals(model.assignments(), read.assignments());
+        assertEquals(2, read.inscrits(1L));
+    }
+
+    @Test
+    void corruptedPayloadIsRejected(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("planning.snap");
+        long size = PlanningSnapshotCodec.write(file, model, new long[]{1});
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), size - 3);
+        }
+        assertThrows(IOException.class, () -> PlanningSnapshotCodec.read(file));
+    }
+
+    @Test
+    void withAssignmentSharesDataAndIsIdempotent() {
+        PlanningModel assigned = model.withAssignment(5L, 2L, true);
+        assertEquals(Set.of(2L), assigned.seancesOf(5L));
+        assertEquals(1, assigned.inscrits(2L));
+        assertSame(assigned, assigned.withAssignment(5L, 2L, true));
+        assertSame(model.seances(), assigned.seances());
+
+        PlanningModel removed = assigned.withAssignment(6L, 1L, false);
+        assertEquals(1, removed.inscrits(1L));
+        assertEquals(Set.of(2L), removed.seancesOf(6L));
+        assertTrue(model.seancesOf(5L).isEmpty());
+    }
+}
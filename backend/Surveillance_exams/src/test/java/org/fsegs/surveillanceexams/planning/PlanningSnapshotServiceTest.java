@@ -0,0 +1,89 @@
+package org.fsegs.surveillanceexams.planning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.fsegs.surveillanceexams.model.Affectation;
+import org.fsegs.surveillanceexams.model.Enseignant;
+import org.fsegs.surveillanceexams.model.Seance;
+import org.fsegs.surveillanceexams.repository.AffectationRepository;
+import org.fsegs.surveillanceexams.repository.EnseignantRepository;
+import org.fsegs.surveillanceexams.repository.SeanceRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+
+/**
+ * The snapshot fingerprint sees edits that keep every count and sum, such as
+ * two teachers swapping their assignments in place.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:snapshot;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "surveillance.snapshot.enabled=false",
+        "surveillance.audit.enabled=false",
+        "surveillance.reconcile.enabled=false",
+        "surveillance.idempotency.file="})
+class PlanningSnapshotServiceTest {
+
+    @Autowired
+    private PlanningSnapshotService snapshotService;
+    @Autowired
+    private CampagneService campagneService;
+    @Autowired
+    private EnseignantRepository enseignantRepo;
+    @Autowired
+    private SeanceRepository seanceRepo;
+    @Autowired
+    private AffectationRepository affectationRepo;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void inPlaceSwapInvalidatesTheSnapshot() {
+        Seance morning = seance(8);
+        Seance afternoon = seance(14);
+        Enseignant ali = teacher("Ali");
+        Enseignant sana = teacher("Sana");
+        Affectation a = affectationRepo.save(new Affectation(ali, morning));
+        Affectation b = affectationRepo.save(new Affectation(sana, afternoon));
+
+        long[] before = snapshotService.fingerprint();
+        assertArrayEquals(before, snapshotService.fingerprint());
+
+        // Same rows, same id sums: only the pairs change
+        jdbcTemplate.update("UPDATE affectation SET id_enseignant = ? WHERE id_affectation = ?", sana.getId(), a.getId());
+        jdbcTemplate.update("UPDATE affectation SET id_enseignant = ? WHERE id_affectation = ?", ali.getId(), b.getId());
+
+        assertFalse(Arrays.equals(before, snapshotService.fingerprint()));
+    }
+
+    private Seance seance(int hour) {
+        Seance s = new Seance();
+        s.setDate(LocalDate.of(2025, 6, 2));
+        s.setHeureDebut(LocalTime.of(hour, 0));
+        s.setHeureFin(LocalTime.of(hour + 2, 0));
+        s.setNbSurveillantsNecessaires(2);
+        s.setNbSurveillantsInscrits(1);
+        s.setCampagne(campagneService.getActive());
+        return seanceRepo.save(s);
+    }
+
+    private Enseignant teacher(String nom) {
+        Enseignant e = new Enseignant();
+        e.setNomComplet(nom);
+        e.setGrade("Assistant");
+        e.setChargeEnseignement(10.0);
+        e.setChargeSurveillance(3.0);
+        return enseignantRepo.save(e);
+    }
+}
@@ -0,0 +1,138 @@
+package org.fsegs.surveillanceexams.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.fsegs.surveillanceexams.search.SeanceSearchService.Criteria;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keyset pages cover the filtered result exactly once, in (date, start
+ * time, id) order, and the first page carries the facet counts.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:search;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "surveillance.snapshot.enabled=false",
+        "surveillance.audit.enabled=false",
+        "surveillance.idempotency.file="})
+class SeanceSearchServiceTest {
+
+    private static final Criteria ALL = new Criteria(null, null, null, null, null, null, null, null, null);
+
+    @Autowired
+    private SeanceSearchService searchService;
+    @Autowired
+    private CampagneService campagneService;
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void seed() {
+        if (jdbc.queryForObject("SELECT COUNT(*) FROM seance", Integer.class) > 0) {
+            return;
+        }
+        long campagne = campagneService.activeId();
+        jdbc.update("INSERT INTO matiere (id_matiere, nom) VALUES (1, 'Comptabilité'), (2, 'Statistiques')");
+        // id, date, start, needed, registered; two seances share a slot to exercise the id tiebreak
+        Object[][] seances = {
+                {10, "2025-06-02", "08:30", 2, 2}, {11, "2025-06-02", "08:30", 2, 0},
+                {12, "2025-06-02", "14:00", 3, 1}, {13, "2025-06-03", "08:30", 1, 1},
+                {14, "2025-06-03", "10:30", 2, 1}};
+        for (Object[] s : seances) {
+            LocalTime debut = LocalTime.parse((String) s[2]);
+            jdbc.update("INSERT INTO seance (id_seance, date_seance, heure_debut, heure_fin, " +
+                    "nb_surveillants_necessaires, nb_surveillants_inscrits, id_campagne) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                    s[0], LocalDate.parse((String) s[1]), debut, debut.plusMinutes(90), s[3], s[4], campagne);
+        }
+        jdbc.update("INSERT INTO epreuve (id_epreuve, filiere, classe, id_seance, id_matiere) VALUES " +
+                "(100, 'Gestion', 'L1', 10, 1), (101, 'Gestion', 'L2', 11, 2), (102, 'Info', 'L1', 12, 2), " +
+                "(103, 'Gestion', 'L1', 13, 1), (104, 'Info', 'L2', 14, 1), (105, 'Gestion', 'L2', 14, 2)");
+        jdbc.update("INSERT INTO enseignant (id_enseignant, nom, grade, charge_enseignement, charge_surveillance) " +
+                "VALUES (1, 'Ben Salah', 'Assistant', 10, 6)");
+        jdbc.update("INSERT INTO enseignant_matiere (id_enseignant, id_matiere) VALUES (1, 1)");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void keysetPagesCoverResultOnceWithFacetsOnFirstPage() {
+        List<Object> ids = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            Map<String, Object> page = searchService.search(ALL, cursor, 2);
+            assertEquals(pages == 0, page.containsKey("facets"));
+            for (Map<String, Object> item : (List<Map<String, Object>>) page.get("items")) {
+                ids.add(item.get("id"));
+            }
+            cursor = (String) page.get("nextCursor");
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(List.of(10L, 11L, 12L, 13L, 14L), ids);
+        assertEquals(3, pages);
+
+        Map<String, Object> first = searchService.search(ALL, null, 2);
+        Map<String, Map<String, Long>> facets = (Map<String, Map<String, Long>>) first.get("facets");
+        assertEquals(5L, first.get("total"));
+        assertEquals(Map.of("Gestion", 4L, "Info", 2L), facets.get("filiere"));
+        assertEquals(Map.of("true", 2L, "false", 3L), facets.get("saturee"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void combinesSeanceAndEpreuveFilters() {
+        // Unsaturated, on 2025-06-02 or later, for Gestion, without the subjects of teacher 1 (Comptabilité)
+        Criteria criteria = new Criteria(LocalDate.of(2025, 6, 2), null, null, null, false,
+                "Gestion", null, null, 1L);
+        Map<String, Object> page = searchService.search(criteria, null, 10);
+        List<Map<String, Object>> items = (List<Map<String, Object>>) page.get("items");
+        assertEquals(List.of(11L), items.stream().map(i -> i.get("id")).toList());
+        assertEquals(1, ((List<?>) items.get(0).get("epreuves")).size());
+
+        Criteria byName = new Criteria(null, null, LocalTime.of(9, 0), null, null, null, null, "statis", null);
+        items = (List<Map<String, Object>>) searchService.search(byName, null, 10).get("items");
+        assertEquals(List.of(12L, 14L), items.stream().map(i -> i.get("id")).toList());
+        assertEquals(2, ((List<?>) items.get(1).get("epreuves")).size());
+
+        assertThrows(IllegalArgumentException.class, () -> searchService.search(ALL, "not-a-cursor", 10));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void seancesWithoutDateOrStartTimeArePagedLast() {
+        long campagne = campagneService.activeId();
+        jdbc.update("INSERT INTO seance (id_seance, date_seance, heure_debut, nb_surveillants_necessaires, " +
+                "nb_surveillants_inscrits, id_campagne) VALUES (15, NULL, ?, 1, 0, ?), (16, NULL, NULL, 1, 0, ?), " +
+                "(17, ?, NULL, 1, 0, ?)", LocalTime.of(8, 30), campagne, campagne, LocalDate.of(2025, 6, 3), campagne);
+        try {
+            List<Object> ids = new ArrayList<>();
+            String cursor = null;
+            do {
+                Map<String, Object> page = searchService.search(ALL, cursor, 1);
+                for (Map<String, Object> item : (List<Map<String, Object>>) page.get("items")) {
+                    ids.add(item.get("id"));
+                }
+                cursor = (String) page.get("nextCursor");
+            } while (cursor != null);
+
+            assertEquals(List.of(10L, 11L, 12L, 13L, 14L, 17L, 15L, 16L), ids);
+        } finally {
+            jdbc.update("DELETE FROM seance WHERE id_seance IN (15, 16, 17)");
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.fsegs.surveillanceexams.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.fsegs.surveillanceexams.event.AffectationChangedEvent;
+import org.fsegs.surveillanceexams.event.PlanningDataChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An assignment change rebuilds only the day of its seance; the other days
+ * are served from the cache as the same objects. Undated seances form a last
+ * day of their own.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:calendar;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "surveillance.snapshot.enabled=false",
+        "surveillance.audit.enabled=false",
+        "surveillance.idempotency.file="})
+class CalendarServiceTest {
+
+    @Autowired
+    private CalendarService calendarService;
+    @Autowired
+    private CampagneService campagneService;
+    @Autowired
+    private ApplicationEventPublisher events;
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void affectationChangeRebuildsOnlyItsDay() {
+        long campagne = campagneService.activeId();
+        Object[][] seances = {{1, "2025-06-02", "08:30"}, {2, "2025-06-02", "08:30"}, {3, "2025-06-03", "14:00"}};
+        for (Object[] s : seances) {
+            LocalTime debut = LocalTime.parse((String) s[2]);
+            jdbc.update("INSERT INTO seance (id_seance, date_seance, heure_debut, heure_fin, " +
+                    "nb_surveillants_necessaires, nb_surveillants_inscrits, id_campagne) VALUES (?, ?, ?, ?, 2, 0, ?)",
+                    s[0], LocalDate.parse((String) s[1]), debut, debut.plusMinutes(90), campagne);
+        }
+        jdbc.update("INSERT INTO enseignant (id_enseignant, nom, grade, charge_enseignement, charge_surveillance) " +
+                "VALUES (7, 'Trabelsi', 'Assistant', 10, 6)");
+
+        CalendarService.Grid before = calendarService.getCalendar();
+        List<Map<String, Object>> days = (List<Map<String, Object>>) before.data().get("days");
+        assertEquals(2, days.size());
+        assertEquals(List.of(LocalTime.of(8, 30), LocalTime.of(14, 0)), before.data().get("slots"));
+        List<Map<String, Object>> firstSlots = (List<Map<String, Object>>) days.get(0).get("slots");
+        assertEquals(2, ((List<?>) firstSlots.get(0).get("seances")).size());
+        assertSame(before, calendarService.getCalendar());
+
+        jdbc.update("INSERT INTO affectation (id_enseignant, id_seance) VALUES (7, 3)");
+        jdbc.update("UPDATE seance SET nb_surveillants_inscrits = 1 WHERE id_seance = 3");
+        events.publishEvent(AffectationChangedEvent.assigned(7L, 3L));
+
+        CalendarService.Grid after = calendarService.getCalendar();
+        assertNotEquals(before.etag(), after.etag());
+        List<Map<String, Object>> afterDays = (List<Map<String, Object>>) after.data().get("days");
+        assertSame(days.get(0), afterDays.get(0));
+        assertNotSame(days.get(1), afterDays.get(1));
+        assertEquals(1, afterDays.get(1).get("nbSurveillantsInscrits"));
+
+        Map<String, Object> mine = CalendarService.filter(after, 7L, null, null);
+        List<Map<String, Object>> myDays = (List<Map<String, Object>>) mine.get("days");
+        assertEquals(1, mine.get("seances"));
+        assertEquals(LocalDate.of(2025, 6, 3), myDays.get(0).get("date"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void undatedSeancesFormALastDay() {
+        long campagne = campagneService.activeId();
+        events.publishEvent(PlanningDataChangedEvent.campagne(campagne));
+        jdbc.update("INSERT INTO seance (id_seance, date_seance, heure_debut, heure_fin, " +
+                "nb_surveillants_necessaires, nb_surveillants_inscrits, id_campagne) VALUES (20, ?, ?, ?, 2, 0, ?)",
+                LocalDate.of(2025, 6, 10), LocalTime.of(8, 30), LocalTime.of(10, 0), campagne);
+        jdbc.update("INSERT INTO seance (id_seance, nb_surveillants_necessaires, nb_surveillants_inscrits, " +
+                "id_campagne) VALUES (21, 1, 0, ?)", campagne);
+        try {
+            List<Map<String, Object>> days = (List<Map<String, Object>>) calendarService.getCalendar().data().get("days");
+            Map<String, Object> undated = days.get(days.size() - 1);
+            assertNull(undated.get("date"));
+            assertEquals(1, undated.get("seances"));
+
+            // Moving the undated seance to a date only rebuilds those two days
+            jdbc.update("UPDATE seance SET date_seance = ? WHERE id_seance = 21", LocalDate.of(2025, 6, 10));
+            events.publishEvent(PlanningDataChangedEvent.seance(21L));
+            days = (List<Map<String, Object>>) calendarService.getCalendar().data().get("days");
+            assertEquals(LocalDate.of(2025, 6, 10), days.get(days.size() - 1).get("date"));
+            assertEquals(2, days.get(days.size() - 1).get("seances"));
+
+            jdbc.update("UPDATE seance SET date_seance = NULL WHERE id_seance = 20");
+            events.publishEvent(PlanningDataChangedEvent.seance(20L));
+            CalendarService.Grid grid = calendarService.getCalendar();
+            days = (List<Map<String, Object>>) grid.data().get("days");
+            assertNull(days.get(days.size() - 1).get("date"));
+
+            Map<String, Object> june = CalendarService.filter(grid, null, LocalDate.of(2025, 6, 1), null);
+            for (Map<String, Object> day : (List<Map<String, Object>>) june.get("days")) {
+                assertNotNull(day.get("date"));
+            }
+        } finally {
+            jdbc.update("DELETE FROM seance WHERE id_seance IN (20, 21)");
+            events.publishEvent(PlanningDataChangedEvent.campagne(campagne));
+        }
+    }
+}
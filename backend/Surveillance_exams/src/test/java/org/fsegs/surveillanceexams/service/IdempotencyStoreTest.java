@@ -0,0 +1,74 @@
+package org.fsegs.surveillanceexams.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+class IdempotencyStoreTest {
+
+    private static final IdempotencyStore.StoredResponse OK =
+            new IdempotencyStore.StoredResponse(200, "application/json", "{\"success\":true}");
+
+    @Test
+    void duplicateIsReplayed() {
+        IdempotencyStore store = new IdempotencyStore(10, 60, "");
+
+        assertEquals(IdempotencyStore.State.STARTED, store.claim("k1", "f1").state());
+        assertEquals(IdempotencyStore.State.IN_PROGRESS, store.claim("k1", "f1").state());
+
+        store.complete("k1", OK);
+        IdempotencyStore.Claim replay = store.claim("k1", "f1");
+        assertEquals(IdempotencyStore.State.REPLAY, replay.state());
+        assertEquals(OK, replay.response());
+    }
+
+    @Test
+    void keyReusedForAnotherRequestIsRejected() {
+        IdempotencyStore store = new IdempotencyStore(10, 60, "");
+        store.claim("k1", "f1");
+        store.complete("k1", OK);
+
+        assertEquals(IdempotencyStore.State.MISMATCH, store.claim("k1", "f2").state());
+    }
+
+    @Test
+    void releasedKeyCanBeRetried() {
+        IdempotencyStore store = new IdempotencyStore(10, 60, "");
+        store.claim("k1", "f1");
+        store.release("k1");
+
+        assertEquals(IdempotencyStore.State.STARTED, store.claim("k1", "f1").state());
+    }
+
+    @Test
+    void oldestKeysAreEvictedWhenFull() {
+        IdempotencyStore store = new IdempotencyStore(2, 60, "");
+        store.claim("k1", "f");
+        store.claim("k2", "f");
+        store.claim("k3", "f");
+
+        assertEquals(2, store.size());
+        assertEquals(IdempotencyStore.State.STARTED, store.claim("k1", "f").state());
+    }
+
+    @Test
+    void completedKeysSurviveRestart(@TempDir Path dir) {
+        String file = dir.resolve("idempotency.bin").toString();
+        IdempotencyStore store = new IdempotencyStore(10, 60, file);
+        store.claim("k1", "f1");
+        store.complete("k1", OK);
+        store.claim("k2", "f2");
+        store.shutdown();
+
+        IdempotencyStore restarted = new IdempotencyStore(10, 60, file);
+        restarted.load();
+
+        IdempotencyStore.Claim replay = restarted.claim("k1", "f1");
+        assertEquals(IdempotencyStore.State.REPLAY, replay.state());
+        assertEquals(OK, replay.response());
+        assertEquals(IdempotencyStore.State.STARTED, restarted.claim("k2", "f2").state());
+    }
+}
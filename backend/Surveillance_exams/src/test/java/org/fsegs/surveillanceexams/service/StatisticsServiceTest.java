@@ -0,0 +1,174 @@
+package org.fsegs.surveillanceexams.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.fsegs.surveillanceexams.event.AffectationChangedEvent;
+import org.fsegs.surveillanceexams.model.Enseignant;
+import org.fsegs.surveillanceexams.model.Seance;
+import org.fsegs.surveillanceexams.repository.AffectationRepository;
+import org.fsegs.surveillanceexams.repository.EnseignantRepository;
+import org.fsegs.surveillanceexams.repository.SeanceRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+class StatisticsServiceTest {
+
+    private final EnseignantRepository enseignantRepo = mock(EnseignantRepository.class);
+    private final SeanceRepository seanceRepo = mock(SeanceRepository.class);
+    private final AffectationRepository affectationRepo = mock(AffectationRepository.class);
+    private final CampagneService campagneService = mock(CampagneService.class);
+    private final StatisticsService stats =
+            new StatisticsService(enseignantRepo, seanceRepo, affectationRepo, campagneService);
+
+    private final Seance seance = new Seance();
+    private final List<Object[]> counts = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Enseignant e = new Enseignant();
+        e.setId(1L);
+        e.setGrade("Assistant");
+        e.setChargeSurveillance(2.0);
+
+        seance.setId(10L);
+        seance.setDate(LocalDate.of(2025, 6, 2));
+        seance.setNbSurveillantsNecessaires(2);
+
+        when(enseignantRepo.findAll()).thenReturn(List.of(e));
+        when(campagneService.activeId()).thenReturn(1L);
+        when(seanceRepo.findAllByCampagneId(1L)).thenReturn(List.of(seance));
+        when(affectationRepo.countAffectationsGroupedByEnseignant(1L)).thenReturn(counts);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stats.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void incrementalUpdatesMatchRebuild() {
+        Map<String, Object> initial = stats.getStatistics();
+        assertEquals(1, initial.get("underStaffedSeances"));
+        assertEquals(2L, initial.get("missingSurveillants"));
+
+        stats.onAffectationChanged(AffectationChangedEvent.assigned(1L, 10L));
+        stats.onAffectationChanged(AffectationChangedEvent.assigned(1L, 10L));
+
+        Map<String, Object> updated = stats.getStatistics();
+        assertEquals(0, updated.get("underStaffedSeances"));
+        assertEquals(1, updated.get("teachersAtFullQuota"));
+        Map<String, Object> grade = ((List<Map<String, Object>>) updated.get("byGrade")).get(0);
+        assertEquals(2L, grade.get("totalAffectations"));
+
+        // Database now reflects the two committed assignments
+        seance.setNbSurveillantsInscrits(2);
+        counts.add(new Object[]{1L, 2L});
+        assertFalse(stats.rebuild());
+        assertEquals(updated, stats.getStatistics());
+    }
+
+    @Test
+    void rebuildReportsDrift() {
+        stats.getStatistics();
+
+        seance.setNbSurveillantsInscrits(1);
+        assertTrue(stats.rebuild());
+        assertEquals(1L, stats.getStatistics().get("missingSurveillants"));
+    }
+
+    @Test
+    void writeDuringRebuildKeepsServingTheLastSnapshot() throws Exception {
+        stats.getStatistics();
+
+        // An assignment commits while the seances are being read, after its row was read
+        when(seanceRepo.findAllByCampagneId(1L)).thenAnswer(invocation -> {
+            stats.onAffectationChanged(AffectationChangedEvent.assigned(1L, 10L));
+            return List.of(copy(0));
+        });
+        stats.rebuild();
+
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            reading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return List.of(copy(1));
+        }).when(seanceRepo).findAllByCampagneId(1L);
+
+        try {
+            // Stale, but readers get the last snapshot without waiting for the database
+            Map<String, Object> served = assertTimeoutPreemptively(Duration.ofSeconds(2), stats::getStatistics);
+            assertEquals(2L, served.get("missingSurveillants"));
+            assertTrue(reading.await(5, TimeUnit.SECONDS));
+            assertSame(served, assertTimeoutPreemptively(Duration.ofSeconds(2), stats::getStatistics));
+        } finally {
+            release.countDown();
+        }
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!Long.valueOf(1L).equals(stats.getStatistics().get("missingSurveillants"))) {
+            assertTrue(System.currentTimeMillis() < deadline, "background rebuild did not publish");
+            Thread.sleep(10);
+        }
+        // One background rebuild, however many stale reads
+        verify(seanceRepo, times(3)).findAllByCampagneId(1L);
+    }
+
+    @Test
+    void concurrentReadersShareTheFirstBuild() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(seanceRepo.findAllByCampagneId(1L)).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return List.of(seance);
+        });
+
+        int readers = 8;
+        CountDownLatch started = new CountDownLatch(readers);
+        ExecutorService pool = Executors.newFixedThreadPool(readers);
+        try {
+            List<Future<Map<String, Object>>> results = new ArrayList<>();
+            for (int i = 0; i < readers; i++) {
+                results.add(pool.submit(() -> {
+                    started.countDown();
+                    return stats.getStatistics();
+                }));
+            }
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            release.countDown();
+
+            Map<String, Object> first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<Map<String, Object>> result : results) {
+                assertSame(first, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+        verify(enseignantRepo, times(1)).findAll();
+    }
+
+    private Seance copy(int inscrits) {
+        Seance s = new Seance();
+        s.setId(seance.getId());
+        s.setDate(seance.getDate());
+        s.setNbSurveillantsNecessaires(seance.getNbSurveillantsNecessaires());
+        s.setNbSurveillantsInscrits(inscrits);
+        return s;
+    }
+}
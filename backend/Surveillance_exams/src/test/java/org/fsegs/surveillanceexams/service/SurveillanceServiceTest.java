@@ -0,0 +1,117 @@
+package org.fsegs.surveillanceexams.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.fsegs.surveillanceexams.model.Enseignant;
+import org.fsegs.surveillanceexams.model.ListeAttente;
+import org.fsegs.surveillanceexams.model.Seance;
+import org.fsegs.surveillanceexams.repository.AffectationRepository;
+import org.fsegs.surveillanceexams.repository.EnseignantRepository;
+import org.fsegs.surveillanceexams.repository.SeanceRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+/**
+ * Waitlist of a saturated seance: a wish is queued with its position, and a
+ * freed seat goes to the first teacher still eligible.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:waitlist;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "surveillance.snapshot.enabled=false",
+        "surveillance.audit.enabled=false",
+        "surveillance.reconcile.enabled=false",
+        "surveillance.idempotency.file="})
+class SurveillanceServiceTest {
+
+    @Autowired
+    private SurveillanceService service;
+    @Autowired
+    private CampagneService campagneService;
+    @Autowired
+    private EnseignantRepository enseignantRepo;
+    @Autowired
+    private SeanceRepository seanceRepo;
+    @Autowired
+    private AffectationRepository affectationRepo;
+
+    @Test
+    void cancellationPromotesTheHeadOfTheWaitlist() {
+        Seance seance = seance(LocalDate.of(2025, 6, 2), 8);
+        Enseignant first = teacher("First");
+        Enseignant second = teacher("Second");
+        Enseignant third = teacher("Third");
+
+        assertEquals(VoeuResult.Outcome.ASSIGNED, service.soumettreVoeu(first.getId(), seance.getId()).outcome());
+        VoeuResult queued = service.soumettreVoeu(second.getId(), seance.getId());
+        assertEquals(VoeuResult.Outcome.WAITLISTED, queued.outcome());
+        assertEquals(1L, queued.waitlistPosition());
+        assertEquals(2L, service.soumettreVoeu(third.getId(), seance.getId()).waitlistPosition());
+        // Asking again keeps the place
+        assertEquals(2L, service.soumettreVoeu(third.getId(), seance.getId()).waitlistPosition());
+
+        service.cancelVoeu(first.getId(), seance.getId());
+
+        assertTrue(affectationRepo.existsByEnseignantAndSeance(second, seance));
+        assertFalse(affectationRepo.existsByEnseignantAndSeance(first, seance));
+        assertEquals(1, seanceRepo.findById(seance.getId()).orElseThrow().getNbSurveillantsInscrits());
+        assertEquals(List.of(third.getId()), waiting(seance));
+        assertEquals(1L, service.soumettreVoeu(third.getId(), seance.getId()).waitlistPosition());
+    }
+
+    @Test
+    void promotionSkipsTeachersNoLongerEligible() {
+        LocalDate day = LocalDate.of(2025, 6, 3);
+        Seance seance = seance(day, 8);
+        Seance overlapping = seance(day, 9);
+        Enseignant holder = teacher("Holder");
+        Enseignant busy = teacher("Busy");
+        Enseignant next = teacher("Next");
+
+        service.soumettreVoeu(holder.getId(), seance.getId());
+        assertEquals(VoeuResult.Outcome.WAITLISTED, service.soumettreVoeu(busy.getId(), seance.getId()).outcome());
+        assertEquals(VoeuResult.Outcome.WAITLISTED, service.soumettreVoeu(next.getId(), seance.getId()).outcome());
+        // While waiting, the head of the queue takes a seance at the same time
+        assertEquals(VoeuResult.Outcome.ASSIGNED, service.soumettreVoeu(busy.getId(), overlapping.getId()).outcome());
+
+        service.cancelVoeu(holder.getId(), seance.getId());
+
+        assertFalse(affectationRepo.existsByEnseignantAndSeance(busy, seance));
+        assertTrue(affectationRepo.existsByEnseignantAndSeance(next, seance));
+        assertEquals(List.of(), waiting(seance));
+    }
+
+    private Seance seance(LocalDate day, int hour) {
+        Seance s = new Seance();
+        s.setDate(day);
+        s.setHeureDebut(LocalTime.of(hour, 0));
+        s.setHeureFin(LocalTime.of(hour + 2, 0));
+        s.setNbSurveillantsNecessaires(1);
+        s.setNbSurveillantsInscrits(0);
+        s.setCampagne(campagneService.getActive());
+        return seanceRepo.save(s);
+    }
+
+    private Enseignant teacher(String nom) {
+        Enseignant e = new Enseignant();
+        e.setNomComplet(nom);
+        e.setGrade("Assistant");
+        e.setChargeEnseignement(10.0);
+        e.setChargeSurveillance(3.0);
+        return enseignantRepo.save(e);
+    }
+
+    private List<Long> waiting(Seance s) {
+        return service.getWaitlist(s.getId()).stream().map(ListeAttente::getEnseignant).map(Enseignant::getId).toList();
+    }
+}
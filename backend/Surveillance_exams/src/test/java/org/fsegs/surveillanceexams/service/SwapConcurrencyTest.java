@@ -0,0 +1,134 @@
+package org.fsegs.surveillanceexams.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.fsegs.surveillanceexams.model.Affectation;
+import org.fsegs.surveillanceexams.model.Enseignant;
+import org.fsegs.surveillanceexams.model.Seance;
+import org.fsegs.surveillanceexams.repository.AffectationRepository;
+import org.fsegs.surveillanceexams.repository.EnseignantRepository;
+import org.fsegs.surveillanceexams.repository.SeanceRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Many concurrent swaps between the same few teachers, half of them issued
+ * in the opposite order (A,B) / (B,A). With deterministic lock ordering none
+ * of them may deadlock or time out, and every seat must still be held by
+ * exactly one teacher at the end.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:swap;MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "surveillance.snapshot.enabled=false",
+        "surveillance.audit.enabled=false",
+        "surveillance.idempotency.file="})
+class SwapConcurrencyTest {
+
+    private static final int TEACHERS = 8;
+    private static final int THREADS = 16;
+    private static final int SWAPS_PER_THREAD = 40;
+
+    @Autowired
+    private SurveillanceService service;
+    @Autowired
+    private EnseignantRepository enseignantRepo;
+    @Autowired
+    private SeanceRepository seanceRepo;
+    @Autowired
+    private AffectationRepository affectationRepo;
+
+    @Test
+    void concurrentCrossingSwapsNeverDeadlock() throws Exception {
+        List<Long> teacherIds = new ArrayList<>();
+        for (int i = 0; i < TEACHERS; i++) {
+            Enseignant e = new Enseignant();
+            e.setNomComplet("Teacher " + i);
+            e.setChargeEnseignement(10.0);
+            e.setChargeSurveillance(3.0);
+            e = enseignantRepo.save(e);
+
+            Seance s = new Seance();
+            s.setDate(LocalDate.of(2025, 6, 2).plusDays(i));
+            s.setHeureDebut(LocalTime.of(8, 30));
+            s.setHeureFin(LocalTime.of(10, 0));
+            s.setNbSurveillantsNecessaires(1);
+            s.setNbSurveillantsInscrits(1);
+            s = seanceRepo.save(s);
+
+            affectationRepo.save(new Affectation(e, s));
+            teacherIds.add(e.getId());
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger swapped = new AtomicInteger();
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            futures.add(pool.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                for (int i = 0; i < SWAPS_PER_THREAD; i++) {
+                    Map<Long, Long> seatOf = currentSeats();
+                    int a = random.nextInt(TEACHERS);
+                    int b = (a + 1 + random.nextInt(TEACHERS - 1)) % TEACHERS;
+                    if (random.nextBoolean()) {
+                        // Crossing order
+                        int tmp = a;
+                        a = b;
+                        b = tmp;
+                    }
+                    Long ta = teacherIds.get(a);
+                    Long tb = teacherIds.get(b);
+                    try {
+                        String result = service.swapAffectations(ta, seatOf.get(ta), tb, seatOf.get(tb));
+                        if (result.equals("Swap successful")) {
+                            swapped.incrementAndGet();
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get(2, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+
+        assertTrue(failures.isEmpty(), () -> "Swaps failed: " + failures);
+        assertTrue(swapped.get() > 0);
+
+        // Still a perfect matching between teachers and seats
+        Map<Long, Long> seatOf = currentSeats();
+        assertEquals(TEACHERS, affectationRepo.count());
+        assertEquals(TEACHERS, seatOf.size());
+        assertEquals(TEACHERS, new HashSet<>(seatOf.values()).size());
+        for (Seance s : seanceRepo.findAll()) {
+            assertEquals(1, s.getNbSurveillantsInscrits());
+        }
+    }
+
+    private Map<Long, Long> currentSeats() {
+        Map<Long, Long> seatOf = new HashMap<>();
+        for (Object[] row : affectationRepo.findAllPairs()) {
+            seatOf.put((Long) row[0], (Long) row[1]);
+        }
+        return seatOf;
+    }
+}
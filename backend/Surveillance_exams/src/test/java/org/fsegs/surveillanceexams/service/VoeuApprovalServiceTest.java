@@ -0,0 +1,138 @@
+package org.fsegs.surveillanceexams.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.fsegs.surveillanceexams.campagne.CampagneService;
+import org.fsegs.surveillanceexams.diagnostics.OperationTracer;
+import org.fsegs.surveillanceexams.model.Enseignant;
+import org.fsegs.surveillanceexams.model.Seance;
+import org.fsegs.surveillanceexams.model.Voeu;
+import org.fsegs.surveillanceexams.planning.PlanningLoader;
+import org.fsegs.surveillanceexams.repository.AffectationRepository;
+import org.fsegs.surveillanceexams.repository.EnseignantRepository;
+import org.fsegs.surveillanceexams.repository.SeanceRepository;
+import org.fsegs.surveillanceexams.repository.VoeuRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deferred approval: by default the last seat goes to the earlier wish;
+ * with a grade-first approval order, to the higher grade.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:approval;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "surveillance.snapshot.enabled=false",
+        "surveillance.audit.enabled=false",
+        "surveillance.reconcile.enabled=false",
+        "surveillance.idempotency.file=",
+        "surveillance.voeux.deferred-approval=true",
+        "surveillance.voeux.grade-priority=Professeur,Maitre Assistant,Assistant"})
+class VoeuApprovalServiceTest {
+
+    @Autowired
+    private SurveillanceService service;
+    @Autowired
+    private VoeuApprovalService approvalService;
+    @Autowired
+    private CampagneService campagneService;
+    @Autowired
+    private EnseignantRepository enseignantRepo;
+    @Autowired
+    private SeanceRepository seanceRepo;
+    @Autowired
+    private AffectationRepository affectationRepo;
+    @Autowired
+    private VoeuRepository voeuRepo;
+    @Autowired
+    private PlanningLoader planningLoader;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ApplicationEventPublisher events;
+    @Autowired
+    private OperationTracer tracer;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void earlierSubmissionBeatsGradeByDefault() {
+        Seance seance = seance(8);
+        Enseignant assistant = teacher("Assistant");
+        Enseignant professeur = teacher("Professeur");
+        assertEquals(VoeuResult.Outcome.PENDING, service.soumettreVoeu(assistant.getId(), seance.getId()).outcome());
+        assertEquals(VoeuResult.Outcome.PENDING, service.soumettreVoeu(professeur.getId(), seance.getId()).outcome());
+
+        Map<String, Object> report = approvalService.runApproval();
+
+        assertEquals(1, report.get("approved"));
+        assertEquals(Voeu.VoeuStatus.APPROVED, status(assistant, seance));
+        assertEquals(Voeu.VoeuStatus.REJECTED, status(professeur, seance));
+    }
+
+    @Test
+    void gradeBeatsEarlierSubmissionWhenConfigured() {
+        VoeuApprovalService gradeFirst = new VoeuApprovalService(voeuRepo, planningLoader, jdbcTemplate, events,
+                campagneService, tracer, List.of("Professeur", "Maitre Assistant", "Assistant"),
+                List.of("grade", "quota", "submission"));
+        Seance seance = seance(14);
+        Enseignant assistant = teacher("Assistant");
+        Enseignant professeur = teacher("Professeur");
+        assertEquals(VoeuResult.Outcome.PENDING, service.soumettreVoeu(assistant.getId(), seance.getId()).outcome());
+        assertEquals(VoeuResult.Outcome.PENDING, service.soumettreVoeu(professeur.getId(), seance.getId()).outcome());
+
+        Map<String, Object> report = transactionTemplate.execute(tx -> gradeFirst.runApproval());
+
+        assertEquals(1, report.get("approved"));
+        assertEquals(1, report.get("rejected"));
+        assertEquals(Voeu.VoeuStatus.APPROVED, status(professeur, seance));
+        assertEquals(Voeu.VoeuStatus.REJECTED, status(assistant, seance));
+        assertTrue(affectationRepo.existsByEnseignantAndSeance(professeur, seance));
+        assertEquals(1, seanceRepo.findById(seance.getId()).orElseThrow().getNbSurveillantsInscrits());
+    }
+
+    @Test
+    void unknownOrderKeyIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new VoeuApprovalService(voeuRepo, planningLoader,
+                jdbcTemplate, events, campagneService, tracer, List.of(), List.of("submission", "age")));
+    }
+
+    private Seance seance(int hour) {
+        Seance seance = new Seance();
+        seance.setDate(LocalDate.of(2025, 6, 2));
+        seance.setHeureDebut(LocalTime.of(hour, 0));
+        seance.setHeureFin(LocalTime.of(hour + 2, 0));
+        seance.setNbSurveillantsNecessaires(1);
+        seance.setNbSurveillantsInscrits(0);
+        seance.setCampagne(campagneService.getActive());
+        return seanceRepo.save(seance);
+    }
+
+    private Enseignant teacher(String grade) {
+        Enseignant e = new Enseignant();
+        e.setNomComplet(grade + " teacher");
+        e.setGrade(grade);
+        e.setChargeEnseignement(10.0);
+        e.setChargeSurveillance(3.0);
+        return enseignantRepo.save(e);
+    }
+
+    private Voeu.VoeuStatus status(Enseignant e, Seance s) {
+        return voeuRepo.findByEnseignant(e).stream()
+                .filter(v -> v.getSeance().getId().equals(s.getId()))
+                .findFirst().orElseThrow().getStatus();
+    }
+}
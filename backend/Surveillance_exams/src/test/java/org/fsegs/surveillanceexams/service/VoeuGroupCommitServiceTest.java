@@ -0,0 +1,145 @@
+package org.fsegs.surveillanceexams.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import org.fsegs.surveillanceexams.diagnostics.OperationTracer;
+import org.fsegs.surveillanceexams.planning.SeanceSlot;
+import org.fsegs.surveillanceexams.planning.TeacherProfile;
+import org.fsegs.surveillanceexams.repository.AffectationRepository;
+import org.fsegs.surveillanceexams.repository.EnseignantRepository;
+import org.fsegs.surveillanceexams.repository.PaquetRepository;
+import org.fsegs.surveillanceexams.repository.SeanceRepository;
+import org.fsegs.surveillanceexams.repository.VoeuRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+class VoeuGroupCommitServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 6, 2);
+
+    private static SeanceSlot seance(long id, int debut, int needed, Long... matieres) {
+        return new SeanceSlot(id, DAY, LocalTime.of(debut, 0), LocalTime.of(debut + 2, 0), needed, Set.of(matieres));
+    }
+
+    private static VoeuGroupCommitService.Batch batch() {
+        VoeuGroupCommitService.Batch batch = new VoeuGroupCommitService.Batch();
+        batch.addSeance(seance(1, 8, 2), 0, 10L, true);
+        batch.addSeance(seance(2, 9, 2), 0, 10L, true);       // overlaps 1
+        batch.addSeance(seance(3, 14, 1), 0, 10L, true);
+        batch.addSeance(seance(4, 16, 2, 100L), 0, 10L, true); // subject 100
+        batch.addSeance(seance(5, 8, 2), 0, 11L, false);      // closed campaign
+        batch.addTeacher(new TeacherProfile(1L, "A", "Assistant", 2.0, Set.of(100L)));
+        batch.addTeacher(new TeacherProfile(2L, "B", "Assistant", null, Set.of()));
+        batch.addTeacher(new TeacherProfile(3L, "C", "Assistant", null, Set.of()));
+        batch.addAssignmentCount(1L, 10L, 1);
+        return batch;
+    }
+
+    @Test
+    void decidesInArrivalOrderWithTheBatchAcceptances() {
+        VoeuGroupCommitService.Batch batch = batch();
+
+        assertEquals(SurveillanceService.WISH_ASSIGNED, batch.decide(2L, 1L, false).message());
+        assertEquals(SurveillanceService.WISH_ALREADY_SUBMITTED, batch.decide(2L, 1L, false).message());
+        assertEquals(SurveillanceService.WISH_TIME_CONFLICT, batch.decide(2L, 2L, false).message());
+        assertEquals(SurveillanceService.WISH_SUBJECT_CONFLICT, batch.decide(1L, 4L, false).message());
+        // Teacher 1 had one assignment for a quota of 2
+        assertEquals(SurveillanceService.WISH_ASSIGNED, batch.decide(1L, 3L, false).message());
+        assertEquals(SurveillanceService.wishQuotaReached(2.0), batch.decide(1L, 1L, false).message());
+        // Seance 3 is now full: waitlist, then the same pair stays on that path
+        assertNull(batch.decide(3L, 3L, false));
+        assertNull(batch.decide(3L, 3L, false));
+
+        assertEquals(2, batch.approved.size());
+        assertTrue(batch.pending.isEmpty());
+    }
+
+    @Test
+    void leavesUnknownAndClosedCasesToTheSingleTransactionPath() {
+        VoeuGroupCommitService.Batch batch = batch();
+        assertNull(batch.decide(2L, 5L, false));
+        assertNull(batch.decide(2L, 99L, false));
+        assertNull(batch.decide(99L, 1L, false));
+        assertTrue(batch.approved.isEmpty());
+    }
+
+    @Test
+    void deferredModeOnlyChecksSubjects() {
+        VoeuGroupCommitService.Batch batch = batch();
+        batch.addVoeu(3L, 2L);
+
+        assertEquals(SurveillanceService.WISH_PENDING, batch.decide(2L, 1L, true).message());
+        assertEquals(SurveillanceService.WISH_PENDING, batch.decide(2L, 2L, true).message());
+        assertEquals(SurveillanceService.WISH_SUBJECT_CONFLICT, batch.decide(1L, 4L, true).message());
+        assertEquals(SurveillanceService.WISH_ALREADY_SUBMITTED, batch.decide(3L, 2L, true).message());
+        assertEquals(2, batch.pending.size());
+        assertTrue(batch.approved.isEmpty());
+    }
+
+    private final SurveillanceService surveillanceService = mock(SurveillanceService.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+
+    private VoeuGroupCommitService startService(long timeoutMillis) {
+        VoeuGroupCommitService service = new VoeuGroupCommitService(surveillanceService,
+                mock(SeanceRepository.class), mock(EnseignantRepository.class), mock(AffectationRepository.class),
+                mock(VoeuRepository.class), mock(PaquetRepository.class), mock(JdbcTemplate.class),
+                transactionTemplate, mock(ApplicationEventPublisher.class),
+                new OperationTracer(false, 1, false, 0, 1, "target/jfr"), true, false, 0, 128, timeoutMillis);
+        service.start();
+        return service;
+    }
+
+    @Test
+    void errorInABatchFailsItsCallersAndKeepsTheFlusher() throws Exception {
+        doThrow(new StackOverflowError())
+                .doReturn(new VoeuResult[]{VoeuResult.assigned()})
+                .when(transactionTemplate).execute(any());
+        VoeuGroupCommitService service = startService(5_000);
+        try {
+            IllegalStateException e = assertThrows(IllegalStateException.class, () -> service.soumettreVoeu(1L, 2L));
+            assertInstanceOf(StackOverflowError.class, e.getCause());
+            assertEquals(VoeuResult.Outcome.ASSIGNED, service.soumettreVoeu(1L, 3L).outcome());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void callersStopWaitingAfterTheTimeout() throws Exception {
+        CountDownLatch inBatch = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            inBatch.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new VoeuResult[]{VoeuResult.assigned()};
+        }).when(transactionTemplate).execute(any());
+        when(surveillanceService.soumettreVoeu(2L, 2L)).thenReturn(VoeuResult.pending());
+        VoeuGroupCommitService service = startService(200);
+        try {
+            CompletableFuture<VoeuResult> stuck = CompletableFuture.supplyAsync(() -> service.soumettreVoeu(1L, 1L));
+            assertTrue(inBatch.await(5, TimeUnit.SECONDS));
+
+            // Still queued behind the stuck batch: runs in its own transaction
+            assertEquals(VoeuResult.Outcome.PENDING, service.soumettreVoeu(2L, 2L).outcome());
+            // Taken by the stuck batch: fails rather than guessing the outcome
+            ExecutionException e = assertThrows(ExecutionException.class, () -> stuck.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(QueryTimeoutException.class, e.getCause());
+        } finally {
+            release.countDown();
+            service.shutdown();
+        }
+    }
+}
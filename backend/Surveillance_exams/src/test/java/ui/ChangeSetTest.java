@@ -0,0 +1,36 @@
+package ui;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+class ChangeSetTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void oppositeEditsCancelAndRemovalsComeFirst() throws Exception {
+        ChangeSet changes = new ChangeSet();
+        changes.add(1, 10);
+        changes.remove(2, 20);
+        changes.add(3, 30);
+        changes.remove(3, 30);   // undoes the addition
+        changes.add(2, 20);      // undoes the removal
+        changes.remove(4, 40);
+
+        assertEquals(List.of(new ChangeSet.Change(false, 4, 40), new ChangeSet.Change(true, 1, 10)),
+                changes.ordered());
+
+        Path file = dir.resolve("changes.json");
+        changes.write(file);
+        String json = Files.readString(file).replaceAll("\\s", "");
+        assertEquals("{\"operations\":[{\"action\":\"remove\",\"idEnseignant\":4,\"idSeance\":40},"
+                + "{\"action\":\"add\",\"idEnseignant\":1,\"idSeance\":10}]}", json);
+    }
+}
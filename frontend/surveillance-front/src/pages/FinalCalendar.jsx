@@ -104,37 +104,40 @@ export default function FinalCalendar() {
     }
 
     try {
-      const res = await ExamService.getEnseignantByUserId(user.id_user);
-      const teacherData = res.data;
-
-      if (!teacherData?.affectations || teacherData.affectations.length === 0) {
+      let idEnseignant = user.enseignantDTO?.id;
+      if (!idEnseignant) {
+        const res = await ExamService.getEnseignantByUserId(user.id_user);
+        idEnseignant = res.data?.id;
+      }
+      if (!idEnseignant) {
         setEvents([]);
         return;
       }
 
-      const mappedEvents = teacherData.affectations
-        .map((a) => {
-          const se = a.seance;
-          if (!se) return null;
+      // Calendar already grouped by day and slot, restricted to this teacher's assignments
+      const res = await ExamService.getCalendar({ idEnseignant });
+      const days = res.data?.days || [];
 
-          const dateStr = se.date || se.date_seance || se.dateSeance;
-          const startStr = se.heureDebut || se.heure_debut || se.start;
-          const endStr = se.heureFin || se.heure_fin || se.end;
+      const mappedEvents = days
+        .flatMap((day) => day.slots.flatMap((slot) => slot.seances))
+        .map((se) => {
+          const assignment = (se.enseignants || []).find((t) => t.id === idEnseignant);
+          if (!assignment) return null;
 
-          const start = parseDateTime(dateStr, startStr);
-          const end = parseDateTime(dateStr, endStr);
+          const start = parseDateTime(se.date, se.heureDebut);
+          const end = parseDateTime(se.date, se.heureFin);
 
           if (!start || !end) return null;
 
           const duration = (end - start) / (1000 * 60);
 
           const titleText = (se.epreuves || [])
-            .map((ev) => ev.nom || ev.matiere?.nom)
+            .map((ev) => ev.matiere?.nom)
             .filter(Boolean)
             .join(', ');
 
           return {
-            id: a.id,
+            id: assignment.idAffectation,
             seanceId: se.id, // NEW: Store seance ID for cancellation
             title: titleText || "Exam Session",
             startDate: start,
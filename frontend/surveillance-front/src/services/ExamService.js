@@ -27,6 +27,23 @@ const ExamService = {
     return ExamService.getSeances({ all: true });
   },
 
+  /**
+   * Server-side seance search (active campaign)
+   * @param {Object} filters - from, to, heureMin, heureMax, saturee, filiere, classe, matiere,
+   *                           sansMatieresDe (teacher id), limit
+   * @param {string} [cursor] - nextCursor of the previous page; omit for the first page
+   * @returns {Promise} - Axios response: data.items, data.nextCursor, data.total and data.facets (first page)
+   */
+  searchSeances: (filters = {}, cursor) =>
+    api.get('/seances/search', { params: cursor ? { ...filters, cursor } : filters }),
+
+  /**
+   * Exam calendar of the active campaign grouped by day and start time
+   * @param {Object} [params] - idEnseignant (only that teacher's seances), from, to (yyyy-MM-dd)
+   * @returns {Promise} - Axios response: data.slots (start times) and data.days[].slots[].seances
+   */
+  getCalendar: (params = {}) => api.get('/calendar', { params }),
+
   getAllEnseignants: () => api.get('/enseignants'),
   getAllVoeux: () => api.get('/voeux'),
   getEnseignantByUserId: (idUser) => api.get(`/enseignants/by-user/${idUser}`),